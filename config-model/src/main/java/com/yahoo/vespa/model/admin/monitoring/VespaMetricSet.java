@@ -64,6 +64,10 @@ public class VespaMetricSet {
         metrics.add(new Metric("jrt.transport.server.unencrypted-connections-established"));
         metrics.add(new Metric("jrt.transport.client.unencrypted-connections-established"));
 
+        // Java (JRT) write batching metrics, packets per write is packets-written / packet-writes
+        metrics.add(new Metric("jrt.transport.packet-writes"));
+        metrics.add(new Metric("jrt.transport.packets-written"));
+
         // C++ TLS metrics
         metrics.add(new Metric("vds.server.network.tls-handshakes-failed"));
         metrics.add(new Metric("vds.server.network.peer-authorization-failures"));
@@ -148,6 +152,7 @@ public class VespaMetricSet {
             addMetric(metrics, "jdisc.thread_pool.unhandled_exceptions", suffixes);
             addMetric(metrics, "jdisc.thread_pool.work_queue.capacity", suffixes);
             addMetric(metrics, "jdisc.thread_pool.work_queue.size", suffixes);
+            addMetric(metrics, "jdisc.thread_pool.concurrency_limit", suffixes);
         }
 
         metrics.add(new Metric("httpapi_latency.max"));
@@ -326,6 +331,8 @@ public class VespaMetricSet {
         metrics.add(new Metric("documents_total.count"));
         metrics.add(new Metric("dispatch_internal.rate"));
         metrics.add(new Metric("dispatch_fdispatch.rate"));
+        metrics.add(new Metric("dispatch_hedges_issued.rate"));
+        metrics.add(new Metric("dispatch_hedges_won.rate"));
         addMetric(metrics, "jdisc.render.latency", Set.of("min", "max", "count", "sum", "last", "average"));
 
         metrics.add(new Metric("totalhits_per_query.max"));
@@ -0,0 +1,104 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.handler.threadpool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of tasks in flight in a thread pool to an estimate of what it can handle without
+ * queueing, so that tasks beyond this are rejected immediately rather than waiting until they time out.
+ *
+ * The limit is adjusted after each window of completed tasks, by the gradient between the long-term
+ * average latency and the latency in the window: When latency increases the limit is reduced in proportion,
+ * and when it does not, the limit grows by about the square root of itself, but only if it was used.
+ * Package private for testing
+ *
+ * @author bratseth
+ */
+class ConcurrencyLimiter {
+
+    private static final long minWindowNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int minWindowSamples = 10;
+    private static final double tolerance = 1.5; // How much latency may increase before the limit is reduced
+    private static final double smoothing = 0.2;
+    private static final double longTermWeight = 1.0 / 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double longTermLatency = 0;
+    private long windowStartNanos;
+    private long windowLatencySum = 0;
+    private int windowSamples = 0;
+    private int windowMaxInFlight = 0;
+
+    ConcurrencyLimiter(int minLimit, int maxLimit, long nowNanos) {
+        if (minLimit < 1 || minLimit > maxLimit)
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max, but got min " + minLimit + " and max " + maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = maxLimit;
+        this.estimatedLimit = maxLimit;
+        this.windowStartNanos = nowNanos;
+    }
+
+    /** Returns the current limit on tasks in flight */
+    int limit() { return limit; }
+
+    int inFlight() { return inFlight.get(); }
+
+    /** Returns whether a task may start, in which case {@link #release} must be called when it completes */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /** Ends a task which did not run, without using it to adjust the limit */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    /** Ends a task which completed with the given latency */
+    void release(long latencyNanos, long nowNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            windowLatencySum += latencyNanos;
+            windowSamples++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, inFlightBefore);
+            if (windowSamples < minWindowSamples || nowNanos - windowStartNanos < minWindowNanos) return;
+
+            updateLimit((double) windowLatencySum / windowSamples);
+            windowStartNanos = nowNanos;
+            windowLatencySum = 0;
+            windowSamples = 0;
+            windowMaxInFlight = 0;
+        }
+    }
+
+    // Guarded by this
+    private void updateLimit(double latency) {
+        if (longTermLatency == 0)
+            longTermLatency = latency;
+        else
+            longTermLatency = longTermLatency * (1 - longTermWeight) + latency * longTermWeight;
+
+        // Let the long-term latency recover quickly after a sustained increase, so it does not keep the limit down
+        if (longTermLatency > 2 * latency)
+            longTermLatency *= 0.9;
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTermLatency / latency));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        if (windowMaxInFlight < estimatedLimit / 2) // Not using the limit tells nothing about whether it can grow
+            newLimit = Math.min(newLimit, estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+        limit = (int) estimatedLimit;
+    }
+
+}
@@ -7,10 +7,12 @@ import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.container.protect.ProcessTerminator;
 import com.yahoo.jdisc.Metric;
 
+import java.util.Optional;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -45,22 +47,39 @@ public class DefaultContainerThreadpool extends AbstractComponent implements Aut
         int maxThreads = maxThreads(config, cpus);
         int minThreads = minThreads(config, maxThreads, cpus);
         int queueSize = queueSize(config, maxThreads);
-        log.info(String.format("Threadpool '%s': min=%d, max=%d, queue=%d", name, minThreads, maxThreads, queueSize));
+        Optional<ThreadFactory> virtualThreads = config.virtualThreads() ? VirtualThreads.factory(name + "-virtual-") : Optional.empty();
+        if (config.virtualThreads() && virtualThreads.isEmpty())
+            log.warning("Threadpool '" + name + "' is configured to use virtual threads, " +
+                        "but they are not supported by this JVM: Using platform threads");
+        log.info(String.format("Threadpool '%s': min=%d, max=%d, queue=%d%s%s", name, minThreads, maxThreads, queueSize,
+                               virtualThreads.isPresent() ? ", virtual thread per task" : "",
+                               config.adaptiveConcurrencyLimit() ? ", adaptive concurrency limit" : ""));
 
         ThreadPoolMetric threadPoolMetric = new ThreadPoolMetric(metric, name);
-        WorkerCompletionTimingThreadPoolExecutor executor =
-                new WorkerCompletionTimingThreadPoolExecutor(minThreads, maxThreads,
-                        (int)config.keepAliveTime() * 1000, TimeUnit.MILLISECONDS,
-                        createQueue(queueSize),
-                        ThreadFactoryFactory.getThreadFactory(name),
-                        threadPoolMetric);
-        // Prestart needed, if not all threads will be created by the fist N tasks and hence they might also
-        // get the dreaded thread locals initialized even if they will never run.
-        // That counters what we want to achieve with the Q that will prefer thread locality.
-        executor.prestartAllCoreThreads();
+        InstrumentedExecutorService executor;
+        if (virtualThreads.isPresent()) {
+            // Virtual threads are cheap to create and should not be pooled, so each task gets its own
+            executor = new ThreadPerTaskExecutor(virtualThreads.get(), true, maxThreads + queueSize, threadPoolMetric);
+        }
+        else {
+            WorkerCompletionTimingThreadPoolExecutor pool =
+                    new WorkerCompletionTimingThreadPoolExecutor(minThreads, maxThreads,
+                            (int)config.keepAliveTime() * 1000, TimeUnit.MILLISECONDS,
+                            createQueue(queueSize),
+                            ThreadFactoryFactory.getThreadFactory(name),
+                            threadPoolMetric);
+            // Prestart needed, if not all threads will be created by the fist N tasks and hence they might also
+            // get the dreaded thread locals initialized even if they will never run.
+            // That counters what we want to achieve with the Q that will prefer thread locality.
+            pool.prestartAllCoreThreads();
+            executor = pool;
+        }
+        ConcurrencyLimiter limiter = config.adaptiveConcurrencyLimit()
+                ? new ConcurrencyLimiter(Math.min(cpus, maxThreads + queueSize), maxThreads + queueSize, System.nanoTime())
+                : null;
         threadpool = new ExecutorServiceWrapper(
                 executor, threadPoolMetric, processTerminator, config.maxThreadExecutionTimeSeconds() * 1000L,
-                name);
+                name, limiter);
     }
 
     @Override public Executor executor() { return threadpool; }
@@ -4,13 +4,15 @@ package com.yahoo.container.handler.threadpool;
 import com.google.common.util.concurrent.ForwardingExecutorService;
 import com.yahoo.container.protect.ProcessTerminator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * A service executor wrapper which emits metrics and
+ * A service executor wrapper which emits metrics, optionally limits the number of tasks in flight, and
  * shuts down the vm when no workers are available for too long to avoid containers lingering in a blocked state.
  * Package private for testing
  *
@@ -20,32 +22,34 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 class ExecutorServiceWrapper extends ForwardingExecutorService {
 
-    private final WorkerCompletionTimingThreadPoolExecutor wrapped;
+    private final InstrumentedExecutorService wrapped;
     private final ThreadPoolMetric metric;
     private final ProcessTerminator processTerminator;
     private final long maxThreadExecutionTimeMillis;
-    private final int queueCapacity;
     private final Thread metricReporter;
-    private final boolean threadPoolIsOnlyQ;
+    private final ConcurrencyLimiter limiter; // or null if the number of tasks is only limited by threads and queue
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
-    ExecutorServiceWrapper(WorkerCompletionTimingThreadPoolExecutor wrapped,
+    ExecutorServiceWrapper(InstrumentedExecutorService wrapped,
                            ThreadPoolMetric metric,
                            ProcessTerminator processTerminator,
                            long maxThreadExecutionTimeMillis,
                            String name) {
+        this(wrapped, metric, processTerminator, maxThreadExecutionTimeMillis, name, null);
+    }
+
+    ExecutorServiceWrapper(InstrumentedExecutorService wrapped,
+                           ThreadPoolMetric metric,
+                           ProcessTerminator processTerminator,
+                           long maxThreadExecutionTimeMillis,
+                           String name,
+                           ConcurrencyLimiter limiter) {
         this.wrapped = wrapped;
+        this.limiter = limiter;
         this.metric = metric;
         this.processTerminator = processTerminator;
         this.maxThreadExecutionTimeMillis = maxThreadExecutionTimeMillis;
-        int maxQueueCapacity = wrapped.getQueue().remainingCapacity() + wrapped.getQueue().size();
-        this.threadPoolIsOnlyQ = (maxQueueCapacity == 0);
-        this.queueCapacity = threadPoolIsOnlyQ
-                ? wrapped.getMaximumPoolSize()
-                : maxQueueCapacity;
-
-        metric.reportThreadPoolSize(wrapped.getPoolSize());
-        metric.reportActiveThreads(wrapped.getActiveCount());
+
         reportMetrics();
         metricReporter = new Thread(this::reportMetricsRegularly);
         metricReporter.setName(name + "-threadpool-metric-reporter");
@@ -53,12 +57,15 @@ class ExecutorServiceWrapper extends ForwardingExecutorService {
     }
 
     private void reportMetrics() {
-        int activeThreads = wrapped.getActiveCount();
-        metric.reportThreadPoolSize(wrapped.getPoolSize());
+        int activeThreads = wrapped.activeCount();
+        metric.reportThreadPoolSize(wrapped.poolSize());
         metric.reportActiveThreads(activeThreads);
-        int queueSize = threadPoolIsOnlyQ ? activeThreads : wrapped.getQueue().size();
-        metric.reportWorkQueueSize(queueSize);
-        metric.reportWorkQueueCapacity(queueCapacity);
+        metric.reportWorkQueueSize(wrapped.workQueueSize());
+        metric.reportWorkQueueCapacity(wrapped.workQueueCapacity());
+        if (wrapped.usesVirtualThreads())
+            metric.reportVirtualThreads(activeThreads);
+        if (limiter != null)
+            metric.reportConcurrencyLimit(limiter.limit());
     }
 
     private void reportMetricsRegularly() {
@@ -99,11 +106,20 @@ class ExecutorServiceWrapper extends ForwardingExecutorService {
      */
     @Override
     public void execute(Runnable command) {
+        if (limiter != null) {
+            if ( ! limiter.tryAcquire()) {
+                metric.reportRejectRequest();
+                throw new RejectedExecutionException("The concurrency limit of " + limiter.limit() + " is reached");
+            }
+            command = new LimitedTask(command, System.nanoTime());
+        }
         try {
             super.execute(command);
         } catch (RejectedExecutionException e) {
+            if (limiter != null)
+                limiter.cancel();
             metric.reportRejectRequest();
-            long timeSinceLastReturnedThreadMillis = System.currentTimeMillis() - wrapped.lastThreadAssignmentTimeMillis;
+            long timeSinceLastReturnedThreadMillis = System.currentTimeMillis() - wrapped.lastThreadAssignmentTimeMillis();
             if (timeSinceLastReturnedThreadMillis > maxThreadExecutionTimeMillis)
                 processTerminator.logAndDie("No worker threads have been available for " +
                         timeSinceLastReturnedThreadMillis + " ms. Shutting down.", true);
@@ -111,8 +127,46 @@ class ExecutorServiceWrapper extends ForwardingExecutorService {
         }
     }
 
+    /** Shuts down immediately, and ends the tasks which will not run in the limiter */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = new ArrayList<>();
+        for (Runnable task : super.shutdownNow()) {
+            if (task instanceof LimitedTask) {
+                limiter.cancel();
+                task = ((LimitedTask) task).task;
+            }
+            tasks.add(task);
+        }
+        shutdown(); // to stop the metric reporter
+        return tasks;
+    }
+
     @Override
     protected ExecutorService delegate() { return wrapped; }
 
+    /** A task which releases its place in the limiter when done, with the latency since it was submitted */
+    private class LimitedTask implements Runnable {
+
+        private final Runnable task;
+        private final long submittedNanos;
+
+        LimitedTask(Runnable task, long submittedNanos) {
+            this.task = task;
+            this.submittedNanos = submittedNanos;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                long now = System.nanoTime();
+                limiter.release(now - submittedNanos, now);
+            }
+        }
+
+    }
+
 }
 
@@ -0,0 +1,32 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.handler.threadpool;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An executor service which exposes the state reported in thread pool metrics.
+ * Package private for testing
+ *
+ * @author bratseth
+ */
+interface InstrumentedExecutorService extends ExecutorService {
+
+    /** Returns the number of threads in this */
+    int poolSize();
+
+    /** Returns the number of threads currently running a task */
+    int activeCount();
+
+    /** Returns the number of tasks waiting for, or holding, a place in this */
+    int workQueueSize();
+
+    /** Returns the max value of {@link #workQueueSize} */
+    int workQueueCapacity();
+
+    /** Returns the last time a task was assigned a thread, in epoch milliseconds */
+    long lastThreadAssignmentTimeMillis();
+
+    /** Returns whether this runs tasks on virtual threads */
+    boolean usesVirtualThreads();
+
+}
@@ -0,0 +1,141 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.handler.threadpool;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor which starts a new thread for each task, for use with virtual threads, which are cheap to create
+ * and should not be pooled. The number of tasks in flight is bounded, and tasks beyond the bound are rejected
+ * rather than queued.
+ * Package private for testing
+ *
+ * @author bratseth
+ */
+class ThreadPerTaskExecutor extends AbstractExecutorService implements InstrumentedExecutorService {
+
+    private final ThreadFactory threadFactory;
+    private final boolean virtualThreads;
+    private final int maxTasks;
+    private final Semaphore permits;
+    private final ThreadPoolMetric metric;
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final Object terminationMonitor = new Object();
+
+    private volatile boolean shutdown = false;
+    private volatile long lastThreadAssignmentTimeMillis = System.currentTimeMillis();
+
+    ThreadPerTaskExecutor(ThreadFactory threadFactory, boolean virtualThreads, int maxTasks, ThreadPoolMetric metric) {
+        if (maxTasks < 1)
+            throw new IllegalArgumentException("The max number of tasks must be positive, but got " + maxTasks);
+        this.threadFactory = threadFactory;
+        this.virtualThreads = virtualThreads;
+        this.maxTasks = maxTasks;
+        this.permits = new Semaphore(maxTasks);
+        this.metric = metric;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if ( ! permits.tryAcquire())
+            throw new RejectedExecutionException("All " + maxTasks + " tasks are in flight");
+        if (shutdown) { // checked after acquiring, such that no task starts after termination is observed
+            release();
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        try {
+            Thread thread = threadFactory.newThread(() -> run(task));
+            threads.add(thread);
+            lastThreadAssignmentTimeMillis = System.currentTimeMillis();
+            thread.start();
+        }
+        catch (RuntimeException | Error e) {
+            release();
+            throw e;
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        }
+        catch (RuntimeException | Error e) {
+            metric.reportUnhandledException(e);
+            throw e;
+        }
+        finally {
+            threads.remove(Thread.currentThread());
+            release();
+        }
+    }
+
+    private void release() {
+        permits.release();
+        if (shutdown) {
+            synchronized (terminationMonitor) {
+                terminationMonitor.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /** Interrupts the threads running tasks. As there is no queue, no tasks are returned */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        for (Thread thread : threads)
+            thread.interrupt();
+        return List.of();
+    }
+
+    @Override
+    public boolean isShutdown() { return shutdown; }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && permits.availablePermits() == maxTasks;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationMonitor) {
+            while ( ! isTerminated()) {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(terminationMonitor, remainingNanos);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int poolSize() { return activeCount(); }
+
+    @Override
+    public int activeCount() { return maxTasks - permits.availablePermits(); }
+
+    /** Returns the number of tasks in flight, as each task holds a place until it completes */
+    @Override
+    public int workQueueSize() { return activeCount(); }
+
+    @Override
+    public int workQueueCapacity() { return maxTasks; }
+
+    @Override
+    public long lastThreadAssignmentTimeMillis() { return lastThreadAssignmentTimeMillis; }
+
+    @Override
+    public boolean usesVirtualThreads() { return virtualThreads; }
+
+}
@@ -27,6 +27,8 @@ class ThreadPoolMetric {
     void reportActiveThreads(long threads) { metric.set("serverActiveThreads", threads, defaultContext); }
     void reportWorkQueueCapacity(long capacity) { metric.set("jdisc.thread_pool.work_queue.capacity", capacity, defaultContext); }
     void reportWorkQueueSize(long size) { metric.set("jdisc.thread_pool.work_queue.size", size, defaultContext); }
+    void reportConcurrencyLimit(long limit) { metric.set("jdisc.thread_pool.concurrency_limit", limit, defaultContext); }
+    void reportVirtualThreads(long threads) { metric.set("jdisc.thread_pool.virtual_threads", threads, defaultContext); }
     void reportUnhandledException(Throwable t) {
         Metric.Context ctx = metric.createContext(Map.of(
                 THREAD_POOL_NAME_DIMENSION, threadPoolName,
@@ -0,0 +1,46 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.handler.threadpool;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates virtual threads when the JVM supports them (Java 21, or 19 with preview features enabled).
+ * This is done by reflection, as this is compiled for older versions.
+ * Package private for testing
+ *
+ * @author bratseth
+ */
+class VirtualThreads {
+
+    private static final Logger log = Logger.getLogger(VirtualThreads.class.getName());
+
+    private VirtualThreads() { }
+
+    /** Returns a factory of virtual threads named by the given prefix and a sequence number, if this JVM supports them */
+    static Optional<ThreadFactory> factory(String namePrefix) {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            virtual = builder.getMethod("name", String.class, long.class).invoke(virtual, namePrefix, 0L);
+            return Optional.of((ThreadFactory) builder.getMethod("factory").invoke(virtual));
+        }
+        catch (ReflectiveOperationException | RuntimeException e) { // Not present, or preview features not enabled
+            log.log(Level.FINE, "Virtual threads are not supported by this JVM", e);
+            return Optional.empty();
+        }
+    }
+
+    /** Returns whether the given thread is virtual */
+    static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+}
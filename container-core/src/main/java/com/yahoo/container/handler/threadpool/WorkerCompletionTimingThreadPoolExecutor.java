@@ -15,12 +15,14 @@ import java.util.concurrent.atomic.AtomicLong;
  * @author baldersheim
  * @author bratseth
  */
-class WorkerCompletionTimingThreadPoolExecutor extends ThreadPoolExecutor {
+class WorkerCompletionTimingThreadPoolExecutor extends ThreadPoolExecutor implements InstrumentedExecutorService {
 
-    volatile long lastThreadAssignmentTimeMillis = System.currentTimeMillis();
+    private volatile long lastThreadAssignmentTimeMillis = System.currentTimeMillis();
     private final AtomicLong startedCount = new AtomicLong(0);
     private final AtomicLong completedCount = new AtomicLong(0);
     private final ThreadPoolMetric metric;
+    private final boolean threadPoolIsOnlyQ;
+    private final int queueCapacity;
 
     WorkerCompletionTimingThreadPoolExecutor(int corePoolSize,
                                              int maximumPoolSize,
@@ -31,6 +33,9 @@ class WorkerCompletionTimingThreadPoolExecutor extends ThreadPoolExecutor {
                                              ThreadPoolMetric metric) {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
         this.metric = metric;
+        int maxQueueCapacity = workQueue.remainingCapacity() + workQueue.size();
+        this.threadPoolIsOnlyQ = (maxQueueCapacity == 0);
+        this.queueCapacity = threadPoolIsOnlyQ ? maximumPoolSize : maxQueueCapacity;
     }
 
     @Override
@@ -54,5 +59,23 @@ class WorkerCompletionTimingThreadPoolExecutor extends ThreadPoolExecutor {
         return (int)(startedCount.get() - completedCount.get());
     }
 
+    @Override
+    public int poolSize() { return getPoolSize(); }
+
+    @Override
+    public int activeCount() { return getActiveCount(); }
+
+    @Override
+    public int workQueueSize() { return threadPoolIsOnlyQ ? getActiveCount() : getQueue().size(); }
+
+    @Override
+    public int workQueueCapacity() { return queueCapacity; }
+
+    @Override
+    public long lastThreadAssignmentTimeMillis() { return lastThreadAssignmentTimeMillis; }
+
+    @Override
+    public boolean usesVirtualThreads() { return false; }
+
 }
 
@@ -3,6 +3,7 @@ package com.yahoo.container.jdisc;
 
 import com.google.inject.Key;
 import com.yahoo.container.logging.AccessLogEntry;
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.jdisc.Container;
 import com.yahoo.jdisc.References;
 import com.yahoo.jdisc.Request;
@@ -370,6 +371,11 @@ public class HttpRequest {
                 .flatMap(AccessLoggingRequestHandler::getAccessLogEntry);
     }
 
+    /** Returns the profile of this request, which is disabled unless this request is profiled */
+    public RequestProfile getProfile() {
+        return AccessLoggingRequestHandler.getRequestProfile(getJDiscRequest().context());
+    }
+
     private static URI createUri(String request) {
         final URI uri;
         try {
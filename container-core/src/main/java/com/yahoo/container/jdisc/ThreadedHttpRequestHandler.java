@@ -2,6 +2,7 @@
 package com.yahoo.container.jdisc;
 
 import com.google.inject.Inject;
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.Request;
 import com.yahoo.jdisc.handler.BufferedContentChannel;
@@ -81,7 +82,9 @@ public abstract class ThreadedHttpRequestHandler extends ThreadedRequestHandler
             channel = new LazyContentChannel(httpRequest, responseHandler, metric, log);
             HttpResponse httpResponse = handle(httpRequest, channel);
             channel.setHttpResponse(httpResponse); // may or may not have already been done
-            render(httpRequest, httpResponse, channel, jdiscRequest.creationTime(TimeUnit.MILLISECONDS));
+            try (RequestProfile.Phase phase = httpRequest.getProfile().start("render")) {
+                render(httpRequest, httpResponse, channel, jdiscRequest.creationTime(TimeUnit.MILLISECONDS));
+            }
         } catch (Exception e) {
             metric.add(UNHANDLED_EXCEPTIONS_METRIC, 1L, contextFor(request, Map.of("exception", e.getClass().getSimpleName())));
             metric.add(RENDERING_ERRORS, 1, null);
@@ -14,6 +14,8 @@ import com.yahoo.jdisc.handler.ReadableContentChannel;
 import com.yahoo.jdisc.handler.ResponseDispatch;
 import com.yahoo.jdisc.handler.ResponseHandler;
 import com.yahoo.container.core.HandlerMetricContextUtil;
+import com.yahoo.container.logging.RequestProfile;
+import com.yahoo.jdisc.http.server.jetty.AccessLoggingRequestHandler;
 
 import java.time.Duration;
 import java.util.Map;
@@ -181,7 +183,9 @@ public abstract class ThreadedRequestHandler extends AbstractRequestHandler {
 
         @Override
         public void run() {
-            try (ResourceReference reference = requestReference) {
+            try (ResourceReference reference = requestReference;
+                 RequestProfile.Phase phase = AccessLoggingRequestHandler.getRequestProfile(request.context())
+                                                                         .start("handler", ThreadedRequestHandler.this.getClass().getSimpleName())) {
                 processRequest();
             }
         }
@@ -32,11 +32,24 @@ import static java.util.stream.Collectors.toMap;
 public class AccessLogEntry {
 
     private final Object monitor = new Object();
+    private final RequestProfile profile;
 
     private HitCounts hitCounts;
     private TraceNode traceNode;
     private ListMap<String,String> keyValues=null;
 
+    /** Creates an entry for a request which is not profiled */
+    public AccessLogEntry() {
+        this(RequestProfile.disabled());
+    }
+
+    public AccessLogEntry(RequestProfile profile) {
+        this.profile = profile;
+    }
+
+    /** Returns the profile of this request, which is disabled unless this request is profiled */
+    public RequestProfile getProfile() { return profile; }
+
     public void setHitCounts(final HitCounts hitCounts) {
         synchronized (monitor) {
             requireNull(this.hitCounts);
@@ -0,0 +1,51 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts access log files written in the binary format of {@link BinaryRequestLogWriter} to the
+ * JSON access log format. Takes the files to convert as arguments, where "-" is standard input,
+ * and writes the converted entries to standard output. Files ending with ".gz" are decompressed;
+ * other compressed files should be decompressed first, e.g., with <code>zstd -dc</code>, and piped to this.
+ *
+ * @author bratseth
+ */
+public class BinaryAccessLogConverter {
+
+    public static void main(String[] args) throws IOException {
+        OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+        for (String file : args.length == 0 ? new String[] { "-" } : args) {
+            try (InputStream in = open(file)) {
+                convert(in, out);
+            }
+        }
+        out.flush();
+    }
+
+    /** Writes each entry read from the given binary access log as a line of JSON to the given output */
+    public static void convert(InputStream binary, OutputStream json) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(binary, 1 << 16));
+        JSONFormatter formatter = new JSONFormatter();
+        for (RequestLogEntry entry; (entry = BinaryRequestLogWriter.read(in)) != null; ) {
+            formatter.write(entry, json);
+            json.write('\n');
+            if (in.read() != '\n')
+                throw new IOException("Expected a newline after each binary access log entry");
+        }
+    }
+
+    private static InputStream open(String file) throws IOException {
+        if (file.equals("-")) return System.in;
+        InputStream in = new FileInputStream(file);
+        return file.endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+}
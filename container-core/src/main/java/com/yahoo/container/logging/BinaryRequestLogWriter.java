@@ -0,0 +1,302 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.yahoo.data.access.Inspectable;
+import com.yahoo.data.access.simple.JsonRender;
+import com.yahoo.yolean.trace.TraceNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes request log entries in a compact binary spool format, which is much cheaper to produce than JSON,
+ * and which is converted to the JSON access log format offline, by {@link BinaryAccessLogConverter}.
+ *
+ * Each record is an int with the length of the rest of the record, a version byte, and then a tagged value
+ * for each field which is present in the entry, ending with a zero tag. {@link LogFileHandler} follows each
+ * record with a newline. Trace payloads are rendered to JSON when written, as they are arbitrary objects.
+ * Instances are not thread safe, as they are used by a single log thread.
+ *
+ * @author bratseth
+ */
+class BinaryRequestLogWriter implements LogWriter<RequestLogEntry> {
+
+    static final byte VERSION = 1;
+
+    private static final int END = 0;
+    private static final int CONNECTION_ID = 1;
+    private static final int TIMESTAMP = 2;
+    private static final int DURATION = 3;
+    private static final int LOCAL_PORT = 4;
+    private static final int PEER_ADDRESS = 5;
+    private static final int PEER_PORT = 6;
+    private static final int REMOTE_ADDRESS = 7;
+    private static final int REMOTE_PORT = 8;
+    private static final int USER_AGENT = 9;
+    private static final int REFERER = 10;
+    private static final int HTTP_METHOD = 11;
+    private static final int HTTP_VERSION = 12;
+    private static final int HOST_STRING = 13;
+    private static final int STATUS_CODE = 14;
+    private static final int RESPONSE_SIZE = 15;
+    private static final int REQUEST_SIZE = 16;
+    private static final int SCHEME = 17;
+    private static final int RAW_PATH = 18;
+    private static final int RAW_QUERY = 19;
+    private static final int USER_PRINCIPAL = 20;
+    private static final int SSL_PRINCIPAL = 21;
+    private static final int HIT_COUNTS = 22;
+    private static final int TRACE = 23;
+    private static final int ATTRIBUTE = 24;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private final DataOutputStream record = new DataOutputStream(buffer);
+
+    @Override
+    public void write(RequestLogEntry entry, OutputStream outputStream) throws IOException {
+        buffer.reset();
+        record.writeByte(VERSION);
+        writeString(CONNECTION_ID, entry.connectionId());
+        if (entry.timestamp().isPresent()) {
+            record.writeByte(TIMESTAMP);
+            record.writeLong(entry.timestamp().get().getEpochSecond());
+            record.writeInt(entry.timestamp().get().getNano());
+        }
+        if (entry.duration().isPresent()) {
+            record.writeByte(DURATION);
+            record.writeLong(entry.duration().get().getSeconds());
+            record.writeInt(entry.duration().get().getNano());
+        }
+        writeInt(LOCAL_PORT, entry.localPort());
+        writeString(PEER_ADDRESS, entry.peerAddress());
+        writeInt(PEER_PORT, entry.peerPort());
+        writeString(REMOTE_ADDRESS, entry.remoteAddress());
+        writeInt(REMOTE_PORT, entry.remotePort());
+        writeString(USER_AGENT, entry.userAgent());
+        writeString(REFERER, entry.referer());
+        writeString(HTTP_METHOD, entry.httpMethod());
+        writeString(HTTP_VERSION, entry.httpVersion());
+        writeString(HOST_STRING, entry.hostString());
+        writeInt(STATUS_CODE, entry.statusCode());
+        writeLong(RESPONSE_SIZE, entry.responseSize());
+        writeLong(REQUEST_SIZE, entry.requestSize());
+        writeString(SCHEME, entry.scheme());
+        writeString(RAW_PATH, entry.rawPath());
+        writeString(RAW_QUERY, entry.rawQuery());
+        writeString(USER_PRINCIPAL, entry.userPrincipal().map(Principal::getName));
+        writeString(SSL_PRINCIPAL, entry.sslPrincipal().map(Principal::getName));
+        if (entry.hitCounts().isPresent()) {
+            record.writeByte(HIT_COUNTS);
+            writeHitCounts(entry.hitCounts().get());
+        }
+        if (entry.traceNode().isPresent()) {
+            record.writeByte(TRACE);
+            writeTrace(entry.traceNode().get());
+        }
+        for (String key : entry.extraAttributeKeys()) {
+            record.writeByte(ATTRIBUTE);
+            writeString(key);
+            Collection<String> values = entry.extraAttributeValues(key);
+            record.writeInt(values.size());
+            for (String value : values)
+                writeString(value);
+        }
+        record.writeByte(END);
+
+        int length = buffer.size();
+        outputStream.write(length >>> 24);
+        outputStream.write(length >>> 16);
+        outputStream.write(length >>> 8);
+        outputStream.write(length);
+        buffer.writeTo(outputStream);
+    }
+
+    private void writeString(int tag, Optional<String> value) throws IOException {
+        if (value.isEmpty()) return;
+        record.writeByte(tag);
+        writeString(value.get());
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] utf8 = value.getBytes(UTF_8);
+        record.writeInt(utf8.length);
+        record.write(utf8);
+    }
+
+    private void writeInt(int tag, OptionalInt value) throws IOException {
+        if (value.isEmpty()) return;
+        record.writeByte(tag);
+        record.writeInt(value.getAsInt());
+    }
+
+    private void writeLong(int tag, OptionalLong value) throws IOException {
+        if (value.isEmpty()) return;
+        record.writeByte(tag);
+        record.writeLong(value.getAsLong());
+    }
+
+    private void writeHitCounts(HitCounts hitCounts) throws IOException {
+        record.writeInt(hitCounts.getRetrievedHitCount());
+        record.writeInt(hitCounts.getSummaryCount());
+        record.writeLong(hitCounts.getTotalHitCount());
+        record.writeInt(hitCounts.getRequestedHits());
+        record.writeInt(hitCounts.getRequestedOffset());
+        Coverage coverage = hitCounts.getCoverage();
+        record.writeBoolean(coverage != null);
+        if (coverage != null) {
+            record.writeLong(coverage.getDocs());
+            record.writeLong(coverage.getActive());
+            record.writeLong(coverage.getSoonActive());
+            record.writeInt(Coverage.toDegradation(coverage.isDegradedByMatchPhase(),
+                                                   coverage.isDegradedByTimeout(),
+                                                   coverage.isDegradedByAdapativeTimeout()));
+        }
+    }
+
+    private void writeTrace(TraceNode node) throws IOException {
+        record.writeLong(node.timestamp());
+        record.writeBoolean(node.payload() != null);
+        if (node.payload() != null)
+            writeString(renderPayload(node.payload()));
+        List<TraceNode> children = new ArrayList<>();
+        node.children().forEach(children::add);
+        record.writeInt(children.size());
+        for (TraceNode child : children)
+            writeTrace(child);
+    }
+
+    /** Renders the payload as {@link TraceRenderer} does */
+    private String renderPayload(Object payload) throws IOException {
+        if (payload instanceof Inspectable) {
+            StringBuilder json = new StringBuilder();
+            JsonRender.render(((Inspectable) payload).inspect(), json, true);
+            return json.toString();
+        }
+        return mapper.writeValueAsString(payload);
+    }
+
+    /**
+     * Reads the next record written by this from the given input, which is positioned at the start of a record,
+     * or returns null if the input is at its end.
+     */
+    static RequestLogEntry read(DataInputStream input) throws IOException {
+        int length;
+        try {
+            length = input.readInt();
+        }
+        catch (EOFException e) {
+            return null;
+        }
+        if (length < 1)
+            throw new IOException("Invalid binary request log record length " + length);
+        byte[] bytes = input.readNBytes(length); // Grows as bytes are read, so a corrupt length does not allocate it all
+        if (bytes.length < length)
+            throw new IOException("Binary request log record of length " + length + " ends after " + bytes.length + " bytes");
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported binary request log version " + version + ", expected " + VERSION);
+
+        RequestLogEntry.Builder entry = new RequestLogEntry.Builder();
+        for (int tag = in.readByte(); tag != END; tag = in.readByte()) {
+            switch (tag) {
+                case CONNECTION_ID: entry.connectionId(readString(in)); break;
+                case TIMESTAMP: entry.timestamp(Instant.ofEpochSecond(in.readLong(), in.readInt())); break;
+                case DURATION: entry.duration(Duration.ofSeconds(in.readLong(), in.readInt())); break;
+                case LOCAL_PORT: entry.localPort(in.readInt()); break;
+                case PEER_ADDRESS: entry.peerAddress(readString(in)); break;
+                case PEER_PORT: entry.peerPort(in.readInt()); break;
+                case REMOTE_ADDRESS: entry.remoteAddress(readString(in)); break;
+                case REMOTE_PORT: entry.remotePort(in.readInt()); break;
+                case USER_AGENT: entry.userAgent(readString(in)); break;
+                case REFERER: entry.referer(readString(in)); break;
+                case HTTP_METHOD: entry.httpMethod(readString(in)); break;
+                case HTTP_VERSION: entry.httpVersion(readString(in)); break;
+                case HOST_STRING: entry.hostString(readString(in)); break;
+                case STATUS_CODE: entry.statusCode(in.readInt()); break;
+                case RESPONSE_SIZE: entry.responseSize(in.readLong()); break;
+                case REQUEST_SIZE: entry.requestSize(in.readLong()); break;
+                case SCHEME: entry.scheme(readString(in)); break;
+                case RAW_PATH: entry.rawPath(readString(in)); break;
+                case RAW_QUERY: entry.rawQuery(readString(in)); break;
+                case USER_PRINCIPAL: entry.userPrincipal(new NamedPrincipal(readString(in))); break;
+                case SSL_PRINCIPAL: entry.sslPrincipal(new NamedPrincipal(readString(in))); break;
+                case HIT_COUNTS: entry.hitCounts(readHitCounts(in)); break;
+                case TRACE: entry.traceNode(readTrace(in)); break;
+                case ATTRIBUTE:
+                    String key = readString(in);
+                    List<String> values = new ArrayList<>();
+                    for (int count = in.readInt(); count > 0; count--)
+                        values.add(readString(in));
+                    entry.addExtraAttributes(key, values);
+                    break;
+                default: throw new IOException("Unknown tag " + tag + " in binary request log record of length " + length);
+            }
+        }
+        return entry.build();
+    }
+
+    /** Reads a string from the given input, which holds the rest of the record it is in */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available())
+            throw new IOException("String of length " + length + " exceeds the " + in.available() +
+                                  " remaining bytes of its binary request log record");
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, UTF_8);
+    }
+
+    private static HitCounts readHitCounts(DataInputStream in) throws IOException {
+        int retrievedHits = in.readInt();
+        int summaryCount = in.readInt();
+        long totalHitCount = in.readLong();
+        int requestedHits = in.readInt();
+        int requestedOffset = in.readInt();
+        Coverage coverage = in.readBoolean() ? new Coverage(in.readLong(), in.readLong(), in.readLong(), in.readInt()) : null;
+        return new HitCounts(retrievedHits, summaryCount, totalHitCount, requestedHits, requestedOffset, coverage);
+    }
+
+    /** Reads a trace node whose payload, if any, is written as-is when rendered as JSON */
+    private static TraceNode readTrace(DataInputStream in) throws IOException {
+        long timestamp = in.readLong();
+        Object payload = in.readBoolean() ? new RawValue(readString(in)) : null;
+        TraceNode node = new TraceNode(payload, timestamp);
+        for (int count = in.readInt(); count > 0; count--)
+            node.add(readTrace(in));
+        return node;
+    }
+
+    private static class NamedPrincipal implements Principal {
+
+        private final String name;
+
+        NamedPrincipal(String name) { this.name = name; }
+
+        @Override public String getName() { return name; }
+
+        @Override public String toString() { return name; }
+
+    }
+
+}
@@ -8,6 +8,7 @@ import com.yahoo.protect.Process;
 import com.yahoo.yolean.Exceptions;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
@@ -20,13 +21,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
@@ -34,6 +34,9 @@ import java.util.zip.GZIPOutputStream;
 /**
  * Implements log file naming/rotating logic for container logs.
  *
+ * Log entries are passed to the log thread through a lock-free ring buffer, and the log thread formats
+ * each batch of entries it takes from this into a reused buffer, which is then written to file at once.
+ *
  * @author Bob Travis
  * @author bjorncs
  */
@@ -42,11 +45,9 @@ class LogFileHandler <LOGTYPE> {
     enum Compression {NONE, GZIP, ZSTD}
 
     private final static Logger logger = Logger.getLogger(LogFileHandler.class.getName());
-    private final BlockingQueue<Operation<LOGTYPE>> logQueue;
+    private final RingBuffer<Operation<LOGTYPE>> logQueue;
     final LogThread<LOGTYPE> logThread;
 
-    @FunctionalInterface private interface Pollable<T> { Operation<T> poll() throws InterruptedException; }
-
     LogFileHandler(Compression compression, int bufferSize, String filePattern, String rotationTimes, String symlinkName,
                    int queueSize, String threadName, LogWriter<LOGTYPE> logWriter) {
         this(compression, bufferSize, filePattern, calcTimesMinutes(rotationTimes), symlinkName, queueSize, threadName, logWriter);
@@ -54,26 +55,22 @@ class LogFileHandler <LOGTYPE> {
 
     LogFileHandler(Compression compression, int bufferSize, String filePattern, long[] rotationTimes, String symlinkName,
                    int queueSize, String threadName, LogWriter<LOGTYPE> logWriter) {
-        this.logQueue = new LinkedBlockingQueue<>(queueSize);
-        this.logThread = new LogThread<>(logWriter, filePattern, compression, bufferSize, rotationTimes, symlinkName, threadName, this::poll);
+        this.logQueue = new RingBuffer<>(queueSize);
+        this.logThread = new LogThread<>(logWriter, filePattern, compression, bufferSize, rotationTimes, symlinkName, threadName, logQueue);
         this.logThread.start();
     }
 
-    private Operation<LOGTYPE> poll() throws InterruptedException {
-        return logQueue.poll(100, TimeUnit.MILLISECONDS);
-    }
-
     /**
      * Sends logrecord to file, first rotating file if needed.
      *
      * @param r logrecord to publish
      */
     public void publish(LOGTYPE r) {
-        addOperation(new Operation<>(r));
+        addOperation(new Operation<>(Operation.Type.log, r, false));
     }
 
     void publishAndWait(LOGTYPE r) {
-        addOperationAndWait(new Operation<>(r));
+        addOperationAndWait(new Operation<>(Operation.Type.log, r, true));
     }
 
     public void flush() {
@@ -91,17 +88,20 @@ class LogFileHandler <LOGTYPE> {
         addOperationAndWait(new Operation<>(Operation.Type.close));
     }
 
-    private void addOperation(Operation<LOGTYPE> op) {
-        try {
-            logQueue.put(op);
-        } catch (InterruptedException e) {
+    /** Adds the given operation, waiting for room in the queue if it is full, unless interrupted */
+    private boolean addOperation(Operation<LOGTYPE> op) {
+        while ( ! logQueue.offer(op)) {
+            if (Thread.currentThread().isInterrupted()) return false;
+            LockSupport.parkNanos(100_000);
         }
+        logThread.wakeUp();
+        return true;
     }
 
     private void addOperationAndWait(Operation<LOGTYPE> op) {
         try {
-            logQueue.put(op);
-            op.countDownLatch.await();
+            if (addOperation(op))
+                op.countDownLatch.await();
         } catch (InterruptedException e) {
         }
     }
@@ -183,7 +183,11 @@ class LogFileHandler <LOGTYPE> {
      * Handle logging and file operations
      */
     static class LogThread<LOGTYPE> extends Thread {
-        private final Pollable<LOGTYPE> operationProvider;
+        private static final int maxBatchSize = 1024;
+        private final RingBuffer<Operation<LOGTYPE>> operations;
+        private final List<Operation<LOGTYPE>> batch = new ArrayList<>(maxBatchSize);
+        private final ByteArrayOutputStream formatted = new ByteArrayOutputStream(0x10000);
+        private volatile boolean idle = false;
         long lastFlush = 0;
         private PageCacheFriendlyFileOutputStream fileOutput = null;
         private long nextRotationTime = 0;
@@ -205,7 +209,7 @@ class LogFileHandler <LOGTYPE> {
                   long[] rotationTimes,
                   String symlinkName,
                   String threadName,
-                  Pollable<LOGTYPE> operationProvider) {
+                  RingBuffer<Operation<LOGTYPE>> operations) {
             super(threadName);
             setDaemon(true);
             this.logWriter = logWriter;
@@ -214,7 +218,7 @@ class LogFileHandler <LOGTYPE> {
             this.bufferSize = bufferSize;
             this.rotationTimes = rotationTimes;
             this.symlinkName = (symlinkName != null && !symlinkName.isBlank()) ? symlinkName : null;
-            this.operationProvider = operationProvider;
+            this.operations = operations;
         }
 
         private static ExecutorService createCompressionTaskExecutor() {
@@ -226,11 +230,15 @@ class LogFileHandler <LOGTYPE> {
             });
         }
 
+        /** Wakes this up if it is waiting for operations. Called by producers after adding an operation. */
+        void wakeUp() {
+            if (idle) LockSupport.unpark(this);
+        }
+
         @Override
         public void run() {
             try {
                 handleLogOperations();
-            } catch (InterruptedException e) {
             } catch (Exception e) {
                 Process.logAndDie("Failed storing log records", e);
             }
@@ -238,10 +246,22 @@ class LogFileHandler <LOGTYPE> {
             internalFlush();
         }
 
-        private void handleLogOperations() throws InterruptedException {
+        private void handleLogOperations() {
             while (!isInterrupted()) {
-                Operation<LOGTYPE> r = operationProvider.poll();
-                if (r != null) {
+                if (operations.drainTo(batch, maxBatchSize) == 0) {
+                    // Producers check the idle flag after adding, so either they see it, or we see what they added.
+                    idle = true;
+                    if (operations.isEmpty()) LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    idle = false;
+                    flushIfOld(100, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                for (Operation<LOGTYPE> r : batch) {
+                    if (r.type == Operation.Type.log) {
+                        internalPublish(r.log);
+                        continue;
+                    }
+                    writeFormatted();
                     if (r.type == Operation.Type.flush) {
                         internalFlush();
                     } else if (r.type == Operation.Type.close) {
@@ -249,15 +269,26 @@ class LogFileHandler <LOGTYPE> {
                     } else if (r.type == Operation.Type.rotate) {
                         internalRotateNow();
                         lastFlush = System.nanoTime();
-                    } else if (r.type == Operation.Type.log) {
-                        internalPublish(r.log.get());
-                        flushIfOld(3, TimeUnit.SECONDS);
                     }
-                    r.countDownLatch.countDown();
-                } else {
-                    flushIfOld(100, TimeUnit.MILLISECONDS);
                 }
+                writeFormatted();
+                flushIfOld(3, TimeUnit.SECONDS);
+                for (Operation<LOGTYPE> r : batch) {
+                    if (r.countDownLatch != null) r.countDownLatch.countDown();
+                }
+                batch.clear();
+            }
+        }
+
+        /** Writes the entries formatted so far to the current file */
+        private void writeFormatted() {
+            if (formatted.size() == 0) return;
+            try {
+                formatted.writeTo(fileOutput);
+            } catch (IOException e) {
+                logger.warning("Failed writing log records: " + Exceptions.toMessageString(e));
             }
+            formatted.reset();
         }
 
         private void flushIfOld(long age, TimeUnit unit) {
@@ -299,11 +330,12 @@ class LogFileHandler <LOGTYPE> {
                 nextRotationTime = getNextRotationTime(now); // lazy initialization
             }
             if (now > nextRotationTime || fileOutput == null) {
+                writeFormatted();
                 internalRotateNow();
             }
             try {
-                logWriter.write(r, fileOutput);
-                fileOutput.write('\n');
+                logWriter.write(r, formatted);
+                formatted.write('\n');
             } catch (IOException e) {
                 logger.warning("Failed writing log record: " + Exceptions.toMessageString(e));
             }
@@ -484,20 +516,17 @@ class LogFileHandler <LOGTYPE> {
 
         final Type type;
 
-        final Optional<LOGTYPE> log;
-        final CountDownLatch countDownLatch = new CountDownLatch(1);
+        final LOGTYPE log; // Only set for log operations
+        final CountDownLatch countDownLatch; // Only set for operations which are waited for
 
         Operation(Type type) {
-            this(type, Optional.empty());
-        }
-
-        Operation(LOGTYPE log) {
-            this(Type.log, Optional.of(log));
+            this(type, null, true);
         }
 
-        private Operation(Type type, Optional<LOGTYPE> log) {
+        Operation(Type type, LOGTYPE log, boolean waitedFor) {
             this.type = type;
             this.log = log;
+            this.countDownLatch = waitedFor ? new CountDownLatch(1) : null;
         }
     }
 
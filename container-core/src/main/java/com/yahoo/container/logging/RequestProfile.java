@@ -0,0 +1,211 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The time spent, and the bytes allocated, in each phase of processing a single request, e.g., in filters,
+ * handlers, searchers and rendering. This is only enabled for a sample of requests, and is reported in the
+ * access log and as metrics when the request completes. Phases which are still in progress at that time are not included.
+ *
+ * Phases started while another phase is in progress in the same thread are nested in that phase, so each phase
+ * is identified by the stack of phases it ran in, outermost first and separated by ';', as in the "folded stacks"
+ * consumed by flame graph tools. Allocation is measured per thread, and is therefore only counted for phases which
+ * end in the same thread as they started.
+ *
+ * This class is thread-safe.
+ *
+ * @author bratseth
+ */
+public final class RequestProfile {
+
+    private static final com.sun.management.ThreadMXBean threads = allocationMeasuringThreads();
+    private static final RequestProfile disabled = new RequestProfile(false);
+
+    private final boolean enabled;
+
+    // Guarded by this
+    private final List<Span> open = new ArrayList<>();
+    private final Map<String, long[]> totals = new LinkedHashMap<>(); // Nanos and allocated bytes, by stack
+
+    /** Creates an enabled request profile */
+    public RequestProfile() {
+        this(true);
+    }
+
+    private RequestProfile(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** Returns a profile which does not record anything, for requests which are not profiled */
+    public static RequestProfile disabled() { return disabled; }
+
+    /** Returns whether this records anything */
+    public boolean isEnabled() { return enabled; }
+
+    /** Returns whether allocated bytes are measured in this runtime, or only time */
+    public static boolean measuresAllocation() { return threads != null; }
+
+    /** Starts a phase of the given kind in the given component, named "kind:component", without creating the name unless enabled */
+    public Phase start(String kind, String component) {
+        if ( ! enabled) return Phase.NONE;
+        return start(kind + ":" + component);
+    }
+
+    /** Starts a phase with the given name, which ends when the returned phase is closed */
+    public Phase start(String name) {
+        if ( ! enabled) return Phase.NONE;
+
+        Thread thread = Thread.currentThread();
+        Span span;
+        synchronized (this) {
+            String stack = name;
+            for (int i = open.size() - 1; i >= 0; i--) {
+                if (open.get(i).thread == thread) {
+                    stack = open.get(i).stack + ";" + name;
+                    break;
+                }
+            }
+            span = new Span(stack, thread);
+            open.add(span);
+        }
+        span.startBytes = allocatedBytes(thread);
+        span.startNanos = System.nanoTime();
+        return span;
+    }
+
+    private synchronized void end(Span span, long nanos, long allocatedBytes) {
+        if (span.closed) return;
+        span.closed = true;
+        open.remove(span);
+        long[] total = totals.computeIfAbsent(span.stack, __ -> new long[2]);
+        total[0] += nanos;
+        total[1] += allocatedBytes;
+    }
+
+    /**
+     * Returns the cost of each completed phase by itself, i.e., excluding that of the phases nested in it,
+     * by the stack of phases it ran in, in the order these first completed.
+     */
+    public synchronized Map<String, Cost> costByStack() {
+        Map<String, long[]> self = new LinkedHashMap<>();
+        totals.forEach((stack, total) -> self.put(stack, total.clone()));
+        totals.forEach((stack, total) -> {
+            int parentEnd = stack.lastIndexOf(';');
+            if (parentEnd < 0) return;
+            long[] parent = self.get(stack.substring(0, parentEnd));
+            if (parent == null) return; // Parent is still in progress.
+            parent[0] -= total[0];
+            parent[1] -= total[1];
+        });
+        Map<String, Cost> costs = new LinkedHashMap<>();
+        self.forEach((stack, cost) -> costs.put(stack, new Cost(Math.max(0, cost[0]), Math.max(0, cost[1]))));
+        return Collections.unmodifiableMap(costs);
+    }
+
+    /** Returns the cost of each completed phase by itself, summed by phase name */
+    public Map<String, Cost> costByPhase() {
+        Map<String, Cost> costs = new LinkedHashMap<>();
+        costByStack().forEach((stack, cost) -> costs.merge(stack.substring(stack.lastIndexOf(';') + 1), cost, Cost::plus));
+        return Collections.unmodifiableMap(costs);
+    }
+
+    @Override
+    public String toString() {
+        return enabled ? "request profile " + costByStack() : "disabled request profile";
+    }
+
+    private static long allocatedBytes(Thread thread) {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(thread.getId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocationMeasuringThreads() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if ( ! (bean instanceof com.sun.management.ThreadMXBean)) return null;
+
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if ( ! threads.isThreadAllocatedMemorySupported() || ! threads.isThreadAllocatedMemoryEnabled()) return null;
+            return threads;
+        }
+        catch (LinkageError | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /** A phase of a request, which ends when this is closed */
+    public interface Phase extends AutoCloseable {
+
+        /** A phase which does nothing, for when the request is not profiled */
+        Phase NONE = () -> { };
+
+        @Override
+        void close();
+
+    }
+
+    /** The time and allocated bytes spent in a phase */
+    public static final class Cost {
+
+        private final long nanos;
+        private final long allocatedBytes;
+
+        public Cost(long nanos, long allocatedBytes) {
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long nanos() { return nanos; }
+
+        /** Returns the bytes allocated, which is always 0 if allocation is not measured in this runtime */
+        public long allocatedBytes() { return allocatedBytes; }
+
+        public Cost plus(Cost other) {
+            return new Cost(nanos + other.nanos, allocatedBytes + other.allocatedBytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Cost)) return false;
+            Cost other = (Cost) o;
+            return nanos == other.nanos && allocatedBytes == other.allocatedBytes;
+        }
+
+        @Override
+        public int hashCode() { return Long.hashCode(nanos) * 31 + Long.hashCode(allocatedBytes); }
+
+        @Override
+        public String toString() { return nanos + " ns, " + allocatedBytes + " bytes"; }
+
+    }
+
+    private class Span implements Phase {
+
+        private final String stack;
+        private final Thread thread;
+        private long startNanos;
+        private long startBytes;
+        private boolean closed = false; // Guarded by the profile, as spans may be closed by another thread
+
+        Span(String stack, Thread thread) {
+            this.stack = stack;
+            this.thread = thread;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - startNanos;
+            // Allocation is per thread, so it is not known when this is closed by another thread.
+            long allocatedBytes = Thread.currentThread() == thread ? allocatedBytes(thread) - startBytes : 0;
+            end(this, nanos, allocatedBytes);
+        }
+
+    }
+
+}
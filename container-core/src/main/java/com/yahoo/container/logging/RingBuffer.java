@@ -0,0 +1,85 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ *
+ * Each slot has a sequence number which tells whose turn it is to use the slot: a producer may fill slot
+ * <code>i</code> for position <code>p</code> when its sequence is <code>p</code>, and publishes the item by
+ * setting it to <code>p + 1</code>, which is when the consumer may take it. The consumer then sets the
+ * sequence to <code>p + capacity</code>, which hands the slot to the producer of the next round.
+ * Producers only contend on a single compare-and-set of the tail position.
+ *
+ * @author bratseth
+ */
+class RingBuffer<T> {
+
+    private final int mask;
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0; // Only accessed by the consumer.
+
+    /** Creates a ring buffer with room for at least the given number of items */
+    RingBuffer(int minCapacity) {
+        if (minCapacity < 1 || minCapacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity must be in [1, 2^30], but was " + minCapacity);
+
+        int capacity = Integer.highestOneBit(minCapacity);
+        if (capacity < minCapacity) capacity <<= 1;
+        this.mask = capacity - 1;
+        this.items = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    int capacity() { return items.length; }
+
+    /** Adds the given item, if there is room for it. This may be called by any thread. */
+    boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            }
+            else if (sequence < position) {
+                return false; // The slot still holds the item from the previous round, so we are full.
+            }
+            // Otherwise, another producer took this position first, so try the next.
+        }
+    }
+
+    /** Returns whether there is nothing for the consumer to take right now. This must only be called by the consumer. */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    /**
+     * Moves up to the given number of items, in the order they were added, to the given list, and returns the
+     * number of items moved. This must only be called by the consumer.
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<? super T> sink, int maxItems) {
+        int count = 0;
+        for ( ; count < maxItems && ! isEmpty(); count++) {
+            int index = (int) head & mask;
+            sink.add((T) items[index]);
+            items[index] = null;
+            sequences.set(index, head + items.length);
+            head++;
+        }
+        return count;
+    }
+
+}
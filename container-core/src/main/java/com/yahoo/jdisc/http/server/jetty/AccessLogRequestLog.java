@@ -6,6 +6,7 @@ import com.yahoo.container.logging.AccessLog;
 import com.yahoo.container.logging.AccessLogEntry;
 import com.yahoo.container.logging.RequestLog;
 import com.yahoo.container.logging.RequestLogEntry;
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.jdisc.http.ServerConfig;
 import com.yahoo.jdisc.http.servlet.ServletRequest;
 import org.eclipse.jetty.http2.HTTP2Stream;
@@ -24,6 +25,7 @@ import java.time.Instant;
 import java.util.List;
 import java.util.OptionalInt;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -120,6 +122,8 @@ class AccessLogRequestLog extends AbstractLifeCycle implements org.eclipse.jetty
                 }
                 addNonNullValue(builder, accessLogEntry.getHitCounts(), RequestLogEntry.Builder::hitCounts);
                 addNonNullValue(builder, accessLogEntry.getTrace(), RequestLogEntry.Builder::traceNode);
+                if (accessLogEntry.getProfile().isEnabled())
+                    addProfile(builder, accessLogEntry.getProfile());
             }
             http2StreamId(request).ifPresent(streamId -> builder.addExtraAttribute("http2-stream-id", Integer.toString(streamId)));
 
@@ -130,6 +134,15 @@ class AccessLogRequestLog extends AbstractLifeCycle implements org.eclipse.jetty
         }
     }
 
+    /** Adds the cost of each phase by itself, by its stack, as lines which can be given to flame graph tools */
+    private static void addProfile(RequestLogEntry.Builder builder, RequestProfile profile) {
+        profile.costByStack().forEach((stack, cost) -> {
+            builder.addExtraAttribute("profile-time-us", stack + " " + TimeUnit.NANOSECONDS.toMicros(cost.nanos()));
+            if (RequestProfile.measuresAllocation())
+                builder.addExtraAttribute("profile-allocated-bytes", stack + " " + cost.allocatedBytes());
+        });
+    }
+
     private String getRemoteAddress(HttpServletRequest request) {
         for (String header : remoteAddressHeaders) {
             String value = request.getHeader(header);
@@ -3,6 +3,7 @@ package com.yahoo.jdisc.http.server.jetty;
 
 import com.google.common.base.Preconditions;
 import com.yahoo.container.logging.AccessLogEntry;
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.jdisc.Request;
 import com.yahoo.jdisc.handler.AbstractRequestHandler;
 import com.yahoo.jdisc.handler.ContentChannel;
@@ -38,6 +39,12 @@ public class AccessLoggingRequestHandler extends AbstractRequestHandler implemen
                 (AccessLogEntry) requestContextMap.get(CONTEXT_KEY_ACCESS_LOG_ENTRY));
     }
 
+    /** Returns the profile of the request with the given context, which is disabled if it is not profiled */
+    public static RequestProfile getRequestProfile(final Map<String, Object> requestContextMap) {
+        AccessLogEntry entry = (AccessLogEntry) requestContextMap.get(CONTEXT_KEY_ACCESS_LOG_ENTRY);
+        return entry == null ? RequestProfile.disabled() : entry.getProfile();
+    }
+
     private final RequestHandler delegate;
     private final AccessLogEntry accessLogEntry;
 
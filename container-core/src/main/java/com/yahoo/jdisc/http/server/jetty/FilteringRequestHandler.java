@@ -2,6 +2,7 @@
 package com.yahoo.jdisc.http.server.jetty;
 
 import com.google.common.base.Preconditions;
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.container.jdisc.RequestHandlerSpec;
 import com.yahoo.container.jdisc.HttpRequestHandler;
 import com.yahoo.jdisc.Request;
@@ -83,7 +84,9 @@ class FilteringRequestHandler extends AbstractRequestHandler {
 
         if (requestFilter != null) {
             InterceptingResponseHandler interceptingResponseHandler = new InterceptingResponseHandler(responseHandler);
-            requestFilter.filter(HttpRequest.class.cast(request), interceptingResponseHandler);
+            try (RequestProfile.Phase phase = AccessLoggingRequestHandler.getRequestProfile(request.context()).start("request-filter")) {
+                requestFilter.filter(HttpRequest.class.cast(request), interceptingResponseHandler);
+            }
             if (interceptingResponseHandler.hasProducedResponse()) {
                 return COMPLETING_CONTENT_CHANNEL;
             }
@@ -122,7 +125,9 @@ class FilteringRequestHandler extends AbstractRequestHandler {
 
         @Override
         public ContentChannel handleResponse(Response response) {
-            responseFilter.filter(response, request);
+            try (RequestProfile.Phase phase = AccessLoggingRequestHandler.getRequestProfile(request.context()).start("response-filter")) {
+                responseFilter.filter(response, request);
+            }
             return delegate.handleResponse(response);
         }
 
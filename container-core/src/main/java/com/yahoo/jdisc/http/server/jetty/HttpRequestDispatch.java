@@ -2,6 +2,7 @@
 package com.yahoo.jdisc.http.server.jetty;
 
 import com.yahoo.container.logging.AccessLogEntry;
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.jdisc.Metric.Context;
 import com.yahoo.jdisc.References;
 import com.yahoo.jdisc.ResourceReference;
@@ -30,6 +31,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeoutException;
@@ -51,6 +53,7 @@ class HttpRequestDispatch {
     private final static String CHARSET_ANNOTATION = ";charset=";
 
     private final JDiscContext jDiscContext;
+    private final AccessLogEntry accessLogEntry;
     private final Request jettyRequest;
 
     private final ServletResponseController servletResponseController;
@@ -63,6 +66,7 @@ class HttpRequestDispatch {
                                HttpServletRequest servletRequest,
                                HttpServletResponse servletResponse) throws IOException {
         this.jDiscContext = jDiscContext;
+        this.accessLogEntry = accessLogEntry;
 
         requestHandler = newRequestHandler(jDiscContext, accessLogEntry, servletRequest);
 
@@ -159,6 +163,7 @@ class HttpRequestDispatch {
         } else {
             metricReporter.successfulResponse();
         }
+        reportProfile();
 
         try {
             asyncCtx.complete();
@@ -169,6 +174,20 @@ class HttpRequestDispatch {
         }
     }
 
+    /** Reports the cost of each phase of this request, if it is profiled, with the phase as a dimension */
+    private void reportProfile() {
+        RequestProfile profile = accessLogEntry.getProfile();
+        if ( ! profile.isEnabled()) return;
+
+        JDiscServerConnector connector = JDiscServerConnector.fromRequest(jettyRequest);
+        profile.costByPhase().forEach((phase, cost) -> {
+            Context context = connector.createRequestMetricContext(jettyRequest, Map.of(MetricDefinitions.PHASE_DIMENSION, phase));
+            jDiscContext.metric.set(MetricDefinitions.PROFILED_PHASE_TIME, cost.nanos() / 1_000_000.0, context);
+            if (RequestProfile.measuresAllocation())
+                jDiscContext.metric.set(MetricDefinitions.PROFILED_PHASE_ALLOCATED_BYTES, cost.allocatedBytes(), context);
+        });
+    }
+
     private static void shutdownConnectionGracefullyIfThresholdReached(Request request) {
         ConnectorConfig connectorConfig = getConnector(request).connectorConfig();
         int maxRequestsPerConnection = connectorConfig.maxRequestsPerConnection();
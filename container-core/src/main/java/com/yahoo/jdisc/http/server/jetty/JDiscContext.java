@@ -1,10 +1,13 @@
 // Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.jdisc.http.server.jetty;
 
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.http.ServerConfig;
 import com.yahoo.jdisc.service.CurrentContainer;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 public class JDiscContext {
     final FilterResolver filterResolver;
     final CurrentContainer container;
@@ -28,4 +31,11 @@ public class JDiscContext {
     public boolean developerMode() {
         return serverConfig.developerMode();
     }
+
+    /** Returns a new profile for a request, which is enabled for the configured fraction of requests */
+    RequestProfile newRequestProfile() {
+        double samplingRate = serverConfig.profiling().samplingRate();
+        if (samplingRate <= 0 || ThreadLocalRandom.current().nextDouble() >= samplingRate) return RequestProfile.disabled();
+        return new RequestProfile();
+    }
 }
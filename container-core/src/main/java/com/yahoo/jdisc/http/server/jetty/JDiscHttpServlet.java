@@ -105,7 +105,7 @@ class JDiscHttpServlet extends HttpServlet {
     }
 
     private void dispatchHttpRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        AccessLogEntry accessLogEntry = new AccessLogEntry();
+        AccessLogEntry accessLogEntry = new AccessLogEntry(context.newRequestProfile());
         request.setAttribute(ATTRIBUTE_NAME_ACCESS_LOG_ENTRY, accessLogEntry);
         try {
             switch (request.getDispatcherType()) {
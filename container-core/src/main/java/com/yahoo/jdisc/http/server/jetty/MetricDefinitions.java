@@ -17,6 +17,7 @@ class MetricDefinitions {
     static final String REQUEST_SERVER_NAME_DIMENSION = "requestServerName";
     static final String FILTER_CHAIN_ID_DIMENSION = "chainId";
     static final String PROTOCOL_DIMENSION = "protocol";
+    static final String PHASE_DIMENSION = "phase";
 
     static final String NUM_OPEN_CONNECTIONS = "serverNumOpenConnections";
     static final String NUM_CONNECTIONS_OPEN_MAX = "serverConnectionsOpenMax";
@@ -57,6 +58,9 @@ class MetricDefinitions {
     static final String URI_LENGTH = "jdisc.http.request.uri_length";
     static final String CONTENT_SIZE = "jdisc.http.request.content_size";
 
+    static final String PROFILED_PHASE_TIME = "jdisc.http.request.profile.time";
+    static final String PROFILED_PHASE_ALLOCATED_BYTES = "jdisc.http.request.profile.allocated_bytes";
+
     static final String SSL_HANDSHAKE_FAILURE_MISSING_CLIENT_CERT = "jdisc.http.ssl.handshake.failure.missing_client_cert";
     static final String SSL_HANDSHAKE_FAILURE_EXPIRED_CLIENT_CERT = "jdisc.http.ssl.handshake.failure.expired_client_cert";
     static final String SSL_HANDSHAKE_FAILURE_INVALID_CLIENT_CERT = "jdisc.http.ssl.handshake.failure.invalid_client_cert";
@@ -15,11 +15,13 @@ import com.yahoo.metrics.simple.UntypedMetric.AssumedType;
 public class Counter {
     private final Point defaultPosition;
     private final String name;
+    private final Identifier defaultIdentifier; // resolved once, as most updates are at the default position
     private final MetricReceiver metricReceiver;
 
     Counter(String name, Point defaultPosition, MetricReceiver receiver) {
         this.name = name;
         this.defaultPosition = defaultPosition;
+        this.defaultIdentifier = new Identifier(name, defaultPosition);
         this.metricReceiver = receiver;
     }
 
@@ -27,7 +29,7 @@ public class Counter {
      * Increase the dimension-less/zero-point value of this counter by 1.
      */
     public void add() {
-        add(1L, defaultPosition);
+        add(1L);
     }
 
     /**
@@ -36,7 +38,7 @@ public class Counter {
      * @param n the amount by which to increase this counter
      */
     public void add(long n) {
-        add(n, defaultPosition);
+        update(n, defaultIdentifier);
     }
 
     /**
@@ -57,7 +59,11 @@ public class Counter {
      *            the point in the metric space at which to add to the metric
      */
     public void add(long n, Point p) {
-        metricReceiver.update(new Sample(new Measurement(Long.valueOf(n)), new Identifier(name, p), AssumedType.COUNTER));
+        update(n, p == defaultPosition ? defaultIdentifier : new Identifier(name, p));
+    }
+
+    private void update(long n, Identifier id) {
+        metricReceiver.update(new Sample(new Measurement(Long.valueOf(n)), id, AssumedType.COUNTER));
     }
 
     /**
@@ -11,7 +11,8 @@ import java.util.Set;
 
 /**
  * The persistence layer for metrics. Both CPU and memory hungry, but
- * it runs in its own little world.
+ * it runs in its own little world. Thread safe, as snapshots are padded by
+ * the threads requesting them.
  *
  * @author Steinar Knutsen
  */
@@ -33,12 +34,12 @@ class DimensionCache {
         this.pointsToKeep = pointsToKeep;
     }
 
-    void updateDimensionPersistence(Bucket toDelete, Bucket toPresent) {
+    synchronized void updateDimensionPersistence(Bucket toDelete, Bucket toPresent) {
         updatePersistentData(toDelete);
         padPresentation(toPresent);
     }
 
-    private void padPresentation(Bucket toPresent) {
+    synchronized void padPresentation(Bucket toPresent) {
         Map<String, List<Entry<Point, UntypedMetric>>> currentMetricNames = toPresent.getValuesByMetricName();
 
         for (Map.Entry<String, List<Entry<Point, UntypedMetric>>> metric : currentMetricNames.entrySet()) {
@@ -54,7 +55,7 @@ class DimensionCache {
         }
     }
 
-    private void updatePersistentData(Bucket toDelete) {
+    synchronized void updatePersistentData(Bucket toDelete) {
         if (toDelete == null) {
             return;
         }
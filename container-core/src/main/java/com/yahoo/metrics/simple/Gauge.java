@@ -16,11 +16,13 @@ public class Gauge {
 
     private final Point defaultPosition;
     private final String name;
+    private final Identifier defaultIdentifier; // resolved once, as most updates are at the default position
     private final MetricReceiver receiver;
 
     Gauge(String name, Point defaultPosition, MetricReceiver receiver) {
         this.name = name;
         this.defaultPosition = defaultPosition;
+        this.defaultIdentifier = new Identifier(name, defaultPosition);
         this.receiver = receiver;
     }
 
@@ -31,7 +33,7 @@ public class Gauge {
      *            sample value
      */
     public void sample(double x) {
-        sample(x, defaultPosition);
+        update(x, defaultIdentifier);
     }
 
     /**
@@ -43,7 +45,11 @@ public class Gauge {
      *            position/dimension values for the sample
      */
     public void sample(double x, Point p) {
-        receiver.update(new Sample(new Measurement(Double.valueOf(x)), new Identifier(name, p), AssumedType.GAUGE));
+        update(x, p == defaultPosition ? defaultIdentifier : new Identifier(name, p));
+    }
+
+    private void update(double x, Identifier id) {
+        receiver.update(new Sample(new Measurement(Double.valueOf(x)), id, AssumedType.GAUGE));
     }
 
     /**
@@ -12,19 +12,21 @@ public class Identifier {
 
     private final String name;
     private final Point location;
+    private final int hashCode;
 
     public Identifier(String name, Point location) {
         this.name = (name == null ? "" : name);
         this.location = (location == null ? Point.emptyPoint() : location);
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + this.location.hashCode();
+        result = prime * result + this.name.hashCode();
+        this.hashCode = result;
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + location.hashCode();
-        result = prime * result + name.hashCode();
-        return result;
+        return hashCode;
     }
 
     @Override
@@ -34,6 +36,9 @@ public class Identifier {
         if (getClass() != obj.getClass()) return false;
 
         Identifier other = (Identifier) obj;
+        if (hashCode != other.hashCode) {
+            return false;
+        }
         if (!location.equals(other.location)) {
             return false;
         }
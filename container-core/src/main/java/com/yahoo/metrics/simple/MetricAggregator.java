@@ -2,7 +2,6 @@
 package com.yahoo.metrics.simple;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.yahoo.concurrent.ThreadLocalDirectory;
 import com.yahoo.metrics.ManagerConfig;
@@ -12,19 +11,22 @@ import com.yahoo.metrics.ManagerConfig;
  * snapshots for external consumption. Using the correct executor gives the
  * necessary guarantees for this being invoked from only a single thread.
  *
+ * Merging the buckets of the whole report period costs time proportional to the
+ * number of series times the number of seconds in the period, so this is not done
+ * every second, but only when a snapshot of the latest period is requested.
+ *
  * @author Steinar Knutsen
  */
 class MetricAggregator implements Runnable {
 
     private final ThreadLocalDirectory<Bucket, Sample> metricsCollection;
-    private final AtomicReference<Bucket> currentSnapshot;
     private int generation = 0;
     private final Bucket[] buffer;
     private long fromMillis;
     private final DimensionCache dimensions;
+    private volatile Window window = null;
 
-    MetricAggregator(ThreadLocalDirectory<Bucket, Sample> metricsCollection, AtomicReference<Bucket> currentSnapshot,
-            ManagerConfig settings) {
+    MetricAggregator(ThreadLocalDirectory<Bucket, Sample> metricsCollection, ManagerConfig settings) {
         if (settings.reportPeriodSeconds() < 10) {
             throw new IllegalArgumentException("Do not use this metrics implementation" +
                                                " if report periods of less than 10 seconds is desired.");
@@ -33,25 +35,19 @@ class MetricAggregator implements Runnable {
         dimensions = new DimensionCache(settings.pointsToKeepPerMetric());
         fromMillis = System.currentTimeMillis();
         this.metricsCollection = metricsCollection;
-        this.currentSnapshot = currentSnapshot;
     }
 
     @Override
     public void run() {
         Bucket toDelete = updateBuffer();
-        createSnapshot(toDelete);
+        dimensions.updatePersistentData(toDelete);
+        window = new Window(buffer, generation);
     }
 
-    private void createSnapshot(Bucket toDelete) {
-        Bucket toPresent = new Bucket();
-        for (Bucket b : buffer) {
-            if (b == null) {
-                continue;
-            }
-            toPresent.merge(b);
-        }
-        dimensions.updateDimensionPersistence(toDelete, toPresent);
-        currentSnapshot.set(toPresent);
+    /** Returns the snapshot of the latest report period, or null if nothing is collected yet. This may be called by any thread. */
+    Bucket getSnapshot() {
+        Window current = window;
+        return current == null ? null : current.snapshot();
     }
 
     private Bucket updateBuffer() {
@@ -68,4 +64,33 @@ class MetricAggregator implements Runnable {
         return bucketToDelete;
     }
 
+    /** The buckets of a report period, which are not modified after they are added to the buffer */
+    private class Window {
+
+        private final Bucket[] buckets; // Oldest first
+        private Bucket snapshot = null; // Guarded by this
+
+        Window(Bucket[] buffer, int generation) {
+            buckets = new Bucket[buffer.length];
+            for (int i = 0; i < buffer.length; i++)
+                buckets[i] = buffer[(generation + i) % buffer.length];
+        }
+
+        synchronized Bucket snapshot() {
+            if (snapshot == null) {
+                Bucket toPresent = new Bucket();
+                for (Bucket b : buckets) {
+                    if (b == null) {
+                        continue;
+                    }
+                    toPresent.merge(b);
+                }
+                dimensions.padPresentation(toPresent);
+                snapshot = toPresent;
+            }
+            return snapshot;
+        }
+
+    }
+
 }
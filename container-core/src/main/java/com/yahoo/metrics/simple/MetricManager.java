@@ -3,7 +3,6 @@ package com.yahoo.metrics.simple;
 
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 import com.yahoo.component.AbstractComponent;
@@ -36,14 +35,14 @@ public class MetricManager extends AbstractComponent implements Provider<MetricR
                               " reportPeriodSeconds=" + settings.reportPeriodSeconds() +
                               ", pointsToKeepPerMetric=" + settings.pointsToKeepPerMetric());
         metricsCollection = new ThreadLocalDirectory<>(updater);
-        final AtomicReference<Bucket> currentSnapshot = new AtomicReference<>(null);
         executor = new ScheduledThreadPoolExecutor(1);
         // Fixed rate, not fixed delay, is it is not too important that each
         // bucket has data for exactly one second, but one should strive for
         // this.buffer to contain data for as close a period to the report
         // interval as possible
-        executor.scheduleAtFixedRate(new MetricAggregator(metricsCollection, currentSnapshot, settings), 1, 1, TimeUnit.SECONDS);
-        receiver = new MetricReceiver(metricsCollection, currentSnapshot);
+        MetricAggregator aggregator = new MetricAggregator(metricsCollection, settings);
+        executor.scheduleAtFixedRate(aggregator, 1, 1, TimeUnit.SECONDS);
+        receiver = new MetricReceiver(metricsCollection, aggregator::getSnapshot);
     }
 
     static MetricManager constructWithCustomUpdater(ManagerConfig settings, Updater<Bucket, Sample> updater) {
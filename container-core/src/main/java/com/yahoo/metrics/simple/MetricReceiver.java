@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableMap;
@@ -22,7 +23,7 @@ public class MetricReceiver {
 
     public static final MetricReceiver nullImplementation = new NullReceiver();
     private final ThreadLocalDirectory<Bucket, Sample> metricsCollection;
-    private final AtomicReference<Bucket> currentSnapshot;
+    private final Supplier<Bucket> currentSnapshot;
 
     // metricSettings is volatile for reading, the lock is for updates
     private final Object histogramDefinitionsLock = new Object();
@@ -81,7 +82,7 @@ public class MetricReceiver {
         private final ThreadLocalDirectory<Bucket, Sample> collection;
 
         private MockReceiver(ThreadLocalDirectory<Bucket, Sample> collection) {
-            super(collection, null);
+            super(collection, () -> null);
             this.collection = collection;
         }
 
@@ -108,7 +109,7 @@ public class MetricReceiver {
     private static final class NullReceiver extends MetricReceiver {
 
         NullReceiver() {
-            super(null, null);
+            super(null, () -> null);
         }
 
         @Override
@@ -161,6 +162,10 @@ public class MetricReceiver {
     }
 
     public MetricReceiver(ThreadLocalDirectory<Bucket, Sample> metricsCollection, AtomicReference<Bucket> currentSnapshot) {
+        this(metricsCollection, currentSnapshot == null ? () -> null : currentSnapshot::get);
+    }
+
+    MetricReceiver(ThreadLocalDirectory<Bucket, Sample> metricsCollection, Supplier<Bucket> currentSnapshot) {
         this.metricsCollection = metricsCollection;
         this.currentSnapshot = currentSnapshot;
         metricSettings = new ImmutableMap.Builder<String, MetricSettings>().build();
@@ -260,8 +265,8 @@ public class MetricReceiver {
     /**
      * Fetch the latest metric values, aggregated over all threads for the
      * configured sample history (by default five minutes). The values will be
-     * less than 1 second old, and this method has only a memory barrier as side
-     * effect.
+     * less than 1 second old. The snapshot is built by the first caller after
+     * each second, and then shared by all callers until the next second.
      *
      * @return the latest five minutes of metrics
      */
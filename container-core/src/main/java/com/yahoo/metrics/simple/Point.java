@@ -20,6 +20,7 @@ public final class Point implements Context {
 
     private final Value[] location;
     private final String[] dimensions;
+    private final int hashCode; // points are used as keys for every update
 
     public Point(Map<String, ?> properties) {
         this(buildParameters(properties));
@@ -38,6 +39,7 @@ public final class Point implements Context {
     Point(String[] dimensions, Value[] location) {
         this.dimensions = dimensions;
         this.location = location;
+        this.hashCode = computeHashCode();
     }
 
     private static final Point theEmptyPoint = new Point(new String[0], new Value[0]);
@@ -68,6 +70,9 @@ public final class Point implements Context {
             return false;
         }
         Point other = (Point) obj;
+        if (hashCode != other.hashCode) {
+            return false;
+        }
         if (!Arrays.equals(dimensions, other.dimensions)) {
             return false;
         }
@@ -79,6 +84,10 @@ public final class Point implements Context {
 
     @Override
     public int hashCode() {
+        return hashCode;
+    }
+
+    private int computeHashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + Arrays.hashCode(dimensions);
@@ -0,0 +1,61 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.handler.threadpool;
+
+import com.yahoo.container.protect.ProcessTerminator;
+import com.yahoo.container.test.MetricMock;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A benchmark of the throughput of tasks which spend most of their time blocked, as when waiting for
+ * remote calls, with a pool of platform threads and with a virtual thread per task. Run the main method manually,
+ * on a JVM which supports virtual threads.
+ *
+ * @author bratseth
+ */
+public class BlockingTaskBenchmark {
+
+    private final int tasks = 20_000;
+    private final int blockingMillis = 20;
+
+    private double tasksPerSecond(boolean virtualThreads, int maxThreads, int queueSize) throws InterruptedException {
+        ContainerThreadpoolConfig config = new ContainerThreadpoolConfig(new ContainerThreadpoolConfig.Builder()
+                .maxThreads(maxThreads)
+                .minThreads(maxThreads)
+                .queueSize(queueSize)
+                .virtualThreads(virtualThreads));
+        DefaultContainerThreadpool threadPool = new DefaultContainerThreadpool(config, new MetricMock(), new ProcessTerminator(), 1);
+        Executor executor = threadPool.executor();
+        CountDownLatch done = new CountDownLatch(tasks);
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            try {
+                executor.execute(() -> {
+                    try { Thread.sleep(blockingMillis); } catch (InterruptedException e) { }
+                    done.countDown();
+                });
+            }
+            catch (RejectedExecutionException e) {
+                done.countDown();
+            }
+        }
+        done.await();
+        double tasksPerSecond = tasks / ((System.nanoTime() - start) / 1e9);
+        threadPool.close();
+        return tasksPerSecond;
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println(String.format(Locale.ENGLISH, "Platform threads, 500 threads:     %.0f tasks/s", tasksPerSecond(false, 500, tasks)));
+        System.out.println(String.format(Locale.ENGLISH, "Virtual threads,  500 in flight:   %.0f tasks/s", tasksPerSecond(true, 500, 0)));
+        System.out.println(String.format(Locale.ENGLISH, "Virtual threads,  all in flight:   %.0f tasks/s", tasksPerSecond(true, tasks, 0)));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new BlockingTaskBenchmark().run();
+    }
+
+}
@@ -0,0 +1,85 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.handler.threadpool;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class ConcurrencyLimiterTest {
+
+    private long nowNanos = 0;
+
+    @Test
+    public void tasksBeyondTheLimitAreRejected() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 3, nowNanos);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.cancel();
+        assertEquals(2, limiter.inFlight());
+        assertTrue(limiter.tryAcquire());
+        limiter.release(1000, nowNanos);
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    public void limitFollowsLatency() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100, nowNanos);
+        for (int i = 0; i < 10; i++)
+            window(limiter, 10);
+        assertEquals(100, limiter.limit());
+
+        for (int i = 0; i < 20; i++)
+            window(limiter, 40);
+        int overloadedLimit = limiter.limit();
+        assertTrue("Limit is reduced when latency increases: " + overloadedLimit, overloadedLimit < 50);
+
+        for (int i = 0; i < 50; i++)
+            window(limiter, 10);
+        assertTrue("Limit recovers when latency is back to normal: " + limiter.limit(), limiter.limit() > 2 * overloadedLimit);
+    }
+
+    @Test
+    public void limitDoesNotGrowWhenItIsNotUsed() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100, nowNanos);
+        for (int i = 0; i < 10; i++)
+            window(limiter, 10);
+        for (int i = 0; i < 20; i++)
+            window(limiter, 40);
+        int limit = limiter.limit();
+        assertTrue("Limit is reduced when latency increases: " + limit, limit < 50);
+
+        for (int i = 0; i < 50; i++)
+            window(limiter, 10, 1);
+        assertTrue("Limit does not grow when it is not used: " + limiter.limit(), limiter.limit() <= limit);
+
+        for (int i = 0; i < 50; i++)
+            window(limiter, 10);
+        assertTrue("Limit grows when it is used: " + limiter.limit(), limiter.limit() > limit);
+    }
+
+    /** Runs a window of tasks, using all of the current limit, with the given latency */
+    private void window(ConcurrencyLimiter limiter, int latencyMillis) {
+        window(limiter, latencyMillis, Integer.MAX_VALUE);
+    }
+
+    private void window(ConcurrencyLimiter limiter, int latencyMillis, int maxConcurrency) {
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(100);
+        for (int samples = 0; samples < 10; ) {
+            int tasks = 0;
+            while (tasks < maxConcurrency && limiter.tryAcquire())
+                tasks++;
+            for ( ; tasks > 0; tasks--, samples++)
+                limiter.release(TimeUnit.MILLISECONDS.toNanos(latencyMillis), nowNanos);
+        }
+    }
+
+}
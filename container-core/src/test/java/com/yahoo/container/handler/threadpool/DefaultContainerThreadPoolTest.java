@@ -9,11 +9,17 @@ import com.yahoo.jdisc.Metric;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -98,6 +104,57 @@ public class DefaultContainerThreadPoolTest {
         assertEquals(0L, metrics.innvocations().get("jdisc.thread_pool.work_queue.size").val);
     }
     @Test
+    public void testThatAdaptiveConcurrencyLimitStartsAtPoolCapacity() {
+        MetricMock metrics = new MetricMock();
+        ContainerThreadpoolConfig config = new ContainerThreadpoolConfig(new ContainerThreadpoolConfig.Builder()
+                .maxThreads(3)
+                .minThreads(3)
+                .queueSize(10)
+                .adaptiveConcurrencyLimit(true));
+        DefaultContainerThreadpool threadPool = new DefaultContainerThreadpool(config, metrics, new MockProcessTerminator(), CPUS);
+        assertEquals(13L, metrics.innvocations().get("jdisc.thread_pool.concurrency_limit").val);
+        threadPool.close();
+    }
+    @Test
+    public void testThatTasksDroppedOnShutdownLeaveTheConcurrencyLimiter() throws InterruptedException {
+        ThreadPoolMetric metric = new ThreadPoolMetric(new MetricMock(), "test");
+        WorkerCompletionTimingThreadPoolExecutor executor =
+                new WorkerCompletionTimingThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10),
+                                                             Thread::new, metric);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, System.nanoTime());
+        ExecutorServiceWrapper wrapper = new ExecutorServiceWrapper(executor, metric, new MockProcessTerminator(), 1000, "test", limiter);
+        CountDownLatch started = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            started.countDown();
+            try { Thread.sleep(TimeUnit.MINUTES.toMillis(10)); } catch (InterruptedException e) { }
+        };
+        Runnable queued = () -> { };
+        wrapper.execute(blocking);
+        assertTrue(started.await(60, TimeUnit.SECONDS));
+        wrapper.execute(queued);
+        wrapper.execute(queued);
+        assertEquals(3, limiter.inFlight());
+        assertEquals(List.of(queued, queued), wrapper.shutdownNow());
+        assertTrue(wrapper.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, limiter.inFlight());
+    }
+    @Test
+    public void testThatVirtualThreadsAreUsedWhenSupported() throws InterruptedException {
+        ContainerThreadpoolConfig config = new ContainerThreadpoolConfig(new ContainerThreadpoolConfig.Builder()
+                .maxThreads(2)
+                .minThreads(1)
+                .virtualThreads(true));
+        DefaultContainerThreadpool threadPool = new DefaultContainerThreadpool(config, new MetricMock(), new MockProcessTerminator(), CPUS);
+        Receiver<Boolean> ranOnVirtualThread = new Receiver<>();
+        threadPool.executor().execute(() -> ranOnVirtualThread.put(VirtualThreads.isVirtual(Thread.currentThread())));
+        Tuple2<Receiver.MessageState, Boolean> reply = ranOnVirtualThread.get(60 * 1000);
+        assertEquals(Receiver.MessageState.VALID, reply.first);
+        assertEquals(VirtualThreads.factory("test-").isPresent(), reply.second);
+        ExecutorService delegate = ((ExecutorServiceWrapper) threadPool.executor()).delegate();
+        assertEquals(VirtualThreads.factory("test-").isPresent(), delegate instanceof ThreadPerTaskExecutor);
+        threadPool.close();
+    }
+    @Test
     public void testThatQueueSizeAutoDetected() {
         ThreadPoolExecutor executor = createPool(24, -50);
         assertEquals(24, executor.getMaximumPoolSize());
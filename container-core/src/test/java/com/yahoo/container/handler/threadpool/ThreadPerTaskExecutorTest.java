@@ -0,0 +1,71 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.handler.threadpool;
+
+import com.yahoo.container.test.MetricMock;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author bratseth
+ */
+public class ThreadPerTaskExecutorTest {
+
+    @Test
+    public void tasksBeyondTheMaxInFlightAreRejected() throws InterruptedException {
+        ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(Thread::new, false, 2, new ThreadPoolMetric(new MetricMock(), "test"));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch proceed = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            started.countDown();
+            try { proceed.await(); } catch (InterruptedException e) { }
+        };
+        executor.execute(blocking);
+        executor.execute(blocking);
+        assertTrue(started.await(60, TimeUnit.SECONDS));
+        assertEquals(2, executor.activeCount());
+        assertEquals(2, executor.workQueueCapacity());
+        try {
+            executor.execute(blocking);
+            fail("Expected rejection");
+        }
+        catch (RejectedExecutionException e) {
+            assertEquals("All 2 tasks are in flight", e.getMessage());
+        }
+
+        proceed.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        assertEquals(0, executor.activeCount());
+        try {
+            executor.execute(blocking);
+            fail("Expected rejection");
+        }
+        catch (RejectedExecutionException e) {
+            assertEquals("Executor is shut down", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shutdownNowInterruptsRunningTasks() throws InterruptedException {
+        ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(Thread::new, false, 10, new ThreadPoolMetric(new MetricMock(), "test"));
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try { Thread.sleep(TimeUnit.MINUTES.toMillis(10)); } catch (InterruptedException e) { }
+        });
+        assertTrue(started.await(60, TimeUnit.SECONDS));
+        assertFalse(executor.awaitTermination(1, TimeUnit.MILLISECONDS));
+        assertTrue(executor.shutdownNow().isEmpty());
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+
+}
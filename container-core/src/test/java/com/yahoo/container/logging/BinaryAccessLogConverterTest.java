@@ -0,0 +1,99 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import com.yahoo.yolean.trace.TraceNode;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author bratseth
+ */
+public class BinaryAccessLogConverterTest {
+
+    @Test
+    public void binary_entries_are_converted_to_the_json_written_for_the_original_entries() throws IOException {
+        TraceNode trace = new TraceNode(null, 7);
+        trace.add(new TraceNode("first", 8));
+        trace.add(new TraceNode(List.of(1, 2), 9).add(new TraceNode("nested æ", 10)));
+        Principal principal = () -> "user";
+        RequestLogEntry full = new RequestLogEntry.Builder()
+                .connectionId("connection")
+                .timestamp(Instant.ofEpochSecond(920880005, 23456789))
+                .duration(Duration.ofMillis(122))
+                .localPort(8080)
+                .peerAddress("152.200.54.243")
+                .peerPort(12345)
+                .remoteAddress("10.0.0.1")
+                .remotePort(23456)
+                .userAgent("Mozilla/4.05 [en] (Win95; I)")
+                .referer("http://example.com")
+                .httpMethod("GET")
+                .httpVersion("HTTP/1.1")
+                .hostString("localhost")
+                .statusCode(200)
+                .responseSize(9875)
+                .requestSize(12)
+                .scheme("https")
+                .rawPath("/search/")
+                .rawQuery("query=test")
+                .userPrincipal(principal)
+                .sslPrincipal(principal)
+                .hitCounts(new HitCounts(0, 10, 1234, 0, 10, new Coverage(100, 200, 200, Coverage.toDegradation(true, false, true))))
+                .traceNode(trace)
+                .addExtraAttribute("single", "value")
+                .addExtraAttributes("multiple", List.of("first", "second"))
+                .build();
+        RequestLogEntry minimal = new RequestLogEntry.Builder()
+                .peerAddress("::1")
+                .timestamp(Instant.ofEpochMilli(920880005023L))
+                .duration(Duration.ZERO)
+                .localPort(0)
+                .peerPort(0)
+                .hitCounts(new HitCounts(1, 2, 3, 4, 5, null))
+                .build();
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        BinaryRequestLogWriter binaryWriter = new BinaryRequestLogWriter();
+        JSONFormatter jsonWriter = new JSONFormatter();
+        for (RequestLogEntry entry : List.of(full, minimal, full)) {
+            binaryWriter.write(entry, binary);
+            binary.write('\n');
+            jsonWriter.write(entry, expected);
+            expected.write('\n');
+        }
+
+        ByteArrayOutputStream converted = new ByteArrayOutputStream();
+        BinaryAccessLogConverter.convert(new ByteArrayInputStream(binary.toByteArray()), converted);
+        assertEquals(expected.toString(UTF_8), converted.toString(UTF_8));
+    }
+
+    @Test
+    public void string_lengths_are_validated_against_the_record_length() throws IOException {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        new BinaryRequestLogWriter().write(new RequestLogEntry.Builder().connectionId("connection").build(), binary);
+        binary.write('\n');
+        byte[] bytes = binary.toByteArray();
+        bytes[6] = 0x7f; // The first byte of the length of the connection id, after the record length, version and tag
+
+        try {
+            BinaryAccessLogConverter.convert(new ByteArrayInputStream(bytes), new ByteArrayOutputStream());
+            fail("Expected exception");
+        }
+        catch (IOException e) {
+            assertEquals("String of length 2130706442 exceeds the 11 remaining bytes of its binary request log record", e.getMessage());
+        }
+    }
+
+}
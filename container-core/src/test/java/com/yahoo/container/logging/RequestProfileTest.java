@@ -0,0 +1,77 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class RequestProfileTest {
+
+    @Test
+    public void disabled_profile_records_nothing() {
+        RequestProfile profile = RequestProfile.disabled();
+        assertFalse(profile.isEnabled());
+        assertSame(RequestProfile.Phase.NONE, profile.start("handler"));
+        assertSame(RequestProfile.Phase.NONE, profile.start("search", "searcher"));
+        assertEquals(Map.of(), profile.costByStack());
+        assertFalse(new AccessLogEntry().getProfile().isEnabled());
+    }
+
+    @Test
+    public void phases_are_nested_in_the_phase_in_progress_in_the_same_thread() throws InterruptedException {
+        RequestProfile profile = new RequestProfile();
+        List<Object> garbage = new ArrayList<>();
+        try (RequestProfile.Phase handler = profile.start("handler", "SearchHandler")) {
+            for (int i = 0; i < 2; i++) {
+                try (RequestProfile.Phase first = profile.start("search", "first")) {
+                    try (RequestProfile.Phase second = profile.start("search", "second")) {
+                        for (int j = 0; j < 1000; j++) garbage.add(new long[16]);
+                    }
+                }
+            }
+            Thread other = new Thread(() -> profile.start("render").close());
+            other.start();
+            other.join();
+        }
+
+        Map<String, RequestProfile.Cost> costs = profile.costByStack();
+        assertEquals(List.of("handler:SearchHandler;search:first;search:second",
+                             "handler:SearchHandler;search:first",
+                             "render",
+                             "handler:SearchHandler"),
+                     new ArrayList<>(costs.keySet()));
+        if (RequestProfile.measuresAllocation()) {
+            RequestProfile.Cost second = costs.get("handler:SearchHandler;search:first;search:second");
+            assertTrue(second.allocatedBytes() >= 2 * 1000 * 16 * 8);
+            assertTrue(costs.get("handler:SearchHandler;search:first").allocatedBytes() < second.allocatedBytes());
+        }
+        assertEquals(List.of("search:second", "search:first", "render", "handler:SearchHandler"),
+                     new ArrayList<>(profile.costByPhase().keySet()));
+        assertEquals(costs.get("render"), profile.costByPhase().get("render"));
+    }
+
+    @Test
+    public void phases_in_progress_are_not_included_and_do_not_get_the_cost_of_their_nested_phases_subtracted() {
+        RequestProfile profile = new RequestProfile();
+        RequestProfile.Phase handler = profile.start("handler");
+        profile.start("search").close();
+        assertEquals(List.of("handler;search"), new ArrayList<>(profile.costByStack().keySet()));
+
+        handler.close();
+        handler.close();
+        RequestProfile.Cost total = profile.costByStack().get("handler").plus(profile.costByStack().get("handler;search"));
+        assertTrue(total.nanos() > 0);
+        assertEquals(List.of("handler;search", "handler"), new ArrayList<>(profile.costByStack().keySet()));
+    }
+
+}
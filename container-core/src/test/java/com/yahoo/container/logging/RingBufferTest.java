@@ -0,0 +1,79 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class RingBufferTest {
+
+    @Test
+    public void items_are_drained_in_order_and_offers_fail_when_full() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        assertTrue(buffer.isEmpty());
+
+        List<Integer> drained = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++)
+                assertTrue(buffer.offer(round * 4 + i));
+            assertFalse(buffer.offer(-1));
+            assertEquals(3, buffer.drainTo(drained, 3));
+            assertTrue(buffer.offer(round * 4 + 4));
+            assertEquals(2, buffer.drainTo(drained, 5));
+            assertTrue(buffer.isEmpty());
+            drained.remove(drained.size() - 1);
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 12; i++) expected.add(i);
+        assertEquals(expected, drained);
+    }
+
+    @Test
+    public void all_items_from_concurrent_producers_are_drained_in_the_order_each_producer_offered_them() throws InterruptedException {
+        int producers = 4, itemsPerProducer = 100_000;
+        RingBuffer<int[]> buffer = new RingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < itemsPerProducer; i++)
+                        while ( ! buffer.offer(new int[] { producer, i }))
+                            Thread.yield();
+                }
+                catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        int[] next = new int[producers];
+        List<int[]> batch = new ArrayList<>();
+        for (int received = 0; received < producers * itemsPerProducer; batch.clear()) {
+            received += buffer.drainTo(batch, 16);
+            for (int[] item : batch)
+                assertEquals(next[item[0]]++, item[1]);
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(buffer.isEmpty());
+        for (int count : next)
+            assertEquals(itemsPerProducer, count);
+    }
+
+}
@@ -0,0 +1,71 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.yahoo.concurrent.ThreadLocalDirectory;
+import com.yahoo.metrics.ManagerConfig;
+import com.yahoo.metrics.simple.UntypedMetric.AssumedType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author bratseth
+ */
+public class MetricAggregatorTest {
+
+    private final ThreadLocalDirectory<Bucket, Sample> collection = new ThreadLocalDirectory<>(new MetricUpdater());
+    private final MetricAggregator aggregator = new MetricAggregator(collection,
+                                                                     new ManagerConfig(new ManagerConfig.Builder().reportPeriodSeconds(10)));
+
+    @Test
+    public void snapshotIsBuiltOncePerSecondWhenRequested() {
+        assertNull(aggregator.getSnapshot());
+
+        add("requests", 2);
+        sample("latency", 3.0);
+        aggregator.run();
+        Bucket first = aggregator.getSnapshot();
+        assertSame(first, aggregator.getSnapshot());
+        assertEquals(2, value(first, "requests").getCount());
+        assertEquals(3.0, value(first, "latency").getLast(), 0.0);
+
+        add("requests", 5);
+        sample("latency", 7.0);
+        aggregator.run();
+        Bucket second = aggregator.getSnapshot();
+        assertNotSame(first, second);
+        assertEquals(7, value(second, "requests").getCount());
+        assertEquals(7.0, value(second, "latency").getLast(), 0.0);
+        assertEquals(3.0, value(second, "latency").getMin(), 0.0);
+        assertEquals(2, value(first, "requests").getCount());
+    }
+
+    @Test
+    public void snapshotCoversTheReportPeriod() {
+        for (int second = 0; second < 15; second++) {
+            add("requests", 1);
+            sample("latency", second);
+            aggregator.run();
+        }
+        Bucket snapshot = aggregator.getSnapshot();
+        assertEquals(10, value(snapshot, "requests").getCount());
+        assertEquals(5.0, value(snapshot, "latency").getMin(), 0.0);
+        assertEquals(14.0, value(snapshot, "latency").getLast(), 0.0);
+    }
+
+    private void add(String name, long n) {
+        collection.update(new Sample(new Measurement(n), new Identifier(name, null), AssumedType.COUNTER));
+    }
+
+    private void sample(String name, double x) {
+        collection.update(new Sample(new Measurement(x), new Identifier(name, null), AssumedType.GAUGE));
+    }
+
+    private static UntypedMetric value(Bucket snapshot, String name) {
+        return snapshot.getMapForMetric(name).get(Point.emptyPoint());
+    }
+
+}
@@ -0,0 +1,75 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.yahoo.concurrent.ThreadLocalDirectory;
+import com.yahoo.metrics.ManagerConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A benchmark of the cost of updating metrics from many threads, and of building snapshots, with many series.
+ * Run the main method manually.
+ *
+ * @author bratseth
+ */
+public class MetricsBenchmark {
+
+    private final int seriesCount = 100_000;
+    private final int threadCount = 8;
+    private final int updatesPerThread = 100_000;
+    private final int seconds = 60;
+
+    private final ThreadLocalDirectory<Bucket, Sample> collection = new ThreadLocalDirectory<>(new MetricUpdater());
+    private final MetricReceiver receiver = new MetricReceiver(collection, () -> null);
+    private final MetricAggregator aggregator = new MetricAggregator(collection,
+                                                                     new ManagerConfig(new ManagerConfig.Builder().reportPeriodSeconds(seconds)));
+    private final Gauge gauge = receiver.declareGauge("latency");
+    private final List<Point> points = new ArrayList<>();
+
+    public MetricsBenchmark() {
+        for (int i = 0; i < seriesCount; i++)
+            points.add(receiver.pointBuilder().set("series", i).set("cluster", "default").build());
+    }
+
+    public void run() throws InterruptedException {
+        long updateNanos = 0, aggregateNanos = 0, snapshotNanos = 0;
+        for (int second = 0; second < seconds; second++) {
+            long start = System.nanoTime();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++)
+                threads.add(new Thread(this::update));
+            threads.forEach(Thread::start);
+            for (Thread thread : threads)
+                thread.join();
+            updateNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            aggregator.run();
+            aggregateNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            aggregator.getSnapshot();
+            snapshotNanos += System.nanoTime() - start;
+        }
+        long updates = (long) seconds * threadCount * updatesPerThread;
+        System.out.println(String.format(Locale.ENGLISH, "%d series: %.1f ns per update, %.1f ms per aggregation, %.1f ms per snapshot",
+                                         seriesCount,
+                                         (double) updateNanos / updates,
+                                         aggregateNanos / 1e6 / seconds,
+                                         snapshotNanos / 1e6 / seconds));
+    }
+
+    private void update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < updatesPerThread; i++)
+            gauge.sample(random.nextDouble(), points.get(random.nextInt(seriesCount)));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new MetricsBenchmark().run();
+    }
+
+}
@@ -30,6 +30,8 @@ class JrtMetrics {
         increment("jrt.transport.client.tls-connections-established", changesSincePrevious.clientTlsConnectionsEstablished());
         increment("jrt.transport.server.unencrypted-connections-established", changesSincePrevious.serverUnencryptedConnectionsEstablished());
         increment("jrt.transport.client.unencrypted-connections-established", changesSincePrevious.clientUnencryptedConnectionsEstablished());
+        increment("jrt.transport.packet-writes", changesSincePrevious.packetWrites());
+        increment("jrt.transport.packets-written", changesSincePrevious.packetsWritten());
         previousSnapshot = snapshot;
     }
 
@@ -66,6 +66,9 @@ public class Dispatcher extends AbstractComponent {
 
     private final LoadBalancer loadBalancer;
 
+    /** Decides when to hedge queries to another group, or null if queries should not be hedged */
+    private final Hedger hedger;
+
     private final InvokerFactory invokerFactory;
 
     private final Metric metric;
@@ -114,11 +117,11 @@ public class Dispatcher extends AbstractComponent {
 
         this.searchCluster = searchCluster;
         this.clusterMonitor = clusterMonitor;
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                                  dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, toLoadBalancerPolicy(dispatchConfig.distributionPolicy()));
         this.invokerFactory = invokerFactory;
         this.metric = metric;
         this.metricContext = metric.createContext(null);
+        this.hedger = dispatchConfig.hedgeRequests() ? new Hedger(dispatchConfig.hedgePercentile(), metric) : null;
         this.maxHitsPerNode = dispatchConfig.maxHitsPerNode();
         searchCluster.addMonitoring(clusterMonitor);
         Thread warmup = new Thread(() -> warmup(dispatchConfig.warmuptime()));
@@ -137,6 +140,15 @@ public class Dispatcher extends AbstractComponent {
         searchCluster.pingIterationCompleted();
     }
 
+    private static LoadBalancer.Policy toLoadBalancerPolicy(DispatchConfig.DistributionPolicy.Enum policy) {
+        switch (policy) {
+            case ROUNDROBIN: return LoadBalancer.Policy.ROUNDROBIN;
+            case BEST_OF_RANDOM_2: return LoadBalancer.Policy.BEST_OF_RANDOM_2;
+            case ADAPTIVE: return LoadBalancer.Policy.ADAPTIVE;
+            default: throw new IllegalArgumentException("Unknown distribution policy " + policy);
+        }
+    }
+
     /**
      * Will run important code in order to trigger JIT compilation and avoid cold start issues.
      * Currently warms up lz4 compression code.
@@ -223,8 +235,9 @@ public class Dispatcher extends AbstractComponent {
             if (invoker.isPresent()) {
                 query.trace(false, 2, "Dispatching to group ", group.id());
                 query.getModel().setSearchPath("/" + group.id());
-                invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
-                return invoker.get();
+                SearchInvoker searchInvoker = hedgeable(invoker.get(), group, query, searcher);
+                searchInvoker.teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
+                return searchInvoker;
             } else {
                 loadBalancer.releaseGroup(group, false, 0);
                 if (rejected == null) {
@@ -236,6 +249,47 @@ public class Dispatcher extends AbstractComponent {
         throw new IllegalStateException("No suitable groups to dispatch query. Rejected: " + rejected);
     }
 
+    /** Returns the given invoker with hedging to another group enabled, if hedging is enabled and possible */
+    private SearchInvoker hedgeable(SearchInvoker invoker, Group group, Query query, VespaBackEndSearcher searcher) {
+        if (hedger == null || searchCluster.orderedGroups().size() < 2) return invoker;
+        Optional<InterleavedSearchInvoker> interleaved = asInterleaved(invoker, group);
+        if (interleaved.isEmpty()) return invoker;
+        interleaved.get().enableHedging(hedger, () -> getHedgeInvoker(query, searcher, group));
+        return interleaved.get();
+    }
+
+    /** Returns an invoker searching a different group than the given one, or empty if none is available */
+    private Optional<InterleavedSearchInvoker> getHedgeInvoker(Query query, VespaBackEndSearcher searcher, Group primary) {
+        Set<Integer> rejected = rejectGroupBlockingFeed(searchCluster.orderedGroups());
+        if (rejected == null) {
+            rejected = new HashSet<>();
+        }
+        rejected.add(primary.id());
+        Optional<Group> groupInCluster = loadBalancer.takeGroup(rejected);
+        if (groupInCluster.isEmpty()) return Optional.empty();
+
+        Group group = groupInCluster.get();
+        Optional<SearchInvoker> invoker = invokerFactory.createSearchInvoker(searcher, query, group.nodes(), false, maxHitsPerNode);
+        Optional<InterleavedSearchInvoker> hedge = invoker.flatMap(i -> asInterleaved(i, group));
+        if (hedge.isEmpty()) {
+            invoker.ifPresent(SearchInvoker::close);
+            loadBalancer.releaseGroup(group, false, 0);
+            return Optional.empty();
+        }
+        hedge.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
+        return hedge;
+    }
+
+    /**
+     * Returns the given invoker as an interleaved invoker, wrapping it if it is a single node invoker,
+     * or empty if it is neither.
+     */
+    private Optional<InterleavedSearchInvoker> asInterleaved(SearchInvoker invoker, Group group) {
+        if (invoker instanceof InterleavedSearchInvoker) return Optional.of((InterleavedSearchInvoker)invoker);
+        if (invoker.distributionKey().isEmpty()) return Optional.empty();
+        return Optional.of(new InterleavedSearchInvoker(List.of(invoker), searchCluster, group, null));
+    }
+
     /**
      * We want to avoid groups blocking feed because their data may be out of date.
      * If there is a single group blocking feed, we want to reject it.
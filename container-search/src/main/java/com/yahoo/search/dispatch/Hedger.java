@@ -0,0 +1,111 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.jdisc.Metric;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides when a query to a group should be hedged by sending it to another group as well:
+ * When a node has not responded within a given percentile of its recent response times.
+ * This bounds tail latency caused by single slow nodes while only adding a fraction of
+ * queries (given by the percentile) to the total load.
+ *
+ * This class is multithread safe.
+ *
+ * @author bratseth
+ */
+class Hedger {
+
+    static final String HEDGES_ISSUED_METRIC = "dispatch_hedges_issued";
+    static final String HEDGES_WON_METRIC = "dispatch_hedges_won";
+
+    /** The number of recent response times kept per node */
+    static final int windowSize = 128;
+
+    /** The number of response times we must have from a node before hedging its queries */
+    static final int minimumSamples = 32;
+
+    /** The number of new response times after which the percentile of a node is recomputed */
+    private static final int recomputeInterval = 16;
+
+    private final double percentile;
+    private final Metric metric;
+    private final Metric.Context metricContext;
+    private final Map<Integer, ResponseTimes> responseTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a hedger
+     *
+     * @param percentile the percentile of recent response times of a node after which queries are hedged,
+     *                   in the range (0, 100]
+     * @param metric the metric receiving the number of hedges issued and won
+     */
+    Hedger(double percentile, Metric metric) {
+        if ( ! (percentile > 0 && percentile <= 100))
+            throw new IllegalArgumentException("Hedge percentile must be in (0, 100], but was " + percentile);
+        this.percentile = percentile;
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+    }
+
+    /** Records the time the node with the given distribution key took to respond */
+    void recordResponseTime(int distributionKey, long responseTimeMs) {
+        responseTimes.computeIfAbsent(distributionKey, __ -> new ResponseTimes()).add(responseTimeMs);
+    }
+
+    /**
+     * Returns the time to wait for a response from the node with the given distribution key
+     * before hedging, or empty if there is not yet sufficient response time history to decide.
+     */
+    OptionalLong hedgeDelay(int distributionKey) {
+        ResponseTimes times = responseTimes.get(distributionKey);
+        if (times == null) return OptionalLong.empty();
+        return times.percentile();
+    }
+
+    void hedgeIssued() {
+        metric.add(HEDGES_ISSUED_METRIC, 1, metricContext);
+    }
+
+    void hedgeWon() {
+        metric.add(HEDGES_WON_METRIC, 1, metricContext);
+    }
+
+    /** A window of recent response times of a node, with its percentile cached */
+    private class ResponseTimes {
+
+        private final AtomicLongArray window = new AtomicLongArray(windowSize);
+        private final AtomicLong count = new AtomicLong();
+        private volatile long cachedPercentile = -1;
+
+        void add(long responseTimeMs) {
+            long index = count.getAndIncrement();
+            window.set((int)(index % windowSize), responseTimeMs);
+            long samples = index + 1;
+            if (samples >= minimumSamples && samples % recomputeInterval == 0)
+                cachedPercentile = computePercentile((int)Math.min(samples, windowSize));
+        }
+
+        OptionalLong percentile() {
+            long percentile = cachedPercentile;
+            return percentile < 0 ? OptionalLong.empty() : OptionalLong.of(percentile);
+        }
+
+        private long computePercentile(int samples) {
+            long[] sorted = new long[samples];
+            for (int i = 0; i < samples; i++)
+                sorted[i] = window.get(i);
+            Arrays.sort(sorted);
+            int rank = (int)Math.ceil(percentile / 100.0 * samples) - 1;
+            return sorted[Math.max(0, Math.min(samples - 1, rank))];
+        }
+
+    }
+
+}
@@ -18,10 +18,14 @@ import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -34,6 +38,9 @@ import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
  * nodes in parallel. Operationally it first sends requests to all contained invokers and then
  * collects the results. The user of this class is responsible for merging the results if needed.
  *
+ * If hedging is enabled, the query is also sent to another group when some node has not responded
+ * within its usual response time, and the result of the group which responds completely first is used.
+ *
  * @author ollivir
  */
 public class InterleavedSearchInvoker extends SearchInvoker implements ResponseMonitor<SearchInvoker> {
@@ -46,6 +53,20 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private final LinkedBlockingQueue<SearchInvoker> availableForProcessing;
     private final Set<Integer> alreadyFailedNodes;
     private Query query;
+    private long sendTime = 0;
+    private InvokerResult result;
+    private LeanHitMerger leanHits;
+    private boolean extraDebug;
+    private List<InvokerResult> processed;
+
+    /** Decides when to hedge and records response times, or null if this does not hedge */
+    private Hedger hedger = null;
+    /** Creates the invoker of another group to hedge to, or null if no (further) hedging should be done */
+    private Supplier<Optional<InterleavedSearchInvoker>> hedgeFactory = null;
+    /** The invoker of the other group this hedged to, or null if it has not hedged */
+    private InterleavedSearchInvoker hedge = null;
+    /** The times responses became available from invokers which are not yet processed, when hedging is enabled */
+    private final Map<SearchInvoker, Long> responseTimes = new ConcurrentHashMap<>();
 
     private boolean adaptiveTimeoutCalculated = false;
     private long adaptiveTimeoutMin = 0;
@@ -74,6 +95,18 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         this.alreadyFailedNodes = alreadyFailedNodes;
     }
 
+    /**
+     * Enables hedging the query of this to another group.
+     *
+     * @param hedger decides when to hedge and receives the response times of the nodes
+     * @param hedgeFactory returns an invoker for another group when called, or empty if none is available.
+     *                     This is called at most once. The invoker returned is closed by this.
+     */
+    void enableHedging(Hedger hedger, Supplier<Optional<InterleavedSearchInvoker>> hedgeFactory) {
+        this.hedger = hedger;
+        this.hedgeFactory = hedgeFactory;
+    }
+
     /**
      * Sends search queries to the contained {@link SearchInvoker} sub-invokers. If the search
      * query has an offset other than zero, it will be reset to zero and the expected hit amount
@@ -81,9 +114,20 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
      */
     @Override
     protected Object sendSearchRequest(Query query, Object unusedContext) throws IOException {
+        sendSearchRequest(query, this);
+        return null;
+    }
+
+    /** Sends the query to the sub-invokers of this, which will notify the given monitor on responses */
+    private void sendSearchRequest(Query query, ResponseMonitor<SearchInvoker> monitor) throws IOException {
         this.query = query;
-        invokers.forEach(invoker -> invoker.setMonitor(this));
-        deadline = currentTime() + query.getTimeLeft();
+        invokers.forEach(invoker -> invoker.setMonitor(monitor));
+        sendTime = currentTime();
+        deadline = sendTime + query.getTimeLeft();
+        result = new InvokerResult(query, query.getHits());
+        leanHits = new LeanHitMerger();
+        extraDebug = (query.getOffset() == 0) && (query.getHits() == 7) && log.isLoggable(java.util.logging.Level.FINE);
+        processed = new ArrayList<>();
 
         int originalHits = query.getHits();
         int originalOffset = query.getOffset();
@@ -106,39 +150,118 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
         query.setHits(originalHits);
         query.setOffset(originalOffset);
-        return null;
     }
 
     @Override
     protected InvokerResult getSearchResult(Execution execution) throws IOException {
-        InvokerResult result = new InvokerResult(query, query.getHits());
-        List<LeanHit> merged = Collections.emptyList();
+        InterleavedSearchInvoker completed = invokers.isEmpty() ? this : null;
         long nextTimeout = query.getTimeLeft();
-        boolean extraDebug = (query.getOffset() == 0) && (query.getHits() == 7) && log.isLoggable(java.util.logging.Level.FINE);
-        List<InvokerResult> processed = new ArrayList<>();
         try {
-            while (!invokers.isEmpty() && nextTimeout >= 0) {
-                SearchInvoker invoker = availableForProcessing.poll(nextTimeout, TimeUnit.MILLISECONDS);
-                if (invoker == null) {
+            while (completed == null && nextTimeout >= 0) {
+                long hedgeDelay = hedgeDelay();
+                long pollStart = currentTime();
+                SearchInvoker invoker = availableForProcessing.poll(Math.min(nextTimeout, hedgeDelay), TimeUnit.MILLISECONDS);
+                if (invoker == null && hedgeDelay < nextTimeout) {
+                    hedge();
+                    nextTimeout -= currentTime() - pollStart;
+                } else if (invoker == null) {
                     log.fine(() -> "Search timed out with " + askedNodes + " requests made, " + answeredNodes + " responses received");
+                    recordTimeouts();
+                    if (hedge != null)
+                        hedge.recordTimeouts();
                     break;
                 } else {
-                    InvokerResult toMerge = invoker.getSearchResult(execution);
-                    if (extraDebug) {
-                        processed.add(toMerge);
-                    }
-                    merged = mergeResult(result.getResult(), toMerge, merged);
-                    ejectInvoker(invoker);
+                    InterleavedSearchInvoker branch = hedge != null && hedge.invokers.contains(invoker) ? hedge : this;
+                    Long responseTime = responseTimes.remove(invoker);
+                    branch.process(invoker, execution, responseTime != null ? responseTime : currentTime());
+                    if (branch.invokers.isEmpty())
+                        completed = branch;
+                    else
+                        nextTimeout = hedge == null ? nextTimeout() : Math.min(nextTimeout(), hedge.nextTimeout());
                 }
-                nextTimeout = nextTimeout();
             }
         } catch (InterruptedException e) {
             throw new RuntimeException("Interrupted while waiting for search results", e);
         }
 
+        if (hedge == null) return completeResult();
+
+        InterleavedSearchInvoker winner = completed != null ? completed : mostComplete(this, hedge);
+        if (winner == hedge)
+            hedger.hedgeWon();
+        hedge.setFinalStatus(winner == hedge);
+        try {
+            return winner.completeResult();
+        }
+        finally {
+            hedge.close();
+        }
+    }
+
+    /** Returns the number of milliseconds until this should hedge, or Long.MAX_VALUE if it should not */
+    private long hedgeDelay() {
+        if (hedgeFactory == null) return Long.MAX_VALUE;
+        long hedgeTime = Long.MAX_VALUE;
+        for (SearchInvoker invoker : invokers) {
+            Optional<Integer> distributionKey = invoker.distributionKey();
+            if (distributionKey.isEmpty()) continue;
+            OptionalLong delay = hedger.hedgeDelay(distributionKey.get());
+            if (delay.isPresent())
+                hedgeTime = Math.min(hedgeTime, sendTime + delay.getAsLong());
+        }
+        if (hedgeTime == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.max(0, hedgeTime - currentTime());
+    }
+
+    /** Sends the query of this to another group as well, if one is available */
+    private void hedge() throws IOException {
+        Optional<InterleavedSearchInvoker> hedge = hedgeFactory.get();
+        hedgeFactory = null; // Hedge at most once
+        if (hedge.isEmpty()) return;
+
+        this.hedge = hedge.get();
+        this.hedge.hedger = hedger;
+        this.hedge.sendSearchRequest(query, this);
+        hedger.hedgeIssued();
+        query.trace(false, 2, "Hedging to group ", this.hedge.group.id());
+    }
+
+    /** Returns the invoker having received responses from the largest fraction of its nodes, preferring a */
+    private static InterleavedSearchInvoker mostComplete(InterleavedSearchInvoker a, InterleavedSearchInvoker b) {
+        return (long)b.answeredNodes * a.askedNodes > (long)a.answeredNodes * b.askedNodes ? b : a;
+    }
+
+    /**
+     * Records the time the nodes which have not responded have been waited for as their response time,
+     * as leaving them out would hide exactly the slow nodes hedging should avoid.
+     */
+    private void recordTimeouts() {
+        if (hedger == null) return;
+        long waited = currentTime() - sendTime;
+        for (SearchInvoker invoker : invokers)
+            invoker.distributionKey().ifPresent(key -> hedger.recordResponseTime(key, waited));
+    }
+
+    /** Processes the response of an invoker, which became available at the given time */
+    private void process(SearchInvoker invoker, Execution execution, long responseTime) throws IOException {
+        if (hedger != null)
+            invoker.distributionKey().ifPresent(key -> hedger.recordResponseTime(key, responseTime - sendTime));
+        InvokerResult toMerge = invoker.getSearchResult(execution);
+        if (extraDebug) {
+            processed.add(toMerge);
+        }
+        mergeResult(result.getResult(), toMerge);
+        ejectInvoker(invoker);
+    }
+
+    /** Completes the result of this from the responses received */
+    private InvokerResult completeResult() {
         insertNetworkErrors(result.getResult());
         result.getResult().setCoverage(createCoverage());
 
+        int needed = query.getOffset() + query.getHits();
+        List<LeanHit> merged = leanHits.merge(needed);
+
         if (extraDebug && merged.size() > 0) {
             int firstPartId = merged.get(0).getPartId();
             for (int index = 1; index < merged.size(); index++) {
@@ -165,7 +288,6 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
                 log.fine("merged hit "+mIdx+" relevance "+hit.getRelevance()+" partid "+hit.getPartId());                
             }
         }
-        int needed = query.getOffset() + query.getHits();
         for (int index = query.getOffset(); (index < merged.size()) && (index < needed); index++) {
             result.getLeanHits().add(merged.get(index));
         }
@@ -239,7 +361,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         return nextAdaptive;
     }
 
-    private List<LeanHit> mergeResult(Result result, InvokerResult partialResult, List<LeanHit> current) {
+    private void mergeResult(Result result, InvokerResult partialResult) {
         collectCoverage(partialResult.getResult().getCoverage(true));
 
         result.mergeWith(partialResult.getResult());
@@ -249,44 +371,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
                 result.hits().add(hit);
             }
         }
-        if (current.isEmpty() ) {
-            return partialResult.getLeanHits();
-        }
-        List<LeanHit> partial = partialResult.getLeanHits();
-        if (partial.isEmpty()) {
-            return current;
-        }
-
-        int needed = query.getOffset() + query.getHits();
-        List<LeanHit> merged = new ArrayList<>(needed);
-        int indexCurrent = 0;
-        int indexPartial = 0;
-        while (indexCurrent < current.size() && indexPartial < partial.size() && merged.size() < needed) {
-            LeanHit incomingHit = partial.get(indexPartial);
-            LeanHit currentHit = current.get(indexCurrent);
-
-            int cmpRes = currentHit.compareTo(incomingHit);
-            if (cmpRes < 0) {
-                merged.add(currentHit);
-                indexCurrent++;
-            } else if (cmpRes > 0) {
-                merged.add(incomingHit);
-                indexPartial++;
-            } else { // Duplicates
-                merged.add(currentHit);
-                indexCurrent++;
-                indexPartial++;
-            }
-        }
-        while ((indexCurrent < current.size()) && (merged.size() < needed)) {
-            LeanHit currentHit = current.get(indexCurrent++);
-            merged.add(currentHit);
-        }
-        while ((indexPartial < partial.size()) && (merged.size() < needed)) {
-            LeanHit incomingHit = partial.get(indexPartial++);
-            merged.add(incomingHit);
-        }
-        return merged;
+        leanHits.add(partialResult.getLeanHits());
     }
 
     private void collectCoverage(Coverage source) {
@@ -354,6 +439,8 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     @Override
     public void responseAvailable(SearchInvoker from) {
         if (availableForProcessing != null) {
+            if (hedger != null)
+                responseTimes.put(from, currentTime());
             availableForProcessing.add(from);
         }
     }
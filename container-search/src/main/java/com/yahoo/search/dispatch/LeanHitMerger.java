@@ -0,0 +1,81 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merges sorted lists of lean hits from multiple nodes into one sorted list in a single pass,
+ * using a heap of the list cursors. Only the hits which will be returned are visited, so the cost
+ * is proportional to the number of hits needed times the logarithm of the number of lists,
+ * independent of the number of hits returned by each node.
+ *
+ * Hits which are equal to the previous hit in the merged list are duplicates and are dropped,
+ * keeping the hit from the list which was added first.
+ *
+ * @author bratseth
+ */
+class LeanHitMerger {
+
+    private final List<List<LeanHit>> lists = new ArrayList<>();
+
+    /** Adds a list of hits, which must be sorted, to be merged. The list is not copied. */
+    void add(List<LeanHit> hits) {
+        if ( ! hits.isEmpty())
+            lists.add(hits);
+    }
+
+    /** Returns the first needed hits of the merged lists */
+    List<LeanHit> merge(int needed) {
+        if (lists.isEmpty() || needed <= 0) return Collections.emptyList();
+        if (lists.size() == 1) {
+            List<LeanHit> hits = lists.get(0);
+            return hits.size() <= needed ? hits : hits.subList(0, needed);
+        }
+
+        int[] positions = new int[lists.size()];
+        int[] heap = new int[lists.size()]; // the indexes of the lists which have more hits, ordered by their next hit
+        int size = lists.size();
+        for (int i = 0; i < size; i++)
+            heap[i] = i;
+        for (int i = size / 2 - 1; i >= 0; i--)
+            siftDown(heap, i, size, positions);
+
+        List<LeanHit> merged = new ArrayList<>(needed);
+        LeanHit previous = null;
+        while (size > 0 && merged.size() < needed) {
+            int list = heap[0];
+            LeanHit hit = lists.get(list).get(positions[list]++);
+            if (previous == null || previous.compareTo(hit) != 0) {
+                merged.add(hit);
+                previous = hit;
+            }
+            if (positions[list] == lists.get(list).size())
+                heap[0] = heap[--size];
+            siftDown(heap, 0, size, positions);
+        }
+        return merged;
+    }
+
+    private void siftDown(int[] heap, int index, int size, int[] positions) {
+        int list = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && isBefore(heap[child + 1], heap[child], positions))
+                child++;
+            if ( ! isBefore(heap[child], list, positions)) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = list;
+    }
+
+    /** Returns whether the next hit of list a should come before that of list b, preferring earlier lists on ties */
+    private boolean isBefore(int a, int b, int[] positions) {
+        int comparison = lists.get(a).get(positions[a]).compareTo(lists.get(b).get(positions[b]));
+        return comparison < 0 || (comparison == 0 && a < b);
+    }
+
+}
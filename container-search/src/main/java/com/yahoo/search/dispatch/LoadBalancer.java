@@ -5,20 +5,27 @@ import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
  * LoadBalancer determines which group of content nodes should be accessed next for each search query when the internal java dispatcher is
  * used.
  *
+ * This is lock-free: The state of each group is kept in atomic counters which are updated independently
+ * by the threads taking and releasing groups.
+ *
  * @author ollivir
  */
 public class LoadBalancer {
-    // The implementation here is a simplistic least queries in flight + round-robin load balancer
 
     private static final Logger log = Logger.getLogger(LoadBalancer.class.getName());
 
@@ -27,19 +34,44 @@ public class LoadBalancer {
     private static final double INITIAL_QUERY_TIME = 0.001;
     private static final double MIN_QUERY_TIME = 0.001;
 
+    /** The policy used to choose among groups */
+    public enum Policy {
+
+        /** Choose the next group with sufficient coverage in order */
+        ROUNDROBIN,
+
+        /** Choose a random group with probability inversely proportional to its average search time */
+        ADAPTIVE,
+
+        /** Choose the one of two random groups having the lowest product of queries in flight and average search time */
+        BEST_OF_RANDOM_2
+
+    }
+
     private final List<GroupStatus> scoreboard;
+    private final Map<Integer, GroupStatus> scoreboardById;
     private final GroupScheduler scheduler;
 
     public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
-        this.scoreboard = new ArrayList<>(searchCluster.groups().size());
+        this(searchCluster, roundRobin ? Policy.ROUNDROBIN : Policy.ADAPTIVE);
+    }
+
+    public LoadBalancer(SearchCluster searchCluster, Policy policy) {
+        List<GroupStatus> scoreboard = new ArrayList<>(searchCluster.groups().size());
+        Map<Integer, GroupStatus> scoreboardById = new HashMap<>();
         for (Group group : searchCluster.orderedGroups()) {
-            scoreboard.add(new GroupStatus(group));
-        }
-        if (roundRobin || scoreboard.size() == 1) {
-            this.scheduler = new RoundRobinScheduler(scoreboard);
-        } else {
-            this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
+            GroupStatus groupStatus = new GroupStatus(group);
+            scoreboard.add(groupStatus);
+            scoreboardById.put(group.id(), groupStatus);
         }
+        this.scoreboard = List.copyOf(scoreboard);
+        this.scoreboardById = Map.copyOf(scoreboardById);
+        if (policy == Policy.ROUNDROBIN || this.scoreboard.size() == 1)
+            this.scheduler = new RoundRobinScheduler(this.scoreboard);
+        else if (policy == Policy.BEST_OF_RANDOM_2)
+            this.scheduler = new BestOfRandom2Scheduler(new ThreadLocalRandomSource(), this.scoreboard);
+        else
+            this.scheduler = new AdaptiveScheduler(new ThreadLocalRandomSource(), this.scoreboard);
     }
 
     /**
@@ -50,18 +82,16 @@ public class LoadBalancer {
      * @return the node group to target, or <i>empty</i> if the internal dispatch logic cannot be used
      */
     public Optional<Group> takeGroup(Set<Integer> rejectedGroups) {
-        synchronized (this) {
-            Optional<GroupStatus> best = scheduler.takeNextGroup(rejectedGroups);
-
-            if (best.isPresent()) {
-                GroupStatus gs = best.get();
-                gs.allocate();
-                Group ret = gs.group;
-                log.fine(() -> "Offering <" + ret + "> for query connection");
-                return Optional.of(ret);
-            } else {
-                return Optional.empty();
-            }
+        Optional<GroupStatus> best = scheduler.takeNextGroup(rejectedGroups);
+
+        if (best.isPresent()) {
+            GroupStatus gs = best.get();
+            gs.allocate();
+            Group ret = gs.group;
+            log.fine(() -> "Offering <" + ret + "> for query connection");
+            return Optional.of(ret);
+        } else {
+            return Optional.empty();
         }
     }
 
@@ -73,50 +103,53 @@ public class LoadBalancer {
      * @param searchTimeMs query execution time in milliseconds, used for adaptive load balancing
      */
     public void releaseGroup(Group group, boolean success, double searchTimeMs) {
-        synchronized (this) {
-            for (GroupStatus sched : scoreboard) {
-                if (sched.group.id() == group.id()) {
-                    sched.release(success, searchTimeMs / 1000.0);
-                    break;
-                }
-            }
-        }
+        GroupStatus groupStatus = scoreboardById.get(group.id());
+        if (groupStatus != null)
+            groupStatus.release(success, searchTimeMs / 1000.0);
     }
 
     static class GroupStatus {
+
         private final Group group;
-        private int allocations = 0;
-        private long queries = 0;
-        private double averageSearchTime = INITIAL_QUERY_TIME;
+        private final AtomicInteger allocations = new AtomicInteger(0);
+        private final AtomicLong queries = new AtomicLong(0);
+
+        /** The average search time, as the raw long bits of a double, such that it can be updated atomically */
+        private final AtomicLong averageSearchTime = new AtomicLong(Double.doubleToRawLongBits(INITIAL_QUERY_TIME));
 
         GroupStatus(Group group) {
             this.group = group;
         }
 
         void allocate() {
-            allocations++;
+            allocations.incrementAndGet();
         }
 
         void release(boolean success, double searchTime) {
-            allocations--;
-            if (allocations < 0) {
+            if (allocations.getAndUpdate(count -> Math.max(count - 1, 0)) == 0)
                 log.warning("Double free of query target group detected");
-                allocations = 0;
-            }
             if (success) {
                 searchTime = Math.max(searchTime, MIN_QUERY_TIME);
-                double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
-                averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
-                queries++;
+                double decayRate = Math.min(queries.getAndIncrement() + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
+                long current, updated;
+                do {
+                    current = averageSearchTime.get();
+                    double average = Double.longBitsToDouble(current);
+                    updated = Double.doubleToRawLongBits((searchTime + (decayRate - 1) * average) / decayRate);
+                } while ( ! averageSearchTime.compareAndSet(current, updated));
             }
         }
 
+        int allocations() {
+            return allocations.get();
+        }
+
         double averageSearchTime() {
-            return averageSearchTime;
+            return Double.longBitsToDouble(averageSearchTime.get());
         }
 
         double averageSearchTimeInverse() {
-            return 1.0 / averageSearchTime;
+            return 1.0 / averageSearchTime();
         }
 
         int groupId() {
@@ -124,9 +157,10 @@ public class LoadBalancer {
         }
 
         void setQueryStatistics(long queries, double averageSearchTime) {
-            this.queries = queries;
-            this.averageSearchTime = averageSearchTime;
+            this.queries.set(queries);
+            this.averageSearchTime.set(Double.doubleToRawLongBits(averageSearchTime));
         }
+
     }
 
     private interface GroupScheduler {
@@ -135,7 +169,8 @@ public class LoadBalancer {
 
     private static class RoundRobinScheduler implements GroupScheduler {
 
-        private int needle = 0;
+        /** The next index to try. Concurrent takes may read the same value, which just gives them the same group */
+        private final AtomicInteger needle = new AtomicInteger(0);
         private final List<GroupStatus> scoreboard;
 
         public RoundRobinScheduler(List<GroupStatus> scoreboard) {
@@ -145,9 +180,9 @@ public class LoadBalancer {
         @Override
         public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
             GroupStatus bestCandidate = null;
-            int bestIndex = needle;
+            int bestIndex = needle.get();
 
-            int index = needle;
+            int index = bestIndex;
             for (int i = 0; i < scoreboard.size(); i++) {
                 GroupStatus candidate = scoreboard.get(index);
                 if (rejectedGroups == null || !rejectedGroups.contains(candidate.group.id())) {
@@ -159,10 +194,9 @@ public class LoadBalancer {
                 }
                 index = nextScoreboardIndex(index);
             }
-            needle = nextScoreboardIndex(bestIndex);
+            needle.set(nextScoreboardIndex(bestIndex));
             return Optional.ofNullable(bestCandidate);
         }
-
         /**
          * Select the better of the two given GroupStatus objects, biased to the first
          * parameter. Thus, if all groups have equal coverage sufficiency, the one
@@ -254,4 +288,84 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Chooses two random groups and selects the one with the lowest product of queries in flight and
+     * average search time, i.e the one where a new query is expected to complete first.
+     * This avoids both the herding of always choosing the least loaded group from possibly stale
+     * statistics and the imbalance of choosing purely at random.
+     */
+    static class BestOfRandom2Scheduler implements GroupScheduler {
+
+        private final Random random;
+        private final List<GroupStatus> scoreboard;
+
+        public BestOfRandom2Scheduler(Random random, List<GroupStatus> scoreboard) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            Optional<GroupStatus> gs = selectGroup(true, rejectedGroups);
+            if (gs.isPresent()) {
+                return gs;
+            }
+            // fallback - any coverage better than none
+            return selectGroup(false, rejectedGroups);
+        }
+
+        private Optional<GroupStatus> selectGroup(boolean requireCoverage, Set<Integer> rejected) {
+            int n = 0;
+            for (GroupStatus gs : scoreboard) {
+                if (isCandidate(gs, requireCoverage, rejected))
+                    n++;
+            }
+            if (n == 0) {
+                return Optional.empty();
+            }
+            int first = random.nextInt(n);
+            int second = n == 1 ? first : (first + 1 + random.nextInt(n - 1)) % n;
+
+            GroupStatus firstCandidate = null;
+            GroupStatus secondCandidate = null;
+            int candidateIndex = 0;
+            for (GroupStatus gs : scoreboard) {
+                if (isCandidate(gs, requireCoverage, rejected)) {
+                    if (candidateIndex == first) firstCandidate = gs;
+                    if (candidateIndex == second) secondCandidate = gs;
+                    candidateIndex++;
+                }
+            }
+            if (firstCandidate == null || secondCandidate == null) // Coverage changed while selecting
+                return Optional.ofNullable(firstCandidate != null ? firstCandidate : secondCandidate);
+            return Optional.of(cost(secondCandidate) < cost(firstCandidate) ? secondCandidate : firstCandidate);
+        }
+
+        private static boolean isCandidate(GroupStatus gs, boolean requireCoverage, Set<Integer> rejected) {
+            if (rejected != null && rejected.contains(gs.group.id())) return false;
+            return ! requireCoverage || gs.group.hasSufficientCoverage();
+        }
+
+        /** Returns the expected time until a new query to this group completes, in relative units */
+        private static double cost(GroupStatus gs) {
+            return (gs.allocations() + 1) * gs.averageSearchTime();
+        }
+
+    }
+
+    /** A random source which draws from the random of the calling thread, such that threads never contend on it */
+    private static class ThreadLocalRandomSource extends Random {
+
+        @Override
+        public double nextDouble() {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return ThreadLocalRandom.current().nextInt(bound);
+        }
+
+    }
+
 }
@@ -2,6 +2,8 @@
 package com.yahoo.search.searchchain;
 
 import com.yahoo.component.chain.Chain;
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.logging.RequestProfile;
 import com.yahoo.language.Linguistics;
 import com.yahoo.language.simple.SimpleLinguistics;
 import com.yahoo.prelude.IndexFacts;
@@ -411,6 +413,9 @@ public class Execution extends com.yahoo.processing.execution.Execution {
      */
     private final Context[] contextCache;
 
+    /** The profile of the request this executes, or null if not resolved yet. Inherited from any owning execution. */
+    private RequestProfile profile;
+
     /**
      * <p>
      * Creates an execution from another. This execution will start at the
@@ -493,6 +498,7 @@ public class Execution extends com.yahoo.processing.execution.Execution {
         contextCache = new Context[searchChain.components().size()];
         entryIndex=searcherIndex;
         timer = new TimeTracker(searchChain, searcherIndex);
+        profile = context.owner == null ? null : context.owner.profile;
     }
 
     /** Does return search(((Query)request) */
@@ -509,7 +515,35 @@ public class Execution extends com.yahoo.processing.execution.Execution {
         query.getModel().setExecution(this);
         trace().setTraceLevel(query.getTraceLevel());
 
-        return (Result)super.process(query);
+        RequestProfile.Phase phase = startPhase("search", query);
+        try {
+            return (Result)super.process(query);
+        }
+        finally {
+            phase.close();
+        }
+    }
+
+    /** Starts a phase of the next processor in the profile of the request of the given query, if it is profiled */
+    private RequestProfile.Phase startPhase(String kind, Query query) {
+        if ( ! profile(query).isEnabled()) return RequestProfile.Phase.NONE;
+        return startPhase(kind, next(), query);
+    }
+
+    /** Starts a phase of the given processor in the profile of the request of the given query, if it is profiled */
+    private RequestProfile.Phase startPhase(String kind, Processor processor, Query query) {
+        RequestProfile profile = profile(query);
+        if (processor == null || ! profile.isEnabled()) return RequestProfile.Phase.NONE;
+        return profile.start(kind, processor.getId().stringValue());
+    }
+
+    /** Returns the profile of the request of the given query, which is resolved once per execution */
+    private RequestProfile profile(Query query) {
+        if (profile == null) {
+            HttpRequest request = query == null ? null : query.getHttpRequest();
+            profile = request == null ? RequestProfile.disabled() : request.getProfile();
+        }
+        return profile;
     }
 
     @Override
@@ -568,12 +602,14 @@ public class Execution extends com.yahoo.processing.execution.Execution {
         Searcher current = (Searcher)next(); // TODO: Allow but skip processors which are not searchers
         if (current == null) return;
 
+        RequestProfile.Phase phase = startPhase("fill", current, result.getQuery());
         try {
             nextProcessor();
             onInvokingFill(current, summaryClass);
             current.ensureFilled(result, summaryClass, this);
         }
         finally {
+            phase.close();
             previousProcessor();
             onReturningFill(current, summaryClass);
             timer.sampleFillReturn(nextIndex(), context.getDetailedDiagnostics(), result);
@@ -0,0 +1,168 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Ticker;
+import com.google.inject.Inject;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.SearchChainRegistry;
+import com.yahoo.search.yql.VespaSerializer;
+
+import java.lang.ref.WeakReference;
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of queries in memory, such that identical queries are answered without
+ * searching the content nodes until the cached result expires.
+ * <p>
+ * Queries are identical if they have the same query tree, ranking and properties, except properties
+ * which do not influence the result, such as tracing. Results are cached as they are returned
+ * from the searchers below this, and are updated when they are filled, provided the hits of the result
+ * are not changed by searchers above this before filling.
+ * <p>
+ * Queries where noCache is set are not cached. Results containing errors or having incomplete coverage are not cached.
+ * The cache is emptied when the search chains are reconfigured, e.g on schema changes.
+ * <p>
+ * Metrics: This emits the counters result_cache_hits and result_cache_misses, and the gauge result_cache_size.
+ *
+ * @author bratseth
+ */
+public class ResultCacheSearcher extends Searcher {
+
+    /** Lowercased names of properties which do not influence the result */
+    private static final Set<String> ignoredProperties = Set.of(Query.TIMEOUT.toString().toLowerCase(Locale.ENGLISH),
+                                                                Query.TRACE_LEVEL.toString().toLowerCase(Locale.ENGLISH),
+                                                                Query.EXPLAIN_LEVEL.toString().toLowerCase(Locale.ENGLISH),
+                                                                Query.NO_CACHE.toString().toLowerCase(Locale.ENGLISH));
+
+    private final Cache<String, Result> cache;
+
+    /** The search chains the cached results were produced by */
+    private volatile WeakReference<SearchChainRegistry> generation = new WeakReference<>(null);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Gauge size;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metric) {
+        this(config, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a clock to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metric, Clock clock) {
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumSize(config.maxEntries())
+                                 .expireAfterWrite((long)(config.maxAge() * 1000), TimeUnit.MILLISECONDS)
+                                 .ticker(new Ticker() {
+                                     @Override
+                                     public long read() { return TimeUnit.MILLISECONDS.toNanos(clock.millis()); }
+                                 })
+                                 .build();
+        this.hits = metric.declareCounter("result_cache_hits");
+        this.misses = metric.declareCounter("result_cache_misses");
+        this.size = metric.declareGauge("result_cache_size");
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache()) return execution.search(query);
+
+        invalidateOnReconfiguration(execution.context().searchChainRegistry());
+        String key = cacheKey(query);
+        if (key == null) return execution.search(query);
+
+        Result cached = cache.getIfPresent(key);
+        if (cached != null) {
+            hits.add();
+            query.trace("Returning cached result", false, 3);
+            Result result = cached.clone();
+            result.setQuery(query);
+            result.hits().setCached(true);
+            result.hits().setSearcherSpecificMetaData(this, key);
+            return result;
+        }
+
+        misses.add();
+        Result result = execution.search(query);
+        if (isCacheable(result)) {
+            cache.put(key, result.clone());
+            size.sample(cache.size());
+            result.hits().setSearcherSpecificMetaData(this, key);
+        }
+        return result;
+    }
+
+    @Override
+    public void fill(Result result, String summaryClass, Execution execution) {
+        if (result.isFilled(summaryClass)) return;
+
+        execution.fill(result, summaryClass);
+        String key = (String)result.hits().getSearcherSpecificMetaData(this);
+        if (key == null || ! result.isFilled(summaryClass) || ! isCacheable(result)) return;
+
+        Result cached = cache.getIfPresent(key);
+        if (cached == null || ! haveSameHits(cached, result)) return;
+        cache.put(key, result.clone());
+    }
+
+    private void invalidateOnReconfiguration(SearchChainRegistry current) {
+        if (generation.get() == current) return;
+        cache.invalidateAll();
+        generation = new WeakReference<>(current);
+    }
+
+    /** Returns the key of the given query in this cache, or null if it cannot be cached */
+    static String cacheKey(Query query) {
+        StringBuilder key = new StringBuilder();
+        try {
+            key.append(VespaSerializer.serialize(query)); // query tree and grouping
+        }
+        catch (RuntimeException e) { // null query or otherwise not serializable
+            return null;
+        }
+        key.append('\n').append(query.getRanking().getFeatures());
+        key.append('\n').append(query.getRanking().getProperties());
+        for (Map.Entry<String, Object> property : new TreeMap<>(query.properties().listProperties()).entrySet()) {
+            String name = property.getKey().toLowerCase(Locale.ENGLISH);
+            if (ignoredProperties.contains(name)) continue;
+            if (name.startsWith("trace.")) continue;
+            key.append('\n').append(property.getKey()).append('=').append(property.getValue());
+        }
+        return key.toString();
+    }
+
+    private static boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        return coverage == null || coverage.getFull();
+    }
+
+    /** Returns whether the given results have the same hits, in the same order */
+    private static boolean haveSameHits(Result a, Result b) {
+        Iterator<Hit> aHits = a.hits().deepIterator();
+        Iterator<Hit> bHits = b.hits().deepIterator();
+        while (aHits.hasNext() && bHits.hasNext()) {
+            if ( ! Objects.equals(aHits.next().getId(), bHits.next().getId())) return false;
+        }
+        return ! aHits.hasNext() && ! bHits.hasNext();
+    }
+
+}
@@ -3,6 +3,7 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.document.GlobalId;
 import com.yahoo.document.idstring.IdString;
+import com.yahoo.jdisc.test.MockMetric;
 import com.yahoo.prelude.fastsearch.FastHit;
 import com.yahoo.prelude.fastsearch.GroupingListHit;
 import com.yahoo.search.Query;
@@ -24,8 +25,10 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -324,6 +327,123 @@ public class InterleavedSearchInvokerTest {
         assertEquals(3, result.getQuery().getHits());
     }
 
+    @Test
+    public void requireThatSlowGroupIsHedgedAndFirstCompleteResponseWins() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", createDispatchConfig(100.0), 2, 1);
+        MockMetric metric = new MockMetric();
+        Hedger hedger = createHedger(metric, 100, 0);
+        invokers.add(new MockInvoker(0).setHits(createHits(A5, 0, 0)));
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, new Group(0, List.of()), 0);
+        invokers.add(new MockInvoker(1).setHits(createHits(B5, 1, 1)));
+        InterleavedSearchInvoker hedge = new InterleavedSearchInvoker(List.of(invokers.get(1)), cluster, new Group(1, List.of()), null);
+        invoker.enableHedging(hedger, () -> Optional.of(hedge));
+
+        expectedEvents.add(new Event(100, 100, null)); // Waiting until the hedge delay of node 0
+        expectedEvents.add(new Event(4900, 50, 1));    // Hedged to node 1, which responds first
+        query.setHits(5);
+        Result result = invoker.search(query, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals("The result of the hedge is used", 9.0, result.hits().get(0).getRelevance().getScore(), DELTA);
+        assertEquals(5, result.hits().size());
+        assertEquals(1.0, metricValue(metric, Hedger.HEDGES_ISSUED_METRIC), DELTA);
+        assertEquals(1.0, metricValue(metric, Hedger.HEDGES_WON_METRIC), DELTA);
+    }
+
+    @Test
+    public void requireThatPrimaryGroupMayWinAfterHedging() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", createDispatchConfig(100.0), 2, 1);
+        MockMetric metric = new MockMetric();
+        Hedger hedger = createHedger(metric, 100, 0);
+        invokers.add(new MockInvoker(0).setHits(createHits(A5, 0, 0)));
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, new Group(0, List.of()), 0);
+        invokers.add(new MockInvoker(1).setHits(createHits(B5, 1, 1)));
+        InterleavedSearchInvoker hedge = new InterleavedSearchInvoker(List.of(invokers.get(1)), cluster, new Group(1, List.of()), null);
+        invoker.enableHedging(hedger, () -> Optional.of(hedge));
+
+        expectedEvents.add(new Event(100, 100, null));
+        expectedEvents.add(new Event(4900, 10, 0));
+        query.setHits(5);
+        Result result = invoker.search(query, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals("The result of the primary is used", 11.0, result.hits().get(0).getRelevance().getScore(), DELTA);
+        assertTrue("Hedge is closed", hedge.invokers().isEmpty());
+        assertEquals(1.0, metricValue(metric, Hedger.HEDGES_ISSUED_METRIC), DELTA);
+        assertEquals(0.0, metricValue(metric, Hedger.HEDGES_WON_METRIC), DELTA);
+    }
+
+    @Test
+    public void requireThatQueriesAreNotHedgedWithoutResponseTimeHistory() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", createDispatchConfig(100.0), 2, 1);
+        MockMetric metric = new MockMetric();
+        Hedger hedger = createHedger(metric, 100, 1);
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, new Group(0, List.of()), 1);
+        invoker.enableHedging(hedger, () -> { throw new AssertionError("Should not hedge"); });
+
+        expectedEvents.add(new Event(5000, 300, 0));
+        invoker.search(query, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals(0.0, metricValue(metric, Hedger.HEDGES_ISSUED_METRIC), DELTA);
+        assertEquals(100L, hedger.hedgeDelay(1).getAsLong());
+        assertFalse(hedger.hedgeDelay(0).isPresent());
+    }
+
+    @Test
+    public void requireThatResponseTimesAreRecordedOnArrivalAndTimeoutsAtTheTimeout() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", createDispatchConfig(100.0), 1, 2);
+        Map<Integer, List<Long>> responseTimes = new HashMap<>();
+        Hedger hedger = new Hedger(95, new MockMetric()) {
+            @Override
+            void recordResponseTime(int distributionKey, long responseTimeMs) {
+                responseTimes.computeIfAbsent(distributionKey, key -> new ArrayList<>()).add(responseTimeMs);
+            }
+        };
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, new Group(0, List.of()), 2);
+        invoker.enableHedging(hedger, Optional::empty);
+
+        expectedEvents.add(new Event(5000, 150, 0) {
+            @Override
+            public SearchInvoker process(Query query, long currentTimeout) {
+                clock.advance(Duration.ofMillis(50));
+                invoker.responseAvailable(invokers.get(0)); // Arrives at 50 ms, but is not processed until 200 ms
+                return super.process(query, currentTimeout);
+            }
+        });
+        expectedEvents.add(new Event(4800, 4800, null)); // Node 1 times out
+        invoker.search(query, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals(Map.of(0, List.of(50L), 1, List.of(5000L)), responseTimes);
+    }
+
+    @Test
+    public void requireThatHedgeDelayIsThePercentileOfRecentResponseTimes() {
+        Hedger hedger = new Hedger(90, new MockMetric());
+        for (int i = 1; i < Hedger.minimumSamples; i++)
+            hedger.recordResponseTime(0, i);
+        assertFalse("Too few samples", hedger.hedgeDelay(0).isPresent());
+        hedger.recordResponseTime(0, Hedger.minimumSamples);
+        assertEquals(29, hedger.hedgeDelay(0).getAsLong());
+
+        for (int i = 0; i < Hedger.windowSize; i++)
+            hedger.recordResponseTime(0, 1000 + i);
+        assertEquals("Old samples are forgotten", 1115, hedger.hedgeDelay(0).getAsLong());
+    }
+
+    /** Returns a hedger where the node with the given key has the given hedge delay */
+    private static Hedger createHedger(MockMetric metric, long delay, int distributionKey) {
+        Hedger hedger = new Hedger(95, metric);
+        for (int i = 0; i < Hedger.minimumSamples; i++)
+            hedger.recordResponseTime(distributionKey, delay);
+        return hedger;
+    }
+
+    private static double metricValue(MockMetric metric, String name) {
+        return metric.metrics().getOrDefault(name, Map.of()).values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
     private static InterleavedSearchInvoker createInterLeavedTestInvoker(List<Double> a, List<Double> b, Group group) {
         SearchCluster cluster = new MockSearchCluster("!", 1, 2);
         List<SearchInvoker> invokers = new ArrayList<>();
@@ -0,0 +1,109 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class LeanHitMergerTest {
+
+    @Test
+    public void requireThatMergeIsSortedAndLimitedToTheHitsNeeded() {
+        LeanHitMerger merger = new LeanHitMerger();
+        merger.add(List.of(hit(1, 9.0), hit(2, 6.0), hit(3, 3.0)));
+        merger.add(List.of());
+        merger.add(List.of(hit(4, 8.0), hit(5, 7.0), hit(6, 1.0)));
+        merger.add(List.of(hit(7, 5.0)));
+
+        assertRelevances(List.of(9.0, 8.0, 7.0, 6.0, 5.0), merger.merge(5));
+        assertRelevances(List.of(9.0, 8.0, 7.0, 6.0, 5.0, 3.0, 1.0), merger.merge(100));
+        assertTrue(merger.merge(0).isEmpty());
+        assertTrue(new LeanHitMerger().merge(10).isEmpty());
+    }
+
+    @Test
+    public void requireThatDuplicatesAreRemovedKeepingTheFirstAdded() {
+        LeanHit first = hit(1, 5.0, 0);
+        LeanHit second = hit(1, 5.0, 1);
+        LeanHitMerger merger = new LeanHitMerger();
+        merger.add(List.of(hit(2, 6.0, 0), first));
+        merger.add(List.of(second, hit(3, 4.0, 1)));
+
+        List<LeanHit> merged = merger.merge(10);
+        assertRelevances(List.of(6.0, 5.0, 4.0), merged);
+        assertSame(first, merged.get(1));
+    }
+
+    @Test
+    public void requireThatSortDataIsUsedWhenPresent() {
+        LeanHitMerger merger = new LeanHitMerger();
+        merger.add(List.of(sortedHit(1, 1), sortedHit(2, 4)));
+        merger.add(List.of(sortedHit(3, 2), sortedHit(4, 3)));
+
+        List<LeanHit> merged = merger.merge(3);
+        assertEquals(3, merged.size());
+        for (int i = 0; i < merged.size(); i++)
+            assertEquals(i + 1, merged.get(i).getSortData()[0]);
+    }
+
+    @Test
+    public void requireThatMergeEqualsSortingAllHits() {
+        Random random = new Random(1234);
+        int id = 0;
+        for (int round = 0; round < 100; round++) {
+            LeanHitMerger merger = new LeanHitMerger();
+            List<LeanHit> all = new ArrayList<>();
+            int lists = 1 + random.nextInt(64);
+            for (int list = 0; list < lists; list++) {
+                List<LeanHit> hits = new ArrayList<>();
+                for (int i = random.nextInt(20); i > 0; i--)
+                    hits.add(hit(id++, random.nextInt(50), list));
+                Collections.sort(hits);
+                merger.add(hits);
+                all.addAll(hits);
+            }
+            Collections.sort(all);
+
+            int needed = random.nextInt(100);
+            List<LeanHit> merged = merger.merge(needed);
+            assertEquals(Math.min(needed, all.size()), merged.size());
+            for (int i = 0; i < merged.size(); i++)
+                assertEquals(0, all.get(i).compareTo(merged.get(i)));
+        }
+    }
+
+    private static void assertRelevances(List<Double> expected, List<LeanHit> hits) {
+        List<Double> relevances = new ArrayList<>();
+        for (LeanHit hit : hits)
+            relevances.add(hit.getRelevance());
+        assertEquals(expected, relevances);
+    }
+
+    private static LeanHit hit(int id, double relevance) {
+        return hit(id, relevance, 0);
+    }
+
+    private static LeanHit hit(int id, double relevance, int distributionKey) {
+        return new LeanHit(gid(id), distributionKey, distributionKey, relevance);
+    }
+
+    private static LeanHit sortedHit(int id, int sortValue) {
+        return new LeanHit(gid(id), 0, 0, 0.0, new byte[] { (byte)sortValue });
+    }
+
+    private static byte[] gid(int id) {
+        return ByteBuffer.allocate(12).putInt(8, id).array();
+    }
+
+}
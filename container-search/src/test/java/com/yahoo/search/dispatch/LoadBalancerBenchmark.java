@@ -0,0 +1,85 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.dispatch.searchcluster.Group;
+import com.yahoo.search.dispatch.searchcluster.Node;
+import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
+
+/**
+ * A contention benchmark of the load balancer: Measures the rate of group takes and releases
+ * with an increasing number of threads, up to twice the number of cores, for each policy.
+ * With no shared lock the rate should scale with the number of threads up to the number of cores.
+ *
+ * @author bratseth
+ */
+public class LoadBalancerBenchmark {
+
+    private final int groupCount = 16;
+    private final int measurementMs = 2000;
+
+    private final SearchCluster searchCluster;
+
+    public LoadBalancerBenchmark() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++)
+            nodes.add(new Node(i, "node" + i, i));
+        searchCluster = new SearchCluster("benchmark", createDispatchConfig(nodes), null, null);
+    }
+
+    public void run() throws InterruptedException {
+        int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        for (LoadBalancer.Policy policy : LoadBalancer.Policy.values()) {
+            measure(policy, 1); // warmup
+            double singleThreadRate = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double rate = measure(policy, threads);
+                if (threads == 1) singleThreadRate = rate;
+                System.out.println(String.format(Locale.ENGLISH, "%1$-16s %2$3d threads: %3$12.0f takes/s (%4$5.2fx)",
+                                                 policy, threads, rate, rate / singleThreadRate));
+            }
+        }
+    }
+
+    /** Returns the number of takes and releases per second with the given number of threads */
+    private double measure(LoadBalancer.Policy policy, int threadCount) throws InterruptedException {
+        LoadBalancer loadBalancer = new LoadBalancer(searchCluster, policy);
+        LongAdder takes = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean(false);
+        CountDownLatch started = new CountDownLatch(threadCount);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                started.countDown();
+                long count = 0;
+                while ( ! stop.get()) {
+                    Group group = loadBalancer.takeGroup(null).get();
+                    loadBalancer.releaseGroup(group, true, 1 + group.id() % 4);
+                    count++;
+                }
+                takes.add(count);
+            });
+            threads[i].start();
+        }
+        started.await();
+        long startTime = System.nanoTime();
+        Thread.sleep(measurementMs);
+        stop.set(true);
+        for (Thread thread : threads)
+            thread.join();
+        return takes.sum() / ((System.nanoTime() - startTime) / 1e9);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new LoadBalancerBenchmark().run();
+    }
+
+}
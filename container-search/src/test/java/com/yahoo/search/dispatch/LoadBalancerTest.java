@@ -2,6 +2,7 @@
 package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
+import com.yahoo.search.dispatch.LoadBalancer.BestOfRandom2Scheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
@@ -14,6 +15,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
 import static org.hamcrest.Matchers.closeTo;
@@ -157,6 +159,43 @@ public class LoadBalancerTest {
         assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(4));
     }
 
+    @Test
+    public void requireThatBestOfRandom2SchedulerChoosesTheLeastCostlyOfTwo() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            gs.setQueryStatistics(1, i == 2 ? 0.5 : 0.1);
+            scoreboard.add(gs);
+        }
+        scoreboard.get(0).allocate();
+        scoreboard.get(0).allocate(); // cost of group 0 is now 3 * 0.1
+        Random seq = intSequence(0, 0, 2, 0, 1, 1, 0, 0);
+        BestOfRandom2Scheduler sched = new BestOfRandom2Scheduler(seq, scoreboard);
+
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1)); // 0 or 1
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0)); // 2 or 0
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1)); // 1 or 0
+        assertThat(sched.takeNextGroup(Set.of(1)).get().groupId(), equalTo(0)); // 0 or 2
+        assertThat(sched.takeNextGroup(Set.of(0, 1, 2)).isPresent(), is(false));
+    }
+
+    @Test
+    public void requireThatConcurrentAllocationsAndReleasesAreBalanced() throws InterruptedException {
+        GroupStatus gs = newGroupStatus(1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++)
+                    updateSearchTime(gs, 0.002);
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertThat(gs.allocations(), equalTo(0));
+        assertThat(gs.averageSearchTime(), closeTo(0.002, 0.000001));
+    }
+
     private static void updateSearchTime(GroupStatus gs, double time) {
         gs.allocate();
         gs.release(true, time);
@@ -172,6 +211,22 @@ public class LoadBalancerTest {
         return new GroupStatus(dummyGroup);
     }
 
+    private Random intSequence(int... values) {
+        return new Random() {
+            private int index = 0;
+
+            @Override
+            public int nextInt(int bound) {
+                int retv = values[index];
+                index++;
+                if (index >= values.length) {
+                    index = 0;
+                }
+                return retv;
+            }
+        };
+    }
+
     private Random sequence(double... values) {
         return new Random() {
             private int index = 0;
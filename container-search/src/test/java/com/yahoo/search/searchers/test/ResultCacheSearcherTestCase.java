@@ -0,0 +1,157 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchers.test;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.UntypedMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.SearchChainRegistry;
+import com.yahoo.search.searchers.ResultCacheSearcher;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final MetricReceiver.MockReceiver metric = new MetricReceiver.MockReceiver();
+    private final CountingSearcher backend = new CountingSearcher();
+    private final Chain<Searcher> chain = new Chain<>(new ResultCacheSearcher(config(), metric, clock), backend);
+    private Execution.Context context = Execution.Context.createContextStub(new SearchChainRegistry());
+
+    @Test
+    public void testIdenticalQueriesAreAnsweredFromTheCache() {
+        Result first = search("?query=foo");
+        Result second = search("?query=foo");
+        assertEquals(1, backend.searches);
+        assertFalse(first.isCached());
+        assertTrue(second.isCached());
+        assertEquals(first.hits().get(0).getId(), second.hits().get(0).getId());
+        assertEquals("foo", second.hits().get(0).getField("query"));
+
+        search("?query=foo&tracelevel=5&timeout=2s");
+        assertEquals("Tracing does not influence the result", 1, backend.searches);
+
+        search("?query=bar");
+        search("?query=foo&hits=5");
+        search("?query=foo&ranking=other");
+        assertEquals(4, backend.searches);
+
+        assertEquals(2, count("result_cache_hits"));
+        assertEquals(4, count("result_cache_misses"));
+    }
+
+    @Test
+    public void testCachedResultsExpire() {
+        search("?query=foo");
+        clock.advance(Duration.ofSeconds(9));
+        search("?query=foo");
+        assertEquals(1, backend.searches);
+        clock.advance(Duration.ofSeconds(2));
+        search("?query=foo");
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void testNoCacheQueriesAndErrorsAreNotCached() {
+        search("?query=foo&noCache=true");
+        search("?query=foo&noCache=true");
+        assertEquals(2, backend.searches);
+
+        search("?query=error");
+        search("?query=error");
+        assertEquals(4, backend.searches);
+    }
+
+    @Test
+    public void testFilledResultsAreCached() {
+        Result first = searchAndFill("?query=foo");
+        assertEquals(1, backend.fills);
+        assertEquals("summary of foo", first.hits().get(0).getField("summary"));
+
+        Result second = searchAndFill("?query=foo");
+        assertEquals(1, backend.searches);
+        assertEquals("The cached result was already filled", 1, backend.fills);
+        assertTrue(second.isCached());
+        assertEquals("summary of foo", second.hits().get(0).getField("summary"));
+    }
+
+    @Test
+    public void testCacheIsEmptiedOnReconfiguration() {
+        search("?query=foo");
+        search("?query=foo");
+        assertEquals(1, backend.searches);
+
+        context = Execution.Context.createContextStub(new SearchChainRegistry());
+        search("?query=foo");
+        assertEquals(2, backend.searches);
+    }
+
+    private Result search(String request) {
+        return new Execution(chain, context).search(new Query(request));
+    }
+
+    private Result searchAndFill(String request) {
+        Execution execution = new Execution(chain, context);
+        Result result = execution.search(new Query(request));
+        execution.fill(result, "default");
+        return result;
+    }
+
+    private long count(String metricName) {
+        return metric.getSnapshot().getMapForMetric(metricName).values().stream().mapToLong(UntypedMetric::getCount).sum();
+    }
+
+    private static ResultCacheConfig config() {
+        return new ResultCacheConfig.Builder().maxEntries(100).maxAge(10.0).build();
+    }
+
+    private static class CountingSearcher extends Searcher {
+
+        int searches = 0;
+        int fills = 0;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searches++;
+            String queryString = query.getModel().getQueryString();
+            if (queryString.equals("error"))
+                return new Result(query, ErrorMessage.createBackendCommunicationError("Failed"));
+
+            Result result = new Result(query);
+            for (int i = 0; i < 3; i++) {
+                Hit hit = new Hit("hit:" + queryString + ":" + i, 1.0 / (i + 1));
+                hit.setField("query", queryString);
+                hit.setFillable();
+                result.hits().add(hit);
+            }
+            result.setTotalHitCount(3);
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            fills++;
+            for (Hit hit : result.hits()) {
+                hit.setField("summary", "summary of " + hit.getField("query"));
+                hit.setFilled(summaryClass);
+            }
+        }
+
+    }
+
+}
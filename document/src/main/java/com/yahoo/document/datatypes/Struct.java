@@ -4,17 +4,22 @@ package com.yahoo.document.datatypes;
 import com.yahoo.collections.Hashlet;
 import com.yahoo.document.DataType;
 import com.yahoo.document.Document;
+import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.Field;
 import com.yahoo.document.PositionDataType;
 import com.yahoo.document.StructDataType;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.vespa.objects.Ids;
 
+import java.nio.ByteBuffer;
 import java.util.AbstractSet;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -22,6 +27,9 @@ import java.util.Set;
 
 
 /**
+ * A struct value. Concurrent reads are safe, also of fields which are deserialized lazily on first access,
+ * but modifications must not be concurrent with other access.
+ *
  * @author Håkon Humberset
  */
 public class Struct extends StructuredFieldValue {
@@ -30,14 +38,35 @@ public class Struct extends StructuredFieldValue {
     private Hashlet<Integer, FieldValue> values = new Hashlet<>();
     private int [] order = null;
 
+    /**
+     * Serialized values of fields which are not yet deserialized, by field id, or null if there are none.
+     * While this is non-null, reads of this struct synchronize on it, as they may deserialize fields.
+     * This is volatile so that reads which see null also see the values deserialized before it became null.
+     */
+    private volatile Map<Integer, ByteBuffer> serialized = null;
+    private DocumentTypeManager serializedTypes = null;
+
     private int version;
 
     private int [] getInOrder() {
+        if (serialized == null) return computeOrder();
+        synchronized (this) {
+            return computeOrder();
+        }
+    }
+
+    private int [] computeOrder() {
         if (order == null) {
-            order = new int[values.size()];
+            order = new int[getFieldCount()];
             for (int i = 0; i < values.size(); i++) {
                 order[i] = values.key(i);
             }
+            if (serialized != null) {
+                int i = values.size();
+                for (int id : serialized.keySet()) {
+                    order[i++] = id;
+                }
+            }
             Arrays.sort(order);
         }
         return order;
@@ -86,13 +115,80 @@ public class Struct extends StructuredFieldValue {
         return getDataType().getCompressionConfig().threshold;
     }
 
+    /**
+     * Sets the given field to the serialized value in the given array backed buffer, between its position and limit,
+     * which is deserialized with the given type manager when the field value is first accessed. Until then, this value
+     * is written as-is when this struct is serialized. The content of the buffer must not be changed later.
+     */
+    public void setSerializedFieldValue(Field field, ByteBuffer value, DocumentTypeManager types) {
+        if (getDataType().getField(field.getId()) == null) {
+            throw new IllegalArgumentException("No such field in " + getDataType() + " : " + field.getName());
+        }
+        if (values.get(field.getId()) != null) {
+            removeFieldValue(field);
+        }
+        if (serialized == null) {
+            serialized = new HashMap<>();
+        }
+        serialized.put(field.getId(), value);
+        serializedTypes = types;
+        invalidateOrder();
+    }
+
+    /**
+     * Returns the serialized value of the given field, if it was set by {@link #setSerializedFieldValue} and has
+     * not been accessed since, or null otherwise.
+     */
+    public ByteBuffer getSerializedFieldValue(Field field) {
+        if (serialized == null) return null;
+        synchronized (this) {
+            if (serialized == null) return null;
+            ByteBuffer value = serialized.get(field.getId());
+            return value == null ? null : value.duplicate();
+        }
+    }
+
+    /** Returns the value of the field with the given id, deserializing it first if this has not been done yet */
+    private FieldValue getValue(int id) {
+        if (serialized == null) return values.get(id);
+        synchronized (this) {
+            FieldValue value = values.get(id);
+            if (value == null && serialized != null) {
+                ByteBuffer data = serialized.remove(id);
+                if (data != null) {
+                    Field field = getDataType().getField(id);
+                    value = field.getDataType().createFieldValue();
+                    GrowableByteBuffer buffer = GrowableByteBuffer.wrap(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                    value.deserialize(field, DocumentDeserializerFactory.create6(serializedTypes, buffer));
+                    values.put(id, value);
+                }
+                if (serialized.isEmpty()) {
+                    serialized = null; // Reads no longer need to synchronize
+                }
+            }
+            return value;
+        }
+    }
+
+    private void deserializeAll() {
+        if (serialized == null) return;
+        synchronized (this) {
+            for (int id : computeOrder()) {
+                getValue(id);
+            }
+        }
+    }
+
     @Override
     public Struct clone() {
         Struct struct = (Struct) super.clone();
-        struct.values = new Hashlet<>();
-        struct.values.reserve(values.size());
-        for (int i = 0; i < values.size(); i++) {
-            struct.values.put(values.key(i), values.value(i).clone());
+        synchronized (this) {
+            struct.values = new Hashlet<>();
+            struct.values.reserve(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                struct.values.put(values.key(i), values.value(i).clone());
+            }
+            struct.serialized = serialized == null ? null : new HashMap<>(serialized);
         }
         return struct;
     }
@@ -100,6 +196,7 @@ public class Struct extends StructuredFieldValue {
     @Override
     public void clear() {
         values = new Hashlet<>();
+        serialized = null;
         invalidateOrder();
     }
 
@@ -127,7 +224,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue getFieldValue(Field field) {
-        return values.get(field.getId());
+        return getValue(field.getId());
     }
 
 
@@ -138,7 +235,10 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public int getFieldCount() {
-        return values.size();
+        if (serialized == null) return values.size();
+        synchronized (this) {
+            return values.size() + (serialized == null ? 0 : serialized.size());
+        }
     }
 
     @Override
@@ -164,6 +264,9 @@ public class Struct extends StructuredFieldValue {
                     "Inconsistent field: " + field);
         }
 
+        if (serialized != null && serialized.remove(field.getId()) != null) {
+            invalidateOrder();
+        }
         int index = values.getIndexOfKey(field.getId());
         if (index == -1) {
             values.put(field.getId(), value);
@@ -175,7 +278,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue removeFieldValue(Field field) {
-        FieldValue found = values.get(field.getId());
+        FieldValue found = getValue(field.getId());
         if (found != null) {
             Hashlet<Integer, FieldValue> copy = new Hashlet<>();
             copy.reserve(values.size() - 1);
@@ -223,11 +326,14 @@ public class Struct extends StructuredFieldValue {
         if (!super.equals(o)) return false;
 
         Struct struct = (Struct) o;
+        deserializeAll();
+        struct.deserializeAll();
         return values.equals(struct.values);
     }
 
     @Override
     public int hashCode() {
+        deserializeAll();
         int result = super.hashCode();
         result = 31 * result + values.hashCode();
         return result;
@@ -240,7 +346,7 @@ public class Struct extends StructuredFieldValue {
         int [] increasing = getInOrder();
         for (int i = 0; i < increasing.length; i++) {
             int id = increasing[i];
-            retVal.append(getDataType().getField(id)).append("=").append(values.get(id)).append(", ");
+            retVal.append(getDataType().getField(id)).append("=").append(getValue(id)).append(", ");
         }
         return retVal.toString();
     }
@@ -257,7 +363,7 @@ public class Struct extends StructuredFieldValue {
             return cmp;
         }
         Struct rhs = (Struct)obj;
-        cmp = values.size() - rhs.values.size();
+        cmp = getFieldCount() - rhs.getFieldCount();
         if (cmp != 0) {
             return cmp;
         }
@@ -298,7 +404,7 @@ public class Struct extends StructuredFieldValue {
         }
 
         public FieldValue getValue() {
-            return values.get(id);
+            return Struct.this.getValue(id);
         }
 
         public FieldValue setValue(FieldValue value) {
@@ -306,6 +412,7 @@ public class Struct extends StructuredFieldValue {
                 throw new NullPointerException("Null values in Struct not supported, use removeFieldValue() to remove value instead.");
             }
 
+            Struct.this.getValue(id); // Deserialize any serialized value, to return it
             int index = values.getIndexOfKey(id);
             FieldValue retVal = null;
             if (index == -1) {
@@ -335,7 +442,7 @@ public class Struct extends StructuredFieldValue {
     private class FieldSet extends AbstractSet<Map.Entry<Field, FieldValue>> {
         @Override
         public int size() {
-            return values.size();
+            return getFieldCount();
         }
 
         @Override
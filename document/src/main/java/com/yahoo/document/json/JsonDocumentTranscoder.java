@@ -0,0 +1,210 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.json.document.DocumentParser;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.text.Text;
+import com.yahoo.text.Utf8;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Comparator.comparingInt;
+
+/**
+ * Transcodes JSON document puts directly from the token stream to the binary format written by
+ * {@link com.yahoo.document.serialization.VespaDocumentSerializer6}, without creating a {@link Document}
+ * with its field values first. Fields of primitive types, and arrays of these, are transcoded. Puts with other
+ * content, or which are invalid, are not, and must be read by a {@link JsonReader} instead, which also gives
+ * the proper error messages.
+ *
+ * @author bratseth
+ */
+public class JsonDocumentTranscoder {
+
+    private static final NotTranscodable notTranscodable = new NotTranscodable();
+
+    private final DocumentTypeManager types;
+    private final JsonFactory factory;
+
+    public JsonDocumentTranscoder(DocumentTypeManager types, JsonFactory factory) {
+        this.types = types;
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the serialized document of the given JSON document put, which has the given id,
+     * or empty if this put must be read by a {@link JsonReader} instead.
+     */
+    public Optional<byte[]> transcodePut(DocumentId id, byte[] json) {
+        DocumentType type = types.getDocumentType(id.getDocType());
+        if (type == null || type.contentStruct().getCompressor().type() != CompressionType.NONE)
+            return Optional.empty();
+
+        try (JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return Optional.empty();
+
+            Fields fields = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                // Only "fields" is transcoded, as other members may change the operation, e.g., its condition.
+                if (fields != null || ! DocumentParser.FIELDS.equals(parser.getCurrentName()))
+                    return Optional.empty();
+
+                fields = readFields(parser, type);
+            }
+            if (fields == null)
+                return Optional.empty();
+
+            return Optional.of(write(id, type, fields));
+        }
+        catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Fields readFields(JsonParser parser, DocumentType type) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT)
+            throw notTranscodable;
+
+        Fields fields = new Fields();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Field field = type.getField(parser.getCurrentName());
+            if (field == null)
+                throw notTranscodable;
+
+            if (parser.nextToken() == JsonToken.VALUE_NULL)
+                continue;
+
+            fields.add(field, parser);
+        }
+        return fields;
+    }
+
+    private static void writeValue(DataType type, JsonParser parser, GrowableByteBuffer out) throws IOException {
+        if (type instanceof ArrayDataType) {
+            DataType nestedType = ((ArrayDataType) type).getNestedType();
+            if (parser.currentToken() != JsonToken.START_ARRAY)
+                throw notTranscodable;
+
+            GrowableByteBuffer elements = new GrowableByteBuffer(256);
+            int count = 0;
+            for ( ; parser.nextToken() != JsonToken.END_ARRAY; count++)
+                writePrimitive(nestedType, parser, elements);
+
+            out.putInt1_2_4Bytes(count);
+            out.put(elements.array(), 0, elements.position());
+        }
+        else {
+            writePrimitive(type, parser, out);
+        }
+    }
+
+    /** Writes the given scalar as the given type, with the same conversions as {@link DataType#createFieldValue(Object)}. */
+    private static void writePrimitive(DataType type, JsonParser parser, GrowableByteBuffer out) throws IOException {
+        if ( ! parser.currentToken().isScalarValue() || parser.currentToken() == JsonToken.VALUE_NULL)
+            throw notTranscodable;
+
+        String text = parser.getText();
+        if (type.equals(DataType.STRING)) {
+            if (Text.validateTextString(text).isPresent())
+                throw notTranscodable;
+
+            byte[] utf8 = Utf8.toBytes(text);
+            out.put((byte) 0); // No span trees.
+            out.putInt1_4Bytes(utf8.length + 1);
+            out.put(utf8);
+            out.put((byte) 0);
+        }
+        else if (type.equals(DataType.INT)) out.putInt(Integer.parseInt(text));
+        else if (type.equals(DataType.LONG)) out.putLong(Long.parseLong(text));
+        else if (type.equals(DataType.BYTE)) out.put(Byte.parseByte(text));
+        else if (type.equals(DataType.FLOAT)) out.putFloat(Float.parseFloat(text));
+        else if (type.equals(DataType.DOUBLE)) out.putDouble(Double.parseDouble(text));
+        else if (type.equals(DataType.BOOL)) out.put((byte) (Boolean.parseBoolean(text) ? 1 : 0));
+        else if (type.equals(DataType.RAW)) {
+            byte[] raw = Base64.getMimeDecoder().decode(text);
+            out.putInt(raw.length);
+            out.put(raw);
+        }
+        else throw notTranscodable;
+    }
+
+    /** Writes the document as {@link com.yahoo.document.serialization.VespaDocumentSerializer6} does. */
+    private static byte[] write(DocumentId id, DocumentType type, Fields fields) {
+        GrowableByteBuffer out = new GrowableByteBuffer(fields.values.position() + 10 * fields.entries.size() + 256);
+        out.putShort(Document.SERIALIZED_VERSION);
+        int lengthPosition = out.position();
+        out.putInt(0); // Filled in when the length is known.
+
+        out.put(id.getScheme().toUtf8().getBytes());
+        out.put((byte) 0);
+        out.put((byte) (fields.entries.isEmpty() ? 0x01 : 0x03)); // Document type, and header struct if there are fields.
+        out.put(Utf8.toBytes(type.getName()));
+        out.put((byte) 0);
+        out.putShort((short) 0); // Document type version, which is always 0.
+
+        if ( ! fields.entries.isEmpty()) {
+            fields.entries.sort(comparingInt(entry -> entry[0])); // Fields are serialized in order of their ids.
+            out.putInt(fields.values.position());
+            out.put(CompressionType.NONE.getCode());
+            out.putInt1_4Bytes(fields.entries.size());
+            for (int[] entry : fields.entries) {
+                out.putInt1_4Bytes(entry[0]);
+                out.putInt2_4_8Bytes(entry[2]);
+            }
+            for (int[] entry : fields.entries)
+                out.put(fields.values.array(), entry[1], entry[2]);
+        }
+
+        int end = out.position();
+        out.position(lengthPosition);
+        out.putInt(end - lengthPosition - 4);
+        return Arrays.copyOf(out.array(), end);
+    }
+
+    /** Serialized field values, in the order they were read, with their field ids, offsets and lengths. */
+    private static class Fields {
+
+        private final GrowableByteBuffer values = new GrowableByteBuffer(4096);
+        private final List<int[]> entries = new ArrayList<>();
+        private final Set<Integer> ids = new HashSet<>();
+
+        void add(Field field, JsonParser parser) throws IOException {
+            if ( ! ids.add(field.getId())) // The last value is used when a field is repeated, so leave that to the reader.
+                throw notTranscodable;
+
+            int start = values.position();
+            writeValue(field.getDataType(), parser, values);
+            entries.add(new int[] { field.getId(), start, values.position() - start });
+        }
+
+    }
+
+    /** Thrown when the put must be read by a {@link JsonReader} instead. Has no stack trace, as it is not an error. */
+    private static class NotTranscodable extends RuntimeException {
+
+        NotTranscodable() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
@@ -83,14 +83,24 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
 
     private final Compressor compressor = new Compressor();
     private DocumentTypeManager manager;
+    private final boolean lazyFields;
     private short version;
     private List<SpanNode> spanNodes;
     private List<Annotation> annotations;
     private int[] stringPositions;
 
     VespaDocumentDeserializer6(DocumentTypeManager manager, GrowableByteBuffer buf) {
+        this(manager, buf, false);
+    }
+
+    /**
+     * Creates a deserializer which, if lazyFields is true, leaves the field values of documents in their serialized
+     * form until they are accessed. See {@link Struct#setSerializedFieldValue}.
+     */
+    VespaDocumentDeserializer6(DocumentTypeManager manager, GrowableByteBuffer buf, boolean lazyFields) {
         super(buf);
         this.manager = manager;
+        this.lazyFields = lazyFields;
         this.version = Document.SERIALIZED_VERSION;
     }
 
@@ -372,7 +382,13 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
             int posBefore = position();
             Integer f_id = fieldIdsAndLengths.get(i).first;
             Field structField = priType.getField(f_id);
-            if (structField != null) {
+            if (structField != null && lazyFields) {
+                // The decompressed data is our own copy, so it is safe to keep.
+                primary.setSerializedFieldValue(structField,
+                                                ByteBuffer.wrap(destination, posBefore, fieldIdsAndLengths.get(i).second.intValue()),
+                                                manager);
+            }
+            else if (structField != null) {
                 FieldValue value = structField.getDataType().createFieldValue();
                 value.deserialize(structField, this);
                 primary.setFieldValue(structField, value);
@@ -334,7 +334,12 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         for (Map.Entry<Field, FieldValue> value : s.getFields()) {
 
             int startPos = buffer.position();
-            value.getValue().serialize(value.getKey(), this);
+            ByteBuffer serialized = s.getSerializedFieldValue(value.getKey());
+            if (serialized != null) {
+                buffer.put(serialized);
+            } else {
+                value.getValue().serialize(value.getKey(), this);
+            }
 
             fieldLengths.add(buffer.position() - startPos);
             fieldIds.add(value.getKey().getId());
@@ -0,0 +1,116 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.StructDataType;
+import com.yahoo.document.WeightedSetDataType;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class JsonDocumentTranscoderTest {
+
+    private final JsonFactory factory = new JsonFactory();
+    private final DocumentTypeManager types = new DocumentTypeManager();
+    {
+        DocumentType type = new DocumentType("music");
+        type.addField(new Field("artist", DataType.STRING));
+        type.addField(new Field("year", DataType.INT));
+        type.addField(new Field("plays", DataType.LONG));
+        type.addField(new Field("rating", DataType.BYTE));
+        type.addField(new Field("score", DataType.FLOAT));
+        type.addField(new Field("price", DataType.DOUBLE));
+        type.addField(new Field("live", DataType.BOOL));
+        type.addField(new Field("cover", DataType.RAW));
+        type.addField(new Field("tracks", new ArrayDataType(DataType.STRING)));
+        type.addField(new Field("lengths", new ArrayDataType(DataType.INT)));
+        type.addField(new Field("tags", new WeightedSetDataType(DataType.STRING, false, false)));
+        StructDataType label = new StructDataType("label");
+        label.addField(new Field("name", DataType.STRING));
+        type.addField(new Field("label", label));
+        types.registerDocumentType(type);
+    }
+    private final JsonDocumentTranscoder transcoder = new JsonDocumentTranscoder(types, factory);
+
+    @Test
+    public void transcodedPutIsSerializedLikeTheDocumentReadFromTheSameJson() {
+        assertTranscoded("id:ns:music::1",
+                         "{" +
+                         "  \"fields\": {" +
+                         "    \"tracks\": [ \"Downtown Train\", \"Jersey Girl\", \"\\u00c6\\u00d8\\u00c5 \\ud83c\\udfb5\" ]," +
+                         "    \"artist\": \"Tom Waits\"," +
+                         "    \"year\": 1985," +
+                         "    \"plays\": \"12345678901234\"," +
+                         "    \"rating\": -3," +
+                         "    \"score\": 4.5," +
+                         "    \"price\": 1e-3," +
+                         "    \"live\": true," +
+                         "    \"cover\": \"AQIDBA==\"," +
+                         "    \"lengths\": [ 1, 2, 300000 ]," +
+                         "    \"tags\": null" +
+                         "  }" +
+                         "}");
+        assertTranscoded("id:ns:music:n=1:2",
+                         "{ \"fields\": { \"lengths\": [], \"live\": \"false\", \"artist\": \"\" } }");
+        assertTranscoded("id:ns:music::empty", "{ \"fields\": { } }");
+    }
+
+    @Test
+    public void putsWhichAreUnsupportedOrInvalidAreLeftToTheReader() {
+        // Unsupported field types.
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"label\": { \"name\": \"Island\" } } }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"tags\": { \"rock\": 1 } } }");
+        // Members other than "fields", which may change the operation.
+        assertNotTranscoded("id:ns:music::1", "{ \"condition\": \"music.year > 1980\", \"fields\": { \"year\": 1985 } }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"year\": 1985 }, \"create\": true }");
+        // Repeated fields, where the last value is the one to keep.
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"year\": 1985, \"year\": 1986 } }");
+        // Invalid puts, for which the reader gives the error message.
+        assertNotTranscoded("id:ns:music::1", "{ }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"genre\": \"blues\" } }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"year\": 1985.5 } }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"tracks\": [ null ] } }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"tracks\": \"Jersey Girl\" } }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"artist\": \"\\u0000\" } }");
+        assertNotTranscoded("id:ns:music::1", "{ \"fields\": { \"artist\": ");
+        assertNotTranscoded("id:ns:movie::1", "{ \"fields\": { } }");
+    }
+
+    private void assertTranscoded(String id, String json) {
+        Optional<byte[]> transcoded = transcoder.transcodePut(new DocumentId(id), json.getBytes(UTF_8));
+        assertTrue("Transcoded " + json, transcoded.isPresent());
+        assertArrayEquals(serializedByReader(id, json), transcoded.get());
+    }
+
+    private void assertNotTranscoded(String id, String json) {
+        assertEquals(Optional.empty(), transcoder.transcodePut(new DocumentId(id), json.getBytes(UTF_8)));
+    }
+
+    private byte[] serializedByReader(String id, String json) {
+        DocumentPut put = (DocumentPut) new JsonReader(types, new ByteArrayInputStream(json.getBytes(UTF_8)), factory)
+                .readSingleDocument(DocumentOperationType.PUT, id);
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        DocumentSerializerFactory.create6(buffer).write(put.getDocument());
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+}
@@ -20,7 +20,18 @@ import com.yahoo.io.GrowableByteBuffer;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -57,6 +68,87 @@ public class VespaDocumentSerializerTestCase {
         Mockito.verify(predicate, Mockito.times(1)).serialize(Mockito.same(field), Mockito.any(FieldWriter.class));
     }
 
+    @Test
+    public void lazily_deserialized_fields_are_deserialized_on_access_and_otherwise_copied() {
+        DocumentType docType = new DocumentType("my_type");
+        docType.addField("my_str", DataType.STRING);
+        docType.addField("my_int", DataType.INT);
+        DocumentTypeManager manager = new DocumentTypeManager();
+        manager.registerDocumentType(docType);
+        Field strField = docType.getField("my_str");
+        Field intField = docType.getField("my_int");
+        Document doc = new Document(docType, "id:ns:my_type::");
+        doc.setFieldValue(strField, new StringFieldValue("foo"));
+        doc.setFieldValue(intField, new IntegerFieldValue(69));
+        byte[] serialized = SerializationTestUtils.serializeDocument(doc);
+
+        Document lazy = new Document(DocumentDeserializerFactory.createLazyHead(manager, GrowableByteBuffer.wrap(serialized)));
+        Struct fields = lazy.getHeader();
+        assertEquals(2, lazy.getFieldCount());
+        assertNotNull(fields.getSerializedFieldValue(strField));
+        assertNotNull(fields.getSerializedFieldValue(intField));
+        assertArrayEquals(serialized, SerializationTestUtils.serializeDocument(lazy));
+        assertEquals(doc, lazy.clone());
+        assertNotNull(fields.getSerializedFieldValue(strField));
+
+        assertEquals(new StringFieldValue("foo"), lazy.getFieldValue(strField));
+        assertNull(fields.getSerializedFieldValue(strField));
+        assertNotNull(fields.getSerializedFieldValue(intField));
+        assertArrayEquals(serialized, SerializationTestUtils.serializeDocument(lazy));
+
+        lazy.setFieldValue(intField, new IntegerFieldValue(42));
+        doc.setFieldValue(intField, new IntegerFieldValue(42));
+        assertNull(fields.getSerializedFieldValue(intField));
+        assertEquals(2, lazy.getFieldCount());
+        assertArrayEquals(SerializationTestUtils.serializeDocument(doc), SerializationTestUtils.serializeDocument(lazy));
+
+        lazy = new Document(DocumentDeserializerFactory.createLazyHead(manager, GrowableByteBuffer.wrap(serialized)));
+        assertEquals(new IntegerFieldValue(69), lazy.removeFieldValue(intField));
+        assertEquals(1, lazy.getFieldCount());
+        assertEquals(new StringFieldValue("foo"), lazy.iterator().next().getValue());
+    }
+
+    @Test
+    public void lazily_deserialized_fields_can_be_read_concurrently() throws Exception {
+        DocumentType docType = new DocumentType("my_type");
+        for (int i = 0; i < 64; i++)
+            docType.addField("my_str_" + i, DataType.STRING);
+        DocumentTypeManager manager = new DocumentTypeManager();
+        manager.registerDocumentType(docType);
+        Document doc = new Document(docType, "id:ns:my_type::");
+        for (Field field : docType.getFields())
+            doc.setFieldValue(field, new StringFieldValue(field.getName()));
+        byte[] serialized = SerializationTestUtils.serializeDocument(doc);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 100; round++) {
+                Document lazy = new Document(DocumentDeserializerFactory.createLazyHead(manager, GrowableByteBuffer.wrap(serialized)));
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<?>> readers = new ArrayList<>();
+                for (int thread = 0; thread < threads; thread++) {
+                    int offset = thread;
+                    readers.add(executor.submit(() -> {
+                        start.await();
+                        List<Field> fields = new ArrayList<>(docType.getFields());
+                        Collections.rotate(fields, offset * 8);
+                        for (Field field : fields)
+                            assertEquals(new StringFieldValue(field.getName()), lazy.getFieldValue(field));
+                        assertEquals(64, lazy.getFieldCount());
+                        return null;
+                    }));
+                }
+                for (Future<?> reader : readers)
+                    reader.get();
+                assertEquals(doc, lazy);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
     static class CompressionFixture {
 
         static final String COMPRESSABLE_STRING = "zippy zip mc zippington the 3rd zippy zip";
@@ -58,7 +58,7 @@ final class RoutableRepository {
             log.log(Level.SEVERE,"Can not decode anything from (version " + version + "). Only major version 5 and up supported.");
             return null;
         }
-        DocumentDeserializer in = DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data));
+        DocumentDeserializer in = DocumentDeserializerFactory.createLazyHead(docMan, GrowableByteBuffer.wrap(data));
 
 
         int type = in.getInt(null);
@@ -6,6 +6,8 @@ import java.nio.ByteBuffer;
 
 
 class Buffer {
+    private final BufferPool pool;
+    private final boolean    direct;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
@@ -55,18 +57,46 @@ class Buffer {
             if (buf.capacity() + free < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = allocate(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
+            free(buf);
             buf = tmp;
             readPos = 0;
         }
     }
 
+    private ByteBuffer allocate(int size) {
+        if (pool == null || size == 0) {
+            return ByteBuffer.allocate(size);
+        }
+        return pool.acquire(size, direct);
+    }
+
+    private void free(ByteBuffer buffer) {
+        if (pool != null) {
+            pool.release(buffer);
+        }
+    }
+
     public Buffer(int size) {
-        buf = ByteBuffer.allocate(size);
+        this(size, null, false);
+    }
+
+    /**
+     * Create a buffer which takes its underlying buffers from the
+     * given pool and returns them to it when they are replaced.
+     *
+     * @param size initial size
+     * @param pool the pool to use, or null to allocate heap buffers
+     * @param direct whether to use direct buffers from the pool
+     **/
+    public Buffer(int size, BufferPool pool, boolean direct) {
+        this.pool = pool;
+        this.direct = direct;
+        buf = allocate(size);
         readPos = 0;
         writePos = 0;
         readMode = false;
@@ -79,11 +109,16 @@ class Buffer {
         if (used > size || buf.capacity() <= size) {
             return false;
         }
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        ByteBuffer tmp = allocate(size);
+        if (tmp.capacity() >= buf.capacity()) {
+            free(tmp);
+            return false;
+        }
         tmp.order(buf.order());
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
+        free(buf);
         buf = tmp;
         readPos = 0;
         writePos = used;
@@ -103,6 +138,25 @@ class Buffer {
         return buf;
     }
 
+    /**
+     * Give away the underlying buffer, replacing it with a new one
+     * holding the bytes not yet read. Used when values decoded from
+     * the underlying buffer keep references to it.
+     *
+     * @return the buffer given away
+     **/
+    public ByteBuffer detach() {
+        setReadMode();
+        ByteBuffer detached = buf;
+        buf = allocate(detached.remaining());
+        buf.order(detached.order());
+        buf.put(detached.duplicate());
+        readPos = 0;
+        writePos = buf.position();
+        readMode = false;
+        return detached;
+    }
+
     public ByteBuffer getWritable(int minFree) {
         setWriteMode();
         ensureFree(minFree);
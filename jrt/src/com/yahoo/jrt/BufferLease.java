@@ -0,0 +1,59 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A read buffer shared by the data values decoded as views into it.
+ * The buffer is returned to its pool when the connection and all
+ * the values have released it. Values which are never released just
+ * leave the buffer to the garbage collector.
+ **/
+class BufferLease
+{
+    private final ByteBuffer buffer;
+    private final BufferPool pool;
+    private final int minViewSize;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Create a lease held by the caller
+     *
+     * @param buffer the leased buffer
+     * @param pool the pool to return the buffer to
+     * @param minViewSize the minimum size of data values decoded as
+     *                    views into the buffer rather than copied
+     **/
+    BufferLease(ByteBuffer buffer, BufferPool pool, int minViewSize) {
+        this.buffer = buffer;
+        this.pool = pool;
+        this.minViewSize = minViewSize;
+    }
+
+    /**
+     * @return whether a data value of the given size should be a view into the leased buffer
+     **/
+    boolean useView(int size) {
+        return size >= minViewSize;
+    }
+
+    void retain() {
+        references.incrementAndGet();
+    }
+
+    /**
+     * @return whether someone other than the creator of this lease holds it
+     **/
+    boolean isShared() {
+        return references.get() > 1;
+    }
+
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            pool.release(buffer);
+        }
+    }
+}
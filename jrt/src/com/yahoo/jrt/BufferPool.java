@@ -0,0 +1,128 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+
+/**
+ * A pool of byte buffers with power of two sizes, shared by the
+ * connections of a transport thread. Connection buffers are taken
+ * from the pool when they grow and returned when they are replaced,
+ * and received data values may be views into pooled buffers which
+ * are returned when the values are released (see {@link BufferLease}).
+ * Buffers may be returned from any thread.
+ **/
+class BufferPool
+{
+    static final int MIN_SIZE = 4 * 1024;
+    static final int MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+    private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+
+    private final long maxPooledBytes;
+    private final ArrayDeque<ByteBuffer>[] heap = freeLists();
+    private final ArrayDeque<ByteBuffer>[] direct = freeLists();
+    private long pooledBytes = 0;
+
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<ByteBuffer>[] freeLists() {
+        ArrayDeque<ByteBuffer>[] lists = new ArrayDeque[CLASSES];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new ArrayDeque<>();
+        }
+        return lists;
+    }
+
+    /**
+     * Returns the size class of buffers of at least the given size,
+     * or -1 if buffers of this size are not pooled.
+     **/
+    private static int sizeClass(int size) {
+        if (size > MAX_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    /**
+     * Create a pool
+     *
+     * @param maxPooledBytes the max total capacity of the buffers
+     *                       kept in this pool when not in use
+     **/
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * Obtain a cleared, big endian buffer with at least the given
+     * capacity, which should be returned to this pool by calling
+     * {@link #release} when it is no longer used.
+     *
+     * @return a buffer with capacity of at least minSize
+     * @param minSize the minimum capacity of the buffer
+     * @param direct whether to return a direct buffer
+     **/
+    ByteBuffer acquire(int minSize, boolean direct) {
+        int sizeClass = sizeClass(minSize);
+        if (sizeClass < 0) {
+            return allocate(minSize, direct);
+        }
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = freeList(direct, sizeClass).pollLast();
+            if (buffer != null) {
+                pooledBytes -= buffer.capacity();
+            }
+        }
+        if (buffer == null) {
+            return allocate(MIN_SIZE << sizeClass, direct);
+        }
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to this pool. The buffer must not be used by
+     * the caller after this. Buffers not obtained from this pool are
+     * ignored.
+     *
+     * @param buffer the buffer to return
+     **/
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity < MIN_SIZE || capacity > MAX_SIZE || Integer.bitCount(capacity) != 1 || buffer.isReadOnly()) {
+            return;
+        }
+        synchronized (this) {
+            if (pooledBytes + capacity > maxPooledBytes) {
+                return;
+            }
+            freeList(buffer.isDirect(), sizeClass(capacity)).addLast(buffer);
+            pooledBytes += capacity;
+        }
+    }
+
+    /**
+     * @return the total capacity of the buffers currently kept in this pool
+     **/
+    synchronized long pooledBytes() {
+        return pooledBytes;
+    }
+
+    private ArrayDeque<ByteBuffer> freeList(boolean direct, int sizeClass) {
+        return direct ? this.direct[sizeClass] : this.heap[sizeClass];
+    }
+
+    private static ByteBuffer allocate(int size, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+}
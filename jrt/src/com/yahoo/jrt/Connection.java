@@ -6,10 +6,13 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,25 +26,28 @@ class Connection extends Target {
     private static final int READ_REDO  = 10;
     private static final int WRITE_SIZE = 16*1024;
     private static final int WRITE_REDO = 10;
+    private static final int GATHER_SIZE = 64*1024; // data values at least this large are written without copying
 
     private static final int INITIAL    = 0;
     private static final int CONNECTING = 1;
     private static final int CONNECTED  = 2;
     private static final int CLOSED     = 3;
 
-    private int state = INITIAL;
-    private final Queue  queue   = new Queue();
-    private final Queue  myQueue = new Queue();
-    private final Buffer input   = new Buffer(0); // Start off with empty buffer.
-    private final Buffer output  = new Buffer(0); // Start off with empty buffer.
+    private volatile int state = INITIAL;
+    private final ConcurrentLinkedQueue<Packet> queue = new ConcurrentLinkedQueue<>();
+    private final Buffer input;
+    private final Buffer output;
+    private final List<ByteBuffer> gathered = new ArrayList<>(); // to be written after the output buffer
     private final int maxInputSize;
     private final int maxOutputSize;
     private final boolean dropEmptyBuffers;
+    private final int zeroCopyDataSize;
     private final boolean tcpNoDelay;
-    private final Map<Integer, ReplyHandler> replyMap = new HashMap<>();
+    private final ReplyTable replies = new ReplyTable();
+    private final TransportMetrics metrics = TransportMetrics.getInstance();
     private final Map<TargetWatcher, TargetWatcher> watchers = new IdentityHashMap<>();
     private int activeReqs = 0;
-    private int writeWork  = 0;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false); // whether there is, or will be, a write event for queued packets
     private boolean pendingHandshakeWork = false;
     private final TransportThread parent;
     private final Supervisor owner;
@@ -61,12 +67,11 @@ class Connection extends Target {
         boolean live = (state == CONNECTED);
         boolean down = (state == CLOSED);
         boolean fini;
-        boolean pendingWrite;
         synchronized (this) {
             this.state = state;
             fini = down && (activeReqs == 0);
-            pendingWrite = (writeWork > 0);
         }
+        boolean pendingWrite = writeScheduled.get(); // read after setting state, see postPacket
         if (live) {
             enableRead();
             if (pendingWrite) {
@@ -77,7 +82,7 @@ class Connection extends Target {
             owner.sessionLive(this);
         }
         if (down) {
-            for (ReplyHandler rh : replyMap.values()) {
+            for (ReplyHandler rh : replies.removeAll()) {
                 rh.handleConnectionDown();
             }
             for (TargetWatcher watcher : watchers.values()) {
@@ -98,9 +103,12 @@ class Connection extends Target {
         this.socket = parent.transport().createServerCryptoSocket(channel);
         this.spec = null;
         this.tcpNoDelay = tcpNoDelay;
+        input = new Buffer(0, parent.bufferPool(), owner.getDirectBuffers()); // Start off with empty buffer.
+        output = new Buffer(0, parent.bufferPool(), owner.getDirectBuffers()); // Start off with empty buffer.
         maxInputSize = owner.getMaxInputBufferSize();
         maxOutputSize = owner.getMaxOutputBufferSize();
         dropEmptyBuffers = owner.getDropEmptyBuffers();
+        zeroCopyDataSize = owner.getZeroCopyDataSize();
         server = true;
         owner.sessionInit(this);
     }
@@ -111,9 +119,12 @@ class Connection extends Target {
         this.owner = owner;
         this.spec = spec;
         this.tcpNoDelay = tcpNoDelay;
+        input = new Buffer(0, parent.bufferPool(), owner.getDirectBuffers()); // Start off with empty buffer.
+        output = new Buffer(0, parent.bufferPool(), owner.getDirectBuffers()); // Start off with empty buffer.
         maxInputSize = owner.getMaxInputBufferSize();
         maxOutputSize = owner.getMaxOutputBufferSize();
         dropEmptyBuffers = owner.getDropEmptyBuffers();
+        zeroCopyDataSize = owner.getZeroCopyDataSize();
         server = false;
         owner.sessionInit(this);
     }
@@ -129,38 +140,61 @@ class Connection extends Target {
         return i;
     }
 
-    public synchronized boolean cancelReply(ReplyHandler handler) {
+    public boolean cancelReply(ReplyHandler handler) {
         if (state == CLOSED) {
             return false;
         }
-        ReplyHandler stored = replyMap.remove(handler.key());
-        if (stored != handler) {
-            if (stored != null) {
-                replyMap.put(handler.key(), stored);
-            }
-            return false;
-        }
-        return true;
+        return replies.remove(handler.key(), handler);
     }
 
+    /**
+     * Queue a packet for writing. This may be called by any number of
+     * threads concurrently without locking the connection.
+     *
+     * @return whether the packet was accepted. If the packet is not
+     *         accepted, the reply handler will not be called.
+     * @param packet the packet to write
+     * @param handler the handler of the reply to the packet, or null
+     **/
     public boolean postPacket(Packet packet, ReplyHandler handler) {
-        boolean accepted = false;
-        boolean enableWrite = false;
-        synchronized (this) {
-            if (state <= CONNECTED) {
-                enableWrite = (writeWork == 0 && state == CONNECTED);
-                queue.enqueue(packet);
-                writeWork++;
-                accepted = true;
-                if (handler != null) {
-                    replyMap.put(handler.key(), handler);
-                }
-            }
+        return postPacket(packet, handler, true);
+    }
+
+    /**
+     * Queue a packet for writing, optionally without making sure the
+     * transport thread will write it. Packets queued without flushing
+     * must be followed by a call to {@link #flushPackets}, which lets
+     * a batch of packets be written together after a single wakeup of
+     * the transport thread.
+     *
+     * @return whether the packet was accepted
+     * @param packet the packet to write
+     * @param handler the handler of the reply to the packet, or null
+     * @param flush whether to make sure the packet will be written
+     **/
+    boolean postPacket(Packet packet, ReplyHandler handler, boolean flush) {
+        if (handler != null) {
+            // register before checking the state, such that either we see
+            // the connection closed, or the close sees (and notifies) the handler
+            replies.put(handler.key(), handler);
+        }
+        if (state == CLOSED) {
+            return (handler != null) && ! replies.remove(handler.key(), handler);
         }
-        if (enableWrite) {
+        queue.add(packet);
+        if (flush) {
+            flushPackets();
+        }
+        return true;
+    }
+
+    /**
+     * Make sure all queued packets will be written.
+     **/
+    void flushPackets() {
+        if (writeScheduled.compareAndSet(false, true) && state == CONNECTED) {
             parent.enableWrite(this);
         }
-        return accepted;
     }
 
     public boolean postPacket(Packet packet) {
@@ -274,17 +308,24 @@ class Connection extends Target {
                 break;
             }
             owner.readPacket(info);
+            BufferLease lease = null;
+            if (zeroCopyDataSize > 0 && info.packetLength() >= zeroCopyDataSize) {
+                lease = new BufferLease(rb, parent.bufferPool(), zeroCopyDataSize);
+            }
             Packet packet;
             try {
-                packet = info.decodePacket(rb);
+                packet = info.decodePacket(rb, lease);
             } catch (RuntimeException e) {
                 log.log(Level.WARNING, "got garbage; closing connection: " + toString());
                 throw new IOException("jrt: decode error", e);
             }
-            ReplyHandler handler;
-            synchronized (this) {
-                handler = replyMap.remove(packet.requestId());
+            if (lease != null && lease.isShared()) {
+                // values are views into the read buffer: hand it over to them before they escape
+                input.detach();
+                lease.release();
+                rb = input.getReadable();
             }
+            ReplyHandler handler = replies.remove(packet.requestId());
             if (handler != null) {
                 handler.handleReply(packet);
             } else {
@@ -326,45 +367,50 @@ class Connection extends Target {
     }
 
     private void write() throws IOException {
-        synchronized (this) {
-            queue.flush(myQueue);
-        }
         for (int i = 0; i < WRITE_REDO; i++) {
-            while (output.bytes() < WRITE_SIZE) {
-                Packet packet = (Packet) myQueue.dequeue();
+            int packets = 0;
+            while (gathered.isEmpty() && output.bytes() < WRITE_SIZE) {
+                Packet packet = queue.poll();
                 if (packet == null) {
                     break;
                 }
+                packets++;
                 PacketInfo info = packet.getPacketInfo();
-                ByteBuffer wb = output.getWritable(info.packetLength());
+                int gatherable = packet.gatherableBytes(GATHER_SIZE);
+                ByteBuffer wb = output.getWritable(info.packetLength() - gatherable);
                 owner.writePacket(info);
-                info.encodePacket(packet, wb);
+                if (gatherable > 0) {
+                    info.encodePacket(packet, wb, GATHER_SIZE, gathered);
+                } else {
+                    info.encodePacket(packet, wb);
+                }
             }
             ByteBuffer rb = output.getReadable();
-            if (rb.remaining() == 0) {
+            if (rb.remaining() == 0 && gathered.isEmpty()) {
                 break;
             }
-            socket.write(rb);
-            if (rb.remaining() > 0) {
+            if (packets > 0) {
+                metrics.addPacketWrite(packets);
+            }
+            if (gathered.isEmpty()) {
+                socket.write(rb);
+            } else {
+                writeGathered(rb);
+            }
+            if (rb.remaining() > 0 || ! gathered.isEmpty()) {
                 break;
             }
         }
-        int myWriteWork = 0;
-        if (output.bytes() > 0) {
-            myWriteWork++;
-        }
+        boolean pendingWrite = (output.bytes() > 0 || ! gathered.isEmpty());
         if (socket.flush() == CryptoSocket.FlushResult.NEED_WRITE) {
-            myWriteWork++;
-        }
-        boolean disableWrite;
-        synchronized (this) {
-            writeWork = queue.size()
-                        + myQueue.size()
-                        + myWriteWork;
-            disableWrite = (writeWork == 0);
+            pendingWrite = true;
         }
-        if (disableWrite) {
-            disableWrite();
+        if ( ! pendingWrite) {
+            // let the next posted packet enable writing, unless one was posted since we looked
+            writeScheduled.set(false);
+            if (queue.isEmpty() || ! writeScheduled.compareAndSet(false, true)) {
+                disableWrite();
+            }
         }
         if (dropEmptyBuffers) {
             socket.dropEmptyBuffers();
@@ -375,6 +421,20 @@ class Connection extends Target {
         }
     }
 
+    private void writeGathered(ByteBuffer rb) throws IOException {
+        ByteBuffer[] srcs = new ByteBuffer[gathered.size() + 1];
+        srcs[0] = rb;
+        for (int i = 0; i < gathered.size(); i++) {
+            srcs[i + 1] = gathered.get(i);
+        }
+        socket.write(srcs);
+        int written = 0;
+        while (written < gathered.size() && ! gathered.get(written).hasRemaining()) {
+            written++;
+        }
+        gathered.subList(0, written).clear();
+    }
+
     public void handleWriteEvent() throws IOException {
         if (state == CONNECTED) {
             write();
@@ -479,6 +539,17 @@ class Connection extends Target {
         new InvocationClient(this, req, timeout, waiter).invoke();
     }
 
+    public void invokeAsyncBatch(List<Request> requests, double timeout,
+                                 RequestWaiter waiter) {
+        if (timeout < 0.0) {
+            timeout = 0.0;
+        }
+        for (Request req : requests) {
+            new InvocationClient(this, req, timeout, waiter).invoke(false);
+        }
+        flushPackets();
+    }
+
     public boolean invokeVoid(Request req) {
         return postPacket(new RequestPacket(Packet.FLAG_NOREPLY,
                                             allocateKey(),
@@ -82,6 +82,23 @@ public interface CryptoSocket {
      **/
     public int write(ByteBuffer src) throws IOException;
 
+    /**
+     * Write the given buffers in order, with the same semantics as a
+     * gathering socket write. The default implementation writes one
+     * buffer at a time, stopping at the first buffer not completely
+     * written.
+     **/
+    default public long write(ByteBuffer[] srcs) throws IOException {
+        long written = 0;
+        for (ByteBuffer src : srcs) {
+            written += write(src);
+            if (src.hasRemaining()) {
+                break;
+            }
+        }
+        return written;
+    }
+
     public enum FlushResult { DONE, NEED_WRITE }
 
     /**
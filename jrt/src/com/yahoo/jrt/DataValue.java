@@ -7,17 +7,29 @@ import java.nio.ByteBuffer;
 
 /**
  * Data value (a sequence of bytes)
+ *
+ * <p>Large received data values may be views into the read buffer of
+ * the connection rather than copies (see {@link
+ * Supervisor#setZeroCopyDataSize}). Such values should be {@link
+ * #release released} when they are no longer needed, to let the
+ * buffer be reused.</p>
  **/
 public class DataValue extends Value
 {
-    private final byte[] value;
+    private byte[] value;
+    private ByteBuffer view;
+    private BufferLease lease;
+    private final int size;
 
     /**
      * Create from a Java-type value
      *
      * @param value the value
      **/
-    public DataValue(byte[] value) { this.value = value; }
+    public DataValue(byte[] value) {
+        this.value = value;
+        this.size = value.length;
+    }
 
     /**
      * Create by decoding the value from the given buffer
@@ -25,9 +37,29 @@ public class DataValue extends Value
      * @param src buffer where the value is stored
      **/
     DataValue(ByteBuffer src) {
-        int size = src.getInt();
-        value = new byte[size];
-        src.get(value);
+        this(src, null);
+    }
+
+    /**
+     * Create by decoding the value from the given buffer, as a view
+     * into the buffer if it is leased and the value is large enough
+     *
+     * @param src buffer where the value is stored
+     * @param lease the lease of the buffer, or null if it is not leased
+     **/
+    DataValue(ByteBuffer src, BufferLease lease) {
+        size = src.getInt();
+        if (lease != null && lease.useView(size)) {
+            ByteBuffer slice = src.slice();
+            slice.limit(size);
+            view = slice.asReadOnlyBuffer();
+            src.position(src.position() + size);
+            lease.retain();
+            this.lease = lease;
+        } else {
+            value = new byte[size];
+            src.get(value);
+        }
     }
 
     /**
@@ -36,13 +68,76 @@ public class DataValue extends Value
     public byte type() { return DATA; }
     public int count() { return 1; }
 
-    int bytes() { return 4 + value.length; }
+    int bytes() { return 4 + size; }
     void encode(ByteBuffer dst) {
-        dst.putInt(value.length);
-        dst.put(value);
+        dst.putInt(size);
+        if (value != null) {
+            dst.put(value);
+        } else {
+            dst.put(view().duplicate());
+        }
+    }
+
+    /**
+     * @return the backing array of this, if this is not a view into a buffer
+     **/
+    byte[] array() { return value; }
+
+    /**
+     * Returns the contents of this. If this is a view into a read
+     * buffer, the contents are copied into an array the first time
+     * this is called.
+     **/
+    @Override
+    public byte[] asData() {
+        if (value == null) {
+            byte[] copy = new byte[size];
+            view().duplicate().get(copy);
+            value = copy;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the contents of this as a read-only buffer, without
+     * copying them. The returned buffer must not be used after this
+     * value is released.
+     **/
+    @Override
+    public ByteBuffer asDataBuffer() {
+        if (value != null) {
+            return ByteBuffer.wrap(value).asReadOnlyBuffer();
+        }
+        return view().duplicate();
     }
 
-    public byte[] asData() { return value; }
+    /**
+     * Releases the read buffer this value is a view into, if any, so
+     * that it can be reused. The contents of this value must not be
+     * accessed after this, unless they have already been obtained as
+     * an array by calling {@link #asData}. Calling this more than once
+     * has no effect.
+     **/
+    @Override
+    public void release() {
+        BufferLease released;
+        synchronized (this) {
+            released = lease;
+            lease = null;
+            view = null;
+        }
+        if (released != null) {
+            released.release();
+        }
+    }
+
+    private ByteBuffer view() {
+        ByteBuffer view = this.view;
+        if (view == null) {
+            throw new IllegalStateException("This data value has been released");
+        }
+        return view;
+    }
 
     @Override
     public String toString() {
@@ -8,7 +8,7 @@ class InvocationClient implements ReplyHandler, Runnable {
     Request       req;
     double        timeout;
     RequestWaiter reqWaiter;
-    Integer       replyKey;
+    int           replyKey;
     Task          timeoutTask;
 
     public InvocationClient(Connection conn, Request req,
@@ -25,10 +25,14 @@ class InvocationClient implements ReplyHandler, Runnable {
     }
 
     public void invoke() {
+        invoke(true);
+    }
+
+    void invoke(boolean flush) {
         if (!conn.postPacket(new RequestPacket(0,
-                                               replyKey.intValue(),
+                                               replyKey,
                                                req.methodName(),
-                                               req.parameters()), this)) {
+                                               req.parameters()), this, flush)) {
             req.setError(ErrorCode.CONNECTION, "Connection error");
             reqWaiter.handleRequestDone(req);
             return;
@@ -36,7 +40,7 @@ class InvocationClient implements ReplyHandler, Runnable {
         timeoutTask.schedule(timeout);
     }
 
-    public Integer key() {
+    public int key() {
         return replyKey;
     }
 
@@ -3,6 +3,7 @@ package com.yahoo.jrt;
 
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 
 abstract class Packet
@@ -44,6 +45,25 @@ abstract class Packet
     public abstract int packetCode();
     public abstract void encode(ByteBuffer dst);
 
+    /**
+     * Returns the number of bytes of this packet which are contents
+     * of array backed data values of at least the given size, and
+     * may be written directly from those arrays.
+     **/
+    public int gatherableBytes(int minSize) {
+        return 0;
+    }
+
+    /**
+     * Encode this packet, except the contents of array backed data
+     * values of at least the given size, which are added to the
+     * given list of buffers to be written after dst, followed by the
+     * rest of the packet. See {@link Values#encode(ByteBuffer, int, List)}.
+     **/
+    public void encode(ByteBuffer dst, int minGatherSize, List<ByteBuffer> gathered) {
+        encode(dst);
+    }
+
     public PacketInfo getPacketInfo() {
         return new PacketInfo(bytes(), flags, packetCode(), requestId);
     }
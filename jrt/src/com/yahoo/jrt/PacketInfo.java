@@ -4,6 +4,7 @@ package com.yahoo.jrt;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.List;
 
 
 class PacketInfo
@@ -59,6 +60,14 @@ class PacketInfo
     }
 
     public Packet decodePacket(ByteBuffer src) {
+        return decodePacket(src, null);
+    }
+
+    /**
+     * Decode a packet where data values may be views into the source
+     * buffer if it is leased.
+     **/
+    public Packet decodePacket(ByteBuffer src, BufferLease lease) {
         int pos = src.position();
         int end = pos + packetLength;
         int limit = src.limit();
@@ -70,9 +79,9 @@ class PacketInfo
             }
             switch (packetCode) {
             case Packet.PCODE_REQUEST:
-                return new RequestPacket(flags, requestId, src);
+                return new RequestPacket(flags, requestId, src, lease);
             case Packet.PCODE_REPLY:
-                return new ReplyPacket(flags, requestId, src);
+                return new ReplyPacket(flags, requestId, src, lease);
             case Packet.PCODE_ERROR:
                 return new ErrorPacket(flags, requestId, src);
             }
@@ -85,9 +94,23 @@ class PacketInfo
     }
 
     public void encodePacket(Packet packet, ByteBuffer dst) {
+        encodePacket(packet, dst, 0, null);
+    }
+
+    /**
+     * Encode a packet, where the contents of array backed data values
+     * of at least the given size, and the bytes following each of
+     * them, are added to the given list of buffers to be written
+     * after dst rather than copied into it.
+     *
+     * @param minGatherSize the minimum size of data values to gather
+     * @param gathered where to add gathered buffers, or null to encode the entire packet into dst
+     **/
+    public void encodePacket(Packet packet, ByteBuffer dst, int minGatherSize, List<ByteBuffer> gathered) {
         int pos = dst.position();
-        int end = pos + packetLength;
+        int end = pos + packetLength - ((gathered == null) ? 0 : packet.gatherableBytes(minGatherSize));
         int limit = dst.limit();
+        int gatheredSize = (gathered == null) ? 0 : gathered.size();
         try {
             dst.limit(end);
             dst.putInt(packetLength - 4);
@@ -97,9 +120,16 @@ class PacketInfo
             if (reverseByteOrder()) {
                 dst.order(ByteOrder.LITTLE_ENDIAN);
             }
-            packet.encode(dst);
+            if (gathered == null) {
+                packet.encode(dst);
+            } else {
+                packet.encode(dst, minGatherSize, gathered);
+            }
         } catch (RuntimeException e) {
             dst.position(pos);
+            if (gathered != null) {
+                gathered.subList(gatheredSize, gathered.size()).clear();
+            }
             throw e;
         } finally {
             dst.order(ByteOrder.BIG_ENDIAN);
@@ -3,6 +3,7 @@ package com.yahoo.jrt;
 
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 
 class ReplyPacket extends Packet
@@ -18,9 +19,15 @@ class ReplyPacket extends Packet
 
     public ReplyPacket(int flags, int reqId,
                        ByteBuffer src)
+    {
+        this(flags, reqId, src, null);
+    }
+
+    public ReplyPacket(int flags, int reqId,
+                       ByteBuffer src, BufferLease lease)
     {
         super(flags, reqId);
-        returnValues = new Values(src);
+        returnValues = new Values(src, lease);
     }
 
     public int bytes() {
@@ -36,6 +43,16 @@ class ReplyPacket extends Packet
         returnValues.encode(dst);
     }
 
+    @Override
+    public int gatherableBytes(int minSize) {
+        return returnValues.gatherableBytes(minSize);
+    }
+
+    @Override
+    public void encode(ByteBuffer dst, int minGatherSize, List<ByteBuffer> gathered) {
+        returnValues.encode(dst, minGatherSize, gathered);
+    }
+
     public Values returnValues() {
         return returnValues;
     }
@@ -0,0 +1,179 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The reply handlers of the requests sent on a connection, by request
+ * id. The table is striped by request id, so that threads sending
+ * requests and the transport thread receiving replies rarely contend
+ * for the same lock, and request ids are stored as primitive ints.
+ * Each stripe is an open addressing hash table with linear probing.
+ **/
+class ReplyTable
+{
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    ReplyTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripe(int key) {
+        // the lowest bit of request ids tells which side allocated them
+        return stripes[(key >>> 1) & (STRIPES - 1)];
+    }
+
+    /**
+     * Add a reply handler, replacing any handler with the same key
+     *
+     * @param key the request id
+     * @param handler the handler of the reply to the request
+     **/
+    void put(int key, ReplyHandler handler) {
+        stripe(key).put(key, handler);
+    }
+
+    /**
+     * Remove the reply handler with the given key
+     *
+     * @return the removed handler, or null if there was none
+     * @param key the request id
+     **/
+    ReplyHandler remove(int key) {
+        return stripe(key).remove(key, null);
+    }
+
+    /**
+     * Remove the given reply handler, if it is still in this table
+     *
+     * @return whether the handler was removed
+     * @param key the request id
+     * @param handler the handler to remove
+     **/
+    boolean remove(int key, ReplyHandler handler) {
+        return stripe(key).remove(key, handler) != null;
+    }
+
+    /**
+     * Remove all reply handlers
+     *
+     * @return the removed handlers
+     **/
+    List<ReplyHandler> removeAll() {
+        List<ReplyHandler> removed = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.removeAll(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of handlers in this table
+     **/
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static class Stripe {
+
+        private int[] keys = new int[8];
+        private ReplyHandler[] handlers = new ReplyHandler[8]; // null means an empty slot
+        private int size = 0;
+
+        private int slot(int key) {
+            // request ids are allocated sequentially, so dropping the side and stripe bits spreads them evenly
+            return (key >>> 5) & (keys.length - 1);
+        }
+
+        /** Returns the slot holding the given key, or the empty slot where it should be inserted */
+        private int find(int key) {
+            int mask = keys.length - 1;
+            int i = slot(key);
+            while (handlers[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        synchronized void put(int key, ReplyHandler handler) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int i = find(key);
+            if (handlers[i] == null) {
+                size++;
+            }
+            keys[i] = key;
+            handlers[i] = handler;
+        }
+
+        /** Removes and returns the handler of the given key, if it is the given handler or that is null */
+        synchronized ReplyHandler remove(int key, ReplyHandler expected) {
+            int i = find(key);
+            ReplyHandler handler = handlers[i];
+            if (handler == null || (expected != null && handler != expected)) {
+                return null;
+            }
+            // shift back the following entries which would otherwise become unreachable
+            int mask = keys.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (handlers[j] == null) {
+                    break;
+                }
+                int home = slot(keys[j]);
+                boolean reachable = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+                if ( ! reachable) {
+                    keys[i] = keys[j];
+                    handlers[i] = handlers[j];
+                    i = j;
+                }
+            }
+            handlers[i] = null;
+            size--;
+            return handler;
+        }
+
+        synchronized void removeAll(List<ReplyHandler> removed) {
+            for (int i = 0; i < handlers.length; i++) {
+                if (handlers[i] != null) {
+                    removed.add(handlers[i]);
+                    handlers[i] = null;
+                }
+            }
+            size = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            ReplyHandler[] oldHandlers = handlers;
+            keys = new int[oldKeys.length * 2];
+            handlers = new ReplyHandler[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldHandlers[i] != null) {
+                    int j = find(oldKeys[i]);
+                    keys[j] = oldKeys[i];
+                    handlers[j] = oldHandlers[i];
+                }
+            }
+        }
+
+    }
+
+}
@@ -3,6 +3,7 @@ package com.yahoo.jrt;
 
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 
 class RequestPacket extends Packet
@@ -21,10 +22,16 @@ class RequestPacket extends Packet
 
     public RequestPacket(int flags, int reqId,
                          ByteBuffer src)
+    {
+        this(flags, reqId, src, null);
+    }
+
+    public RequestPacket(int flags, int reqId,
+                         ByteBuffer src, BufferLease lease)
     {
         super(flags, reqId);
         methodName = new StringValue(src);
-        parameters = new Values(src);
+        parameters = new Values(src, lease);
     }
 
     public int bytes() {
@@ -42,6 +49,17 @@ class RequestPacket extends Packet
         parameters.encode(dst);
     }
 
+    @Override
+    public int gatherableBytes(int minSize) {
+        return parameters.gatherableBytes(minSize);
+    }
+
+    @Override
+    public void encode(ByteBuffer dst, int minGatherSize, List<ByteBuffer> gathered) {
+        methodName.encode(dst);
+        parameters.encode(dst, minGatherSize, gathered);
+    }
+
     public String methodName() {
         return methodName.asString();
     }
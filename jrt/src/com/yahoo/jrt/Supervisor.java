@@ -24,6 +24,8 @@ public class Supervisor {
     private int                     maxInputBufferSize  = 64*1024;
     private int                     maxOutputBufferSize = 64*1024;
     private boolean                 dropEmptyBuffers = false;
+    private int                     zeroCopyDataSize = 0;
+    private boolean                 directBuffers = false;
 
     /**
      * Create a new Supervisor based on the given {@link Transport}
@@ -49,6 +51,37 @@ public class Supervisor {
     }
     boolean getDropEmptyBuffers() { return dropEmptyBuffers; }
 
+    /**
+     * Decode received data values of at least the given size as views
+     * into the read buffer of the connection instead of copying them.
+     * The read buffer is taken from a pool, and returned to it when
+     * all values viewing it are released by calling {@link
+     * Value#release} (or {@link Values#release}). Values which are not
+     * released are still valid, but their buffer is then left to the
+     * garbage collector.
+     *
+     * @param bytes the minimum size of data values to decode as views. 0 (the default) means never.
+     **/
+    public Supervisor setZeroCopyDataSize(int bytes) {
+        zeroCopyDataSize = bytes;
+        return this;
+    }
+    int getZeroCopyDataSize() { return zeroCopyDataSize; }
+
+    /**
+     * Use direct buffers for the read and write buffers of
+     * connections. This avoids copying between heap and native
+     * memory on socket reads and writes, at the cost of more
+     * expensive access to the buffer contents from Java.
+     *
+     * @param value true means use direct buffers
+     **/
+    public Supervisor setDirectBuffers(boolean value) {
+        directBuffers = value;
+        return this;
+    }
+    boolean getDirectBuffers() { return directBuffers; }
+
     /**
      * Set maximum input buffer size. This value will only affect
      * connections that use a common input buffer when decoding
@@ -2,6 +2,7 @@
 package com.yahoo.jrt;
 
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -109,6 +110,20 @@ public abstract class Target {
     public abstract void invokeAsync(Request req, double timeout,
                                      RequestWaiter waiter);
 
+    /**
+     * Invoke a batch of requests on this target and let the
+     * completion of each request be signalled with a callback. This
+     * is equivalent to invoking each request asynchronously, except
+     * that all the requests are queued before the transport thread is
+     * woken up, so that they are written together.
+     *
+     * @param requests the requests
+     * @param timeout timeout in seconds, for each request
+     * @param waiter callback handler, called once for each request
+     **/
+    public abstract void invokeAsyncBatch(List<Request> requests, double timeout,
+                                          RequestWaiter waiter);
+
     /**
      * Invoke a request on this target, but ignore the return
      * value(s). The success or failure of the invocation is also
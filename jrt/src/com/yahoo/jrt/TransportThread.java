@@ -69,6 +69,9 @@ public class TransportThread {
 
     private static final Logger log = Logger.getLogger(TransportThread.class.getName());
 
+    /** The max total size of unused buffers kept for reuse by the connections of a transport thread */
+    private static final long MAX_POOLED_BYTES = 16*1024*1024;
+
     private final Transport parent;
     private final Thread    thread;
     private final Queue     queue;
@@ -76,6 +79,7 @@ public class TransportThread {
     private final Scheduler scheduler;
     private int             state;
     private final Selector  selector;
+    private final BufferPool bufferPool = new BufferPool(MAX_POOLED_BYTES);
 
     private void handleAddConnection(Connection conn) {
         if (conn.isClosed()) {
@@ -186,6 +190,13 @@ public class TransportThread {
         return parent;
     }
 
+    /**
+     * @return the pool of the buffers used by the connections of this transport thread
+     **/
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
     /**
      * Proxy method used to dispatch fatal errors to the enclosing
      * Transport.
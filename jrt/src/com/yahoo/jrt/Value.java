@@ -110,6 +110,20 @@ public abstract class Value
      * @throws IllegalArgumentException if the given type identifier is illegal
      **/
     static Value decode(byte type, ByteBuffer src) {
+        return decode(type, src, null);
+    }
+
+    /**
+     * Decode a value from the given buffer, where data values may be
+     * views into the buffer if it is leased
+     *
+     * @return the decoded value
+     * @param type value type identifier
+     * @param src where the value is stored
+     * @param lease the lease of the buffer, or null if it is not leased
+     * @throws IllegalArgumentException if the given type identifier is illegal
+     **/
+    static Value decode(byte type, ByteBuffer src, BufferLease lease) {
         switch (type) {
         case INT8:         return new Int8Value(src);
         case INT8_ARRAY:   return new Int8Array(src);
@@ -125,7 +139,7 @@ public abstract class Value
         case DOUBLE_ARRAY: return new DoubleArray(src);
         case STRING:       return new StringValue(src);
         case STRING_ARRAY: return new StringArray(src);
-        case DATA:         return new DataValue(src);
+        case DATA:         return new DataValue(src, lease);
         case DATA_ARRAY:   return new DataArray(src);
         }
         throw new IllegalArgumentException();
@@ -275,6 +289,15 @@ public abstract class Value
      **/
     public byte[]   asData()        { throw new ClassCastException(); }
 
+    /**
+     * Interpret this value as a {@link DataValue} and return the
+     * contents as a read-only buffer, without copying them
+     *
+     * @return the value contained in this object as a buffer
+     * @throws ClassCastException if this is not a {@link DataValue}
+     **/
+    public ByteBuffer asDataBuffer() { throw new ClassCastException(); }
+
     /**
      * Interpret this value as a {@link DataArray} and return the
      * contents as an appropriate Java type
@@ -284,6 +307,13 @@ public abstract class Value
      **/
     public byte[][] asDataArray()   { throw new ClassCastException(); }
 
+    /**
+     * Release any buffer this value is a view into. This is only
+     * needed for received data values, and has no effect on other
+     * values.
+     **/
+    public void release() {}
+
     /** Force a proper toString */
     public abstract @Override String toString();
 
@@ -49,6 +49,17 @@ public class Values
         decode(src);
     }
 
+    /**
+     * Create a sequence of values by decoding them from the given
+     * buffer, where data values may be views into the buffer
+     *
+     * @param src buffer containing a contained value sequence
+     * @param lease the lease of the buffer, or null if it is not leased
+     **/
+    Values(ByteBuffer src, BufferLease lease) {
+        decode(src, lease);
+    }
+
     /**
      * Add a value to the end of the sequence
      *
@@ -70,6 +81,16 @@ public class Values
         return values.get(idx);
     }
 
+    /**
+     * Release any buffers the values in this sequence are views
+     * into. See {@link DataValue#release}.
+     **/
+    public void release() {
+        for (Value value : values) {
+            value.release();
+        }
+    }
+
     /**
      * Obtain the number of values in this sequence
      *
@@ -110,18 +131,106 @@ public class Values
         }
     }
 
+    /**
+     * Determine the number of bytes of this value sequence which
+     * are contents of array backed data values of at least the
+     * given size
+     *
+     * @return number of bytes which may be gathered rather than encoded
+     * @param minSize the minimum size of data values to gather
+     **/
+    int gatherableBytes(int minSize) {
+        int bytes = 0;
+        for (int i = 0; i < values.size(); i++) {
+            byte[] array = gatherable(get(i), minSize);
+            if (array != null) {
+                bytes += array.length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode this value sequence into the given buffer, except the
+     * contents of array backed data values of at least the given
+     * size. Instead, each such array, followed by a buffer holding
+     * the encoded values after it, is added to the given list of
+     * buffers to be written after the destination buffer.
+     *
+     * @param dst where to encode the start of this value sequence
+     * @param minSize the minimum size of data values to gather
+     * @param gathered where to add the buffers holding the rest of this value sequence
+     **/
+    void encode(ByteBuffer dst, int minSize, List<ByteBuffer> gathered) {
+        byte[] types = new byte[values.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = get(i).type();
+        }
+        dst.putInt(types.length);
+        dst.put(types);
+        ByteBuffer current = dst;
+        for (int i = 0; i < types.length; i++) {
+            byte[] array = gatherable(get(i), minSize);
+            if (array == null) {
+                get(i).encode(current);
+                continue;
+            }
+            current.putInt(array.length);
+            if (current != dst) {
+                current.flip();
+            }
+            gathered.add(ByteBuffer.wrap(array));
+            current = ByteBuffer.allocate(bytesUntilGathered(i + 1, minSize)).order(dst.order());
+            gathered.add(current);
+        }
+        if (current != dst) {
+            current.flip();
+        }
+    }
+
+    /** Returns the number of bytes encoded from the given index up to the contents of the next gathered array */
+    private int bytesUntilGathered(int index, int minSize) {
+        int bytes = 0;
+        for (int i = index; i < values.size(); i++) {
+            if (gatherable(get(i), minSize) != null) {
+                return bytes + 4;
+            }
+            bytes += get(i).bytes();
+        }
+        return bytes;
+    }
+
+    private static byte[] gatherable(Value value, int minSize) {
+        if ( ! (value instanceof DataValue)) {
+            return null;
+        }
+        byte[] array = ((DataValue)value).array();
+        return (array != null && array.length >= minSize) ? array : null;
+    }
+
     /**
      * Decode a value sequence from the given buffer into this object
      *
      * @param src where the value sequence is stored
      **/
     void decode(ByteBuffer src) {
+        decode(src, null);
+    }
+
+    /**
+     * Decode a value sequence from the given buffer into this object,
+     * where data values may be views into the buffer
+     *
+     * @param src where the value sequence is stored
+     * @param lease the lease of the buffer, or null if it is not leased
+     **/
+    void decode(ByteBuffer src, BufferLease lease) {
         values.clear();
         int cnt = src.getInt();
         byte[] types = new byte[cnt];
         src.get(types);
         for (int i = 0; i < cnt; i++) {
-            values.add(Value.decode(types[i], src));
+            values.add(Value.decode(types[i], src, lease));
         }
     }
 
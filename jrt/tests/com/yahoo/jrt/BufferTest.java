@@ -6,6 +6,7 @@ import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class BufferTest {
@@ -222,4 +223,66 @@ public class BufferTest {
         }
     }
 
+    @org.junit.Test
+    public void testBufferPool() {
+        BufferPool pool = new BufferPool(64*1024);
+        ByteBuffer b = pool.acquire(5000, false);
+        assertEquals(8*1024, b.capacity());
+        assertFalse(b.isDirect());
+        assertEquals(0, pool.pooledBytes());
+        pool.release(b);
+        assertEquals(8*1024, pool.pooledBytes());
+        assertSame(b, pool.acquire(8*1024, false));
+        assertEquals(0, pool.pooledBytes());
+        pool.release(b);
+
+        ByteBuffer d = pool.acquire(1, true);
+        assertEquals(4*1024, d.capacity());
+        assertTrue(d.isDirect());
+
+        pool.release(ByteBuffer.allocate(5000));
+        pool.release(ByteBuffer.allocate(16*1024).asReadOnlyBuffer());
+        pool.release(pool.acquire(64*1024, false));
+        assertEquals("Foreign and overflowing buffers are ignored", 8*1024, pool.pooledBytes());
+        assertEquals(8*1024*1024 + 1, pool.acquire(8*1024*1024 + 1, false).capacity());
+    }
+
+    @org.junit.Test
+    public void testPooledBufferGrowthAndShrink() {
+        BufferPool pool = new BufferPool(1024*1024);
+        Buffer buf = new Buffer(0, pool, false);
+        buf.getWritable(10).put((byte)42);
+        assertEquals(4*1024, buf.getReadable().capacity());
+        buf.getWritable(10000).put(new byte[10000]);
+        assertEquals(16*1024, buf.getReadable().capacity());
+        assertEquals("The replaced buffer is returned to the pool", 4*1024, pool.pooledBytes());
+        assertEquals(42, buf.getReadable().get());
+        buf.getReadable().position(10001);
+        assertTrue(buf.shrink(1000));
+        assertEquals(4*1024, buf.getReadable().capacity());
+        assertEquals(16*1024, pool.pooledBytes());
+        assertFalse(buf.shrink(3000));
+        assertTrue(buf.shrink(0));
+        assertEquals(0, buf.getReadable().capacity());
+        assertEquals(24*1024, pool.pooledBytes());
+    }
+
+    @org.junit.Test
+    public void testDetach() {
+        Buffer buf = new Buffer(100);
+        buf.getWritable(10).put((byte)1).put((byte)2).put((byte)3);
+        ByteBuffer b = buf.getReadable();
+        assertEquals(1, b.get());
+        ByteBuffer detached = buf.detach();
+        assertSame(b, detached);
+        assertEquals(2, buf.bytes());
+        b = buf.getReadable();
+        assertEquals(2, b.get());
+        assertEquals(3, b.get());
+        assertEquals(0, buf.bytes());
+        buf.getWritable(10).put((byte)4);
+        assertEquals(4, buf.getReadable().get());
+        assertEquals(1, detached.get(0));
+    }
+
 }
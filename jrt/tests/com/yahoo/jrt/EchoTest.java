@@ -9,10 +9,13 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 
+import java.nio.ByteBuffer;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.yahoo.jrt.CryptoUtils.createTestTlsContext;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -149,6 +152,61 @@ public class EchoTest {
         securityContext = req.target().getSecurityContext().orElse(null);
     }
 
+    private void rpc_echo_data(Request req) {
+        Values p = req.parameters();
+        Values r = req.returnValues();
+        for (int i = 0; i < p.size(); i++) {
+            r.add(p.get(i));
+        }
+    }
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte)(i * 31);
+        }
+        return data;
+    }
+
+    @org.junit.Test
+    public void testEchoLargeDataWithZeroCopy() throws ListenFailedException {
+        Supervisor zeroCopyServer = new Supervisor(new Transport("zero-copy-server", crypto, 1)).setZeroCopyDataSize(64*1024);
+        Supervisor zeroCopyClient = new Supervisor(new Transport("zero-copy-client", crypto, 1)).setZeroCopyDataSize(64*1024);
+        zeroCopyServer.addMethod(new Method("echo_data", "*", "*", this::rpc_echo_data));
+        Acceptor zeroCopyAcceptor = zeroCopyServer.listen(new Spec(0));
+        Target zeroCopyTarget = zeroCopyClient.connect(new Spec("localhost", zeroCopyAcceptor.port()));
+        try {
+            byte[] small = { 1, 2, 3 };
+            byte[] large = data(100*1024);
+            byte[] huge = data(3*1024*1024);
+            for (int i = 0; i < 3; i++) {
+                Request req = new Request("echo_data");
+                req.parameters().add(new DataValue(large));
+                req.parameters().add(new Int32Value(i));
+                req.parameters().add(new DataValue(small));
+                req.parameters().add(new DataValue(huge));
+                zeroCopyTarget.invokeSync(req, 60.0);
+                assertTrue(req.errorMessage(), req.checkReturnTypes("xixx"));
+                Values r = req.returnValues();
+                ByteBuffer view = r.get(0).asDataBuffer();
+                assertTrue(view.isReadOnly());
+                byte[] received = new byte[view.remaining()];
+                view.get(received);
+                assertArrayEquals(large, received);
+                assertEquals(i, r.get(1).asInt32());
+                assertArrayEquals(small, r.get(2).asData());
+                assertTrue(Arrays.equals(huge, r.get(3).asData()));
+                r.release();
+            }
+        }
+        finally {
+            zeroCopyTarget.close();
+            zeroCopyAcceptor.shutdown().join();
+            zeroCopyClient.transport().shutdown().join();
+            zeroCopyServer.transport().shutdown().join();
+        }
+    }
+
     @org.junit.Test
     public void testEcho() {
         Request req = new Request("echo");
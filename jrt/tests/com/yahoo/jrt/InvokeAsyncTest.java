@@ -5,6 +5,10 @@ package com.yahoo.jrt;
 import org.junit.After;
 import org.junit.Before;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -65,4 +69,34 @@ public class InvokeAsyncTest {
         assertEquals("abcdef", req.returnValues().get(0).asString());
     }
 
+    @org.junit.Test
+    public void testAsyncBatch() throws InterruptedException {
+        TransportMetrics.Snapshot start = TransportMetrics.getInstance().snapshot();
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Request req = new Request("concat");
+            req.parameters().add(new StringValue("abc"));
+            req.parameters().add(new StringValue(String.valueOf(i)));
+            requests.add(req);
+        }
+
+        CountDownLatch latch = new CountDownLatch(requests.size());
+        target.invokeAsyncBatch(requests, 5.0, req -> latch.countDown());
+        assertEquals(requests.size(), latch.getCount());
+        barrier.breakIt();
+        latch.await();
+
+        for (int i = 0; i < requests.size(); i++) {
+            Request req = requests.get(i);
+            assertTrue(!req.isError());
+            assertEquals(1, req.returnValues().size());
+            assertEquals("abc" + i, req.returnValues().get(0).asString());
+        }
+        TransportMetrics.Snapshot changes = TransportMetrics.getInstance().snapshot().changesSince(start);
+        // The metrics are global, so other transport activity may add to both packets and writes, but never
+        // to writes more than packets. All requests are written together, while replies may be written one at a time.
+        assertTrue(changes.packetsWritten() >= 20);
+        assertTrue(changes.packetsWritten() - changes.packetWrites() >= 9);
+    }
+
 }
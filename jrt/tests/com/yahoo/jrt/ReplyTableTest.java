@@ -0,0 +1,78 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReplyTableTest {
+
+    private static class Handler implements ReplyHandler {
+        private final int key;
+        Handler(int key) { this.key = key; }
+        public int key() { return key; }
+        public void handleReply(Packet packet) {}
+        public void handleConnectionDown() {}
+    }
+
+    @org.junit.Test
+    public void testPutAndRemove() {
+        ReplyTable table = new ReplyTable();
+        Handler a = new Handler(1);
+        Handler b = new Handler(3);
+        table.put(a.key(), a);
+        table.put(b.key(), b);
+        assertEquals(2, table.size());
+        assertNull(table.remove(5));
+        assertFalse(table.remove(1, b));
+        assertSame(a, table.remove(1));
+        assertNull(table.remove(1));
+        assertTrue(table.remove(3, b));
+        assertEquals(0, table.size());
+    }
+
+    @org.junit.Test
+    public void testRemoveAll() {
+        ReplyTable table = new ReplyTable();
+        for (int i = 0; i < 1000; i++) {
+            table.put(i * 2, new Handler(i * 2));
+        }
+        assertEquals(1000, table.size());
+        assertEquals(1000, new HashSet<>(table.removeAll()).size());
+        assertEquals(0, table.size());
+        assertTrue(table.removeAll().isEmpty());
+    }
+
+    @org.junit.Test
+    public void testRandomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        ReplyTable table = new ReplyTable();
+        Map<Integer, ReplyHandler> reference = new HashMap<>();
+        int nextKey = 0x7fffff00; // wraps around, like request ids
+        for (int i = 0; i < 100000; i++) {
+            if (random.nextInt(3) > 0) {
+                int key = nextKey;
+                nextKey = (nextKey + 2) & 0x7fffffff;
+                Handler handler = new Handler(key);
+                table.put(key, handler);
+                reference.put(key, handler);
+            } else {
+                int key = (nextKey - 2 * random.nextInt(200)) & 0x7fffffff;
+                assertSame(reference.remove(key), table.remove(key));
+            }
+        }
+        assertEquals(reference.size(), table.size());
+        for (Map.Entry<Integer, ReplyHandler> entry : reference.entrySet()) {
+            assertTrue(table.remove(entry.getKey(), entry.getValue()));
+        }
+        assertEquals(0, table.size());
+    }
+
+}
@@ -0,0 +1,132 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the throughput of many threads sending asynchronous
+ * requests with many requests in flight over a single connection.
+ **/
+public class ThroughputTest {
+    private static final Logger log = Logger.getLogger(ThroughputTest.class.getName());
+
+    private static class Network implements AutoCloseable {
+        private final Supervisor server;
+        private final Supervisor client;
+        private final Acceptor acceptor;
+        public Network(CryptoEngine crypto, int threads) throws ListenFailedException {
+            server = new Supervisor(new Transport("server", crypto, threads));
+            client = new Supervisor(new Transport("client", crypto, threads));
+            server.addMethod(new Method("inc", "i", "i", this::rpc_inc));
+            acceptor = server.listen(new Spec(0));
+        }
+        public Target connect() {
+            return client.connect(new Spec("localhost", acceptor.port()));
+        }
+        private void rpc_inc(Request req) {
+            req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() + 1));
+        }
+        public void close() {
+            acceptor.shutdown().join();
+            client.transport().shutdown().join();
+            server.transport().shutdown().join();
+        }
+    }
+
+    private static class Client {
+
+        private final Target target;
+        private final int numThreads;
+        private final int window;
+        private final double benchmark;
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicReference<Throwable> issue = new AtomicReference<>();
+        private volatile boolean done = false;
+
+        public Client(Target target, int numThreads, int window, double benchmark) {
+            this.target = target;
+            this.numThreads = numThreads;
+            this.window = window;
+            this.benchmark = benchmark;
+        }
+
+        private void run(CyclicBarrier barrier, CountDownLatch latch) {
+            Semaphore inFlight = new Semaphore(window);
+            RequestWaiter waiter = req -> {
+                try {
+                    assertTrue(req.errorMessage(), req.checkReturnTypes("i"));
+                    assertEquals(req.parameters().get(0).asInt32() + 1, req.returnValues().get(0).asInt32());
+                    completed.incrementAndGet();
+                } catch (Throwable e) {
+                    issue.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            };
+            try {
+                barrier.await();
+                for (int value = 0; ! done; value++) {
+                    inFlight.acquire();
+                    Request req = new Request("inc");
+                    req.parameters().add(new Int32Value(value));
+                    target.invokeAsync(req, 60.0, waiter);
+                }
+                inFlight.acquire(window);
+            } catch (Throwable e) {
+                issue.compareAndSet(null, e);
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        public void measureThroughput(String prefix) throws Throwable {
+            CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+            CountDownLatch latch = new CountDownLatch(numThreads);
+            for (int i = 0; i < numThreads; ++i) {
+                new Thread(() -> run(barrier, latch)).start();
+            }
+            barrier.await();
+            long start = System.nanoTime();
+            long startCount = completed.get();
+            Thread.sleep((long)(benchmark * 1000));
+            long count = completed.get() - startCount;
+            double seconds = (System.nanoTime() - start) / 1000_000_000.0;
+            done = true;
+            latch.await();
+            assertNull(issue.get());
+            log.info(prefix + "throughput: " + (count / seconds) + " req/s");
+        }
+    }
+
+    private static void measure(CryptoEngine crypto, int transportThreads, int clientThreads, int window) throws Throwable {
+        try (Network network = new Network(crypto, transportThreads)) {
+            Target target = network.connect();
+            new Client(target, clientThreads, window, 0.5).measureThroughput("[" + clientThreads + " threads, " +
+                                                                              window + " in flight each, " +
+                                                                              transportThreads + "/" + transportThreads +
+                                                                              " transport, shared connection] ");
+            target.close();
+        }
+    }
+
+    @org.junit.Test
+    public void testNullCryptoThroughput() throws Throwable {
+        measure(new NullCryptoEngine(), 1, 1, 1000);
+        measure(new NullCryptoEngine(), 1, 8, 256);
+    }
+
+    @org.junit.Test
+    public void testXorCryptoThroughput() throws Throwable {
+        measure(new XorCryptoEngine(), 1, 8, 256);
+    }
+
+}
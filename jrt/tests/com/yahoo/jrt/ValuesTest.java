@@ -2,10 +2,15 @@
 package com.yahoo.jrt;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ValuesTest {
 
@@ -271,6 +276,78 @@ public class ValuesTest {
         assertTrue(Arrays.equals(dst.get(0).asData(), val));
     }
 
+    @org.junit.Test
+    public void testDataViews() {
+        byte[] small = { 1, 2, 3 };
+        byte[] large = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        Values src = new Values();
+        src.add(new DataValue(small));
+        src.add(new DataValue(large));
+
+        BufferPool pool = new BufferPool(1024*1024);
+        ByteBuffer buf = pool.acquire(src.bytes(), false);
+        src.encode(buf);
+        buf.flip();
+
+        BufferLease lease = new BufferLease(buf, pool, large.length);
+        Values dst = new Values(buf, lease);
+        assertTrue(lease.isShared());
+        assertTrue(Arrays.equals(small, dst.get(0).asData()));
+        ByteBuffer view = dst.get(1).asDataBuffer();
+        assertTrue(view.isReadOnly());
+        assertEquals(large.length, view.remaining());
+        assertEquals(1, view.get(0));
+        assertEquals(10, view.get(9));
+
+        lease.release();
+        assertEquals(0, pool.pooledBytes());
+        dst.release();
+        assertEquals(buf.capacity(), pool.pooledBytes());
+        dst.release();
+        assertEquals(buf.capacity(), pool.pooledBytes());
+        try {
+            dst.get(1).asData();
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @org.junit.Test
+    public void testGatheredEncoding() {
+        byte[] first = { 1, 2, 3, 4, 5, 6, 7, 8 };
+        byte[] second = { 9, 10, 11, 12, 13, 14, 15, 16, 17 };
+        Values src = new Values();
+        src.add(new Int32Value(1));
+        src.add(new DataValue(first));
+        src.add(new DataValue(new byte[] { 42 }));
+        src.add(new StringValue("between"));
+        src.add(new DataValue(second));
+        assertEquals(first.length + second.length, src.gatherableBytes(8));
+        assertEquals(0, src.gatherableBytes(100));
+
+        ByteBuffer expected = ByteBuffer.allocate(src.bytes());
+        src.encode(expected);
+        expected.flip();
+
+        ByteBuffer dst = ByteBuffer.allocate(src.bytes() - src.gatherableBytes(8));
+        List<ByteBuffer> gathered = new ArrayList<>();
+        src.encode(dst, 8, gathered);
+        dst.flip();
+        assertEquals(4, gathered.size());
+        assertSame(first, gathered.get(0).array());
+        assertSame(second, gathered.get(2).array());
+        assertFalse(gathered.get(3).hasRemaining());
+
+        ByteBuffer actual = ByteBuffer.allocate(src.bytes());
+        actual.put(dst);
+        for (ByteBuffer buffer : gathered) {
+            actual.put(buffer);
+        }
+        actual.flip();
+        assertEquals(expected, actual);
+    }
+
     @org.junit.Test
     public void testDataArray() {
         int byteSize = 4 + 1 + 4 + 4 * (4 + 4);
@@ -0,0 +1,299 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.concurrent.Timer;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An implementation of the {@link ThrottlePolicy} which adjusts the number of pending messages a {@link SourceSession}
+ * is allowed to have, the <em>window size</em>, by the latency observed for replies, rather than by throughput alone,
+ * like the {@link DynamicThrottlePolicy}.
+ * <p>
+ * The latency is estimated from the average number of pending messages and the throughput of each sample period,
+ * by Little's law, and is compared to a baseline latency, which is the latency measured when the window size was
+ * last halved for two sample periods to drain the queues of the receivers, or any lower latency seen since. This
+ * probe is done regularly, and also when the latency has stayed high for a few sample periods, as this means the
+ * receivers have become slower.
+ * The new window size is the old one scaled by the ratio of the tolerated latency to the current latency, plus an
+ * allowance for a queue of the square root of the window size:
+ * <code>window = window * min(1, tolerance * baseline / latency) + weight * sqrt(window)</code>, where the ratio is
+ * never less than 0.5, and the change is smoothed over several sample periods. The window size therefore grows until
+ * the receivers start to queue messages, and then stays where they have short queues, instead of growing until
+ * throughput no longer increases, which is when queues are long. Error replies make the window size back off.
+ * </p><p>
+ * The queue allowance is proportional to the weight of the policy, so a policy with a larger weight gets a larger share
+ * of the receivers when competing with other policies.
+ * </p>
+ *
+ * @author bratseth
+ */
+public class LatencyThrottlePolicy extends StaticThrottlePolicy {
+
+    private static final Logger log = Logger.getLogger(LatencyThrottlePolicy.class.getName());
+    private static final long IDLE_TIME_MILLIS = 60000;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double PROBE_WINDOW_FACTOR = 0.5;
+    private static final int CONGESTED_SAMPLES_BEFORE_PROBE = 3;
+
+    private final Timer timer;
+    private double windowSize = 20;
+    private double minWindowSize = 1;
+    private double maxWindowSize = Integer.MAX_VALUE;
+    private double weight = 1.0;
+    private double latencyTolerance = 1.5;
+    private double smoothing = 0.2;
+    private double windowSizeBackOff = 0.9;
+    private double resizeRate = 3;
+    private int probeInterval = 50;
+    private double baselineLatency = Double.POSITIVE_INFINITY;
+    private double latency = 0;
+    private int numSent = 0;
+    private int numOk = 0;
+    private int numErrors = 0;
+    private long pendingSum = 0;
+    private int samplesSinceProbe = 0;
+    private int congestedSamples = 0;
+    private double windowSizeBeforeProbe = 0;
+    private int probeSamples = 0;
+    private int lastPendingCount = 0;
+    private long resizeTime;
+    private long timeOfLastMessage;
+
+    /**
+     * Constructs a new instance of this policy with default settings.
+     */
+    public LatencyThrottlePolicy() {
+        this(SystemTimer.INSTANCE);
+    }
+
+    /**
+     * Constructs a new instance of this policy which uses the given clock to measure latency.
+     *
+     * @param timer the timer to use
+     */
+    public LatencyThrottlePolicy(Timer timer) {
+        this.timer = timer;
+        this.resizeTime = timer.milliTime();
+        this.timeOfLastMessage = resizeTime;
+    }
+
+    @Override
+    public boolean canSend(Message message, int pendingCount) {
+        if ( ! super.canSend(message, pendingCount)) {
+            return false;
+        }
+        long time = timer.milliTime();
+        if (time - timeOfLastMessage > IDLE_TIME_MILLIS) {
+            windowSize = Math.max(minWindowSize, Math.min(windowSize, pendingCount + Math.sqrt(windowSize)));
+            baselineLatency = Double.POSITIVE_INFINITY;
+            probeSamples = 0;
+            resizeTime = time;
+            resetSample();
+        }
+        timeOfLastMessage = time;
+        lastPendingCount = pendingCount;
+        return pendingCount < (int) windowSize;
+    }
+
+    @Override
+    public void processMessage(Message message) {
+        super.processMessage(message);
+        pendingSum += lastPendingCount + 1;
+        if (++numSent < windowSize * resizeRate) {
+            return;
+        }
+        long time = timer.milliTime();
+        long elapsed = time - resizeTime;
+        if (elapsed <= 0) {
+            return; // let the sample grow until it spans some time
+        }
+        resizeTime = time;
+
+        if (numErrors > 0) {
+            windowSize *= windowSizeBackOff;
+        } else if (numOk > 0) {
+            double throughput = numOk / (double) elapsed;
+            latency = (pendingSum / (double) numSent) / throughput;
+            if (probeSamples > 0) { // queues drain during the first sample of a probe, and the second has the baseline
+                if (--probeSamples == 0) {
+                    baselineLatency = latency;
+                    windowSize = windowSizeBeforeProbe;
+                }
+            } else {
+                baselineLatency = Math.min(latency, baselineLatency);
+                double gradient = Math.max(MIN_GRADIENT, Math.min(1, latencyTolerance * baselineLatency / latency));
+                double target = windowSize * gradient + weight * Math.sqrt(windowSize);
+                windowSize += smoothing * (target - windowSize);
+                congestedSamples = gradient == MIN_GRADIENT ? congestedSamples + 1 : 0;
+                if (++samplesSinceProbe >= probeInterval || congestedSamples >= CONGESTED_SAMPLES_BEFORE_PROBE) {
+                    windowSizeBeforeProbe = Math.max(minWindowSize, Math.min(maxWindowSize, windowSize));
+                    windowSize *= PROBE_WINDOW_FACTOR;
+                    probeSamples = 2;
+                    samplesSinceProbe = 0;
+                    congestedSamples = 0;
+                }
+            }
+        }
+        windowSize = Math.max(minWindowSize, Math.min(maxWindowSize, windowSize));
+        if (log.isLoggable(Level.FINE)) {
+            log.log(Level.FINE, "windowSize " + windowSize + " latency " + latency + " baseline " + baselineLatency +
+                                " errors " + numErrors);
+        }
+        resetSample();
+    }
+
+    @Override
+    public void processReply(Reply reply) {
+        super.processReply(reply);
+        if (reply.hasErrors()) {
+            ++numErrors;
+        } else {
+            ++numOk;
+        }
+    }
+
+    private void resetSample() {
+        numSent = 0;
+        numOk = 0;
+        numErrors = 0;
+        pendingSum = 0;
+    }
+
+    /**
+     * Sets the weight of this client. The larger the value, the more resources will be allocated to this client.
+     * Must be a positive number.
+     *
+     * @param weight the weight to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWeight(double weight) {
+        if (weight <= 0)
+            throw new IllegalArgumentException("Weight must be positive");
+
+        this.weight = weight;
+        return this;
+    }
+
+    /**
+     * Sets how many times the baseline latency the latency may be before the window size is reduced. Larger values
+     * let the receivers queue more messages, which evens out variations in their load. Capped to [1, ).
+     *
+     * @param latencyTolerance the tolerance to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = Math.max(1, latencyTolerance);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of the change suggested by each sample which is applied to the window size.
+     * Smaller values give a steadier, but slower, response. Capped to (0, 1].
+     *
+     * @param smoothing the smoothing to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setSmoothing(double smoothing) {
+        this.smoothing = Math.max(0.001, Math.min(1, smoothing));
+        return this;
+    }
+
+    /**
+     * Sets the number of sample periods between each time the window size is halved for two sample periods, to
+     * measure the latency of the receivers when they have no queue. This baseline latency is measured also when the
+     * latency has been more than twice the baseline for a few sample periods, i.e., when the receivers have become
+     * slower. Capped to [1, ).
+     *
+     * @param probeInterval the interval to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setProbeInterval(int probeInterval) {
+        this.probeInterval = Math.max(1, probeInterval);
+        return this;
+    }
+
+    /**
+     * Sets the factor of window size to back off to when error replies are received. Capped to [0, 1].
+     *
+     * @param windowSizeBackOff the back off to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWindowSizeBackOff(double windowSizeBackOff) {
+        this.windowSizeBackOff = Math.max(0, Math.min(1, windowSizeBackOff));
+        return this;
+    }
+
+    /**
+     * Sets the number of window sizes of messages to send between each update of the window size. Capped to [1, ).
+     *
+     * @param resizeRate the rate to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setResizeRate(double resizeRate) {
+        this.resizeRate = Math.max(1, resizeRate);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of pending operations allowed at any time, in order to avoid using too much resources.
+     *
+     * @param max the max to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMaxWindowSize(double max) {
+        if (max < 1)
+            throw new IllegalArgumentException("Maximum window size cannot be less than one");
+
+        this.maxWindowSize = max;
+        this.windowSize = Math.min(windowSize, max);
+        return this;
+    }
+
+    /** Returns the maximum number of pending operations allowed at any time */
+    public double getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * Sets the minimum number of pending operations allowed at any time, in order to keep a level of performance.
+     *
+     * @param min the min to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMinWindowSize(double min) {
+        if (min < 1)
+            throw new IllegalArgumentException("Minimum window size cannot be less than one");
+
+        this.minWindowSize = min;
+        this.windowSize = Math.max(windowSize, min);
+        return this;
+    }
+
+    /** Returns the minimum number of pending operations allowed at any time */
+    public double getMinWindowSize() {
+        return minWindowSize;
+    }
+
+    @Override
+    public LatencyThrottlePolicy setMaxPendingCount(int maxCount) {
+        super.setMaxPendingCount(maxCount);
+        return setMaxWindowSize(maxCount);
+    }
+
+    /** Returns the current maximum number of pending messages allowed */
+    @Override
+    public int getMaxPendingCount() {
+        return (int) windowSize;
+    }
+
+    /** Returns the latency estimated in the last sample period, in milliseconds */
+    public double getLatency() {
+        return latency;
+    }
+
+    double getWindowSize() { return windowSize; }
+
+}
@@ -1,8 +1,8 @@
 // Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -12,14 +12,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * linked message handlers. Each message that carries a sequencing id is queued in an internal list of messages for that
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
+ * <p>
+ * The sequencing state is striped by sequence id, such that messages with different ids rarely contend for the same
+ * lock. All messages with the same id use the same stripe, which preserves their ordering.
  *
  * @author Simon Thoresen Hult
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
+    private static final int DEFAULT_STRIPES = 64;
+
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+    private final Stripe[] stripes;
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -27,7 +32,30 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      * @param sender The underlying sender.
      */
     public Sequencer(MessageHandler sender) {
+        this(sender, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructs a new sequencer on top of the given async sender, with the given number of stripes.
+     *
+     * @param sender The underlying sender.
+     * @param stripes The number of stripes, which is rounded up to a power of two.
+     */
+    Sequencer(MessageHandler sender, int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
         this.sender = sender;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripe(long seqId) {
+        long hash = seqId * 0x9E3779B97F4A7C15L; // sequence ids may be anything, so mix all their bits into the top ones
+        return stripes[(int)(hash >>> 32) & (stripes.length - 1)];
     }
 
     /**
@@ -38,15 +66,17 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    for (Queue<Message> queue : stripe.seqMap.values()) {
+                        if (queue != null) {
+                            for (Message msg : queue) {
+                                msg.discard();
+                            }
                         }
                     }
+                    stripe.seqMap.clear();
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -65,11 +95,13 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
+        Stripe stripe = stripe(seqId);
+        synchronized (stripe) {
+            Map<Long, Queue<Message>> seqMap = stripe.seqMap;
             if (seqMap.containsKey(seqId)) {
                 Queue<Message> queue = seqMap.get(seqId);
                 if (queue == null) {
-                    queue = new LinkedList<>();
+                    queue = new ArrayDeque<>();
                     seqMap.put(seqId, queue);
                 }
                 if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
@@ -138,7 +170,9 @@ public class Sequencer implements MessageHandler, ReplyHandler {
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
         Message msg = null;
-        synchronized (this) {
+        Stripe stripe = stripe(seqId);
+        synchronized (stripe) {
+            Map<Long, Queue<Message>> seqMap = stripe.seqMap;
             Queue<Message> queue = seqMap.get(seqId);
             if (queue == null || queue.isEmpty()) {
                 seqMap.remove(seqId);
@@ -153,4 +187,12 @@ public class Sequencer implements MessageHandler, ReplyHandler {
         handler.handleReply(reply);
     }
 
+    /** The sequencing state of the ids hashing to one stripe, guarded by the stripe itself */
+    private static class Stripe {
+
+        /** Sequence ids with a message in flight, to the queue of messages waiting for it, if any */
+        final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+
+    }
+
 }
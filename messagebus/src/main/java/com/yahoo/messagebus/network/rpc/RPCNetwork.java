@@ -3,6 +3,7 @@ package com.yahoo.messagebus.network.rpc;
 
 import com.yahoo.component.Version;
 import com.yahoo.component.Vtag;
+import com.yahoo.compress.CompressionType;
 import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.jrt.Acceptor;
 import com.yahoo.jrt.ListenFailedException;
@@ -53,6 +54,7 @@ public class RPCNetwork implements Network, MethodHandler {
 
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final Identity identity;
+    private final CompressionType compressionType;
     private final Supervisor orb;
     private final RPCTargetPool targetPool;
     private final RPCServicePool servicePool;
@@ -87,6 +89,7 @@ public class RPCNetwork implements Network, MethodHandler {
     public RPCNetwork(RPCNetworkParams params, SlobrokConfigSubscriber slobrokConfig) {
         this.slobroksConfig = slobrokConfig;
         identity = params.getIdentity();
+        compressionType = params.getCompressionType();
         orb = new Supervisor(new Transport("mbus-rpc-" + identity.getServicePrefix(), params.getNumNetworkThreads(),
                 shouldEnableTcpNodelay(params.getOptimization()), params.getTransportEventsBeforeWakeup()));
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
@@ -362,6 +365,11 @@ public class RPCNetwork implements Network, MethodHandler {
         return identity;
     }
 
+    /** Returns the compression to use for payloads sent to peers which accept it. */
+    CompressionType getCompressionType() {
+        return compressionType;
+    }
+
     /** Returns the port number this network listens to. */
     public int getPort() {
         return listener.port();
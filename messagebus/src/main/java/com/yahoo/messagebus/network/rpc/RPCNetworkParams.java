@@ -1,6 +1,7 @@
 // Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus.network.rpc;
 
+import com.yahoo.compress.CompressionType;
 import com.yahoo.messagebus.network.Identity;
 import com.yahoo.cloud.config.SlobroksConfig;
 
@@ -21,6 +22,7 @@ public class RPCNetworkParams {
     private double connectionExpireSecs = 30;
     private int numTargetsPerSpec = 1;
     private int numNetworkThreads = 2;
+    private CompressionType compressionType = CompressionType.LZ4;
 
     private int transportEventsBeforeWakeup = 1;
     public enum Optimization {LATENCY, THROUGHPUT}
@@ -49,6 +51,7 @@ public class RPCNetworkParams {
         numTargetsPerSpec = params.numTargetsPerSpec;
         numNetworkThreads = params.numNetworkThreads;
         optimization = params.optimization;
+        compressionType = params.compressionType;
     }
 
     /**
@@ -167,6 +170,24 @@ public class RPCNetworkParams {
         return numNetworkThreads;
     }
 
+    /**
+     * Sets the compression to use for message and reply payloads. Payloads are compressed with ZSTD only when sent to
+     * peers which have announced that they accept it, and with LZ4 otherwise, so this is safe to set on some nodes only.
+     *
+     * @param compressionType LZ4 or ZSTD
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setCompressionType(CompressionType compressionType) {
+        if (compressionType != CompressionType.LZ4 && compressionType != CompressionType.ZSTD) {
+            throw new IllegalArgumentException("Compression type must be LZ4 or ZSTD, not " + compressionType);
+        }
+        this.compressionType = compressionType;
+        return this;
+    }
+    CompressionType getCompressionType() {
+        return compressionType;
+    }
+
     public RPCNetworkParams setOptimization(Optimization optimization) {
         this.optimization = optimization;
         return this;
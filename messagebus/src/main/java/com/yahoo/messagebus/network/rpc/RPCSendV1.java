@@ -80,7 +80,8 @@ public class RPCSendV1 extends RPCSend {
     }
 
     @Override
-    protected Reply createReply(Values ret, String serviceName, Trace trace) {
+    protected Reply createReply(Values ret, RPCServiceAddress address, Trace trace) {
+        String serviceName = address.getServiceName();
         Version version = new Version(ret.get(0).asUtf8Array());
         double retryDelay = ret.get(1).asDouble();
         int[] errorCodes = ret.get(2).asInt32Array();
@@ -133,7 +134,7 @@ public class RPCSendV1 extends RPCSend {
     }
 
     @Override
-    protected void createResponse(Values ret, Reply reply, Version version, byte [] payload) {
+    protected void createResponse(Values ret, Reply reply, Version version, byte [] payload, boolean acceptsZstd) {
         int[] eCodes = new int[reply.getNumErrors()];
         String[] eMessages = new String[reply.getNumErrors()];
         String[] eServices = new String[reply.getNumErrors()];
@@ -23,6 +23,8 @@ import com.yahoo.slime.Inspector;
 import com.yahoo.slime.Slime;
 import com.yahoo.text.Utf8Array;
 
+import java.util.Optional;
+
 /**
  * Implements the request adapter for method "mbus.slime".
  *
@@ -33,9 +35,16 @@ public class RPCSendV2 extends RPCSend {
     private final static String METHOD_NAME = "mbus.slime";
     private final static String METHOD_PARAMS = "bixbix";
     private final static String METHOD_RETURN = "bixbix";
-    private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
-
-    protected RPCSendV2(RPCNetwork net) { super(net); }
+    private static final double COMPRESSION_THRESHOLD = 0.90;
+    private static final int COMPRESS_MIN_SIZE = 1024;
+    private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, COMPRESSION_THRESHOLD, COMPRESS_MIN_SIZE);
+    private final Compressor zstdCompressor = new Compressor(CompressionType.ZSTD, 3, COMPRESSION_THRESHOLD, COMPRESS_MIN_SIZE);
+    private final boolean zstd;
+
+    protected RPCSendV2(RPCNetwork net) {
+        super(net);
+        zstd = net.getCompressionType() == CompressionType.ZSTD;
+    }
 
     @Override
     protected String getReturnSpec() { return METHOD_RETURN; }
@@ -74,6 +83,7 @@ public class RPCSendV2 extends RPCSend {
     private static final String CODE_F = "code";
     private static final String BLOB_F = "msg";
     private static final String MSG_F = "msg";
+    private static final String ZSTD_F = "zstd"; // set when the sender accepts zstd compressed payloads in return
 
     @Override
     protected Request encodeRequest(Version version, Route route, RPCServiceAddress address, Message msg,
@@ -99,8 +109,11 @@ public class RPCSendV2 extends RPCSend {
         root.setLong(TIMEREMAINING_F, msg.getTimeRemaining());
         root.setLong(TRACELEVEL_F, traceLevel);
         root.setData(BLOB_F, payload);
+        if (zstd) {
+            root.setBool(ZSTD_F, true);
+        }
 
-        Compressor.Compression compressionResult = BinaryFormat.encode_and_compress(slime, compressor);
+        Compressor.Compression compressionResult = compress(slime, zstd && address.getTarget().acceptsZstd());
 
         v.add(new Int8Value(compressionResult.type().getCode()));
         v.add(new Int32Value(compressionResult.uncompressedSize()));
@@ -110,11 +123,13 @@ public class RPCSendV2 extends RPCSend {
     }
 
     @Override
-    protected Reply createReply(Values ret, String serviceName, Trace trace) {
-        CompressionType compression = CompressionType.valueOf(ret.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(ret.get(5).asData(), compression, ret.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
+    protected Reply createReply(Values ret, RPCServiceAddress address, Trace trace) {
+        String serviceName = address.getServiceName();
+        Slime slime = BinaryFormat.decode(decompress(ret));
         Inspector root = slime.get();
+        if (zstd && root.field(ZSTD_F).asBool()) {
+            address.getTarget().setAcceptsZstd();
+        }
 
         Version version = new Version(new Utf8Array(root.field(VERSION_F).asUtf8()));
         byte[] payload = root.field(BLOB_F).asData();
@@ -152,9 +167,7 @@ public class RPCSendV2 extends RPCSend {
     }
 
     protected Params toParams(Values args) {
-        CompressionType compression = CompressionType.valueOf(args.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(args.get(5).asData(), compression, args.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
+        Slime slime = BinaryFormat.decode(decompress(args));
         Inspector root = slime.get();
         Params p = new Params();
         p.version = new Version(new Utf8Array(root.field(VERSION_F).asUtf8()));
@@ -166,11 +179,12 @@ public class RPCSendV2 extends RPCSend {
         p.protocolName = new Utf8Array(root.field(PROTOCOL_F).asUtf8());
         p.payload = root.field(BLOB_F).asData();
         p.traceLevel = (int)root.field(TRACELEVEL_F).asLong();
+        p.acceptsZstd = root.field(ZSTD_F).asBool();
         return p;
     }
 
     @Override
-    protected void createResponse(Values ret, Reply reply, Version version, byte [] payload) {
+    protected void createResponse(Values ret, Reply reply, Version version, byte [] payload, boolean acceptsZstd) {
         ret.add(new Int8Value(CompressionType.NONE.getCode()));
         ret.add(new Int32Value(0));
         ret.add(new DataValue(new byte[0]));
@@ -182,6 +196,9 @@ public class RPCSendV2 extends RPCSend {
         root.setDouble(RETRYDELAY_F, reply.getRetryDelay());
         root.setString(PROTOCOL_F, reply.getProtocol().getBytes());
         root.setData(BLOB_F, payload);
+        if (zstd) {
+            root.setBool(ZSTD_F, true);
+        }
         if (reply.getTrace().getLevel() > 0) {
             root.setString(TRACE_F, reply.getTrace().getRoot().encode());
         }
@@ -199,11 +216,33 @@ public class RPCSendV2 extends RPCSend {
             }
         }
 
-        Compressor.Compression compressionResult = BinaryFormat.encode_and_compress(slime, compressor);
+        Compressor.Compression compressionResult = compress(slime, zstd && acceptsZstd);
 
         ret.add(new Int8Value(compressionResult.type().getCode()));
         ret.add(new Int32Value(compressionResult.uncompressedSize()));
         ret.add(new DataValue(compressionResult.data()));
     }
 
+    private Compressor.Compression compress(Slime slime, boolean useZstd) {
+        if ( ! useZstd) {
+            return BinaryFormat.encode_and_compress(slime, compressor);
+        }
+        byte[] encoded = BinaryFormat.encode(slime);
+        Compressor.Compression compressed = zstdCompressor.compress(encoded);
+        if (compressed.type() == CompressionType.ZSTD && compressed.data().length >= encoded.length * COMPRESSION_THRESHOLD) {
+            // unlike lz4, zstd output is not checked against the threshold by the compressor
+            return new Compressor.Compression(CompressionType.INCOMPRESSIBLE, encoded.length, encoded);
+        }
+        return compressed;
+    }
+
+    /** Returns the decompressed slime body of the given request parameters or reply values */
+    private byte[] decompress(Values values) {
+        CompressionType compression = CompressionType.valueOf(values.get(3).asInt8());
+        byte[] data = values.get(5).asData();
+        // zstd needs the exact size of the compressed data
+        Optional<Integer> compressedSize = (compression == CompressionType.ZSTD) ? Optional.of(data.length) : Optional.empty();
+        return compressor.decompress(compression, data, 0, values.get(4).asInt32(), compressedSize);
+    }
+
 }
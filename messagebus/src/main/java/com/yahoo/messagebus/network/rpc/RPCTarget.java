@@ -31,6 +31,7 @@ public class RPCTarget implements RequestWaiter {
     private boolean targetInvoked = false;
     private Version version = null;
     private List<VersionHandler> versionHandlers = new LinkedList<>();
+    private volatile boolean acceptsZstd = false;
 
     /**
      * <p>Constructs a new instance of this class.</p>
@@ -52,6 +53,24 @@ public class RPCTarget implements RequestWaiter {
         return target;
     }
 
+    /**
+     * <p>Returns whether the peer of this target has announced that it
+     * accepts ZSTD compressed payloads.</p>
+     *
+     * @return True if payloads may be compressed with ZSTD.
+     */
+    boolean acceptsZstd() {
+        return acceptsZstd;
+    }
+
+    /**
+     * <p>Records that the peer of this target accepts ZSTD compressed
+     * payloads.</p>
+     */
+    void setAcceptsZstd() {
+        acceptsZstd = true;
+    }
+
     /**
      * <p>This method is used for explicit reference counting targets to allow
      * reusing open connections. An instance of this class is constructed with a
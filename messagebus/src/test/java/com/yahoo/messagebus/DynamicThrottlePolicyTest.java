@@ -300,7 +300,7 @@ public class DynamicThrottlePolicyTest {
     static class MockServer {
 
         final Random random = new Random();
-        final int workPerSuccess;
+        int workPerSuccess;
         final int numberOfWorkers;
         final int maximumTaskPerWorker;
         final int workerParallelism;
@@ -0,0 +1,170 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.messagebus.DynamicThrottlePolicyTest.MockServer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongToIntFunction;
+import java.util.stream.IntStream;
+
+import static com.yahoo.messagebus.DynamicThrottlePolicyTest.assertInRange;
+import static com.yahoo.messagebus.DynamicThrottlePolicyTest.error;
+import static com.yahoo.messagebus.DynamicThrottlePolicyTest.message;
+import static com.yahoo.messagebus.DynamicThrottlePolicyTest.success;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays traces of server latency against the {@link MockServer} of {@link DynamicThrottlePolicyTest}, and compares
+ * the throughput and queueing obtained with the {@link LatencyThrottlePolicy} to that of the {@link DynamicThrottlePolicy}.
+ *
+ * @author bratseth
+ */
+public class LatencyThrottlePolicyTest {
+
+    @Test
+    public void windowGrowsUntilServerQueues() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+        Summary summary = run(200_000, tick -> 6, 4, 16, timer, policy);
+
+        double capacity = 4 * 16;
+        assertInRange(0.9, summary.utilisation, 1.0);
+        assertInRange(capacity, summary.averageWindows[0], 2 * capacity);
+        assertInRange(0, summary.averageQueued, capacity);
+        assertEquals(0, summary.errors);
+    }
+
+    @Test
+    public void latencyPolicyQueuesLessThanDynamicPolicy() {
+        // The server is periodically four times slower, like when it is busy with maintenance.
+        LatencyTrace trace = tick -> (tick / 20_000) % 3 == 1 ? 24 : 6;
+
+        CustomTimer dynamicTimer = new CustomTimer();
+        Summary dynamic = run(500_000, trace, 4, 16, dynamicTimer, new DynamicThrottlePolicy(dynamicTimer));
+        CustomTimer latencyTimer = new CustomTimer();
+        Summary latency = run(500_000, trace, 4, 16, latencyTimer, new LatencyThrottlePolicy(latencyTimer));
+
+        assertTrue("Latency policy queues less: " + latency.averageQueued + " < " + dynamic.averageQueued,
+                   latency.averageQueued < 0.5 * dynamic.averageQueued);
+        assertInRange(0.9 * dynamic.utilisation, latency.utilisation, 1.0);
+    }
+
+    @Test
+    public void errorsMakeWindowBackOff() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer).setMinWindowSize(1);
+        double window = policy.getWindowSize();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.canSend(message, 0));
+            policy.processMessage(message);
+            policy.processReply(error);
+            ++timer.millis;
+        }
+        assertTrue(policy.getWindowSize() < window);
+    }
+
+    @Test
+    public void twoWeightedPolicies() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy1 = new LatencyThrottlePolicy(timer);
+        LatencyThrottlePolicy policy2 = new LatencyThrottlePolicy(timer).setWeight(0.25);
+        Summary summary = run(500_000, tick -> 12, 4, 32, timer, policy1, policy2);
+
+        assertInRange(0.9, summary.utilisation, 1.0);
+        // Shares are far from proportional to weights, as both policies see the same latency, but the heavier gets more.
+        assertTrue(summary.averageWindows[0] > summary.averageWindows[1]);
+        assertEquals(0, summary.errors);
+    }
+
+    /** The work needed per successful reply, as a function of time, i.e., the server latency with no queue */
+    @FunctionalInterface
+    interface LatencyTrace extends LongToIntFunction { }
+
+    static Summary run(long operations, LatencyTrace trace, int numberOfWorkers, int workerParallelism,
+                       CustomTimer timer, StaticThrottlePolicy... policies) {
+        List<Integer> order = IntStream.range(0, policies.length).boxed().collect(toList());
+        MockServer resource = new MockServer(trace.applyAsInt(0), numberOfWorkers, 100_000, workerParallelism);
+        AtomicLong outstanding = new AtomicLong(operations);
+        AtomicLong errors = new AtomicLong(0);
+        long ticks = 0;
+        long totalQueued = 0;
+        double[] windows = new double[policies.length];
+        int[] pending = new int[policies.length];
+        while (outstanding.get() + resource.pending() > 0) {
+            resource.workPerSuccess = trace.applyAsInt(ticks);
+            Collections.shuffle(order);
+            for (int j = 0; j < policies.length; j++) {
+                int i = order.get(j);
+                StaticThrottlePolicy policy = policies[i];
+                windows[i] += policy.getMaxPendingCount();
+                while (outstanding.get() > 0 && policy.canSend(message, pending[i])) {
+                    outstanding.decrementAndGet();
+                    policy.processMessage(message);
+                    ++pending[i];
+                    resource.send(successful -> {
+                        --pending[i];
+                        if (successful)
+                            policy.processReply(success);
+                        else {
+                            errors.incrementAndGet();
+                            outstanding.incrementAndGet();
+                            policy.processReply(error);
+                        }
+                    });
+                }
+            }
+            for (int i = 0; i < numberOfWorkers; i++)
+                totalQueued += Math.max(0, resource.outstandingTasks.get(i).size() - workerParallelism);
+
+            ++ticks;
+            resource.tick();
+            ++timer.millis;
+        }
+
+        for (int i = 0; i < windows.length; i++)
+            windows[i] /= ticks;
+
+        Summary summary = new Summary(operations / (double) ticks,
+                                      utilisation(trace, ticks, numberOfWorkers, workerParallelism, operations),
+                                      totalQueued / (double) ticks,
+                                      windows,
+                                      errors.get());
+        System.err.println(summary);
+        return summary;
+    }
+
+    /** Returns the ratio of the given number of operations to the number the server could complete in the given time */
+    private static double utilisation(LatencyTrace trace, long ticks, int numberOfWorkers, int workerParallelism, long operations) {
+        double capacity = 0;
+        for (long tick = 0; tick < ticks; tick++)
+            capacity += numberOfWorkers * workerParallelism / (double) trace.applyAsInt(tick);
+        return operations / capacity;
+    }
+
+    static class Summary {
+        final double throughput;        // Successful replies per tick
+        final double utilisation;       // Successful replies / maximum possible replies, over the same time
+        final double averageQueued;     // Average number of tasks waiting in the server, beyond those being worked on
+        final double[] averageWindows;  // Average window size per policy
+        final long errors;              // Number of error replies
+        Summary(double throughput, double utilisation, double averageQueued, double[] averageWindows, long errors) {
+            this.throughput = throughput;
+            this.utilisation = utilisation;
+            this.averageQueued = averageQueued;
+            this.averageWindows = averageWindows;
+            this.errors = errors;
+        }
+        @Override
+        public String toString() {
+            return String.format("throughput %.3f/tick, utilisation %.3f, queued %.1f, windows %s, errors %d",
+                                 throughput, utilisation, averageQueued, Arrays.toString(averageWindows), errors);
+        }
+    }
+
+}
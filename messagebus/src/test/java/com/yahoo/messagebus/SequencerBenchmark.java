@@ -0,0 +1,87 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.messagebus.SequencerTestCase.OrderedMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A benchmark of the throughput of the sequencer with many concurrent senders, with a single stripe,
+ * like the implementation before striping, and with the default number of stripes. Run the main method manually.
+ *
+ * @author bratseth
+ */
+public class SequencerBenchmark {
+
+    private final int threads = 8;
+    private final int idsPerThread = 32;
+    private final int messagesPerThread = 20000;
+
+    private double messagesPerSecond(int stripes) throws InterruptedException {
+        ReplyingSender sender = new ReplyingSender();
+        Sequencer seq = new Sequencer(sender, stripes);
+        CountDownLatch done = new CountDownLatch(threads * messagesPerThread);
+        ReplyHandler replyHandler = reply -> done.countDown();
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long firstId = t * idsPerThread;
+            senders.add(new Thread(() -> {
+                for (int i = 0; i < messagesPerThread; i++) {
+                    Message msg = new OrderedMessage(firstId + i % idsPerThread, i / idsPerThread);
+                    msg.pushHandler(replyHandler);
+                    seq.handleMessage(msg);
+                }
+            }));
+        }
+        List<Thread> repliers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            repliers.add(new Thread(sender::replyAll));
+        }
+        repliers.forEach(Thread::start);
+        long start = System.nanoTime();
+        senders.forEach(Thread::start);
+        done.await();
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        repliers.forEach(Thread::interrupt);
+        seq.destroy();
+        return threads * messagesPerThread / seconds;
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println("Sequencer with 1 stripe: " + (int)messagesPerSecond(1) + " messages/s");
+        System.out.println("Sequencer with 64 stripes: " + (int)messagesPerSecond(64) + " messages/s");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new SequencerBenchmark().run();
+    }
+
+    /** Replies to messages from separate threads */
+    private static class ReplyingSender implements MessageHandler {
+
+        final LinkedBlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void handleMessage(Message msg) {
+            queue.add(msg);
+        }
+
+        void replyAll() {
+            try {
+                while (true) {
+                    Message msg = queue.take();
+                    Reply reply = new EmptyReply();
+                    reply.swapState(msg);
+                    reply.setMessage(msg);
+                    reply.popHandler().handleReply(reply);
+                }
+            } catch (InterruptedException e) {
+                // done
+            }
+        }
+    }
+
+}
@@ -4,11 +4,22 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -104,6 +115,110 @@ public class SequencerTestCase {
         assertEquals(0, dst.size());
     }
 
+    @Test
+    public void testAtMostOneMessageInFlightPerIdAcrossIdsSharingAStripe() throws InterruptedException {
+        assertConcurrentSending(1);
+        assertConcurrentSending(4);
+    }
+
+    /** Sends messages from many threads to ids which share stripes, and verifies ordering and that each id has at most one message in flight */
+    private void assertConcurrentSending(int stripes) throws InterruptedException {
+        int threads = 4, idsPerThread = 8, messagesPerThread = 2000;
+        InFlightCheckingSender sender = new InFlightCheckingSender();
+        Sequencer seq = new Sequencer(sender, stripes);
+        CountDownLatch done = new CountDownLatch(threads * messagesPerThread);
+        ReplyHandler replyHandler = reply -> done.countDown();
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long firstId = t * idsPerThread;
+            senders.add(new Thread(() -> {
+                for (int i = 0; i < messagesPerThread; i++) {
+                    Message msg = new OrderedMessage(firstId + i % idsPerThread, i / idsPerThread);
+                    msg.pushHandler(replyHandler);
+                    seq.handleMessage(msg);
+                }
+            }));
+        }
+        List<Thread> repliers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            repliers.add(new Thread(sender::replyAll));
+        }
+        repliers.forEach(Thread::start);
+        senders.forEach(Thread::start);
+        assertTrue("All messages were replied to", done.await(60, TimeUnit.SECONDS));
+        repliers.forEach(Thread::interrupt);
+        seq.destroy();
+
+        assertNull(sender.failure.get());
+        assertTrue("Several ids were in flight at once", sender.maxIdsInFlight.get() > 1);
+    }
+
+    /**
+     * Replies to messages from separate threads, and verifies that messages with the same sequence id arrive in order,
+     * and only when no other message with that id is in flight
+     */
+    private static class InFlightCheckingSender implements MessageHandler {
+
+        final LinkedBlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+        final Map<Long, Long> lastSequenceNumbers = new ConcurrentHashMap<>();
+        final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+        final AtomicInteger maxIdsInFlight = new AtomicInteger();
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        @Override
+        public void handleMessage(Message msg) {
+            OrderedMessage ordered = (OrderedMessage)msg;
+            if ( ! inFlight.add(ordered.getSequenceId())) {
+                failure.compareAndSet(null, "Message " + ordered.sequenceNumber + " with sequence id " +
+                                            ordered.getSequenceId() + " was sent while another was in flight");
+            }
+            maxIdsInFlight.accumulateAndGet(inFlight.size(), Math::max);
+            Long last = lastSequenceNumbers.put(ordered.getSequenceId(), ordered.sequenceNumber);
+            if (last != null && last + 1 != ordered.sequenceNumber) {
+                failure.compareAndSet(null, "Message " + ordered.sequenceNumber + " with sequence id " +
+                                            ordered.getSequenceId() + " arrived after " + last);
+            }
+            queue.add(msg);
+        }
+
+        void replyAll() {
+            try {
+                while (true) {
+                    Message msg = queue.take();
+                    inFlight.remove(msg.getSequenceId());
+                    Reply reply = new EmptyReply();
+                    reply.swapState(msg);
+                    reply.setMessage(msg);
+                    reply.popHandler().handleReply(reply);
+                }
+            } catch (InterruptedException e) {
+                // done
+            }
+        }
+    }
+
+    static class OrderedMessage extends SimpleMessage {
+
+        final long seqId;
+        final long sequenceNumber;
+
+        OrderedMessage(long seqId, long sequenceNumber) {
+            super("foo");
+            this.seqId = seqId;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public boolean hasSequenceId() {
+            return true;
+        }
+
+        @Override
+        public long getSequenceId() {
+            return seqId;
+        }
+    }
+
     @SuppressWarnings("serial")
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
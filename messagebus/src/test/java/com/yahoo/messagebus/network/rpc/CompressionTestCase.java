@@ -0,0 +1,112 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests negotiation of zstd compression of RPCSendV2 payloads.
+ *
+ * @author bratseth
+ */
+public class CompressionTestCase {
+
+    private static final String VALUE = "The quick brown fox jumps over the lazy dog. ".repeat(100);
+
+    private Slobrok slobrok;
+
+    @Before
+    public void setUp() throws Exception {
+        slobrok = new Slobrok();
+    }
+
+    @After
+    public void tearDown() {
+        slobrok.stop();
+    }
+
+    @Test
+    public void requireThatZstdIsUsedAfterPeerHasAnnouncedIt() throws Exception {
+        List<CompressionType> received = sendAndReply(CompressionType.ZSTD, CompressionType.ZSTD);
+        assertEquals(List.of(CompressionType.LZ4, CompressionType.ZSTD, CompressionType.ZSTD), received);
+    }
+
+    @Test
+    public void requireThatLz4IsUsedWithPeersNotAnnouncingZstd() throws Exception {
+        assertFalse(sendAndReply(CompressionType.ZSTD, CompressionType.LZ4).contains(CompressionType.ZSTD));
+        assertFalse(sendAndReply(CompressionType.LZ4, CompressionType.ZSTD).contains(CompressionType.ZSTD));
+    }
+
+    /** Sends a few messages and replies, and returns the compression of each message as received */
+    private List<CompressionType> sendAndReply(CompressionType srcCompression, CompressionType dstCompression) throws Exception {
+        TestServer srcServer = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()),
+                                              new RPCNetworkParams().setIdentity(new Identity("src"))
+                                                                    .setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                                                    .setCompressionType(srcCompression));
+        TestServer dstServer = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()),
+                                              new RPCNetworkParams().setIdentity(new Identity("dst"))
+                                                                    .setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                                                    .setCompressionType(dstCompression));
+        List<CompressionType> received = new CopyOnWriteArrayList<>();
+        RPCSendV2 adapter = (RPCSendV2)dstServer.net.getSendAdapter(new Version(6, 149));
+        ((RPCNetwork)dstServer.net).getSupervisor().addMethod(new Method("mbus.slime", "bixbix", "bixbix", request -> {
+            received.add(CompressionType.valueOf(request.parameters().get(3).asInt8()));
+            adapter.invoke(request);
+        }));
+
+        Receptor srcHandler = new Receptor();
+        Receptor dstHandler = new Receptor();
+        SourceSession src = srcServer.mb.createSourceSession(new SourceSessionParams().setTimeout(600.0).setReplyHandler(srcHandler));
+        DestinationSession dst = dstServer.mb.createDestinationSession(new DestinationSessionParams().setMessageHandler(dstHandler));
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(src.send(new SimpleMessage(VALUE + i), Route.parse(dst.getConnectionSpec())).isAccepted());
+                Message msg = dstHandler.getMessage(60);
+                assertNotNull(msg);
+                assertEquals(VALUE + i, ((SimpleMessage)msg).getValue());
+
+                Reply reply = new SimpleReply(VALUE + i);
+                reply.swapState(msg);
+                dst.reply(reply);
+                reply = srcHandler.getReply(60);
+                assertNotNull(reply);
+                assertFalse(reply.hasErrors());
+                assertEquals(VALUE + i, ((SimpleReply)reply).getValue());
+            }
+            return received;
+        } finally {
+            src.destroy();
+            dst.destroy();
+            srcServer.destroy();
+            dstServer.destroy();
+        }
+    }
+
+}
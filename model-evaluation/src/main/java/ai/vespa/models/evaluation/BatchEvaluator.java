@@ -0,0 +1,363 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompiledExpression;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
+import com.yahoo.tensor.TensorType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * An evaluator which can be used to evaluate a single function once for each row in a batch of argument values.
+ * Arguments are bound as columns containing one value per row.
+ *
+ * All rows are evaluated in a single context: Rows where all arguments are scalars are evaluated
+ * by the compiled function if it is compilable, and ONNX models whose inputs and outputs have an unbound
+ * first dimension are evaluated once for all rows by concatenating the inputs of each row along it.
+ * Inputs computed by functions are computed from the arguments of each row before this.
+ *
+ * @author bratseth
+ */
+// This wraps all access to the context and the ranking expression to avoid incorrect usage
+public class BatchEvaluator {
+
+    private final ExpressionFunction function;
+    private final LazyArrayContext context;
+
+    /** The function compiled to bytecode, taking the values of the context as arguments, if it is compilable */
+    private final Optional<CompiledExpression> compiled;
+
+    /** The columns of values bound to scalars, by context index, containing null for others */
+    private final double[][] scalarColumns;
+
+    /** The columns of values bound to tensors, by context index, containing null for others */
+    private final Tensor[][] tensorColumns;
+
+    /** The number of rows in this, or -1 if no column is bound yet */
+    private int rows = -1;
+
+    private boolean evaluated = false;
+
+    BatchEvaluator(ExpressionFunction function, LazyArrayContext context, Optional<CompiledExpression> compiled) {
+        this.function = function;
+        this.context = context;
+        this.compiled = compiled;
+        this.scalarColumns = new double[context.size()][];
+        this.tensorColumns = new Tensor[context.size()][];
+    }
+
+    /**
+     * Binds the given variable referred in this expression to the given value in each row.
+     *
+     * @param name the variable to bind
+     * @param values the values this becomes bound to, one for each row
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, List<Tensor> values) {
+        TensorType requiredType = requireArgumentType(name);
+        for (Tensor value : values) {
+            if ( ! value.type().isAssignableTo(requiredType))
+                throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not " + value.type());
+        }
+        if (requiredType.rank() == 0) {
+            double[] scalars = new double[values.size()];
+            for (int i = 0; i < scalars.length; i++)
+                scalars[i] = values.get(i).asDouble();
+            return bind(name, scalars);
+        }
+        int index = setRows(name, values.size());
+        tensorColumns[index] = values.toArray(new Tensor[0]);
+        scalarColumns[index] = null;
+        return this;
+    }
+
+    /**
+     * Binds the given variable referred in this expression to the given scalar value in each row.
+     *
+     * @param name the variable to bind
+     * @param values the values this becomes bound to, one for each row
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, double[] values) {
+        TensorType requiredType = requireArgumentType(name);
+        if ( ! TensorType.empty.isAssignableTo(requiredType))
+            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not a scalar");
+        int index = setRows(name, values.length);
+        scalarColumns[index] = values;
+        tensorColumns[index] = null;
+        return this;
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchEvaluator setMissingValue(Tensor value) {
+        if (evaluated)
+            throw new IllegalStateException("Cannot change the missing value in a used evaluator");
+        context.setMissingValue(value);
+        return this;
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchEvaluator setMissingValue(double value) {
+        return setMissingValue(Tensor.Builder.of(TensorType.empty).cell(value).build());
+    }
+
+    /** Returns the number of rows bound in this, or 0 if no argument is bound yet */
+    public int rows() { return Math.max(rows, 0); }
+
+    /**
+     * Evaluates the function for each row.
+     *
+     * @return the value of the function for each row, in the order of the rows
+     * @throws IllegalStateException if no arguments are bound
+     */
+    public List<Tensor> evaluate() {
+        prepareEvaluation();
+        List<Tensor> results = new ArrayList<>(rows);
+        if (compiled.isPresent() && isCompiledEvaluable()) {
+            for (double result : evaluateCompiled(compiled.get()))
+                results.add(Tensor.Builder.of(TensorType.empty).cell(result).build());
+            return results;
+        }
+        Map<String, Tensor[]> onnxResults = evaluateOnnxModels();
+        for (int row = 0; row < rows; row++)
+            results.add(evaluateRow(row, onnxResults).asTensor());
+        return results;
+    }
+
+    /**
+     * Evaluates a function returning a scalar for each row.
+     * This avoids creating a tensor per row and is therefore faster than evaluate() for large batches.
+     *
+     * @return the value of the function for each row, in the order of the rows
+     * @throws IllegalStateException if the function does not return a scalar, or no arguments are bound
+     */
+    public double[] evaluateScalars() {
+        if (function.returnType().isPresent() && function.returnType().get().rank() > 0)
+            throw new IllegalStateException("Cannot evaluate " + function + " to scalars: It returns " +
+                                            function.returnType().get());
+        prepareEvaluation();
+        if (compiled.isPresent() && isCompiledEvaluable())
+            return evaluateCompiled(compiled.get());
+        Map<String, Tensor[]> onnxResults = evaluateOnnxModels();
+        double[] results = new double[rows];
+        for (int row = 0; row < rows; row++)
+            results[row] = evaluateRow(row, onnxResults).asDouble();
+        return results;
+    }
+
+    private void prepareEvaluation() {
+        if (evaluated)
+            throw new IllegalStateException("Cannot evaluate an evaluator more than once");
+        if (rows < 0)
+            throw new IllegalStateException("No arguments are bound in " + function + ": Cannot determine the number of rows");
+        for (Map.Entry<String, TensorType> argument : function.argumentTypes().entrySet())
+            checkArgument(argument.getKey(), argument.getValue());
+        evaluated = true;
+    }
+
+    private void checkArgument(String name, TensorType type) {
+        if (context.isMissing(name))
+            throw new IllegalStateException("Missing argument '" + name + "': Must be bound to a value of type " + type);
+        int index = context.getIndex(name);
+        if (scalarColumns[index] == null && tensorColumns[index] == null &&
+            ! context.get(index).type().isAssignableTo(type))
+            throw new IllegalStateException("Argument '" + name + "' must be bound to a value of type " + type);
+    }
+
+    /** Returns whether all the arguments of the compiled function are scalars in all rows */
+    private boolean isCompiledEvaluable() {
+        for (int i = 0; i < context.size(); i++) {
+            if (tensorColumns[i] != null) return false;
+            if (scalarColumns[i] == null && context.get(i).type().rank() > 0) return false;
+        }
+        return true;
+    }
+
+    private double[] evaluateCompiled(CompiledExpression compiled) {
+        double[] arguments = new double[compiled.arguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            if (scalarColumns[i] == null)
+                arguments[i] = context.get(i).asDouble();
+        }
+        double[] results = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            for (int i = 0; i < arguments.length; i++) {
+                if (scalarColumns[i] != null)
+                    arguments[i] = scalarColumns[i][row];
+            }
+            results[row] = compiled.evaluate(arguments);
+        }
+        return results;
+    }
+
+    /** Binds the values of the given row in the context of this and evaluates the function over it */
+    private Value evaluateRow(int row, Map<String, Tensor[]> onnxResults) {
+        bindRow(row);
+        for (Map.Entry<String, Tensor[]> onnxResult : onnxResults.entrySet())
+            context.put(onnxResult.getKey(), new TensorValue(onnxResult.getValue()[row]));
+        return function.getBody().evaluate(context);
+    }
+
+    /** Binds the values of the given row in the context of this, and forgets the values computed from other rows */
+    private void bindRow(int row) {
+        for (int i = 0; i < scalarColumns.length; i++) {
+            if (scalarColumns[i] != null)
+                context.put(i, scalarColumns[i][row]);
+            else if (tensorColumns[i] != null)
+                context.put(i, new TensorValue(tensorColumns[i][row]));
+        }
+        context.resetComputedValues();
+    }
+
+    /** Evaluates the ONNX models of the context and returns their results for each row, by ONNX feature */
+    private Map<String, Tensor[]> evaluateOnnxModels() {
+        Map<String, Tensor[]> results = new HashMap<>();
+        for (Map.Entry<String, OnnxModel> entry : context.onnxModels().entrySet()) {
+            OnnxModel onnxModel = entry.getValue();
+            String output = function.getName(); // Function name is output of model
+            Optional<Tensor[]> batchResult = evaluateBatched(onnxModel, output);
+            results.put(entry.getKey(), batchResult.isPresent() ? batchResult.get() : evaluateRowByRow(onnxModel, output));
+        }
+        return results;
+    }
+
+    private Tensor[] evaluateRowByRow(OnnxModel onnxModel, String output) {
+        Tensor[] results = new Tensor[rows];
+        for (int row = 0; row < rows; row++) {
+            bindRow(row);
+            Map<String, Tensor> inputs = new HashMap<>();
+            for (String input : onnxModel.inputs().keySet())
+                inputs.put(input, context.get(onnxModel.inputFrom(input)).asTensor());
+            results[row] = onnxModel.evaluate(inputs, output);
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates the given model once by concatenating the inputs of all rows along their first dimension,
+     * and splits the result along the first dimension of the output,
+     * or returns empty if the inputs or output of the model does not have an unbound first dimension.
+     */
+    private Optional<Tensor[]> evaluateBatched(OnnxModel onnxModel, String output) {
+        if (rows < 2) return Optional.empty();
+        if ( ! hasBatchDimension(onnxModel.outputs().get(output))) return Optional.empty();
+        for (TensorType inputType : onnxModel.inputs().values())
+            if ( ! hasBatchDimension(inputType)) return Optional.empty();
+
+        Map<String, List<Tensor>> values = new HashMap<>();
+        for (String input : onnxModel.inputs().keySet())
+            values.put(input, new ArrayList<>(rows));
+        for (int row = 0; row < rows; row++) {
+            bindRow(row);
+            for (Map.Entry<String, List<Tensor>> input : values.entrySet())
+                input.getValue().add(context.get(onnxModel.inputFrom(input.getKey())).asTensor());
+        }
+
+        Map<String, Tensor> inputs = new HashMap<>();
+        for (Map.Entry<String, List<Tensor>> input : values.entrySet()) {
+            Optional<Tensor> batch = concatenate(input.getValue());
+            if (batch.isEmpty()) return Optional.empty();
+            inputs.put(input.getKey(), batch.get());
+        }
+        return split(onnxModel.evaluate(inputs, output));
+    }
+
+    /** Returns whether the given type has an unbound indexed first dimension */
+    private static boolean hasBatchDimension(TensorType type) {
+        if (type == null || type.rank() == 0) return false;
+        TensorType.Dimension first = type.dimensions().get(0);
+        return first.type() == TensorType.Dimension.Type.indexedUnbound;
+    }
+
+    /**
+     * Concatenates tensors having a first dimension of size 1 along that dimension,
+     * or returns empty if they are not all of the same such type.
+     */
+    private static Optional<Tensor> concatenate(List<Tensor> values) {
+        TensorType rowType = values.get(0).type();
+        if (rowType.rank() == 0) return Optional.empty();
+        TensorType.Dimension first = rowType.dimensions().get(0);
+        if ( ! first.isIndexed() || first.size().isEmpty() || first.size().get() != 1) return Optional.empty();
+
+        Tensor.Builder builder = Tensor.Builder.of(withFirstDimensionSize(rowType, values.size()));
+        for (int row = 0; row < values.size(); row++) {
+            Tensor value = values.get(row);
+            if ( ! value.type().equals(rowType)) return Optional.empty();
+            for (Iterator<Tensor.Cell> cells = value.cellIterator(); cells.hasNext(); ) {
+                Tensor.Cell cell = cells.next();
+                builder.cell(cell.getKey().withLabel(0, row), cell.getValue());
+            }
+        }
+        return Optional.of(builder.build());
+    }
+
+    /** Splits a tensor along its first dimension into tensors where that dimension has size 1 */
+    private Optional<Tensor[]> split(Tensor batch) {
+        TensorType.Dimension first = batch.type().dimensions().get(0);
+        if (first.size().isEmpty() || first.size().get() != rows) return Optional.empty();
+
+        TensorType rowType = withFirstDimensionSize(batch.type(), 1);
+        Tensor.Builder[] builders = new Tensor.Builder[rows];
+        for (int row = 0; row < rows; row++)
+            builders[row] = Tensor.Builder.of(rowType);
+        for (Iterator<Tensor.Cell> cells = batch.cellIterator(); cells.hasNext(); ) {
+            Tensor.Cell cell = cells.next();
+            TensorAddress address = cell.getKey();
+            builders[(int)address.numericLabel(0)].cell(address.withLabel(0, 0), cell.getValue());
+        }
+        Tensor[] results = new Tensor[rows];
+        for (int row = 0; row < rows; row++)
+            results[row] = builders[row].build();
+        return Optional.of(results);
+    }
+
+    private static TensorType withFirstDimensionSize(TensorType type, long size) {
+        return new TensorType.Builder(type).set(TensorType.Dimension.indexed(type.dimensions().get(0).name(), size))
+                                           .build();
+    }
+
+    private TensorType requireArgumentType(String name) {
+        if (evaluated)
+            throw new IllegalStateException("Cannot bind a new value in a used evaluator");
+        TensorType requiredType = function.argumentTypes().get(name);
+        if (requiredType == null)
+            throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
+                                               ". Expected arguments: " + function.argumentTypes().entrySet().stream()
+                                                                                  .map(e -> e.getKey() + ": " + e.getValue())
+                                                                                  .collect(Collectors.joining(", ")));
+        return requiredType;
+    }
+
+    /** Sets or verifies the number of rows of this and returns the context index of the given name */
+    private int setRows(String name, int rows) {
+        if (this.rows >= 0 && this.rows != rows)
+            throw new IllegalArgumentException("'" + name + "' has " + rows + " values, but " + this.rows +
+                                               " rows are bound in other arguments");
+        this.rows = rows;
+        return context.getIndex(name);
+    }
+
+    /** Returns the function evaluated by this */
+    public ExpressionFunction function() { return function; }
+
+}
@@ -4,11 +4,14 @@ package ai.vespa.models.evaluation;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.evaluation.StringValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompiledExpression;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -21,11 +24,16 @@ public class FunctionEvaluator {
 
     private final ExpressionFunction function;
     private final LazyArrayContext context;
+
+    /** The function compiled to bytecode, taking the values of the context as arguments, if it is compilable */
+    private final Optional<CompiledExpression> compiled;
+
     private boolean evaluated = false;
 
-    FunctionEvaluator(ExpressionFunction function, LazyArrayContext context) {
+    FunctionEvaluator(ExpressionFunction function, LazyArrayContext context, Optional<CompiledExpression> compiled) {
         this.function = function;
         this.context = context;
+        this.compiled = compiled;
     }
 
     /**
@@ -105,10 +113,25 @@ public class FunctionEvaluator {
             checkArgument(argument.getKey(), argument.getValue());
         }
         evaluated = true;
+        if (compiled.isPresent()) {
+            Optional<Tensor> result = evaluateCompiled(compiled.get());
+            if (result.isPresent()) return result.get();
+        }
         evaluateOnnxModels();
         return function.getBody().evaluate(context).asTensor();
     }
 
+    /** Evaluates the compiled function, or returns empty if some bound value is not a scalar */
+    private Optional<Tensor> evaluateCompiled(CompiledExpression compiled) {
+        double[] arguments = new double[compiled.arguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            Value value = context.get(i);
+            if (value.type().rank() > 0) return Optional.empty();
+            arguments[i] = value.asDouble();
+        }
+        return Optional.of(Tensor.Builder.of(TensorType.empty).cell(compiled.evaluate(arguments)).build());
+    }
+
     private void checkArgument(String name, TensorType type) {
         if (context.isMissing(name))
             throw new IllegalStateException("Missing argument '" + name + "': Must be bound to a value of type " + type);
@@ -126,7 +149,7 @@ public class FunctionEvaluator {
             if (context.get(onnxFeature).equals(context.defaultValue())) {
                 Map<String, Tensor> inputs = new HashMap<>();
                 for (Map.Entry<String, TensorType> input: onnxModel.inputs().entrySet()) {
-                    inputs.put(input.getKey(), context.get(input.getKey()).asTensor());
+                    inputs.put(input.getKey(), context.get(onnxModel.inputFrom(input.getKey())).asTensor());
                 }
                 Tensor result = onnxModel.evaluate(inputs, function.getName());  // Function name is output of model
                 context.put(onnxFeature, new TensorValue(result));
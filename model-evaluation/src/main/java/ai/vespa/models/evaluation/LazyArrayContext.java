@@ -140,6 +140,14 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         return indexedBindings.missingValue;
     }
 
+    /**
+     * Forgets the values computed by the function invocations in this, such that this can be reused
+     * to evaluate the same ranking expression with new values bound.
+     */
+    void resetComputedValues() {
+        indexedBindings.resetComputedValues();
+    }
+
     /**
      * Creates a copy of this context suitable for evaluating against the same ranking expression
      * in a different thread or for re-binding free variables.
@@ -241,7 +249,7 @@ public final class LazyArrayContext extends Context implements ContextIndex {
                 extractBindTargets(functionNode, functions, bindTargets, arguments, onnxModels, onnxModelsInUse);
             }
             else if (isOnnx(node)) {
-                extractOnnxTargets(node, bindTargets, arguments, onnxModels, onnxModelsInUse);
+                extractOnnxTargets(node, functions, bindTargets, arguments, onnxModels, onnxModelsInUse);
             }
             else if (isConstant(node)) {
                 bindTargets.add(node.toString());
@@ -264,6 +272,7 @@ public final class LazyArrayContext extends Context implements ContextIndex {
          * inputs to the model and add them as bind targets and arguments.
          */
         private void extractOnnxTargets(ExpressionNode node,
+                                        Map<FunctionReference, ExpressionFunction> functions,
                                         Set<String> bindTargets,
                                         Set<String> arguments,
                                         List<OnnxModel> onnxModels,
@@ -279,8 +288,19 @@ public final class LazyArrayContext extends Context implements ContextIndex {
                         onnxModel.load();
 
                         for(String input : onnxModel.inputs().keySet()) {
-                            bindTargets.add(input);
-                            arguments.add(input);
+                            Optional<FunctionReference> inputFunction = FunctionReference.fromSerial(onnxModel.inputFrom(input));
+                            if (inputFunction.isPresent()) { // Computed from the bind targets of the function
+                                if ( ! functions.containsKey(inputFunction.get()))
+                                    throw new IllegalArgumentException("Input '" + input + "' of ONNX model '" + onnxModel.name() +
+                                                                       "' is computed by a missing function: " + inputFunction.get());
+                                bindTargets.add(inputFunction.get().serialForm());
+                                extractBindTargets(functions.get(inputFunction.get()).getBody().getRoot(),
+                                                   functions, bindTargets, arguments, onnxModels, onnxModelsInUse);
+                            }
+                            else {
+                                bindTargets.add(input);
+                                arguments.add(input);
+                            }
                         }
                         onnxModelsInUse.put(onnxFeature, onnxModel);
                     }
@@ -345,6 +365,12 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         Integer indexOf(String name) { return nameToIndex.get(name); }
         Map<String, OnnxModel> onnxModels() { return onnxModels; }
 
+        void resetComputedValues() {
+            for (Value value : values)
+                if (value instanceof LazyValue)
+                    ((LazyValue) value).reset();
+        }
+
         IndexedBindings copy(Context context) {
             Value[] valueCopy = new Value[values.length];
             for (int i = 0; i < values.length; i++)
@@ -147,6 +147,11 @@ class LazyValue extends Value {
         return computedValue().hashCode();
     }
 
+    /** Forgets the value computed by this, such that it is recomputed from the current values of the context */
+    void reset() {
+        computedValue = null;
+    }
+
     LazyValue copyFor(Context context) {
         return new LazyValue(this.function, context, model);
     }
@@ -9,6 +9,8 @@ import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompiledExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.ExpressionCompiler;
 import com.yahoo.tensor.TensorType;
 
 import java.util.Arrays;
@@ -16,6 +18,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -43,7 +46,11 @@ public class Model {
     /** Context prototypes, indexed by function name (as all invocations of the same function share the same context prototype) */
     private final ImmutableMap<String, LazyArrayContext> contextPrototypes;
 
+    /** Bytecode compiled versions of the functions taking scalar arguments only, indexed by function name */
+    private final ImmutableMap<String, CompiledExpression> compiledFunctions;
+
     private final ExpressionOptimizer expressionOptimizer = new ExpressionOptimizer();
+    private final ExpressionCompiler expressionCompiler = new ExpressionCompiler();
 
     /** Programmatically create a model containing functions without constant of function references only */
     public Model(String name, Collection<ExpressionFunction> functions) {
@@ -63,10 +70,12 @@ public class Model {
 
         // Build context and add missing function arguments (missing because it is legal to omit scalar type arguments)
         ImmutableMap.Builder<String, LazyArrayContext> contextBuilder = new ImmutableMap.Builder<>();
+        ImmutableMap.Builder<String, CompiledExpression> compiledBuilder = new ImmutableMap.Builder<>();
         for (Map.Entry<FunctionReference, ExpressionFunction> function : functions.entrySet()) {
             try {
                 LazyArrayContext context = new LazyArrayContext(function.getValue(), referencedFunctions, constants, onnxModels, this);
                 contextBuilder.put(function.getValue().getName(), context);
+                compile(function.getValue(), context).ifPresent(compiled -> compiledBuilder.put(function.getValue().getName(), compiled));
                 if ( ! function.getValue().returnType().isPresent()) {
                     functions.put(function.getKey(), function.getValue().withReturnType(TensorType.empty));
                 }
@@ -74,6 +83,7 @@ public class Model {
                 for (Map.Entry<String, OnnxModel> entry : context.onnxModels().entrySet()) {
                     OnnxModel onnxModel = entry.getValue();
                     for(Map.Entry<String, TensorType> input : onnxModel.inputs().entrySet()) {
+                        if (context.isMissing(input.getKey())) continue; // Computed by a function
                         functions.put(function.getKey(), function.getValue().withArgument(input.getKey(), input.getValue()));
                     }
                 }
@@ -96,6 +106,7 @@ public class Model {
             }
         }
         this.contextPrototypes = contextBuilder.build();
+        this.compiledFunctions = compiledBuilder.build();
         this.functions = ImmutableList.copyOf(functions.values());
         this.publicFunctions = ImmutableList.copyOf(functions.values().stream()
                                                                       .filter(f ->  ! f.getName().startsWith(INTERMEDIATE_OPERATION_FUNCTION_PREFIX))
@@ -111,6 +122,17 @@ public class Model {
         this.referencedFunctions = functionsBuilder.build();
     }
 
+    /**
+     * Returns the given function compiled to bytecode, or empty if it is not compilable or
+     * refers to anything but scalar arguments, such as constants, other functions or ONNX models.
+     * Compilation must happen before optimization, which replaces nodes by ones which are not compilable.
+     */
+    private Optional<CompiledExpression> compile(ExpressionFunction function, LazyArrayContext context) {
+        if ( ! context.names().equals(context.arguments())) return Optional.empty();
+        if (function.argumentTypes().values().stream().anyMatch(type -> type.rank() > 0)) return Optional.empty();
+        return expressionCompiler.compile(function.getBody(), List.copyOf(context.names()));
+    }
+
     /** Returns an optimized version of the given function */
     private ExpressionFunction optimize(ExpressionFunction function, ContextIndex context) {
         // Note: Optimization is in-place but we do not depend on that outside this method
@@ -182,21 +204,43 @@ public class Model {
      * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
      */
     public FunctionEvaluator evaluatorOf(String ... names) {  // TODO: Parameter overloading?
+        return evaluatorOf(resolveFunction(names));
+    }
+
+    /**
+     * Returns an evaluator which can be used to evaluate the given function for each row of a batch
+     * of argument values in a single thread once.
+     *
+     * Usage:
+     * <code>List&lt;Tensor&gt; results = model.batchEvaluatorOf("myFunction").bind("foo", fooValues).bind("bar", barValues).evaluate()</code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public BatchEvaluator batchEvaluatorOf(String ... names) {
+        ExpressionFunction function = resolveFunction(names);
+        return new BatchEvaluator(function,
+                                  requireContextPrototype(function.getName()).copy(),
+                                  Optional.ofNullable(compiledFunctions.get(function.getName())));
+    }
+
+    /** Returns the function identified by the given names, as described in {@link #evaluatorOf} */
+    private ExpressionFunction resolveFunction(String ... names) {
         if (names.length == 0) {
             if (functions.size() > 1)
                 throwUndeterminedFunction("More than one function is available in " + this + ", but no name is given");
-            return evaluatorOf(functions.get(0));
+            return functions.get(0);
         }
         else if (names.length == 1) {
             String name = names[0];
             ExpressionFunction function = function(name);
-            if (function != null) return evaluatorOf(function);
+            if (function != null) return function;
 
             // Check if the name is a signature
             List<ExpressionFunction> functionsStartingByName =
                     functions.stream().filter(f -> f.getName().startsWith(name + ".")).collect(Collectors.toList());
             if (functionsStartingByName.size() == 1)
-                return evaluatorOf(functionsStartingByName.get(0));
+                return functionsStartingByName.get(0);
             if (functionsStartingByName.size() > 1)
                 throwUndeterminedFunction("Multiple functions start by '" + name + "' in " + this);
 
@@ -204,24 +248,24 @@ public class Model {
             List<ExpressionFunction> functionsEndingByName =
                     functions.stream().filter(f -> f.getName().endsWith("." + name)).collect(Collectors.toList());
             if (functionsEndingByName.size() == 1)
-                return evaluatorOf(functionsEndingByName.get(0));
+                return functionsEndingByName.get(0);
             if (functionsEndingByName.size() > 1)
                 throwUndeterminedFunction("Multiple functions called '" + name + "' in " + this);
 
             // To handle TensorFlow conversion to ONNX
             if (name.startsWith("serving_default")) {
-                return evaluatorOf("default" + name.substring("serving_default".length()));
+                return resolveFunction("default" + name.substring("serving_default".length()));
             }
 
             // To handle backward compatibility with ONNX conversion to native Vespa rank expressions
             if (name.startsWith("default.")) {
-                return evaluatorOf(name.substring("default.".length()));
+                return resolveFunction(name.substring("default.".length()));
             }
 
             throwUndeterminedFunction("No function '" + name + "' in " + this);
         }
         else if (names.length == 2) {
-            return evaluatorOf(names[0] + "." + names[1]);
+            return resolveFunction(names[0] + "." + names[1]);
         }
         throw new IllegalArgumentException("No more than 2 names can be given when choosing a function, got " +
                                            Arrays.toString(names));
@@ -229,7 +273,9 @@ public class Model {
 
     /** Returns a single-use evaluator of a function */
     private FunctionEvaluator evaluatorOf(ExpressionFunction function) {
-        return new FunctionEvaluator(function, requireContextPrototype(function.getName()).copy());
+        return new FunctionEvaluator(function,
+                                     requireContextPrototype(function.getName()).copy(),
+                                     Optional.ofNullable(compiledFunctions.get(function.getName())));
     }
 
     private void throwUndeterminedFunction(String message) {
@@ -20,12 +20,20 @@ class OnnxModel {
     private final File modelFile;
     private final OnnxEvaluatorOptions options;
 
+    /** The names of the functions computing inputs, by input name, for the inputs which are computed */
+    private final Map<String, String> inputFunctions;
+
     private OnnxEvaluator evaluator;
 
     OnnxModel(String name, File modelFile, OnnxEvaluatorOptions options) {
+        this(name, modelFile, options, Map.of());
+    }
+
+    OnnxModel(String name, File modelFile, OnnxEvaluatorOptions options, Map<String, String> inputFunctions) {
         this.name = name;
         this.modelFile = modelFile;
         this.options = options;
+        this.inputFunctions = Map.copyOf(inputFunctions);
     }
 
     public String name() {
@@ -42,6 +50,14 @@ class OnnxModel {
         return evaluator().getInputInfo();
     }
 
+    /**
+     * Returns the name of the value in the context which is the given input:
+     * The serial form of the function computing it if it is computed, or else the input name itself.
+     */
+    String inputFrom(String input) {
+        return inputFunctions.getOrDefault(input, input);
+    }
+
     public Map<String, TensorType> outputs() {
         return evaluator().getOutputInfo();
     }
@@ -189,7 +189,13 @@ public class RankProfilesConfigImporter {
             options.setInterOpThreads(onnxModelConfig.stateless_interop_threads());
             options.setIntraOpThreads(onnxModelConfig.stateless_intraop_threads());
 
-            return new OnnxModel(name, file, options);
+            // Inputs with a function as source are computed by it, other inputs are bound by their name
+            Map<String, String> inputFunctions = new HashMap<>();
+            for (OnnxModelsConfig.Model.Input input : onnxModelConfig.input())
+                FunctionReference.fromSerial(input.source())
+                                 .ifPresent(function -> inputFunctions.put(input.name(), function.serialForm()));
+
+            return new OnnxModel(name, file, options, inputFunctions);
         } catch (InterruptedException e) {
             throw new IllegalStateException("Gave up waiting for ONNX model " + onnxModelConfig.name());
         }
@@ -1,6 +1,7 @@
 // Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package ai.vespa.models.handler;
 
+import ai.vespa.models.evaluation.BatchEvaluator;
 import ai.vespa.models.evaluation.FunctionEvaluator;
 import ai.vespa.models.evaluation.Model;
 import ai.vespa.models.evaluation.ModelsEvaluator;
@@ -9,18 +10,26 @@ import com.yahoo.container.jdisc.HttpResponse;
 import com.yahoo.container.jdisc.ThreadedHttpRequestHandler;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.JsonParseException;
 import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeUtils;
+import com.yahoo.slime.Type;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.tensor.serialization.JsonFormat;
 import com.yahoo.yolean.Exceptions;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
@@ -33,6 +42,7 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
     public static final String API_ROOT = "model-evaluation";
     public static final String VERSION_V1 = "v1";
     public static final String EVALUATE = "eval";
+    public static final String EVALUATE_BATCH = "eval-batch";
 
     private final ModelsEvaluator modelsEvaluator;
 
@@ -58,6 +68,10 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
 
             Model model = modelsEvaluator.requireModel(modelName.get());
 
+            Optional<Integer> batchSegment = path.lastIndexOf(EVALUATE_BATCH);
+            if (batchSegment.isPresent()) {
+                return evaluateBatch(request, model, path.range(3, batchSegment));
+            }
             Optional<Integer> evalSegment = path.lastIndexOf(EVALUATE);
             String[] function = path.range(3, evalSegment);
             if (evalSegment.isPresent()) {
@@ -88,15 +102,79 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
             }
         }
         Tensor result = evaluator.evaluate();
+        return new Response(200, encode(result, property(request, "format.tensors")));
+    }
+
+    /**
+     * Evaluates a function for each row of a batch given in the request body as a JSON object containing
+     * an array of values for each argument, where each value is a number or a tensor in string form.
+     */
+    private HttpResponse evaluateBatch(HttpRequest request, Model model, String[] function) {
+        BatchEvaluator evaluator = model.batchEvaluatorOf(function);
+
+        property(request, missingValueKey).ifPresent(missingValue -> evaluator.setMissingValue(Tensor.from(missingValue)));
+
+        Inspector arguments;
+        try {
+            arguments = readBody(request).get();
+        }
+        catch (JsonParseException e) {
+            return new ErrorResponse(400, "Could not parse the request body as JSON");
+        }
+        if (arguments.type() != Type.OBJECT)
+            return new ErrorResponse(400, "Expected a JSON object containing an array of values for each argument");
+        for (Map.Entry<String, TensorType> argument : evaluator.function().argumentTypes().entrySet()) {
+            Inspector values = arguments.field(argument.getKey());
+            if ( ! values.valid()) continue;
+            if (values.type() != Type.ARRAY)
+                return new ErrorResponse(400, "Expected an array of values for '" + argument.getKey() + "'");
+            List<Tensor> tensors = new ArrayList<>(values.entries());
+            for (int i = 0; i < values.entries(); i++) {
+                Inspector value = values.entry(i);
+                if (value.type() == Type.DOUBLE || value.type() == Type.LONG)
+                    tensors.add(Tensor.Builder.of(TensorType.empty).cell(value.asDouble()).build());
+                else
+                    tensors.add(Tensor.from(argument.getValue(), value.asString()));
+            }
+            evaluator.bind(argument.getKey(), tensors);
+        }
+        List<Tensor> results = evaluator.evaluate();
 
         Optional<String> format = property(request, "format.tensors");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("{\"results\":[".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) out.write(',');
+            if (format.isPresent() && format.get().equalsIgnoreCase("string")) {
+                Slime slime = new Slime();
+                slime.setString(results.get(i).toString());
+                out.writeBytes(com.yahoo.slime.JsonFormat.toJsonBytes(slime));
+            }
+            else {
+                out.writeBytes(encode(results.get(i), format));
+            }
+        }
+        out.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+        return new Response(200, out.toByteArray());
+    }
+
+    private byte[] encode(Tensor tensor, Optional<String> format) {
         if (format.isPresent() && format.get().equalsIgnoreCase("short")) {
-            return new Response(200, JsonFormat.encodeShortForm(result));
+            return JsonFormat.encodeShortForm(tensor);
         }
         else if (format.isPresent() && format.get().equalsIgnoreCase("string")) {
-            return new Response(200, result.toString().getBytes(StandardCharsets.UTF_8));
+            return tensor.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return JsonFormat.encode(tensor);
+    }
+
+    private Slime readBody(HttpRequest request) {
+        try {
+            return SlimeUtils.jsonToSlimeOrThrow(request.getData().readAllBytes());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return new Response(200, JsonFormat.encode(result));
     }
 
     private HttpResponse listAllModels(HttpRequest request) {
@@ -16,11 +16,16 @@ import com.yahoo.vespa.config.search.core.RankingExpressionsConfig;
 import com.yahoo.yolean.Exceptions;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author bratseth
@@ -62,6 +67,93 @@ public class ModelsEvaluatorTest {
         }
     }
 
+    /** Tests a function defined as 4 * (var1 + var2) */
+    @Test
+    public void testBatchEvaluation() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+
+        {
+            BatchEvaluator function = models.batchEvaluatorOf("macros", "secondphase");
+            function.bind("match", new double[] { 3, 1, 0 });
+            function.bind("rankBoost", List.of(Tensor.from(5), Tensor.from(2), Tensor.from(0)));
+            assertEquals(3, function.rows());
+            assertArrayEquals(new double[] { 32, 12, 0 }, function.evaluateScalars(), delta);
+        }
+
+        {
+            BatchEvaluator function = models.batchEvaluatorOf("macros", "secondphase");
+            function.setMissingValue(5);
+            function.bind("match", new double[] { 3, 1 });
+            List<Tensor> results = function.evaluate();
+            assertEquals(2, results.size());
+            assertEquals(32.0, results.get(0).asDouble(), delta);
+            assertEquals(24.0, results.get(1).asDouble(), delta);
+        }
+
+        try { // Different number of rows
+            BatchEvaluator function = models.batchEvaluatorOf("macros", "secondphase");
+            function.bind("match", new double[] { 3, 1 });
+            function.bind("rankBoost", new double[] { 5 });
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'rankBoost' has 1 values, but 2 rows are bound in other arguments",
+                         Exceptions.toMessageString(e));
+        }
+
+        try { // No rows
+            models.batchEvaluatorOf("macros", "secondphase").evaluate();
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("No arguments are bound in function 'secondphase': Cannot determine the number of rows",
+                         Exceptions.toMessageString(e));
+        }
+    }
+
+    /** Tests ONNX models whose inputs are computed by functions of the arguments, with and without a batch dimension */
+    @Test
+    public void testBatchEvaluationOfOnnxModelsWithComputedInputs() {
+        ModelsEvaluator models = createModels("src/test/resources/config/onnx-computed-inputs/",
+                                              "src/test/resources/config/onnx/");
+
+        { // one_layer has a batch dimension, so it is evaluated once for all rows
+            BatchEvaluator function = models.batchEvaluatorOf("computed_inputs", "output");
+            function.bind("arg", List.of(Tensor.from("tensor<float>(d0[1],d1[3]):[[0.05, 0.1, 0.15]]"),
+                                         Tensor.from("tensor<float>(d0[1],d1[3]):[[0.2, 0.25, 0.3]]")));
+            List<Tensor> results = function.evaluate();
+            assertEquals(2, results.size());
+            assertEquals(0.63931, results.get(0).sum().asDouble(), 0.00001);
+            assertEquals(0.67574, results.get(1).sum().asDouble(), 0.00001);
+        }
+
+        { // add_mul has fixed size inputs, so it is evaluated row by row
+            BatchEvaluator function = models.batchEvaluatorOf("computed_inputs", "output1");
+            function.bind("x", List.of(Tensor.from("tensor<float>(d0[1]):[1]"), Tensor.from("tensor<float>(d0[1]):[2]")));
+            function.bind("input2", List.of(Tensor.from("tensor<float>(d0[1]):[3]"), Tensor.from("tensor<float>(d0[1]):[4]")));
+            List<Tensor> results = function.evaluate();
+            assertEquals(2, results.size());
+            assertEquals(6.0, results.get(0).sum().asDouble(), delta);
+            assertEquals(12.0, results.get(1).sum().asDouble(), delta);
+        }
+    }
+
+    /** Tests ONNX models whose inputs are computed by functions of the arguments, evaluated one row at the time */
+    @Test
+    public void testEvaluationOfOnnxModelsWithComputedInputs() {
+        ModelsEvaluator models = createModels("src/test/resources/config/onnx-computed-inputs/",
+                                              "src/test/resources/config/onnx/");
+
+        FunctionEvaluator function = models.evaluatorOf("computed_inputs", "output");
+        function.bind("arg", Tensor.from("tensor<float>(d0[1],d1[3]):[[0.05, 0.1, 0.15]]"));
+        assertEquals(0.63931, function.evaluate().sum().asDouble(), 0.00001);
+
+        function = models.evaluatorOf("computed_inputs", "output1");
+        function.bind("x", Tensor.from("tensor<float>(d0[1]):[2]"));
+        function.bind("input2", Tensor.from("tensor<float>(d0[1]):[4]"));
+        assertEquals(12.0, function.evaluate().sum().asDouble(), delta);
+    }
+
     @Test
     public void testBindingValidation() {
         List<ExpressionFunction> functions = new ArrayList<>();
@@ -141,4 +233,21 @@ public class ModelsEvaluatorTest {
                 config, constantsConfig, expressionsConfig, onnxModelsConfig);
     }
 
+    /** Creates models from the config in the given path, reading ONNX model files relative to the given models path */
+    private ModelsEvaluator createModels(String path, String modelsPath) {
+        Path configDir = Path.fromString(path);
+        RankProfilesConfig config = new ConfigGetter<>(new FileSource(configDir.append("rank-profiles.cfg").toFile()),
+                                                       RankProfilesConfig.class).getConfig("");
+        RankingConstantsConfig constantsConfig = new ConfigGetter<>(new FileSource(configDir.append("ranking-constants.cfg").toFile()),
+                                                                    RankingConstantsConfig.class).getConfig("");
+        RankingExpressionsConfig expressionsConfig = new ConfigGetter<>(new FileSource(configDir.append("ranking-expressions.cfg").toFile()),
+                                                                        RankingExpressionsConfig.class).getConfig("");
+        OnnxModelsConfig onnxModelsConfig = new ConfigGetter<>(new FileSource(configDir.append("onnx-models.cfg").toFile()),
+                                                               OnnxModelsConfig.class).getConfig("");
+        Map<String, File> fileMap = new HashMap<>();
+        for (OnnxModelsConfig.Model onnxModel : onnxModelsConfig.model())
+            fileMap.put(onnxModel.fileref().value(), new File(modelsPath + onnxModel.fileref().value()));
+        return new ModelsEvaluator(config, constantsConfig, expressionsConfig, onnxModelsConfig, MockFileAcquirer.returnFiles(fileMap));
+    }
+
 }
@@ -7,6 +7,7 @@ import com.yahoo.container.jdisc.HttpResponse;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.serialization.JsonFormat;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -51,6 +52,13 @@ class HandlerTester {
         assertResponse(postRequest, expectedCode, expectedResult);
     }
 
+    void assertBatchResponse(String url, Map<String, String> properties, String body, int expectedCode, String expectedResult) {
+        HttpRequest postRequest = HttpRequest.createTestRequest(url, com.yahoo.jdisc.http.HttpRequest.Method.POST,
+                                                                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                                                                properties);
+        assertResponse(postRequest, expectedCode, expectedResult);
+    }
+
     void assertResponse(String url, Map<String, String> properties, int expectedCode, Tensor expectedResult) {
         HttpRequest getRequest = HttpRequest.createTestRequest(url, com.yahoo.jdisc.http.HttpRequest.Method.GET, null, properties);
         assertResponse(getRequest, expectedCode, expectedResult);
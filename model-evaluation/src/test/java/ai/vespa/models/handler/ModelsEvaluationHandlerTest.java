@@ -93,6 +93,28 @@ public class ModelsEvaluationHandlerTest {
         handler.assertResponse(url, properties, 200, expected);
     }
 
+    @Test
+    public void testXgBoostBatchEvaluation() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("missing-value", "-1.0");
+        String body = "{\"f29\":[-1.0,-1.0],\"f56\":[0.2,0.2],\"f60\":[0.3,0.3],\"f109\":[\"0.4\",0.4]}";
+        String url = "http://localhost/model-evaluation/v1/xgboost_2_2/eval-batch";
+        String expected = "{\"results\":[" +
+                          "{\"cells\":[{\"address\":{},\"value\":-7.936679999999999}]}," +
+                          "{\"cells\":[{\"address\":{},\"value\":-7.936679999999999}]}" +
+                          "]}";
+        handler.assertBatchResponse(url, properties, body, 200, expected);
+    }
+
+    @Test
+    public void testBatchEvaluationWithInvalidBody() {
+        String url = "http://localhost/model-evaluation/v1/xgboost_2_2/eval-batch";
+        handler.assertBatchResponse(url, Map.of(), "{\"f29\":", 400,
+                                    "{\"error\":\"Could not parse the request body as JSON\"}");
+        handler.assertBatchResponse(url, Map.of(), "{\"f29\":-1.0}", 400,
+                                    "{\"error\":\"Expected an array of values for 'f29'\"}");
+    }
+
     @Test
     public void testLightGBMEvaluationWithoutBindings() {
         String url = "http://localhost/model-evaluation/v1/lightgbm_regression/eval";
@@ -0,0 +1,478 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the bytecode of a subclass of {@link CompiledExpression} evaluating an operation.
+ *
+ * The operation is evaluated by static methods taking the argument array. Operations too large to fit
+ * in a single method are split over multiple methods, such that no method is larger than what the JIT
+ * compiler is willing to compile, and methods are spread over helper classes such that no class exceeds
+ * the size limit of the constant pool.
+ *
+ * @author bratseth
+ */
+class ClassGenerator implements Opcodes {
+
+    /**
+     * The max number of operations to generate into a single method. This keeps generated methods below
+     * the 8000 bytes above which HotSpot does not JIT compile methods.
+     */
+    private static final int maxMethodSize = 400;
+
+    /**
+     * The max number of operations to generate into a single class. Each operation adds at most
+     * two constant pool entries, which must be below 65536 in total.
+     */
+    private static final int maxClassSize = 20000;
+
+    private static final AtomicLong classCount = new AtomicLong();
+
+    private static final String superName = Type.getInternalName(CompiledExpression.class);
+    private static final String functionName = Type.getInternalName(Function.class);
+    private static final String truthOperatorName = Type.getInternalName(TruthOperator.class);
+    private static final String valueMethodDescriptor = "([D)D";
+    private static final String chainMethodDescriptor = "(D[D)D";
+
+    private final String className;
+    private final Operation operation;
+
+    /** The classes generated, where the first is the compiled expression and the rest are helpers */
+    private final List<GeneratedClass> classes = new ArrayList<>();
+
+    /** Methods which are referenced but not yet generated */
+    private final Deque<PendingMethod> pendingMethods = new ArrayDeque<>();
+    private int methodCount = 0;
+
+    ClassGenerator(String className, Operation operation) {
+        this.className = className;
+        this.operation = operation;
+    }
+
+    /** Returns a new unique name of a generated class */
+    static String className() {
+        return CompiledExpression.class.getName() + "$Generated" + classCount.incrementAndGet();
+    }
+
+    /** Returns the bytecode of the compiled expression class and its helper classes, by class name */
+    Map<String, byte[]> generate() {
+        GeneratedClass mainClass = new GeneratedClass(className, superName);
+        classes.add(mainClass);
+        generateConstructor(mainClass.writer);
+        PendingMethod rootMethod = addMethod(List.of(operation), false);
+        generateEvaluate(mainClass.writer, rootMethod);
+        while ( ! pendingMethods.isEmpty())
+            pendingMethods.pop().generate();
+
+        Map<String, byte[]> bytecode = new LinkedHashMap<>();
+        for (GeneratedClass generatedClass : classes) {
+            generatedClass.writer.visitEnd();
+            bytecode.put(generatedClass.name, generatedClass.writer.toByteArray());
+        }
+        return bytecode;
+    }
+
+    private void generateConstructor(ClassWriter writer) {
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/util/List;)V", null, null);
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 0);
+        method.visitVarInsn(ALOAD, 1);
+        method.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "(Ljava/util/List;)V", false);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private void generateEvaluate(ClassWriter writer, PendingMethod rootMethod) {
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "evaluate", valueMethodDescriptor, null, null);
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 1);
+        rootMethod.invoke(method);
+        method.visitInsn(DRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    /**
+     * Adds a method to be generated and returns it.
+     *
+     * @param operations the operation to evaluate, or if this is a chain method, the chain followed by the terms to apply
+     * @param isChain whether this method continues a chain, taking the value accumulated so far as first argument
+     */
+    private PendingMethod addMethod(List<Operation> operations, boolean isChain) {
+        int size = isChain ? operations.stream().skip(1).mapToInt(Operation::size).sum() : operations.get(0).size();
+        size = Math.min(size, maxMethodSize);
+
+        GeneratedClass owner = classes.get(classes.size() - 1);
+        if (owner.size + size > maxClassSize) {
+            owner = new GeneratedClass(className + "$" + classes.size(), "java/lang/Object");
+            classes.add(owner);
+        }
+        owner.size += size;
+
+        PendingMethod method = new PendingMethod(owner, "m" + methodCount++, operations, isChain);
+        pendingMethods.push(method);
+        return method;
+    }
+
+    private static class GeneratedClass {
+
+        final String name;
+        final String internalName;
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+        /** The (estimated) number of operations generated into this class */
+        int size = 0;
+
+        GeneratedClass(String name, String superName) {
+            this.name = name;
+            this.internalName = name.replace('.', '/');
+            writer.visit(V11, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, internalName, null, superName, null);
+        }
+
+    }
+
+    private class PendingMethod {
+
+        private final GeneratedClass owner;
+        private final String name;
+        private final List<Operation> operations;
+        private final boolean isChain;
+
+        PendingMethod(GeneratedClass owner, String name, List<Operation> operations, boolean isChain) {
+            this.owner = owner;
+            this.name = name;
+            this.operations = operations;
+            this.isChain = isChain;
+        }
+
+        /** Invokes this method, given that its arguments are on the stack */
+        void invoke(MethodVisitor caller) {
+            caller.visitMethodInsn(INVOKESTATIC, owner.internalName, name, descriptor(), false);
+        }
+
+        private String descriptor() {
+            return isChain ? chainMethodDescriptor : valueMethodDescriptor;
+        }
+
+        void generate() {
+            // Package private as methods are invoked from other classes in the same (runtime) package
+            MethodVisitor method = owner.writer.visitMethod(ACC_STATIC, name, descriptor(), null, null);
+            method.visitCode();
+            MethodGenerator generator = new MethodGenerator(method, isChain ? 2 : 0);
+            if (isChain) {
+                Operation.Chain chain = (Operation.Chain)operations.get(0);
+                method.visitVarInsn(DLOAD, 0);
+                for (Operation term : operations.subList(1, operations.size()))
+                    generator.applyTerm(chain.operator, term);
+            }
+            else {
+                generator.generateRoot(operations.get(0));
+            }
+            method.visitInsn(DRETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+    }
+
+    /** Generates the body of a single method */
+    private class MethodGenerator {
+
+        private final MethodVisitor method;
+
+        /** The local variable holding the argument array */
+        private final int argumentsSlot;
+
+        private int nextLocal;
+
+        /** The number of operations generated into this method so far */
+        private int size = 0;
+
+        MethodGenerator(MethodVisitor method, int argumentsSlot) {
+            this.method = method;
+            this.argumentsSlot = argumentsSlot;
+            this.nextLocal = argumentsSlot + 1;
+        }
+
+        /** Generates the given operation into this method, however large */
+        void generateRoot(Operation operation) {
+            generateValue(operation, true);
+        }
+
+        /** Pushes the double value of the given operation on the stack */
+        private void generateValue(Operation operation) {
+            generateValue(operation, false);
+        }
+
+        private void generateValue(Operation operation, boolean isRoot) {
+            if ( ! isRoot && size + operation.size() > maxMethodSize && operation.size() > 1) {
+                method.visitVarInsn(ALOAD, argumentsSlot);
+                addMethod(List.of(operation), false).invoke(method);
+                size++;
+                return;
+            }
+            size++;
+            if (operation instanceof Operation.Constant) {
+                pushDouble(((Operation.Constant)operation).value);
+            }
+            else if (operation instanceof Operation.Argument) {
+                method.visitVarInsn(ALOAD, argumentsSlot);
+                pushInt(((Operation.Argument)operation).index);
+                method.visitInsn(DALOAD);
+            }
+            else if (operation instanceof Operation.Negate) {
+                generateValue(((Operation.Negate)operation).argument);
+                method.visitInsn(DNEG);
+            }
+            else if (operation instanceof Operation.Arithmetic) {
+                Operation.Arithmetic arithmetic = (Operation.Arithmetic)operation;
+                generateValue(arithmetic.left);
+                generateValue(arithmetic.right);
+                method.visitInsn(opcodeOf(arithmetic.operator));
+            }
+            else if (operation instanceof Operation.Chain) {
+                generateChain((Operation.Chain)operation);
+            }
+            else if (operation instanceof Operation.If) {
+                Operation.If ifOperation = (Operation.If)operation;
+                Label falseLabel = new Label();
+                Label end = new Label();
+                generateJump(ifOperation.condition, falseLabel, false);
+                generateValue(ifOperation.trueOperation);
+                method.visitJumpInsn(GOTO, end);
+                method.visitLabel(falseLabel);
+                generateValue(ifOperation.falseOperation);
+                method.visitLabel(end);
+            }
+            else if (operation instanceof Operation.Call) {
+                Operation.Call call = (Operation.Call)operation;
+                method.visitFieldInsn(GETSTATIC, functionName, call.function.name(), "L" + functionName + ";");
+                generateValue(call.argument1);
+                generateValue(call.argument2);
+                method.visitMethodInsn(INVOKEVIRTUAL, functionName, "evaluate", "(DD)D", false);
+            }
+            else if (operation.isBoolean()) {
+                size--; // counted by generateJump
+                Label falseLabel = new Label();
+                Label end = new Label();
+                generateJump(operation, falseLabel, false);
+                method.visitInsn(DCONST_1);
+                method.visitJumpInsn(GOTO, end);
+                method.visitLabel(falseLabel);
+                method.visitInsn(DCONST_0);
+                method.visitLabel(end);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown operation " + operation);
+            }
+        }
+
+        /**
+         * Evaluates a chain from its last term, applying each term to the value accumulated so far.
+         * Chains which do not fit in this method are split into chain methods each applying a sequence of terms.
+         */
+        private void generateChain(Operation.Chain chain) {
+            List<Operation> terms = chain.reversedTerms;
+            boolean fitsInThis = size + chain.size() <= maxMethodSize;
+            generateValue(terms.get(0));
+            if (fitsInThis) {
+                for (Operation term : terms.subList(1, terms.size()))
+                    applyTerm(chain.operator, term);
+                return;
+            }
+
+            List<Operation> methodTerms = new ArrayList<>();
+            int methodSize = 0;
+            for (Operation term : terms.subList(1, terms.size())) {
+                if (methodSize + term.size() > maxMethodSize && ! methodTerms.isEmpty()) {
+                    invokeChainMethod(chain, methodTerms);
+                    methodTerms = new ArrayList<>();
+                    methodSize = 0;
+                }
+                methodTerms.add(term);
+                methodSize += term.size();
+            }
+            invokeChainMethod(chain, methodTerms);
+        }
+
+        /** Applies the given term to the value on the top of the stack */
+        void applyTerm(ArithmeticOperator operator, Operation term) {
+            // The operators of chains are commutative, so term op value equals value op term
+            generateValue(term);
+            method.visitInsn(opcodeOf(operator));
+        }
+
+        private void invokeChainMethod(Operation.Chain chain, List<Operation> terms) {
+            List<Operation> operations = new ArrayList<>();
+            operations.add(chain);
+            operations.addAll(terms);
+            PendingMethod chainMethod = addMethod(operations, true);
+            method.visitVarInsn(ALOAD, argumentsSlot);
+            chainMethod.invoke(method);
+            size++;
+        }
+
+        /**
+         * Jumps to the given label if the truth value of the given operation equals jumpIf,
+         * and continues with the next instruction otherwise.
+         */
+        private void generateJump(Operation operation, Label target, boolean jumpIf) {
+            if (size + operation.size() > maxMethodSize && operation.size() > 1) { // evaluate in another method
+                generateTruthValueJump(operation, target, jumpIf);
+                return;
+            }
+
+            if (operation instanceof Operation.Comparison) {
+                size++;
+                generateComparisonJump((Operation.Comparison)operation, target, jumpIf);
+            }
+            else if (operation instanceof Operation.Not) {
+                size++;
+                generateJump(((Operation.Not)operation).argument, target, ! jumpIf);
+            }
+            else if (operation instanceof Operation.Logical) {
+                size++;
+                Operation.Logical logical = (Operation.Logical)operation;
+                // 'and' jumps on false if either is false, 'or' jumps on true if either is true
+                boolean shortCircuitValue = logical.operator == ArithmeticOperator.OR;
+                if (jumpIf == shortCircuitValue) {
+                    generateJump(logical.left, target, jumpIf);
+                    generateJump(logical.right, target, jumpIf);
+                }
+                else {
+                    Label skip = new Label();
+                    generateJump(logical.left, skip, shortCircuitValue);
+                    generateJump(logical.right, target, jumpIf);
+                    method.visitLabel(skip);
+                }
+            }
+            else if (operation instanceof Operation.Membership) {
+                size++;
+                generateMembershipJump((Operation.Membership)operation, target, jumpIf);
+            }
+            else {
+                generateTruthValueJump(operation, target, jumpIf);
+            }
+        }
+
+        /** Jumps if the truth value of the double value of the given operation equals jumpIf */
+        private void generateTruthValueJump(Operation operation, Label target, boolean jumpIf) {
+            generateValue(operation);
+            method.visitInsn(DCONST_0);
+            method.visitInsn(DCMPL); // NaN is true
+            method.visitJumpInsn(jumpIf ? IFNE : IFEQ, target);
+        }
+
+        private void generateComparisonJump(Operation.Comparison comparison, Label target, boolean jumpIf) {
+            if (comparison.operator == TruthOperator.APPROX_EQUAL) {
+                method.visitFieldInsn(GETSTATIC, truthOperatorName, comparison.operator.name(), "L" + truthOperatorName + ";");
+                generateValue(comparison.left);
+                generateValue(comparison.right);
+                method.visitMethodInsn(INVOKEVIRTUAL, truthOperatorName, "evaluate", "(DD)Z", false);
+                method.visitJumpInsn(jumpIf ? IFNE : IFEQ, target);
+                return;
+            }
+
+            generateValue(comparison.left);
+            generateValue(comparison.right);
+            // Comparisons involving NaN are false, except not equal: DCMPG pushes 1 and DCMPL -1 on NaN
+            switch (comparison.operator) {
+                case SMALLER:
+                    method.visitInsn(DCMPG);
+                    method.visitJumpInsn(jumpIf ? IFLT : IFGE, target);
+                    break;
+                case SMALLEREQUAL:
+                    method.visitInsn(DCMPG);
+                    method.visitJumpInsn(jumpIf ? IFLE : IFGT, target);
+                    break;
+                case LARGER:
+                    method.visitInsn(DCMPL);
+                    method.visitJumpInsn(jumpIf ? IFGT : IFLE, target);
+                    break;
+                case LARGEREQUAL:
+                    method.visitInsn(DCMPL);
+                    method.visitJumpInsn(jumpIf ? IFGE : IFLT, target);
+                    break;
+                case EQUAL:
+                    method.visitInsn(DCMPL);
+                    method.visitJumpInsn(jumpIf ? IFEQ : IFNE, target);
+                    break;
+                case NOTEQUAL:
+                    method.visitInsn(DCMPL);
+                    method.visitJumpInsn(jumpIf ? IFNE : IFEQ, target);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operator " + comparison.operator);
+            }
+        }
+
+        private void generateMembershipJump(Operation.Membership membership, Label target, boolean jumpIf) {
+            int testValue = nextLocal;
+            nextLocal += 2;
+            generateValue(membership.testValue);
+            method.visitVarInsn(DSTORE, testValue);
+
+            Label found = jumpIf ? target : new Label();
+            for (Operation setValue : membership.setValues) {
+                method.visitVarInsn(DLOAD, testValue);
+                generateValue(setValue);
+                method.visitInsn(DCMPL);
+                method.visitJumpInsn(IFEQ, found);
+            }
+            if ( ! jumpIf) {
+                method.visitJumpInsn(GOTO, target);
+                method.visitLabel(found);
+            }
+        }
+
+        private void pushDouble(double value) {
+            if (Double.doubleToRawLongBits(value) == 0L) // not -0.0
+                method.visitInsn(DCONST_0);
+            else if (value == 1.0)
+                method.visitInsn(DCONST_1);
+            else
+                method.visitLdcInsn(value);
+        }
+
+        private void pushInt(int value) {
+            if (value <= 5)
+                method.visitInsn(ICONST_0 + value);
+            else if (value <= Byte.MAX_VALUE)
+                method.visitIntInsn(BIPUSH, value);
+            else if (value <= Short.MAX_VALUE)
+                method.visitIntInsn(SIPUSH, value);
+            else
+                method.visitLdcInsn(value);
+        }
+
+        private int opcodeOf(ArithmeticOperator operator) {
+            switch (operator) {
+                case PLUS: return DADD;
+                case MINUS: return DSUB;
+                case MULTIPLY: return DMUL;
+                case DIVIDE: return DDIV;
+                case MODULO: return DREM;
+                default: throw new IllegalArgumentException("No arithmetic instruction for " + operator);
+            }
+        }
+
+    }
+
+}
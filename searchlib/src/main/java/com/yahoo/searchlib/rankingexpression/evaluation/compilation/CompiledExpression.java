@@ -0,0 +1,33 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import java.util.List;
+
+/**
+ * A scalar ranking expression compiled to JVM bytecode by an {@link ExpressionCompiler}.
+ * Instances are immutable and may be evaluated by multiple threads concurrently.
+ *
+ * @author bratseth
+ */
+public abstract class CompiledExpression {
+
+    private final List<String> arguments;
+
+    /** Invoked by the generated subclasses of this */
+    protected CompiledExpression(List<String> arguments) {
+        this.arguments = List.copyOf(arguments);
+    }
+
+    /** Returns the names of the arguments of this, in the order their values must be given when evaluating */
+    public List<String> arguments() { return arguments; }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @param arguments the values of the arguments of this, in the order given by {@link #arguments()}.
+     *                  String values are represented by their hash, as returned by StringValue.asDouble().
+     * @return the value of this expression
+     */
+    public abstract double evaluate(double[] arguments);
+
+}
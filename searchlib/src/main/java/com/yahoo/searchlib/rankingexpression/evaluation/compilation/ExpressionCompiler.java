@@ -0,0 +1,258 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.StringValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compiles scalar ranking expressions, such as GBDT forests, to JVM bytecode which evaluates
+ * over an array of argument values without allocating Value objects or looking up values by name.
+ *
+ * Expressions are compilable if they consist of arithmetic, comparisons, conditions, set membership tests
+ * and scalar functions over constants and references. Expressions producing or consuming tensors are not.
+ * Compiled expressions produce exactly the same values as interpreted evaluation over the same arguments.
+ *
+ * Each compiled expression is loaded by its own class loader, such that it is unloaded when no longer used.
+ *
+ * This class is multithread safe.
+ *
+ * @author bratseth
+ */
+public class ExpressionCompiler {
+
+    /**
+     * Compiles an expression taking each distinct reference in it as an argument,
+     * in the order they are first encountered.
+     *
+     * @return the compiled expression, or empty if the expression is not compilable
+     */
+    public Optional<CompiledExpression> compile(RankingExpression expression) {
+        try {
+            Map<String, Integer> arguments = new LinkedHashMap<>();
+            Operation operation = toOperation(expression.getRoot(), arguments, true);
+            return Optional.of(load(operation, List.copyOf(arguments.keySet())));
+        }
+        catch (NotCompilableException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Compiles an expression with the given arguments.
+     *
+     * @param expression the expression to compile
+     * @param arguments the arguments of the compiled expression, such that a reference is
+     *                  evaluated to the value of the argument with the name given by its string form
+     * @return the compiled expression, or empty if the expression is not compilable or
+     *         contains references which are not given as arguments
+     */
+    public Optional<CompiledExpression> compile(RankingExpression expression, List<String> arguments) {
+        try {
+            Map<String, Integer> argumentIndexes = new LinkedHashMap<>();
+            for (String argument : arguments)
+                argumentIndexes.putIfAbsent(argument, argumentIndexes.size());
+            Operation operation = toOperation(expression.getRoot(), argumentIndexes, false);
+            return Optional.of(load(operation, arguments));
+        }
+        catch (NotCompilableException e) {
+            return Optional.empty();
+        }
+    }
+
+    private CompiledExpression load(Operation operation, List<String> arguments) {
+        String className = ClassGenerator.className();
+        Map<String, byte[]> bytecode = new ClassGenerator(className, operation).generate();
+        try {
+            Class<?> compiledClass = new CompiledExpressionLoader(bytecode).loadClass(className);
+            return (CompiledExpression)compiledClass.getConstructor(List.class).newInstance(arguments);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not load compiled expression", e);
+        }
+    }
+
+    private Operation toOperation(ExpressionNode node, Map<String, Integer> arguments, boolean addArguments) {
+        if (node instanceof ConstantNode)
+            return toOperation(((ConstantNode)node).getValue());
+        if (node instanceof ReferenceNode)
+            return toOperation((ReferenceNode)node, arguments, addArguments);
+        if (node instanceof EmbracedNode)
+            return toOperation(((EmbracedNode)node).getValue(), arguments, addArguments);
+        if (node instanceof NegativeNode)
+            return new Operation.Negate(toOperation(((NegativeNode)node).getValue(), arguments, addArguments));
+        if (node instanceof NotNode)
+            return new Operation.Not(toOperation(((NotNode)node).getValue(), arguments, addArguments));
+        if (node instanceof ArithmeticNode)
+            return toOperation((ArithmeticNode)node, arguments, addArguments);
+        if (node instanceof ComparisonNode) {
+            ComparisonNode comparison = (ComparisonNode)node;
+            return new Operation.Comparison(comparison.getOperator(),
+                                            toOperation(comparison.getLeftCondition(), arguments, addArguments),
+                                            toOperation(comparison.getRightCondition(), arguments, addArguments));
+        }
+        if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode)node;
+            return new Operation.If(toOperation(ifNode.getCondition(), arguments, addArguments),
+                                    toOperation(ifNode.getTrueExpression(), arguments, addArguments),
+                                    toOperation(ifNode.getFalseExpression(), arguments, addArguments));
+        }
+        if (node instanceof SetMembershipNode)
+            return toOperation((SetMembershipNode)node, arguments, addArguments);
+        if (node instanceof FunctionNode)
+            return toOperation((FunctionNode)node, arguments, addArguments);
+        throw new NotCompilableException();
+    }
+
+    private Operation toOperation(Value value) {
+        if (value instanceof DoubleValue) return new Operation.Constant(value.asDouble(), false);
+        if (value instanceof BooleanValue) return new Operation.Constant(value.asDouble(), true);
+        throw new NotCompilableException();
+    }
+
+    private Operation toOperation(ReferenceNode node, Map<String, Integer> arguments, boolean addArguments) {
+        String name = node.toString();
+        Integer index = arguments.get(name);
+        if (index == null) {
+            if ( ! addArguments) throw new NotCompilableException();
+            index = arguments.size();
+            arguments.put(name, index);
+        }
+        return new Operation.Argument(index);
+    }
+
+    /** Resolves operator precedence in the same way as ArithmeticNode.evaluate */
+    private Operation toOperation(ArithmeticNode node, Map<String, Integer> arguments, boolean addArguments) {
+        Iterator<ExpressionNode> child = node.children().iterator();
+
+        Deque<OperationItem> stack = new ArrayDeque<>();
+        stack.push(new OperationItem(ArithmeticOperator.OR, toOperation(child.next(), arguments, addArguments)));
+        for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+            ArithmeticOperator op = it.next();
+            while (stack.peek().op.hasPrecedenceOver(op))
+                popStack(stack);
+            stack.push(new OperationItem(op, toOperation(child.next(), arguments, addArguments)));
+        }
+        while (stack.size() > 1)
+            popStack(stack);
+        return stack.getFirst().operation;
+    }
+
+    private void popStack(Deque<OperationItem> stack) {
+        OperationItem rhs = stack.pop();
+        OperationItem lhs = stack.peek();
+        lhs.operation = combine(rhs.op, lhs.operation, rhs.operation);
+    }
+
+    private Operation combine(ArithmeticOperator operator, Operation left, Operation right) {
+        switch (operator) {
+            case OR:
+            case AND:
+                return new Operation.Logical(operator, left, right);
+            case PLUS:
+            case MULTIPLY:
+                if (right instanceof Operation.Chain && ((Operation.Chain)right).operator == operator)
+                    return ((Operation.Chain)right).prepend(left);
+                return new Operation.Chain(operator, left, right);
+            case MINUS:
+            case DIVIDE:
+            case MODULO:
+                return new Operation.Arithmetic(operator, left, right);
+            case POWER:
+                return new Operation.Call(Function.pow, left, right);
+            default:
+                throw new IllegalArgumentException("Unknown operator " + operator);
+        }
+    }
+
+    private Operation toOperation(SetMembershipNode node, Map<String, Integer> arguments, boolean addArguments) {
+        Operation testValue = toOperation(node.getTestValue(), arguments, addArguments);
+        if (testValue.isBoolean()) throw new NotCompilableException(); // Booleans are compared by truth value
+
+        List<Operation> setValues = new ArrayList<>();
+        for (ExpressionNode setValue : node.getSetValues()) {
+            if (setValue instanceof ConstantNode && ((ConstantNode)setValue).getValue() instanceof StringValue)
+                setValues.add(new Operation.Constant(((ConstantNode)setValue).getValue().asDouble(), false));
+            else
+                setValues.add(toOperation(setValue, arguments, addArguments));
+        }
+        return new Operation.Membership(testValue, setValues);
+    }
+
+    /** Applies the function to its arguments in the same way as FunctionNode.evaluate */
+    private Operation toOperation(FunctionNode node, Map<String, Integer> arguments, boolean addArguments) {
+        List<ExpressionNode> functionArguments = node.children();
+        Operation argument1 = functionArguments.size() > 0
+                              ? toOperation(functionArguments.get(0), arguments, addArguments)
+                              : new Operation.Constant(0, false);
+        Operation argument2 = functionArguments.size() > 1
+                              ? toOperation(functionArguments.get(1), arguments, addArguments)
+                              : new Operation.Constant(0, false);
+        return new Operation.Call(node.getFunction(), argument1, argument2);
+    }
+
+    private static class OperationItem {
+
+        final ArithmeticOperator op;
+        Operation operation;
+
+        OperationItem(ArithmeticOperator op, Operation operation) {
+            this.op = op;
+            this.operation = operation;
+        }
+
+    }
+
+    /** Thrown when encountering an expression node which cannot be compiled */
+    private static class NotCompilableException extends RuntimeException {
+
+        NotCompilableException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+    /** Loads the classes of a single compiled expression */
+    private static class CompiledExpressionLoader extends ClassLoader {
+
+        private final Map<String, byte[]> bytecode;
+
+        CompiledExpressionLoader(Map<String, byte[]> bytecode) {
+            super(CompiledExpression.class.getClassLoader());
+            this.bytecode = bytecode;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] classBytecode = bytecode.get(name);
+            if (classBytecode == null) throw new ClassNotFoundException(name);
+            return defineClass(name, classBytecode, 0, classBytecode.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,237 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An operation over doubles, to which ranking expression nodes are translated before generating bytecode.
+ * Unlike expression nodes, operations are binary with operator precedence already resolved.
+ *
+ * @author bratseth
+ */
+abstract class Operation {
+
+    /** Returns the number of operations in the tree rooted at this */
+    abstract int size();
+
+    /** Returns true if this produces a boolean value (represented as 1 or 0) */
+    boolean isBoolean() { return false; }
+
+    static final class Constant extends Operation {
+
+        final double value;
+        private final boolean isBoolean;
+
+        Constant(double value, boolean isBoolean) {
+            this.value = value;
+            this.isBoolean = isBoolean;
+        }
+
+        @Override
+        int size() { return 1; }
+
+        @Override
+        boolean isBoolean() { return isBoolean; }
+
+    }
+
+    /** A lookup of an argument value by index */
+    static final class Argument extends Operation {
+
+        final int index;
+
+        Argument(int index) {
+            this.index = index;
+        }
+
+        @Override
+        int size() { return 1; }
+
+    }
+
+    static final class Negate extends Operation {
+
+        final Operation argument;
+
+        Negate(Operation argument) {
+            this.argument = argument;
+        }
+
+        @Override
+        int size() { return 1 + argument.size(); }
+
+    }
+
+    static final class Not extends Operation {
+
+        final Operation argument;
+
+        Not(Operation argument) {
+            this.argument = argument;
+        }
+
+        @Override
+        int size() { return 1 + argument.size(); }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+    }
+
+    /** A non-commutative arithmetic operation: Minus, divide or modulo */
+    static final class Arithmetic extends Operation {
+
+        final ArithmeticOperator operator;
+        final Operation left, right;
+        private final int size;
+
+        Arithmetic(ArithmeticOperator operator, Operation left, Operation right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + left.size() + right.size();
+        }
+
+        @Override
+        int size() { return size; }
+
+    }
+
+    /**
+     * A sum or product of terms, nested to the right: t0 op (t1 op (t2 op ... tn)).
+     * This is evaluated from the last term such that arbitrarily long chains, such as
+     * the trees of a GBDT forest, are evaluated without deep operand stacks.
+     */
+    static final class Chain extends Operation {
+
+        final ArithmeticOperator operator;
+
+        /** The terms of this, in reverse order */
+        final List<Operation> reversedTerms = new ArrayList<>();
+
+        private int size = 1;
+
+        Chain(ArithmeticOperator operator, Operation left, Operation right) {
+            this.operator = operator;
+            prepend(right);
+            prepend(left);
+        }
+
+        /** Adds a term to the start of this chain and returns this */
+        Chain prepend(Operation term) {
+            reversedTerms.add(term);
+            size += term.size();
+            return this;
+        }
+
+        @Override
+        int size() { return size; }
+
+    }
+
+    /** A logical and or or */
+    static final class Logical extends Operation {
+
+        final ArithmeticOperator operator;
+        final Operation left, right;
+        private final int size;
+
+        Logical(ArithmeticOperator operator, Operation left, Operation right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + left.size() + right.size();
+        }
+
+        @Override
+        int size() { return size; }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+    }
+
+    static final class Comparison extends Operation {
+
+        final TruthOperator operator;
+        final Operation left, right;
+        private final int size;
+
+        Comparison(TruthOperator operator, Operation left, Operation right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + left.size() + right.size();
+        }
+
+        @Override
+        int size() { return size; }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+    }
+
+    static final class If extends Operation {
+
+        final Operation condition, trueOperation, falseOperation;
+        private final int size;
+
+        If(Operation condition, Operation trueOperation, Operation falseOperation) {
+            this.condition = condition;
+            this.trueOperation = trueOperation;
+            this.falseOperation = falseOperation;
+            this.size = 1 + condition.size() + trueOperation.size() + falseOperation.size();
+        }
+
+        @Override
+        int size() { return size; }
+
+    }
+
+    /** A test of whether a value is equal to any in a set */
+    static final class Membership extends Operation {
+
+        final Operation testValue;
+        final List<Operation> setValues;
+        private final int size;
+
+        Membership(Operation testValue, List<Operation> setValues) {
+            this.testValue = testValue;
+            this.setValues = List.copyOf(setValues);
+            this.size = 1 + testValue.size() + setValues.stream().mapToInt(Operation::size).sum();
+        }
+
+        @Override
+        int size() { return size; }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+    }
+
+    /** An invocation of a function taking two arguments, where unused arguments are 0 */
+    static final class Call extends Operation {
+
+        final Function function;
+        final Operation argument1, argument2;
+        private final int size;
+
+        Call(Function function, Operation argument1, Operation argument2) {
+            this.function = function;
+            this.argument1 = argument1;
+            this.argument2 = argument2;
+            this.size = 1 + argument1.size() + argument2.size();
+        }
+
+        @Override
+        int size() { return size; }
+
+    }
+
+}
@@ -0,0 +1,8 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+/**
+ * Compilation of scalar ranking expressions to JVM bytecode
+ */
+@ExportPackage
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.osgi.annotation.ExportPackage;
@@ -0,0 +1,140 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.StringValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies that compiled expressions produce exactly the same values as interpreted evaluation.
+ *
+ * @author bratseth
+ */
+public class ExpressionCompilerTestCase {
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+    private final Random random = new Random(1234);
+
+    @Test
+    public void testScalarExpressions() {
+        assertCompiled("1 + 2 * 3");
+        assertCompiled("a + b * c - d / e");
+        assertCompiled("a - b - c + d");
+        assertCompiled("a / b / c");
+        assertCompiled("a ^ b % c");
+        assertCompiled("(a + b) * (c - d)");
+        assertCompiled("-a * !b");
+        assertCompiled("a < b + c");
+        assertCompiled("a && b || c && !d");
+        assertCompiled("if (a < b, c, d)");
+        assertCompiled("if (a <= 0.5 && b > 0.3 || c == d, 1, 2)");
+        assertCompiled("if (!(a >= b), a, b)");
+        assertCompiled("if (a != a, 1, 0)");
+        assertCompiled("if (a ~= b, 1, 0)");
+        assertCompiled("if (a, b, c)");
+        assertCompiled("if (a in [0.25, 0.5, b], c, d)");
+        assertCompiled("if (!(a in [0.25, 0.5]), c, d)");
+        assertCompiled("max(a, b) + sigmoid(c) * log(d) - pow(e, 2)");
+        assertCompiled("isNan(a) + relu(b) + fmod(c, 0.3) + atan2(d, e)");
+        assertCompiled("attribute(foo) * query(bar) + fieldMatch(title).completeness");
+    }
+
+    @Test
+    public void testStringMembership() {
+        RankingExpression expression = RankingExpression.from("if (s in [\"foo\", \"bar\"], 1, 2)");
+        CompiledExpression compiled = compiler.compile(expression).get();
+        for (String value : List.of("foo", "bar", "baz")) {
+            MapContext context = new MapContext();
+            context.put("s", new StringValue(value));
+            assertEquals(expression.evaluate(context).asDouble(),
+                         compiled.evaluate(new double[] { new StringValue(value).asDouble() }),
+                         0);
+        }
+    }
+
+    @Test
+    public void testForest() {
+        StringBuilder forest = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) forest.append(" + ");
+            tree(5, forest);
+        }
+        assertCompiled(forest.toString());
+    }
+
+    @Test
+    public void testDeepTree() {
+        StringBuilder tree = new StringBuilder();
+        tree(13, tree);
+        assertCompiled(tree.toString());
+    }
+
+    @Test
+    public void testNotCompilable() {
+        RankingExpression tensorExpression =
+                new RankingExpression(new ConstantNode(new TensorValue(Tensor.from("tensor(x{}):{a:1}"))));
+        assertFalse(compiler.compile(tensorExpression).isPresent());
+
+        RankingExpression expression = RankingExpression.from("a + b");
+        assertFalse(compiler.compile(expression, List.of("a")).isPresent());
+        CompiledExpression compiled = compiler.compile(expression, List.of("b", "c", "a")).get();
+        assertEquals(List.of("b", "c", "a"), compiled.arguments());
+        assertEquals(3.0, compiled.evaluate(new double[] { 2, 0, 1 }), 0);
+    }
+
+    private void tree(int depth, StringBuilder b) {
+        if (depth == 0) {
+            b.append(random.nextGaussian());
+            return;
+        }
+        String feature = "f" + random.nextInt(30);
+        if (random.nextInt(10) == 0)
+            b.append("if (").append(feature).append(" in [").append(random.nextInt(3)).append(", 1.5], ");
+        else
+            b.append("if (").append(feature).append(" < ").append(random.nextDouble()).append(", ");
+        tree(depth - 1, b);
+        b.append(", ");
+        tree(depth - 1, b);
+        b.append(")");
+    }
+
+    private void assertCompiled(String expressionString) {
+        RankingExpression expression = RankingExpression.from(expressionString);
+        CompiledExpression compiled = compiler.compile(expression).get();
+        for (int i = 0; i < 100; i++) {
+            MapContext context = new MapContext();
+            double[] arguments = new double[compiled.arguments().size()];
+            for (int j = 0; j < arguments.length; j++) {
+                arguments[j] = randomArgument(arguments, j);
+                context.put(compiled.arguments().get(j), new DoubleValue(arguments[j]));
+            }
+            assertEquals("Evaluating " + expression + " with " + context,
+                         expression.evaluate(context).asDouble(), compiled.evaluate(arguments), 0);
+        }
+        assertTrue(compiled.arguments().size() <= 30);
+    }
+
+    private double randomArgument(double[] arguments, int index) {
+        switch (random.nextInt(10)) {
+            case 0: return Double.NaN;
+            case 1: return 0;
+            case 2: return 1;
+            case 3: return index > 0 ? arguments[random.nextInt(index)] : 0.5;
+            case 4: return random.nextInt(3);
+            default: return random.nextDouble() * 2 - 0.5;
+        }
+    }
+
+}
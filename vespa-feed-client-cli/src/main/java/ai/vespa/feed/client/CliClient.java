@@ -123,6 +123,7 @@ public class CliClient {
         FeedClientBuilder builder = FeedClientBuilder.create(cliArgs.endpoint());
         cliArgs.connections().ifPresent(builder::setConnectionsPerEndpoint);
         cliArgs.maxStreamsPerConnection().ifPresent(builder::setMaxStreamPerConnection);
+        cliArgs.operationsPerBatch().ifPresent(builder::setOperationsPerBatch);
         if (cliArgs.sslHostnameVerificationDisabled()) {
             builder.setHostnameVerifier(AcceptAllHostnameVerifier.INSTANCE);
         }
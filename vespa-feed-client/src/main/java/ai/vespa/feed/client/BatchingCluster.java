@@ -0,0 +1,243 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.feed.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Multiplexes document operations into batch requests to the /document/v1 batch endpoint, and completes each
+ * operation with its own response, from the batch response. Requests are sent when a batch is full, or after at most
+ * a millisecond. The binary framing of the request body is a sequence of operations, each
+ * <pre>
+ *     byte   method: 0 is POST (put), 1 is PUT (update) and 2 is DELETE (remove)
+ *     int    length of the UTF-8 encoded path and query of the operation, followed by these bytes
+ *     int    length of the body of the operation, or -1 if it has none, followed by these bytes
+ * </pre>
+ * and the response body is a sequence of results, in the order they complete, each
+ * <pre>
+ *     int    index of the operation in the request, or, if negative, -1 - i where the result applies to
+ *            operation i and all operations following it, which were not read because the request was malformed
+ *     int    HTTP status code of the operation
+ *     int    length of the JSON response body of the operation, followed by these bytes
+ * </pre>
+ * where all integers are big-endian. Responses to single operations are the same as with one request per operation.
+ *
+ * @author bratseth
+ */
+class BatchingCluster implements Cluster {
+
+    static final String PATH = "/document/v1/batch";
+    static final List<String> methods = Arrays.asList("POST", "PUT", "DELETE");
+
+    private final Object monitor = new Object();
+    private final Cluster delegate;
+    private final int maxOperations;
+    private final int maxBytes = 1 << 20;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "feed-client-batch-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Batch batch = new Batch();
+
+    BatchingCluster(Cluster delegate, int maxOperations) {
+        this.delegate = requireNonNull(delegate);
+        this.maxOperations = maxOperations;
+        flusher.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void dispatch(HttpRequest request, CompletableFuture<HttpResponse> vessel) {
+        Batch full = null;
+        synchronized (monitor) {
+            batch.add(request, vessel);
+            if (batch.size() >= maxOperations || batch.bytes >= maxBytes) {
+                full = batch;
+                batch = new Batch();
+            }
+        }
+        if (full != null)
+            full.send();
+    }
+
+    private void flush() {
+        Batch current;
+        synchronized (monitor) {
+            if (batch.size() == 0)
+                return;
+
+            current = batch;
+            batch = new Batch();
+        }
+        current.send();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+        delegate.close();
+    }
+
+    @Override
+    public OperationStats stats() {
+        return delegate.stats();
+    }
+
+    private class Batch {
+
+        private final List<HttpRequest> requests = new ArrayList<>();
+        private final List<CompletableFuture<HttpResponse>> vessels = new ArrayList<>();
+        private int bytes = 0;
+
+        void add(HttpRequest request, CompletableFuture<HttpResponse> vessel) {
+            requests.add(request);
+            vessels.add(vessel);
+            bytes += request.path().length() + (request.body() == null ? 0 : request.body().length);
+        }
+
+        int size() { return requests.size(); }
+
+        void send() {
+            try {
+                CompletableFuture<HttpResponse> batchVessel = new CompletableFuture<>();
+                delegate.dispatch(new HttpRequest("POST", PATH, requests.get(0).headers(), encode(requests)), batchVessel);
+                batchVessel.whenComplete((response, thrown) -> {
+                    if (thrown != null)
+                        vessels.forEach(vessel -> vessel.completeExceptionally(thrown));
+                    else
+                        complete(response);
+                });
+            }
+            catch (Throwable thrown) {
+                vessels.forEach(vessel -> vessel.completeExceptionally(thrown));
+            }
+        }
+
+        /** Completes each operation with its result, or with the whole response, if that is not a batch of results. */
+        private void complete(HttpResponse response) {
+            if (response.code() != 200) {
+                vessels.forEach(vessel -> vessel.complete(response));
+                return;
+            }
+            try {
+                decode(response.body(), (index, result) -> {
+                    if (index < 0) // Operations before these were read, and are completed by their own results
+                        vessels.subList(Math.min(-1 - index, vessels.size()), vessels.size()).forEach(vessel -> vessel.complete(result));
+                    else
+                        vessels.get(index).complete(result);
+                });
+                HttpResponse missing = HttpResponse.of(502, "{\"message\":\"No result for operation in batch response\"}".getBytes(UTF_8));
+                vessels.forEach(vessel -> vessel.complete(missing));
+            }
+            catch (RuntimeException e) {
+                vessels.forEach(vessel -> vessel.completeExceptionally(e));
+            }
+        }
+
+    }
+
+    /** Returns the body of a batch request with the given operations. */
+    static byte[] encode(List<HttpRequest> requests) {
+        try {
+            int size = 0;
+            for (HttpRequest request : requests)
+                size += 9 + 3 * request.path().length() + (request.body() == null ? 0 : request.body().length);
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(size);
+            DataOutputStream out = new DataOutputStream(buffer);
+            for (HttpRequest request : requests) {
+                int method = methods.indexOf(request.method());
+                if (method < 0)
+                    throw new IllegalArgumentException("Unexpected method '" + request.method() + "' in " + request);
+
+                out.writeByte(method);
+                writeBytes(out, request.path().getBytes(UTF_8));
+                writeBytes(out, request.body());
+            }
+            return buffer.toByteArray();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns the number of operations in the given batch request body. */
+    static int operationCount(byte[] body) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            int count = 0;
+            while (in.read() >= 0) {
+                in.skipBytes(in.readInt());
+                int length = in.readInt();
+                if (length > 0) in.skipBytes(length);
+                ++count;
+            }
+            return count;
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Malformed batch request", e);
+        }
+    }
+
+    /** Writes a single operation result to the given output. */
+    static void encodeResult(DataOutputStream out, int index, int code, byte[] body) throws IOException {
+        out.writeInt(index);
+        out.writeInt(code);
+        writeBytes(out, body);
+    }
+
+    /** Passes each operation result in the given batch response body to the given consumer. */
+    static void decode(byte[] body, ResultConsumer results) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        try {
+            while (true) {
+                int index;
+                try {
+                    index = in.readInt();
+                }
+                catch (EOFException e) {
+                    return;
+                }
+                int code = in.readInt();
+                byte[] result = new byte[in.readInt()];
+                in.readFully(result);
+                results.accept(index, HttpResponse.of(code, result));
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Malformed batch response", e);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        }
+        else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @FunctionalInterface
+    interface ResultConsumer {
+        void accept(int index, HttpResponse result);
+    }
+
+}
@@ -1,6 +1,10 @@
 // Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package ai.vespa.feed.client;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
@@ -31,7 +35,26 @@ class DryrunCluster implements Cluster {
                 return;
             }
         }
-        vessel.complete(new SimpleOkResponse());
+        if (request.path().equals(BatchingCluster.PATH))
+            vessel.complete(HttpResponse.of(200, batchResponse(request)));
+        else
+            vessel.complete(new SimpleOkResponse());
+    }
+
+    /** Returns a batch response with a successful result for each operation in the given batch request. */
+    private static byte[] batchResponse(HttpRequest request) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            byte[] body = new SimpleOkResponse().body();
+            for (int i = 0, count = BatchingCluster.operationCount(request.body()); i < count; i++)
+                BatchingCluster.encodeResult(out, i, 200, body);
+
+            return buffer.toByteArray();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private static class SimpleOkResponse implements HttpResponse {
@@ -45,11 +45,21 @@ class HttpFeedClient implements FeedClient {
 
     @Override
     public CompletableFuture<Result> put(DocumentId documentId, String documentJson, OperationParameters params) {
-        return send("POST", documentId, requireNonNull(documentJson), params);
+        return put(documentId, requireNonNull(documentJson).getBytes(UTF_8), params);
     }
 
     @Override
     public CompletableFuture<Result> update(DocumentId documentId, String updateJson, OperationParameters params) {
+        return update(documentId, requireNonNull(updateJson).getBytes(UTF_8), params);
+    }
+
+    /** Same as {@link #put(DocumentId, String, OperationParameters)}, but with UTF-8 encoded JSON, which is used as is. */
+    CompletableFuture<Result> put(DocumentId documentId, byte[] documentJson, OperationParameters params) {
+        return send("POST", documentId, requireNonNull(documentJson), params);
+    }
+
+    /** Same as {@link #update(DocumentId, String, OperationParameters)}, but with UTF-8 encoded JSON, which is used as is. */
+    CompletableFuture<Result> update(DocumentId documentId, byte[] updateJson, OperationParameters params) {
         return send("PUT", documentId, requireNonNull(updateJson), params);
     }
 
@@ -77,14 +87,14 @@ class HttpFeedClient implements FeedClient {
         requestStrategy.destroy();
     }
 
-    private CompletableFuture<Result> send(String method, DocumentId documentId, String operationJson, OperationParameters params) {
+    private CompletableFuture<Result> send(String method, DocumentId documentId, byte[] operationJson, OperationParameters params) {
         if (closed.get())
             throw new IllegalStateException("Client is closed");
 
         HttpRequest request = new HttpRequest(method,
                                               getPath(documentId) + getQuery(params),
                                               requestHeaders,
-                                              operationJson == null ? null : operationJson.getBytes(UTF_8)); // TODO: make it bytes all the way?
+                                              operationJson);
 
         CompletableFuture<Result> promise = new CompletableFuture<>();
         requestStrategy.enqueue(documentId, request)
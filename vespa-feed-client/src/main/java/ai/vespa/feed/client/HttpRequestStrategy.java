@@ -67,10 +67,13 @@ class HttpRequestStrategy implements RequestStrategy {
     }
 
     HttpRequestStrategy(FeedClientBuilder builder, Cluster cluster) {
+        if (builder.operationsPerBatch > 1)
+            cluster = new BatchingCluster(cluster, builder.operationsPerBatch);
+
         this.cluster = builder.benchmark ? new BenchmarkingCluster(cluster) : cluster;
         this.strategy = builder.retryStrategy;
         this.breaker = builder.circuitBreaker;
-        this.throttler = new DynamicThrottler(builder);
+        this.throttler = builder.latencyThrottling ? new LatencyThrottler(builder) : new DynamicThrottler(builder);
 
         Thread dispatcher = new Thread(this::dispatch, "feed-client-dispatcher");
         dispatcher.setDaemon(true);
@@ -176,6 +176,18 @@ public class JsonFeeder implements Closeable {
     }
 
     private static final JsonFactory factory = new JsonFactory();
+    private static final byte[] prefix = "{\"fields\":".getBytes(UTF_8);
+
+    /** Passes the payload bytes directly to the HTTP client, when that's what we have, to avoid re-encoding */
+    private CompletableFuture<Result> put(DocumentId id, byte[] payload, OperationParameters parameters) {
+        return client instanceof HttpFeedClient ? ((HttpFeedClient) client).put(id, payload, parameters)
+                                                : client.put(id, new String(payload, UTF_8), parameters);
+    }
+
+    private CompletableFuture<Result> update(DocumentId id, byte[] payload, OperationParameters parameters) {
+        return client instanceof HttpFeedClient ? ((HttpFeedClient) client).update(id, payload, parameters)
+                                                : client.update(id, new String(payload, UTF_8), parameters);
+    }
 
     @Override public void close() throws IOException {
         client.close();
@@ -276,7 +288,6 @@ public class JsonFeeder implements Closeable {
             lock.notify();
         }
 
-        private final byte[] prefix = "{\"fields\":".getBytes(UTF_8);
         private byte[] copy(long start, long end) {
             int length = (int) (end - start);
             byte[] buffer = new byte[prefix.length + length + 1];
@@ -313,7 +324,7 @@ public class JsonFeeder implements Closeable {
                     if (done) break;
 
                     int off = (int) (head % size);
-                    int len = min(min(free, size - off), 1 << 13);
+                    int len = min(min(free, size - off), 1 << 16);
                     int read = in.read(data, off, len);
 
                     synchronized (lock) {
@@ -340,8 +351,8 @@ public class JsonFeeder implements Closeable {
             RingBufferBackedOperationParserAndExecutor(JsonParser parser) { super(parser, true); }
 
             @Override
-            String getDocumentJson(long start, long end) {
-                String payload = new String(copy(start, end), UTF_8);
+            byte[] getDocumentJson(long start, long end) {
+                byte[] payload = copy(start, end);
                 synchronized (lock) {
                     tail = end;
                     lock.notify();
@@ -361,8 +372,13 @@ public class JsonFeeder implements Closeable {
         }
 
         @Override
-        String getDocumentJson(long start, long end) {
-            return "{\"fields\":" + new String(json, (int) start, (int) (end - start), UTF_8) + "}";
+        byte[] getDocumentJson(long start, long end) {
+            int length = (int) (end - start);
+            byte[] payload = new byte[prefix.length + length + 1];
+            System.arraycopy(prefix, 0, payload, 0, prefix.length);
+            System.arraycopy(json, (int) start, payload, prefix.length, length);
+            payload[payload.length - 1] = '}';
+            return payload;
         }
     }
 
@@ -377,7 +393,8 @@ public class JsonFeeder implements Closeable {
             this.multipleOperations = multipleOperations;
         }
 
-        abstract String getDocumentJson(long start, long end);
+        /** Returns the operation body, with the "fields" object found between the given offsets in the input */
+        abstract byte[] getDocumentJson(long start, long end);
 
         OperationParseException parseException(String error) {
             JsonLocation location = parser.getTokenLocation();
@@ -411,11 +428,7 @@ public class JsonFeeder implements Closeable {
                             case "fields": {
                                 expect(START_OBJECT);
                                 start = parser.getTokenLocation().getByteOffset();
-                                int depth = 1;
-                                while (depth > 0) switch (parser.nextToken()) {
-                                    case START_OBJECT: ++depth; break;
-                                    case END_OBJECT:   --depth; break;
-                                }
+                                parser.skipChildren(); // Skips the contents without decoding any of it.
                                 end = parser.getTokenLocation().getByteOffset() + 1;
                                 break;
                             }
@@ -441,10 +454,10 @@ public class JsonFeeder implements Closeable {
             else if (end < start)
                 throw parseException("No 'fields' object for document");
 
-            String payload = getDocumentJson(start, end);
+            byte[] payload = getDocumentJson(start, end);
             switch (type) {
-                case PUT:    return client.put   (id, payload, parameters);
-                case UPDATE: return client.update(id, payload, parameters);
+                case PUT:    return put   (id, payload, parameters);
+                case UPDATE: return update(id, payload, parameters);
                 case REMOVE: return client.remove(id, parameters);
                 default: throw new OperationParseException("Unexpected operation type '" + type + "'");
             }
@@ -0,0 +1,107 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.feed.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+/**
+ * Measures the latency of requests, and keeps inflight requests where the server has a short queue, by scaling the
+ * target inflight by the ratio of the tolerated latency to the current latency, and adding the square root of the
+ * target inflight as an allowance for the queue. The tolerated latency is a multiple of the baseline latency, which is
+ * measured regularly by halving the target inflight for two sample periods, to let the server empty its queues.
+ * This is the same algorithm as the LatencyThrottlePolicy of messagebus, but with latencies measured per request.
+ *
+ * @author bratseth
+ */
+public class LatencyThrottler extends StaticThrottler {
+
+    private static final double tolerance = 1.5;
+    private static final double smoothing = 0.2;
+    private static final double minGradient = 0.5;
+    private static final int samplesPerProbe = 50;
+    private static final int congestedSamplesBeforeProbe = 3;
+
+    private final LongSupplier nanoClock;
+    private final Object sampleLock = new Object();
+    private long latencyNanos = 0; // Guarded by sampleLock, along with completed, such that both are from the same sample
+    private long completed = 0;
+    private final AtomicLong targetInflight;
+    private double window;
+    private double baselineNanos = Double.POSITIVE_INFINITY;
+    private double windowBeforeProbe = 0;
+    private int probeSamples = 0;
+    private int samplesSinceProbe = 0;
+    private int congestedSamples = 0;
+    private long sent = 0;
+
+    public LatencyThrottler(FeedClientBuilder builder) {
+        this(builder, System::nanoTime);
+    }
+
+    LatencyThrottler(FeedClientBuilder builder, LongSupplier nanoClock) {
+        super(builder);
+        this.nanoClock = nanoClock;
+        this.window = 8 * minInflight;
+        this.targetInflight = new AtomicLong((long) window);
+    }
+
+    @Override
+    public void sent(long inflight, CompletableFuture<HttpResponse> vessel) {
+        long startNanos = nanoClock.getAsLong();
+        vessel.whenComplete((response, thrown) -> {
+            long latency = nanoClock.getAsLong() - startNanos;
+            synchronized (sampleLock) {
+                latencyNanos += latency;
+                completed++;
+            }
+        });
+        if (++sent < 3 * window)
+            return;
+
+        long count;
+        long latencySum;
+        synchronized (sampleLock) {
+            count = completed;
+            latencySum = latencyNanos;
+            completed = 0;
+            latencyNanos = 0;
+        }
+        if (count == 0)
+            return;
+
+        sent = 0;
+        double latency = latencySum / (double) count;
+        if (probeSamples > 0) { // Server queues drain during the first sample, so the second gives the baseline.
+            if (--probeSamples == 0) {
+                baselineNanos = latency;
+                window = windowBeforeProbe;
+            }
+        }
+        else {
+            baselineNanos = min(baselineNanos, latency);
+            double gradient = max(minGradient, min(1, tolerance * baselineNanos / latency));
+            window += smoothing * (window * gradient + sqrt(window) - window);
+            window = max(minInflight, min(maxInflight, window));
+            congestedSamples = gradient == minGradient ? congestedSamples + 1 : 0;
+            if (++samplesSinceProbe >= samplesPerProbe || congestedSamples >= congestedSamplesBeforeProbe) {
+                windowBeforeProbe = window;
+                window /= 2;
+                probeSamples = 2;
+                samplesSinceProbe = 0;
+                congestedSamples = 0;
+            }
+        }
+        targetInflight.set((long) max(minInflight, window));
+    }
+
+    @Override
+    public long targetInflight() {
+        return min(super.targetInflight(), targetInflight.get());
+    }
+
+}
@@ -0,0 +1,109 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.feed.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author bratseth
+ */
+class BatchingClusterTest {
+
+    @Test
+    void testEncoding() {
+        List<HttpRequest> requests = Arrays.asList(new HttpRequest("POST", "/document/v1/ns/type/docid/1?create=true", Collections.emptyMap(), "{\"fields\":{}}".getBytes(UTF_8)),
+                                                   new HttpRequest("DELETE", "/document/v1/ns/type/docid/2", Collections.emptyMap(), null));
+        assertEquals(2, BatchingCluster.operationCount(BatchingCluster.encode(requests)));
+        assertEquals(0, BatchingCluster.operationCount(BatchingCluster.encode(Collections.emptyList())));
+    }
+
+    @Test
+    void testOperationsAreCompletedWithTheirOwnResults() throws IOException, ExecutionException, InterruptedException {
+        AtomicReference<HttpRequest> sent = new AtomicReference<>();
+        AtomicReference<CompletableFuture<HttpResponse>> batchVessel = new AtomicReference<>();
+        BatchingCluster cluster = new BatchingCluster((request, vessel) -> {
+            assertNull(sent.getAndSet(request));
+            batchVessel.set(vessel);
+        }, 3);
+
+        List<CompletableFuture<HttpResponse>> vessels = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            vessels.add(new CompletableFuture<>());
+            cluster.dispatch(new HttpRequest("PUT", "/document/v1/ns/type/docid/" + i, Collections.emptyMap(), "{}".getBytes(UTF_8)),
+                             vessels.get(i));
+        }
+        assertEquals("POST", sent.get().method());
+        assertEquals(BatchingCluster.PATH, sent.get().path());
+        assertEquals(3, BatchingCluster.operationCount(sent.get().body()));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        BatchingCluster.encodeResult(out, 2, 412, "{\"message\":\"condition\"}".getBytes(UTF_8));
+        BatchingCluster.encodeResult(out, 0, 200, "{\"id\":\"0\"}".getBytes(UTF_8));
+        batchVessel.get().complete(HttpResponse.of(200, body.toByteArray()));
+
+        assertEquals(200, vessels.get(0).get().code());
+        assertArrayEquals("{\"id\":\"0\"}".getBytes(UTF_8), vessels.get(0).get().body());
+        assertEquals(502, vessels.get(1).get().code());
+        assertEquals(412, vessels.get(2).get().code());
+        assertArrayEquals("{\"message\":\"condition\"}".getBytes(UTF_8), vessels.get(2).get().body());
+
+        // A failed batch request completes all its operations with its response.
+        sent.set(null);
+        vessels.clear();
+        for (int i = 0; i < 2; i++) {
+            vessels.add(new CompletableFuture<>());
+            cluster.dispatch(new HttpRequest("DELETE", "/document/v1/ns/type/docid/" + i, Collections.emptyMap(), null),
+                             vessels.get(i));
+        }
+        cluster.close();
+        HttpResponse overload = HttpResponse.of(429, "{\"message\":\"overload\"}".getBytes(UTF_8));
+        batchVessel.get().complete(overload);
+        assertSame(overload, vessels.get(0).get());
+        assertSame(overload, vessels.get(1).get());
+    }
+
+    @Test
+    void testTruncatedBatchFailsOnlyTheOperationsNotRead() throws IOException, ExecutionException, InterruptedException {
+        AtomicReference<CompletableFuture<HttpResponse>> batchVessel = new AtomicReference<>();
+        BatchingCluster cluster = new BatchingCluster((request, vessel) -> batchVessel.set(vessel), 3);
+
+        List<CompletableFuture<HttpResponse>> vessels = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            vessels.add(new CompletableFuture<>());
+            cluster.dispatch(new HttpRequest("PUT", "/document/v1/ns/type/docid/" + i, Collections.emptyMap(), "{}".getBytes(UTF_8)),
+                             vessels.get(i));
+        }
+
+        // The server read the first operation before the request body ended, and that completes after the failure.
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        BatchingCluster.encodeResult(out, -2, 400, "{\"message\":\"malformed\"}".getBytes(UTF_8));
+        BatchingCluster.encodeResult(out, 0, 200, "{\"id\":\"0\"}".getBytes(UTF_8));
+        batchVessel.get().complete(HttpResponse.of(200, body.toByteArray()));
+        cluster.close();
+
+        assertEquals(200, vessels.get(0).get().code());
+        assertArrayEquals("{\"id\":\"0\"}".getBytes(UTF_8), vessels.get(0).get().body());
+        assertEquals(400, vessels.get(1).get().code());
+        assertEquals(400, vessels.get(2).get().code());
+        assertArrayEquals("{\"message\":\"malformed\"}".getBytes(UTF_8), vessels.get(2).get().body());
+    }
+
+}
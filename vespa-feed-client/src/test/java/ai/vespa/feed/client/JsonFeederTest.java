@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -15,6 +16,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -155,6 +157,33 @@ class JsonFeederTest {
         }
     }
 
+    @Test
+    public void operationBytesAreSentAsIsByHttpFeedClient() throws IOException, ExecutionException, InterruptedException {
+        Map<DocumentId, byte[]> bodies = new ConcurrentHashMap<>();
+        class MockRequestStrategy implements RequestStrategy {
+            @Override public OperationStats stats() { throw new UnsupportedOperationException(); }
+            @Override public FeedClient.CircuitBreaker.State circuitBreakerState() { return FeedClient.CircuitBreaker.State.CLOSED; }
+            @Override public void destroy() { }
+            @Override public void await() { }
+            @Override public CompletableFuture<HttpResponse> enqueue(DocumentId documentId, HttpRequest request) {
+                bodies.put(documentId, request.body() == null ? new byte[0] : request.body());
+                return CompletableFuture.completedFuture(HttpResponse.of(200, "{}".getBytes(UTF_8)));
+            }
+        }
+        FeedClient client = new HttpFeedClient(FeedClientBuilder.create(URI.create("https://dummy:123")), new MockRequestStrategy());
+        try (JsonFeeder feeder = JsonFeeder.builder(client).build()) {
+            String json = "[{\"put\": \"id:ns:type::abc1\", \"fields\": { \"lul\": \"l\u00e6l \\u00e6 \\\" } \" }},\n" +
+                          " {\"update\": \"id:ns:type::abc2\", \"fields\": { \"lul\": { \"assign\": [ { }, \"\ud83d\ude00\" ] } }},\n" +
+                          " {\"remove\": \"id:ns:type::abc3\"}]";
+            feeder.feedMany(new ByteArrayInputStream(json.getBytes(UTF_8)), 7, new JsonFeeder.ResultCallback() { }).get();
+            assertEquals("{\"fields\":{ \"lul\": \"l\u00e6l \\u00e6 \\\" } \" }}",
+                         new String(bodies.get(DocumentId.of("id:ns:type::abc1")), UTF_8));
+            assertEquals("{\"fields\":{ \"lul\": { \"assign\": [ { }, \"\ud83d\ude00\" ] } }}",
+                         new String(bodies.get(DocumentId.of("id:ns:type::abc2")), UTF_8));
+            assertEquals(0, bodies.get(DocumentId.of("id:ns:type::abc3")).length);
+        }
+    }
+
     private static class MockClient implements FeedClient {
         final Map<DocumentId, String> putOperations = new LinkedHashMap<>();
         final Map<DocumentId, String> updateOperations = new LinkedHashMap<>();
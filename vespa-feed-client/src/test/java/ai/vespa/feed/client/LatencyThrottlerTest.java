@@ -0,0 +1,69 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.feed.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author bratseth
+ */
+class LatencyThrottlerTest {
+
+    static final long MILLI = 1_000_000;
+
+    @Test
+    void testInflightStaysWhereServerHasShortQueue() {
+        AtomicLong now = new AtomicLong(0);
+        FeedClientBuilder builder = FeedClientBuilder.create(URI.create("https://dummy:123")).setConnectionsPerEndpoint(1);
+        LatencyThrottler throttler = new LatencyThrottler(builder, now::get);
+
+        int parallelism = 512;
+        long serviceNanos = 10 * MILLI;
+        Deque<CompletableFuture<HttpResponse>> queue = new ArrayDeque<>();
+        Deque<long[]> inService = new ArrayDeque<>(); // { completion time, index in completing }
+        Deque<CompletableFuture<HttpResponse>> completing = new ArrayDeque<>();
+        long inflight = 0;
+        long inflightSum = 0;
+        long queuedSum = 0;
+        long completed = 0;
+        int ticks = 20_000;
+        for (int tick = 0; tick < ticks; tick++) {
+            while (inflight < throttler.targetInflight()) {
+                CompletableFuture<HttpResponse> vessel = new CompletableFuture<>();
+                throttler.sent(++inflight, vessel);
+                queue.add(vessel);
+            }
+            while (completing.size() < parallelism && ! queue.isEmpty()) {
+                completing.add(queue.poll());
+                inService.add(new long[]{ now.get() + serviceNanos });
+            }
+            if (tick >= ticks / 2) {
+                inflightSum += inflight;
+                queuedSum += queue.size();
+            }
+            now.addAndGet(MILLI);
+            while ( ! inService.isEmpty() && inService.peek()[0] <= now.get()) {
+                inService.poll();
+                completing.poll().complete(HttpResponse.of(200, "{}".getBytes(UTF_8)));
+                throttler.success();
+                --inflight;
+                ++completed;
+            }
+        }
+        double averageInflight = inflightSum / (ticks / 2.0);
+        double averageQueued = queuedSum / (ticks / 2.0);
+        double utilisation = completed / (ticks * parallelism / 10.0);
+        assertTrue(averageInflight >= parallelism, "Inflight " + averageInflight + " keeps server busy");
+        assertTrue(averageQueued <= parallelism, "Queue " + averageQueued + " is short");
+        assertTrue(utilisation > 0.9, "Utilisation " + utilisation + " is high");
+    }
+
+}
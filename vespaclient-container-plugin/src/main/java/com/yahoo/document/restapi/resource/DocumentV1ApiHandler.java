@@ -23,10 +23,12 @@ import com.yahoo.document.fieldset.AllFields;
 import com.yahoo.document.fieldset.DocIdOnly;
 import com.yahoo.document.idstring.IdIdString;
 import com.yahoo.document.json.DocumentOperationType;
+import com.yahoo.document.json.JsonDocumentTranscoder;
 import com.yahoo.document.json.JsonReader;
 import com.yahoo.document.json.JsonWriter;
 import com.yahoo.document.restapi.DocumentOperationExecutorConfig;
 import com.yahoo.document.select.parser.ParseException;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
 import com.yahoo.documentapi.AckToken;
 import com.yahoo.documentapi.AsyncParameters;
 import com.yahoo.documentapi.AsyncSession;
@@ -43,6 +45,7 @@ import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.documentapi.metrics.DocumentApiMetrics;
 import com.yahoo.documentapi.metrics.DocumentOperationStatus;
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.Request;
 import com.yahoo.jdisc.Response;
@@ -68,16 +71,24 @@ import com.yahoo.vespa.config.content.AllClustersBucketSpacesConfig;
 import com.yahoo.yolean.Exceptions;
 import com.yahoo.yolean.Exceptions.RunnableThrowingIOException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLDecoder;
 import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -108,6 +119,7 @@ import static com.yahoo.jdisc.http.HttpRequest.Method.GET;
 import static com.yahoo.jdisc.http.HttpRequest.Method.OPTIONS;
 import static com.yahoo.jdisc.http.HttpRequest.Method.POST;
 import static com.yahoo.jdisc.http.HttpRequest.Method.PUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.WARNING;
@@ -159,12 +171,17 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
     private static final String TIMEOUT = "timeout";
     private static final String TRACELEVEL = "tracelevel";
 
+    private static final List<String> documentPaths = List.of("/document/v1/{namespace}/{documentType}/docid/{*}",
+                                                              "/document/v1/{namespace}/{documentType}/group/{group}/{*}",
+                                                              "/document/v1/{namespace}/{documentType}/number/{number}/{*}");
+
     private final Clock clock;
     private final Duration handlerTimeout;
     private final Metric metric;
     private final DocumentApiMetrics metrics;
     private final DocumentOperationParser parser;
     private final long maxThrottled;
+    private final int maxBatchOperationBytes;
     private final DocumentAccess access;
     private final AsyncSession asyncSession;
     private final Map<String, StorageCluster> clusters;
@@ -198,6 +215,7 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
         this.metric = metric;
         this.metrics = new DocumentApiMetrics(metricReceiver, "documentV1");
         this.maxThrottled = executorConfig.maxThrottled();
+        this.maxBatchOperationBytes = executorConfig.maxBatchOperationBytes();
         this.access = access;
         this.asyncSession = access.createAsyncSession(new AsyncParameters());
         this.clusters = parseClusters(clusterListConfig, bucketSpacesConfig);
@@ -350,6 +368,9 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
                             PUT, this::putDocument,
                             DELETE, this::deleteDocument));
 
+        handlers.put("/document/v1/batch",
+                     Map.of(POST, this::postBatch));
+
         return Collections.unmodifiableMap(handlers);
     }
 
@@ -433,70 +454,172 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
 
     private ContentChannel postDocument(HttpRequest request, DocumentPath path, ResponseHandler rawHandler) {
         ResponseHandler handler = new MeasuringResponseHandler(rawHandler, com.yahoo.documentapi.metrics.DocumentOperationType.PUT, clock.instant());
-        return new ForwardingContentChannel(in -> {
-            enqueueAndDispatch(request, handler, () -> {
-                DocumentPut put = parser.parsePut(in, path.id().toString());
-                getProperty(request, CONDITION).map(TestAndSetCondition::new).ifPresent(put::setCondition);
-                DocumentOperationParameters parameters = parametersFromRequest(request, ROUTE)
-                        .withResponseHandler(response -> {
-                            outstanding.decrementAndGet();
-                            handle(path, handler, response);
-                        });
-                return () -> dispatchOperation(() -> asyncSession.put(put, parameters));
-            });
+        return new ForwardingContentChannel(in -> enqueuePut(request, path, request.parameters(), in, handler));
+    }
+
+    private void enqueuePut(HttpRequest request, DocumentPath path, Map<String, List<String>> properties, InputStream in, ResponseHandler handler) {
+        enqueueAndDispatch(request, handler, () -> {
+            DocumentPut put = parser.parsePut(in, path.id().toString());
+            getProperty(properties, CONDITION).map(TestAndSetCondition::new).ifPresent(put::setCondition);
+            DocumentOperationParameters parameters = parametersFromProperties(properties, ROUTE)
+                    .withResponseHandler(response -> {
+                        outstanding.decrementAndGet();
+                        handle(path, handler, response);
+                    });
+            return () -> dispatchOperation(() -> asyncSession.put(put, parameters));
         });
     }
 
     private ContentChannel putDocument(HttpRequest request, DocumentPath path, ResponseHandler rawHandler) {
         ResponseHandler handler = new MeasuringResponseHandler(rawHandler, com.yahoo.documentapi.metrics.DocumentOperationType.UPDATE, clock.instant());
-        return new ForwardingContentChannel(in -> {
-            enqueueAndDispatch(request, handler, () -> {
-                DocumentUpdate update = parser.parseUpdate(in, path.id().toString());
-                getProperty(request, CONDITION).map(TestAndSetCondition::new).ifPresent(update::setCondition);
-                getProperty(request, CREATE, booleanParser).ifPresent(update::setCreateIfNonExistent);
-                DocumentOperationParameters parameters = parametersFromRequest(request, ROUTE)
-                        .withResponseHandler(response -> {
-                            outstanding.decrementAndGet();
-                            handle(path, handler, response);
-                        });
-                return () -> dispatchOperation(() -> asyncSession.update(update, parameters));
-            });
+        return new ForwardingContentChannel(in -> enqueueUpdate(request, path, request.parameters(), in, handler));
+    }
+
+    private void enqueueUpdate(HttpRequest request, DocumentPath path, Map<String, List<String>> properties, InputStream in, ResponseHandler handler) {
+        enqueueAndDispatch(request, handler, () -> {
+            DocumentUpdate update = parser.parseUpdate(in, path.id().toString());
+            getProperty(properties, CONDITION).map(TestAndSetCondition::new).ifPresent(update::setCondition);
+            getProperty(properties, CREATE, booleanParser).ifPresent(update::setCreateIfNonExistent);
+            DocumentOperationParameters parameters = parametersFromProperties(properties, ROUTE)
+                    .withResponseHandler(response -> {
+                        outstanding.decrementAndGet();
+                        handle(path, handler, response);
+                    });
+            return () -> dispatchOperation(() -> asyncSession.update(update, parameters));
         });
     }
 
     private ContentChannel deleteDocument(HttpRequest request, DocumentPath path, ResponseHandler rawHandler) {
         ResponseHandler handler = new MeasuringResponseHandler(rawHandler, com.yahoo.documentapi.metrics.DocumentOperationType.REMOVE, clock.instant());
+        enqueueRemove(request, path, request.parameters(), handler);
+        return ignoredContent;
+    }
+
+    private void enqueueRemove(HttpRequest request, DocumentPath path, Map<String, List<String>> properties, ResponseHandler handler) {
         enqueueAndDispatch(request, handler, () -> {
             DocumentRemove remove = new DocumentRemove(path.id());
-            getProperty(request, CONDITION).map(TestAndSetCondition::new).ifPresent(remove::setCondition);
-            DocumentOperationParameters parameters = parametersFromRequest(request, ROUTE)
+            getProperty(properties, CONDITION).map(TestAndSetCondition::new).ifPresent(remove::setCondition);
+            DocumentOperationParameters parameters = parametersFromProperties(properties, ROUTE)
                     .withResponseHandler(response -> {
                         outstanding.decrementAndGet();
                         handle(path, handler, response);
                     });
             return () -> dispatchOperation(() -> asyncSession.remove(remove, parameters));
         });
-        return ignoredContent;
+    }
+
+    /**
+     * Reads a sequence of put, update and remove operations from the request body, and dispatches each of these as if
+     * it were a separate request, streaming back the response to each operation as it completes. The framing of the
+     * request and response bodies is documented with the BatchingCluster of the vespa-feed-client, and each operation
+     * has the path and query, and body, of a request to /document/v1 for a single document.
+     */
+    private ContentChannel postBatch(HttpRequest request, DocumentPath batchPath, ResponseHandler handler) {
+        return new ForwardingContentChannel(in -> {
+            BatchResponse response = new BatchResponse(handler);
+            int index = 0;
+            try {
+                DataInputStream operations = new DataInputStream(in);
+                for (int method; (method = operations.read()) >= 0; index++) {
+                    String pathAndQuery = new String(readBatchBytes(operations, true), UTF_8);
+                    byte[] body = readBatchBytes(operations, false);
+                    dispatchBatchOperation(request, method, pathAndQuery, body, response.handler(index));
+                }
+            }
+            catch (IOException e) { // Operations already dispatched get their own results
+                badRequest(request, new IllegalArgumentException("Malformed batch request: " + Exceptions.toMessageString(e)),
+                           response.handler(-1 - index));
+            }
+            finally {
+                response.operationsRead();
+            }
+        });
+    }
+
+    private void dispatchBatchOperation(HttpRequest request, int method, String pathAndQuery, byte[] body, ResponseHandler rawHandler) {
+        com.yahoo.documentapi.metrics.DocumentOperationType type = method == 0 ? com.yahoo.documentapi.metrics.DocumentOperationType.PUT
+                                                                 : method == 1 ? com.yahoo.documentapi.metrics.DocumentOperationType.UPDATE
+                                                                               : com.yahoo.documentapi.metrics.DocumentOperationType.REMOVE;
+        ResponseHandler handler = new MeasuringResponseHandler(rawHandler, type, clock.instant());
+        try {
+            URI uri = URI.create(pathAndQuery);
+            Path path = new Path(uri);
+            if (documentPaths.stream().noneMatch(path::matches))
+                throw new IllegalArgumentException("No document at '" + uri.getRawPath() + "' in batch");
+
+            DocumentPath documentPath = new DocumentPath(path);
+            Map<String, List<String>> properties = parseQuery(uri.getRawQuery());
+            switch (method) {
+                case 0: enqueuePut(request, documentPath, properties, new ByteArrayInputStream(requireBody(body)), handler); break;
+                case 1: enqueueUpdate(request, documentPath, properties, new ByteArrayInputStream(requireBody(body)), handler); break;
+                case 2: enqueueRemove(request, documentPath, properties, handler); break;
+                default: throw new IllegalArgumentException("Unknown method " + method + " in batch");
+            }
+        }
+        catch (IllegalArgumentException e) {
+            badRequest(request, e, handler);
+        }
+    }
+
+    /** Returns the next length-prefixed bytes of a batch, or null if these are absent, and not required */
+    private byte[] readBatchBytes(DataInputStream in, boolean required) throws IOException {
+        int length = in.readInt();
+        if (length < 0 && required)
+            throw new IOException("Missing path of operation in batch");
+        if (length < 0)
+            return null;
+        if (length > maxBatchOperationBytes)
+            throw new IOException("Operation of " + length + " bytes in batch exceeds the limit of " + maxBatchOperationBytes + " bytes");
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] requireBody(byte[] body) {
+        if (body == null)
+            throw new IllegalArgumentException("Missing body of put or update in batch");
+
+        return body;
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> properties = new HashMap<>();
+        if (rawQuery == null)
+            return properties;
+
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), UTF_8);
+            properties.computeIfAbsent(name, __ -> new ArrayList<>()).add(value);
+        }
+        return properties;
     }
 
     private DocumentOperationParameters parametersFromRequest(HttpRequest request, String... names) {
-        DocumentOperationParameters parameters = getProperty(request, TRACELEVEL, integerParser).map(parameters()::withTraceLevel)
+        return parametersFromProperties(request.parameters(), names);
+    }
+
+    private DocumentOperationParameters parametersFromProperties(Map<String, List<String>> properties, String... names) {
+        DocumentOperationParameters parameters = getProperty(properties, TRACELEVEL, integerParser).map(parameters()::withTraceLevel)
                                                                                                 .orElse(parameters());
-        parameters = getProperty(request, TIMEOUT, timeoutMillisParser).map(clock.instant()::plusMillis)
+        parameters = getProperty(properties, TIMEOUT, timeoutMillisParser).map(clock.instant()::plusMillis)
                                                                        .map(parameters::withDeadline)
                                                                        .orElse(parameters);
         for (String name : names) switch (name) {
             case CLUSTER:
-                parameters = getProperty(request, CLUSTER).map(cluster -> resolveCluster(Optional.of(cluster), clusters).name())
+                parameters = getProperty(properties, CLUSTER).map(cluster -> resolveCluster(Optional.of(cluster), clusters).name())
                                                           .map(parameters::withRoute)
                                                           .orElse(parameters);
                 break;
             case FIELD_SET:
-                parameters = getProperty(request, FIELD_SET).map(parameters::withFieldSet)
+                parameters = getProperty(properties, FIELD_SET).map(parameters::withFieldSet)
                                                             .orElse(parameters);
                 break;
             case ROUTE:
-                parameters = getProperty(request, ROUTE).map(parameters::withRoute)
+                parameters = getProperty(properties, ROUTE).map(parameters::withRoute)
                                                         .orElse(parameters);
                 break;
             default:
@@ -701,6 +824,77 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
 
     }
 
+    /**
+     * Writes the responses to the operations of a batch request to the response of that, each in a binary frame with
+     * the index of the operation, its status and its JSON body, in the order they complete. The batch response is
+     * closed when all operations are read, and all their responses written.
+     */
+    private static class BatchResponse {
+
+        private final ResponseHandler handler;
+        private final AtomicLong pending = new AtomicLong(1); // Reading of the operations is also pending.
+        private ContentChannel channel; // Guarded by this.
+
+        private BatchResponse(ResponseHandler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Returns a handler for the response to the operation with the given index,
+         * or, if it is negative, to operation -1 - index and all operations following it.
+         */
+        ResponseHandler handler(int index) {
+            pending.incrementAndGet();
+            return response -> new ContentChannel() {
+                private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+                @Override public void write(ByteBuffer buf, CompletionHandler completion) {
+                    synchronized (body) {
+                        if (buf.hasArray())
+                            body.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+                        else
+                            while (buf.hasRemaining()) body.write(buf.get());
+                    }
+                    completion.completed();
+                }
+                @Override public void close(CompletionHandler completion) {
+                    byte[] bytes;
+                    synchronized (body) { bytes = body.toByteArray(); }
+                    writeResult(index, response.getStatus(), bytes);
+                    completion.completed();
+                    done();
+                }
+            };
+        }
+
+        /** Called when all operations have been read from the batch request. */
+        void operationsRead() {
+            done();
+        }
+
+        private void done() {
+            if (pending.decrementAndGet() == 0)
+                synchronized (this) {
+                    channel().close(logException);
+                }
+        }
+
+        private synchronized void writeResult(int index, int status, byte[] body) {
+            ByteBuffer frame = ByteBuffer.allocate(12 + body.length);
+            frame.putInt(index).putInt(status).putInt(body.length).put(body).flip();
+            channel().write(frame, logException);
+        }
+
+        private ContentChannel channel() {
+            if (channel == null) {
+                Response response = new Response(Response.Status.OK);
+                response.headers().put("Content-Type", "application/octet-stream");
+                channel = handler.handleResponse(response);
+            }
+            return channel;
+        }
+
+    }
+
     private static void options(Collection<Method> methods, ResponseHandler handler) {
         loggingException(() -> {
             Response response = new Response(Response.Status.NO_CONTENT);
@@ -893,13 +1087,24 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
     static class DocumentOperationParser {
 
         private final DocumentTypeManager manager;
+        private final JsonDocumentTranscoder transcoder;
 
         DocumentOperationParser(DocumentmanagerConfig config) {
             this.manager = new DocumentTypeManager(config);
+            this.transcoder = new JsonDocumentTranscoder(manager, jsonFactory);
         }
 
+        /**
+         * Puts which can be transcoded directly to the serialized document format are wrapped in a document which
+         * deserializes its fields only if they are accessed, and otherwise just copies them when it is sent.
+         */
         DocumentPut parsePut(InputStream inputStream, String docId) {
-            return (DocumentPut) parse(inputStream, docId, DocumentOperationType.PUT);
+            byte[] json = readAll(inputStream);
+            Optional<byte[]> serialized = transcoder.transcodePut(new DocumentId(docId), json);
+            if (serialized.isPresent())
+                return new DocumentPut(new Document(DocumentDeserializerFactory.createLazyHead(manager, GrowableByteBuffer.wrap(serialized.get()))));
+
+            return (DocumentPut) parse(new ByteArrayInputStream(json), docId, DocumentOperationType.PUT);
         }
 
         DocumentUpdate parseUpdate(InputStream inputStream, String docId)  {
@@ -910,6 +1115,15 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
             return new JsonReader(manager, inputStream, jsonFactory).readSingleDocument(operation, docId);
         }
 
+        private static byte[] readAll(InputStream inputStream) {
+            try {
+                return inputStream.readAllBytes();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
     }
 
     interface SuccessCallback {
@@ -1179,12 +1393,16 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
                 .orElseThrow(() -> new IllegalArgumentException("Must specify '" + name + "' at '" + request.getUri().getRawPath() + "'"));
     }
 
-    /** Returns the last property with the given name, if present, or throws if this is empty or blank. */
     private static Optional<String> getProperty(HttpRequest request, String name) {
-        if ( ! request.parameters().containsKey(name))
+        return getProperty(request.parameters(), name);
+    }
+
+    /** Returns the last property with the given name, if present, or throws if this is empty or blank. */
+    private static Optional<String> getProperty(Map<String, List<String>> properties, String name) {
+        if ( ! properties.containsKey(name))
             return Optional.empty();
 
-        List<String> values = request.parameters().get(name);
+        List<String> values = properties.get(name);
         String value;
         if (values == null || values.isEmpty() || (value = values.get(values.size() - 1)) == null || value.isEmpty())
             throw new IllegalArgumentException("Expected non-empty value for request property '" + name + "'");
@@ -1193,7 +1411,11 @@ public class DocumentV1ApiHandler extends AbstractRequestHandler {
     }
 
     private static <T> Optional<T> getProperty(HttpRequest request, String name, Parser<T> parser) {
-        return getProperty(request, name).map(parser::parse);
+        return getProperty(request.parameters(), name, parser);
+    }
+
+    private static <T> Optional<T> getProperty(Map<String, List<String>> properties, String name, Parser<T> parser) {
+        return getProperty(properties, name).map(parser::parse);
     }
 
     private static void disallow(HttpRequest request, String... properties) {
@@ -42,6 +42,11 @@ import com.yahoo.documentapi.VisitorResponse;
 import com.yahoo.documentapi.VisitorSession;
 import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.jdisc.Metric;
+import com.yahoo.jdisc.Request;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ReadableContentChannel;
+import com.yahoo.jdisc.handler.UnsafeContentInputStream;
+import com.yahoo.jdisc.http.HttpRequest;
 import com.yahoo.messagebus.StaticThrottlePolicy;
 import com.yahoo.messagebus.Trace;
 import com.yahoo.messagebus.TraceNode;
@@ -58,8 +63,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
@@ -194,7 +202,8 @@ public class DocumentV1ApiTest {
                        "/document/v1/{namespace}/{documentType}/number/{number}/\\n" +
                        "/document/v1/{namespace}/{documentType}/docid/{*}\\n" +
                        "/document/v1/{namespace}/{documentType}/group/{group}/{*}\\n" +
-                       "/document/v1/{namespace}/{documentType}/number/{number}/{*}\"" +
+                       "/document/v1/{namespace}/{documentType}/number/{number}/{*}\\n" +
+                       "/document/v1/batch\"" +
                        "}", response.readAll());
         assertEquals("application/json; charset=UTF-8", response.getResponse().headers().getFirst("Content-Type"));
         assertEquals(404, response.getStatus());
@@ -683,6 +692,149 @@ public class DocumentV1ApiTest {
         driver.close();
     }
 
+    @Test
+    public void testBatch() throws IOException {
+        RequestHandlerTestDriver driver = new RequestHandlerTestDriver(handler);
+        access.session.expect((operation, parameters) -> {
+            if (operation instanceof DocumentPut) {
+                DocumentPut expectedPut = new DocumentPut(doc2);
+                expectedPut.setCondition(new TestAndSetCondition("test it"));
+                assertEquals(expectedPut, operation);
+                assertEquals(parameters(), parameters);
+                parameters.responseHandler().get().handleResponse(new DocumentResponse(0, doc2));
+            }
+            else {
+                assertEquals(new DocumentRemove(doc1.getId()), operation);
+                assertEquals(parameters().withRoute("route"), parameters);
+                parameters.responseHandler().get().handleResponse(new DocumentIdResponse(0, doc1.getId()));
+            }
+            return new Result(Result.ResultType.SUCCESS, null);
+        });
+
+        // Each operation in a batch is dispatched as if it were a separate request, and gets its own result.
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        writeOperation(out, 0, "/document/v1/space/music/number/1/two?condition=test%20it", "{ \"fields\": { \"artist\": \"Asa-Chan & Jun-Ray\" } }");
+        writeOperation(out, 1, "/document/v1/space/house/group/a/three", "{ \"fields\": { } }");
+        writeOperation(out, 2, "/document/v1/space/music/docid/one?route=route", null);
+        writeOperation(out, 2, "/document/v1/not-found", null);
+        Map<Integer, BatchResult> results = sendBatch(driver, body.toByteArray());
+        assertEquals(Set.of(0, 1, 2, 3), results.keySet());
+
+        assertEquals(200, results.get(0).status);
+        assertSameJson("{" +
+                       "  \"pathId\": \"/document/v1/space/music/number/1/two\"," +
+                       "  \"id\": \"id:space:music:n=1:two\"" +
+                       "}", results.get(0).json);
+        assertEquals(400, results.get(1).status);
+        assertSameJson("{" +
+                       "  \"pathId\": \"/document/v1/batch\"," +
+                       "  \"message\": \"Document type house does not exist\"" +
+                       "}", results.get(1).json);
+        assertEquals(200, results.get(2).status);
+        assertSameJson("{" +
+                       "  \"pathId\": \"/document/v1/space/music/docid/one\"," +
+                       "  \"id\": \"id:space:music::one\"" +
+                       "}", results.get(2).json);
+        assertEquals(400, results.get(3).status);
+        assertSameJson("{" +
+                       "  \"pathId\": \"/document/v1/batch\"," +
+                       "  \"message\": \"No document at '/document/v1/not-found' in batch\"" +
+                       "}", results.get(3).json);
+
+        // A malformed batch gets a result for all remaining operations.
+        access.session.expect((__, ___) -> { throw new AssertionError("Not supposed to happen"); });
+        results = sendBatch(driver, new byte[]{ 0, 0, 0 });
+        assertEquals(Set.of(-1), results.keySet());
+        assertEquals(400, results.get(-1).status);
+
+        // A batch truncated after some operations gets results for these, and one for all the following ones.
+        access.session.expect((operation, parameters) -> {
+            assertEquals(new DocumentRemove(doc1.getId()), operation);
+            parameters.responseHandler().get().handleResponse(new DocumentIdResponse(0, doc1.getId()));
+            return new Result(Result.ResultType.SUCCESS, null);
+        });
+        body.reset();
+        writeOperation(out, 2, "/document/v1/space/music/docid/one", null);
+        out.write(new byte[]{ 2, 0, 0 });
+        results = sendBatch(driver, body.toByteArray());
+        assertEquals(Set.of(0, -2), results.keySet());
+        assertEquals(200, results.get(0).status);
+        assertEquals(400, results.get(-2).status);
+
+        // A batch with a too large operation, or a missing path, is malformed from that operation on.
+        access.session.expect((__, ___) -> { throw new AssertionError("Not supposed to happen"); });
+        body.reset();
+        out.writeByte(0);
+        out.writeInt(Integer.MAX_VALUE);
+        results = sendBatch(driver, body.toByteArray());
+        assertEquals(Set.of(-1), results.keySet());
+        assertEquals(400, results.get(-1).status);
+        assertSameJson("{" +
+                       "  \"pathId\": \"/document/v1/batch\"," +
+                       "  \"message\": \"Malformed batch request: Operation of 2147483647 bytes in batch exceeds the limit of 134217728 bytes\"" +
+                       "}", results.get(-1).json);
+
+        body.reset();
+        out.writeByte(2);
+        out.writeInt(-1);
+        out.writeInt(-1);
+        results = sendBatch(driver, body.toByteArray());
+        assertEquals(Set.of(-1), results.keySet());
+        assertEquals(400, results.get(-1).status);
+        assertSameJson("{" +
+                       "  \"pathId\": \"/document/v1/batch\"," +
+                       "  \"message\": \"Malformed batch request: Missing path of operation in batch\"" +
+                       "}", results.get(-1).json);
+
+        driver.close();
+    }
+
+    static void writeOperation(DataOutputStream out, int method, String pathAndQuery, String body) throws IOException {
+        out.writeByte(method);
+        byte[] path = pathAndQuery.getBytes(UTF_8);
+        out.writeInt(path.length);
+        out.write(path);
+        if (body == null)
+            out.writeInt(-1);
+        else {
+            out.writeInt(body.getBytes(UTF_8).length);
+            out.write(body.getBytes(UTF_8));
+        }
+    }
+
+    static Map<Integer, BatchResult> sendBatch(RequestHandlerTestDriver driver, byte[] body) throws IOException {
+        ReadableContentChannel content = new ReadableContentChannel();
+        Request request = HttpRequest.newServerRequest(driver.jDiscDriver(), URI.create("http://localhost/document/v1/batch"), POST);
+        ContentChannel requestContent = request.connect(response -> {
+            assertEquals(200, response.getStatus());
+            return content;
+        });
+        requestContent.write(ByteBuffer.wrap(body), null);
+        requestContent.close(null);
+        request.release();
+
+        Map<Integer, BatchResult> results = new TreeMap<>();
+        ByteBuffer frames = ByteBuffer.wrap(new UnsafeContentInputStream(content).readAllBytes());
+        while (frames.hasRemaining()) {
+            int index = frames.getInt();
+            int status = frames.getInt();
+            byte[] json = new byte[frames.getInt()];
+            frames.get(json);
+            assertNull("One result per operation", results.put(index, new BatchResult(status, new String(json, UTF_8))));
+        }
+        return results;
+    }
+
+    static class BatchResult {
+        final int status;
+        final String json;
+        BatchResult(int status, String json) {
+            this.status = status;
+            this.json = json;
+        }
+    }
+
     @Test
     public void testThroughput() throws InterruptedException {
         DocumentOperationExecutorConfig executorConfig = new DocumentOperationExecutorConfig.Builder().build();
@@ -0,0 +1,25 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmarks in this module with the given JMH command line options, e.g a regular expression
+ * selecting the benchmarks to run. Results are written as JSON to jmh-result.json unless other result
+ * options are given, such that results from different builds can be compared.
+ *
+ * @author bratseth
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        if ( ! arguments.contains("-rf"))
+            arguments.addAll(List.of("-rf", "json"));
+        if ( ! arguments.contains("-rff"))
+            arguments.addAll(List.of("-rff", "jmh-result.json"));
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+
+}
@@ -0,0 +1,79 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.benchmark;
+
+import com.yahoo.io.GrowableByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of writing to a growing buffer and reading compressed integers from it.
+ *
+ * @author bratseth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrowableByteBufferBenchmark {
+
+    private static final int values = 1000;
+
+    private GrowableByteBuffer compressedIntegers;
+
+    @Setup
+    public void setup() {
+        compressedIntegers = new GrowableByteBuffer();
+        for (int i = 0; i < values; i++)
+            compressedIntegers.putInt1_4Bytes(i * 37);
+        compressedIntegers.flip();
+    }
+
+    @Benchmark
+    public GrowableByteBuffer putPrimitives() {
+        GrowableByteBuffer buffer = new GrowableByteBuffer(64);
+        for (int i = 0; i < values; i++) {
+            buffer.putInt(i);
+            buffer.putLong(i);
+            buffer.putDouble(i);
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public GrowableByteBuffer putCompressedIntegers() {
+        GrowableByteBuffer buffer = new GrowableByteBuffer(64);
+        for (int i = 0; i < values; i++)
+            buffer.putInt1_4Bytes(i * 37);
+        return buffer;
+    }
+
+    @Benchmark
+    public GrowableByteBuffer putUtf8Strings() {
+        GrowableByteBuffer buffer = new GrowableByteBuffer(64);
+        for (int i = 0; i < values / 10; i++)
+            buffer.putUtf8String("a string value");
+        return buffer;
+    }
+
+    @Benchmark
+    public long getCompressedIntegers() {
+        compressedIntegers.position(0);
+        long sum = 0;
+        for (int i = 0; i < values; i++)
+            sum += compressedIntegers.getInt1_4Bytes();
+        return sum;
+    }
+
+}
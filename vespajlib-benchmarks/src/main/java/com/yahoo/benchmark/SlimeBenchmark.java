@@ -0,0 +1,71 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.benchmark;
+
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.JsonDecoder;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of encoding Slime to the binary format and decoding it from JSON.
+ *
+ * @author bratseth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlimeBenchmark {
+
+    private Slime slime;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setString("id", "id:namespace:music::a-document");
+        Cursor hits = root.setArray("hits");
+        for (int i = 0; i < 100; i++) {
+            Cursor hit = hits.addObject();
+            hit.setString("title", "Title number " + i + " with some æøå text");
+            hit.setLong("year", 1900 + random.nextInt(120));
+            hit.setDouble("relevance", random.nextDouble());
+            hit.setBool("available", random.nextBoolean());
+            Cursor tags = hit.setArray("tags");
+            for (int j = 0; j < 5; j++)
+                tags.addString("tag" + random.nextInt(1000));
+        }
+        binary = BinaryFormat.encode(slime);
+        json = SlimeUtils.toJsonBytes(slime);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() { return BinaryFormat.encode(slime); }
+
+    @Benchmark
+    public Slime decodeBinary() { return BinaryFormat.decode(binary); }
+
+    @Benchmark
+    public Slime decodeJson() { return new JsonDecoder().decode(new Slime(), json); }
+
+}
@@ -0,0 +1,75 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.functions.Reduce;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of tensor join, reduce and matmul on dense, sparse and mixed tensors.
+ *
+ * @author bratseth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TensorFunctionBenchmark {
+
+    @Param({"double", "float"})
+    public String valueType;
+
+    private Tensor vector, otherVector, matrix, sparse, otherSparse, mixed;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        vector = Tensors.dense("tensor<" + valueType + ">(x[768])", random);
+        otherVector = Tensors.dense("tensor<" + valueType + ">(x[768])", random);
+        matrix = Tensors.dense("tensor<" + valueType + ">(y[64],x[768])", random);
+        sparse = Tensors.sparse(TensorType.fromSpec("tensor<" + valueType + ">(key{})"), 1000, random);
+        otherSparse = Tensors.sparse(TensorType.fromSpec("tensor<" + valueType + ">(key{})"), 1000, random);
+        mixed = Tensors.mixed(TensorType.fromSpec("tensor<" + valueType + ">(key{},x[768])"), 16, random);
+    }
+
+    @Benchmark
+    public Tensor denseJoin() { return vector.multiply(otherVector); }
+
+    @Benchmark
+    public Tensor denseReduce() { return matrix.reduce(Reduce.Aggregator.sum, "x"); }
+
+    @Benchmark
+    public Tensor denseDotProduct() { return vector.matmul(otherVector, "x"); }
+
+    @Benchmark
+    public Tensor denseMatmul() { return matrix.matmul(vector, "x"); }
+
+    @Benchmark
+    public Tensor sparseJoin() { return sparse.multiply(otherSparse); }
+
+    @Benchmark
+    public Tensor sparseReduce() { return sparse.reduce(Reduce.Aggregator.sum); }
+
+    @Benchmark
+    public Tensor mixedJoin() { return mixed.multiply(vector); }
+
+    @Benchmark
+    public Tensor mixedReduce() { return mixed.reduce(Reduce.Aggregator.max, "x"); }
+
+}
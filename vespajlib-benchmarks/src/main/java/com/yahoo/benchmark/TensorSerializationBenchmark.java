@@ -0,0 +1,72 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.benchmark;
+
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.serialization.JsonFormat;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of encoding and decoding tensors in the binary and JSON formats.
+ *
+ * @author bratseth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TensorSerializationBenchmark {
+
+    @Param({"tensor<float>(x[768])", "tensor(key{})", "tensor<float>(key{},x[128])"})
+    public String typeSpec;
+
+    private TensorType type;
+    private Tensor tensor;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        type = TensorType.fromSpec(typeSpec);
+        if (type.dimensions().stream().allMatch(TensorType.Dimension::isIndexed))
+            tensor = Tensors.dense(typeSpec, random);
+        else if (type.dimensions().stream().noneMatch(TensorType.Dimension::isIndexed))
+            tensor = Tensors.sparse(type, 1000, random);
+        else
+            tensor = Tensors.mixed(type, 16, random);
+        binary = TypedBinaryFormat.encode(tensor);
+        json = JsonFormat.encode(tensor);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() { return TypedBinaryFormat.encode(tensor); }
+
+    @Benchmark
+    public Tensor decodeBinary() { return TypedBinaryFormat.decode(Optional.of(type), GrowableByteBuffer.wrap(binary)); }
+
+    @Benchmark
+    public byte[] encodeJson() { return JsonFormat.encode(tensor); }
+
+    @Benchmark
+    public Tensor decodeJson() { return JsonFormat.decode(type, json); }
+
+}
@@ -0,0 +1,62 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.benchmark;
+
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.MixedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
+import com.yahoo.tensor.TensorType;
+
+import java.util.Random;
+
+/**
+ * Creates tensors with random values for benchmarking.
+ *
+ * @author bratseth
+ */
+class Tensors {
+
+    /** Returns a tensor of a type having only bound indexed dimensions */
+    static Tensor dense(String typeSpec, Random random) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(type);
+        for (long i = 0; i < denseSize(type); i++)
+            builder.cellByDirectIndex(i, random.nextGaussian());
+        return builder.build();
+    }
+
+    /**
+     * Returns a tensor of a type having a single mapped dimension, with about the given number of cells
+     * drawn from twice as many labels, such that two such tensors share about half their labels.
+     */
+    static Tensor sparse(TensorType type, int cells, Random random) {
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int i = 0; i < cells * 2; i++) {
+            if (random.nextBoolean())
+                builder.cell(TensorAddress.ofLabels("label" + i), random.nextGaussian());
+        }
+        return builder.build();
+    }
+
+    /** Returns a tensor of a type having a single mapped dimension followed by bound indexed dimensions */
+    static Tensor mixed(TensorType type, int subspaces, Random random) {
+        MixedTensor.BoundBuilder builder = (MixedTensor.BoundBuilder)MixedTensor.Builder.of(type);
+        long subspaceSize = denseSize(type);
+        for (int i = 0; i < subspaces; i++) {
+            double[] values = new double[(int)subspaceSize];
+            for (int j = 0; j < values.length; j++)
+                values[j] = random.nextGaussian();
+            builder.block(TensorAddress.ofLabels("label" + i), values);
+        }
+        return builder.build();
+    }
+
+    private static long denseSize(TensorType type) {
+        long size = 1;
+        for (TensorType.Dimension dimension : type.dimensions())
+            if (dimension.isIndexed())
+                size *= dimension.size().get();
+        return size;
+    }
+
+}
@@ -0,0 +1,63 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.benchmark;
+
+import com.yahoo.text.Utf8;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of converting strings to and from UTF-8.
+ *
+ * @author bratseth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Utf8Benchmark {
+
+    @Param({"ascii", "latin", "cjk"})
+    public String text;
+
+    @Param({"16", "1024"})
+    public int length;
+
+    private String string;
+    private byte[] utf8;
+
+    @Setup
+    public void setup() {
+        String unit;
+        switch (text) {
+            case "ascii" : unit = "abcdefgh"; break;
+            case "latin" : unit = "blåbærsyltetøy"; break;
+            case "cjk" : unit = "日本語のテキスト"; break;
+            default: throw new IllegalArgumentException("Unknown text '" + text + "'");
+        }
+        StringBuilder b = new StringBuilder();
+        while (b.length() < length)
+            b.append(unit);
+        string = b.substring(0, length);
+        utf8 = Utf8.toBytes(string);
+    }
+
+    @Benchmark
+    public byte[] toBytes() { return Utf8.toBytes(string); }
+
+    @Benchmark
+    public String toStringFromBytes() { return Utf8.toString(utf8); }
+
+}
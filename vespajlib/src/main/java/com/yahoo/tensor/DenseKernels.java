@@ -0,0 +1,59 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+/**
+ * Computations over the value arrays of indexed tensors.
+ *
+ * Sums are accumulated in four independent partial sums over interleaved values, such that consecutive additions
+ * do not wait on each other and the CPU can execute them in parallel. This means results may differ in the last
+ * bits from summing the values in order.
+ *
+ * @author bratseth
+ */
+final class DenseKernels {
+
+    private DenseKernels() {}
+
+    static double dotProduct(double[] a, int aStart, double[] b, int bStart, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[aStart + i    ] * b[bStart + i    ];
+            sum1 += a[aStart + i + 1] * b[bStart + i + 1];
+            sum2 += a[aStart + i + 2] * b[bStart + i + 2];
+            sum3 += a[aStart + i + 3] * b[bStart + i + 3];
+        }
+        for (; i < length; i++)
+            sum0 += a[aStart + i] * b[bStart + i];
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    static double dotProduct(float[] a, int aStart, float[] b, int bStart, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += (double)a[aStart + i    ] * b[bStart + i    ];
+            sum1 += (double)a[aStart + i + 1] * b[bStart + i + 1];
+            sum2 += (double)a[aStart + i + 2] * b[bStart + i + 2];
+            sum3 += (double)a[aStart + i + 3] * b[bStart + i + 3];
+        }
+        for (; i < length; i++)
+            sum0 += (double)a[aStart + i] * b[bStart + i];
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    static double dotProduct(double[] a, int aStart, float[] b, int bStart, int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[aStart + i    ] * b[bStart + i    ];
+            sum1 += a[aStart + i + 1] * b[bStart + i + 1];
+            sum2 += a[aStart + i + 2] * b[bStart + i + 2];
+            sum3 += a[aStart + i + 3] * b[bStart + i + 3];
+        }
+        for (; i < length; i++)
+            sum0 += a[aStart + i] * b[bStart + i];
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+}
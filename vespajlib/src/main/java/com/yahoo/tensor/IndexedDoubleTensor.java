@@ -28,6 +28,17 @@ class IndexedDoubleTensor extends IndexedTensor {
     @Override
     public float getFloat(long valueIndex) { return (float)get(valueIndex); }
 
+    @Override
+    public double dotProduct(long valueIndex, IndexedTensor other, long otherValueIndex, long length) {
+        if (other instanceof IndexedDoubleTensor)
+            return DenseKernels.dotProduct(values, (int)valueIndex,
+                                           ((IndexedDoubleTensor)other).values, (int)otherValueIndex, (int)length);
+        if (other instanceof IndexedFloatTensor)
+            return DenseKernels.dotProduct(values, (int)valueIndex,
+                                           ((IndexedFloatTensor)other).values, (int)otherValueIndex, (int)length);
+        return super.dotProduct(valueIndex, other, otherValueIndex, length);
+    }
+
     @Override
     public IndexedTensor withType(TensorType type) {
         throwOnIncompatibleType(type);
@@ -10,7 +10,7 @@ import java.util.Arrays;
  */
 class IndexedFloatTensor extends IndexedTensor {
 
-    private final float[] values;
+    final float[] values;
 
     IndexedFloatTensor(TensorType type, DimensionSizes dimensionSizes, float[] values) {
         super(type, dimensionSizes);
@@ -28,6 +28,16 @@ class IndexedFloatTensor extends IndexedTensor {
     @Override
     public float getFloat(long valueIndex) { return values[(int)valueIndex]; }
 
+    @Override
+    public double dotProduct(long valueIndex, IndexedTensor other, long otherValueIndex, long length) {
+        if (other instanceof IndexedFloatTensor)
+            return DenseKernels.dotProduct(values, (int)valueIndex,
+                                           ((IndexedFloatTensor)other).values, (int)otherValueIndex, (int)length);
+        if (other instanceof IndexedDoubleTensor)
+            return other.dotProduct(otherValueIndex, this, valueIndex, length);
+        return super.dotProduct(valueIndex, other, otherValueIndex, length);
+    }
+
     @Override
     public IndexedTensor withType(TensorType type) {
         throwOnIncompatibleType(type);
@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
@@ -67,6 +68,14 @@ public abstract class IndexedTensor implements Tensor {
         return new ValueIterator();
     }
 
+    /**
+     * Returns an iterator over the values of this returned in the <i>standard value order</i>,
+     * which returns primitive doubles through nextDouble() without boxing.
+     */
+    public PrimitiveIterator.OfDouble doubleValueIterator() {
+        return new ValueIterator();
+    }
+
     /**
      * Returns an iterator over value iterators where the outer iterator is over each unique value of the dimensions
      * given and the inner iterator is over each unique value of the rest of the dimensions, in the
@@ -145,6 +154,20 @@ public abstract class IndexedTensor implements Tensor {
      */
     public abstract float getFloat(long valueIndex);
 
+    /**
+     * Returns the sum of the products of the given number of values in this and the given tensor,
+     * starting at the given <i>standard value order</i> index in each.
+     * This is computed directly on the underlying values when both tensors store values in arrays.
+     *
+     * @throws IndexOutOfBoundsException if either tensor does not contain the given values
+     */
+    public double dotProduct(long valueIndex, IndexedTensor other, long otherValueIndex, long length) {
+        double sum = 0;
+        for (long i = 0; i < length; i++)
+            sum += get(valueIndex + i) * other.get(otherValueIndex + i);
+        return sum;
+    }
+
     static long toValueIndex(long[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
         if (indexes.length == 0) return 0; // for speed
@@ -607,23 +630,20 @@ public abstract class IndexedTensor implements Tensor {
 
     }
 
-    private final class ValueIterator implements Iterator<Double> {
+    private final class ValueIterator implements PrimitiveIterator.OfDouble {
 
+        private final long size = size();
         private long count = 0;
 
         @Override
         public boolean hasNext() {
-            return count < size();
+            return count < size;
         }
 
         @Override
-        public Double next() {
-            try {
-                return get(count++);
-            }
-            catch (IllegalArgumentException e) {
-                throw new NoSuchElementException("No element at position " + count);
-            }
+        public double nextDouble() {
+            if ( ! hasNext()) throw new NoSuchElementException("No element at position " + count);
+            return get(count++);
         }
 
     }
@@ -768,6 +788,12 @@ public abstract class IndexedTensor implements Tensor {
         @Override
         public Double getValue() { return value; }
 
+        @Override
+        public double getDoubleValue() { return value; }
+
+        @Override
+        public float getFloatValue() { return (float)value; }
+
         @Override
         public Cell detach() {
             return new Cell(getKey(), value);
@@ -0,0 +1,171 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps tensor address labels to the numbers representing them in tensor addresses, such that addresses
+ * can be hashed and compared as numbers rather than strings.
+ *
+ * Labels which are integers on canonical form are represented by their own value.
+ * Other labels are interned in a global dictionary and represented by an id in the range just above
+ * Long.MIN_VALUE, which no canonical integer label of 18 digits or less can collide with.
+ * Interned labels are never removed, so the dictionary holds at most {@link #maxInterned} labels.
+ * Labels first seen after it is full are not represented by a number, and must be kept as strings.
+ *
+ * @author bratseth
+ */
+final class Label {
+
+    /** A number which never represents a label, returned for labels which are not represented by a number */
+    static final long NONE = Long.MIN_VALUE;
+
+    /** The max number of labels in the global dictionary */
+    static final int maxInterned = 1 << 20;
+
+    private static final int maxIntegerLabelDigits = 18;
+
+    /** The largest absolute value of an integer label represented by its own value, which has maxIntegerLabelDigits */
+    private static final long maxIntegerLabel = 999_999_999_999_999_999L;
+
+    /** Powers of ten, from 10^0 to 10^maxIntegerLabelDigits */
+    private static final long[] powersOfTen = new long[maxIntegerLabelDigits + 1];
+    static {
+        powersOfTen[0] = 1;
+        for (int i = 1; i < powersOfTen.length; i++)
+            powersOfTen[i] = powersOfTen[i - 1] * 10;
+    }
+
+    private static final Dictionary dictionary = new Dictionary(maxInterned);
+
+    private Label() {}
+
+    /** Returns the number representing the given label, or NONE if it is not represented by a number */
+    static long toNumber(String label) {
+        long number = integerValue(label);
+        if (number != NONE) return number;
+        return dictionary.toNumber(label);
+    }
+
+    /** Returns the label represented by the given number, which must not be NONE */
+    static String fromNumber(long number) {
+        if ( ! isInterned(number)) return String.valueOf(number);
+        return dictionary.fromNumber(number);
+    }
+
+    /** Returns whether the given number represents an interned (non-integer) label */
+    static boolean isInterned(long number) {
+        return number > NONE && number <= NONE + maxInterned;
+    }
+
+    /**
+     * Returns whether the given numeric label is represented by its own value.
+     * This is the case for the same integers as those accepted by {@link #integerValue}.
+     */
+    static boolean isOwnNumber(long numericLabel) {
+        return numericLabel >= -maxIntegerLabel && numericLabel <= maxIntegerLabel;
+    }
+
+    /** Compares the labels represented by the two given numbers, which must not be NONE, by their string value */
+    static int compare(long a, long b) {
+        if (a == b) return 0;
+        if ( ! isInterned(a) && ! isInterned(b)) return compareIntegers(a, b);
+        return fromNumber(a).compareTo(fromNumber(b)); // only creates strings when integers and other labels are mixed
+    }
+
+    /** Compares two integer labels represented by their own value by their string value, without creating the strings */
+    private static int compareIntegers(long a, long b) {
+        if ((a < 0) != (b < 0)) return a < 0 ? -1 : 1; // '-' is ordered before digits
+        if (a < 0) { // both start by '-': Compare the digits
+            a = -a;
+            b = -b;
+        }
+        int aDigits = digits(a);
+        int bDigits = digits(b);
+        // Compare the digits the two have in common, and if those are equal, the shorter is first
+        long aPrefix = aDigits > bDigits ? a / powersOfTen[aDigits - bDigits] : a;
+        long bPrefix = bDigits > aDigits ? b / powersOfTen[bDigits - aDigits] : b;
+        if (aPrefix != bPrefix) return aPrefix < bPrefix ? -1 : 1;
+        return Integer.compare(aDigits, bDigits);
+    }
+
+    /** Returns the number of digits in the given non-negative integer label */
+    private static int digits(long value) {
+        int digits = 1;
+        while (digits < powersOfTen.length && value >= powersOfTen[digits])
+            digits++;
+        return digits;
+    }
+
+    /** Returns the integer value of this label if it is an integer on canonical form, and NONE otherwise */
+    static long integerValue(String label) {
+        int length = label.length();
+        int start = length > 0 && label.charAt(0) == '-' ? 1 : 0;
+        int digits = length - start;
+        if (digits == 0 || digits > maxIntegerLabelDigits) return NONE;
+        if (label.charAt(start) == '0' && (digits > 1 || start == 1)) return NONE; // leading zero or "-0"
+
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            char c = label.charAt(i);
+            if (c < '0' || c > '9') return NONE;
+            value = value * 10 + (c - '0');
+        }
+        return start == 1 ? -value : value;
+    }
+
+    /**
+     * A dictionary of interned labels, holding at most a given number of labels.
+     * A label is either interned the first time it is seen, or never, so its representation never changes.
+     * Package private for testing.
+     */
+    static final class Dictionary {
+
+        private final int capacity;
+
+        private final Map<String, Long> numberByLabel = new ConcurrentHashMap<>();
+
+        /** The interned labels, where the label with number NONE + 1 + i is at index i. Replaced when grown. */
+        private volatile String[] labels = new String[1024];
+        private int labelCount = 0;
+
+        Dictionary(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /** Returns the number of the given label, interning it if there is room, or NONE if it is not interned */
+        long toNumber(String label) {
+            Long interned = numberByLabel.get(label);
+            if (interned != null) return interned;
+            return intern(label);
+        }
+
+        /** Returns the label of the given number, which must be returned from toNumber in this */
+        String fromNumber(long number) {
+            long index = number - NONE - 1;
+            String[] labels = this.labels;
+            if (index < labels.length && labels[(int)index] != null) return labels[(int)index];
+            synchronized (this) { // May be written by another thread and not yet visible to this one
+                if (index < labelCount) return this.labels[(int)index];
+            }
+            throw new IllegalArgumentException(number + " is not the number of a label");
+        }
+
+        private synchronized long intern(String label) {
+            Long existing = numberByLabel.get(label);
+            if (existing != null) return existing;
+            if (labelCount == capacity) return NONE;
+
+            if (labelCount == labels.length)
+                labels = Arrays.copyOf(labels, Math.min(labels.length * 2, capacity));
+            labels[labelCount] = label;
+            long number = NONE + 1 + labelCount++;
+            numberByLabel.put(label, number);
+            return number;
+        }
+
+    }
+
+}
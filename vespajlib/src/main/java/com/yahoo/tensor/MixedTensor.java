@@ -369,10 +369,11 @@ public class MixedTensor implements Tensor {
     private static class Index {
 
         private final TensorType type;
-        private final TensorType sparseType;
         private final TensorType denseType;
         private final List<TensorType.Dimension> mappedDimensions;
         private final List<TensorType.Dimension> indexedDimensions;
+        private final int[] mappedIndexes;
+        private final int[] indexedIndexes;
 
         private ImmutableMap<TensorAddress, Long> sparseMap;
         private long denseSubspaceSize = -1;
@@ -381,8 +382,17 @@ public class MixedTensor implements Tensor {
             this.type = type;
             this.mappedDimensions = type.dimensions().stream().filter(d -> !d.isIndexed()).collect(Collectors.toList());
             this.indexedDimensions = type.dimensions().stream().filter(d -> d.isIndexed()).collect(Collectors.toList());
-            this.sparseType = createPartialType(type.valueType(), mappedDimensions);
             this.denseType = createPartialType(type.valueType(), indexedDimensions);
+            this.mappedIndexes = indexesOf(mappedDimensions);
+            this.indexedIndexes = indexesOf(indexedDimensions);
+        }
+
+        /** Returns the index in the type of each of the given dimensions */
+        private int[] indexesOf(List<TensorType.Dimension> dimensions) {
+            int[] indexes = new int[dimensions.size()];
+            for (int i = 0; i < indexes.length; i++)
+                indexes[i] = type.indexOfDimension(dimensions.get(i).name()).get();
+            return indexes;
         }
 
         /** Returns the index of the given address, or -1 if it is not present */
@@ -436,13 +446,7 @@ public class MixedTensor implements Tensor {
         private TensorAddress sparsePartialAddress(TensorAddress address) {
             if (type.dimensions().size() != address.size())
                 throw new IllegalArgumentException("Tensor type of " + this + " is not the same size as " + address);
-            TensorAddress.Builder builder = new TensorAddress.Builder(sparseType);
-            for (int i = 0; i < type.dimensions().size(); ++i) {
-                TensorType.Dimension dimension = type.dimensions().get(i);
-                if ( ! dimension.isIndexed())
-                    builder.add(dimension.name(), address.label(i));
-            }
-            return builder.build();
+            return address.partialCopy(mappedIndexes);
         }
 
         private long denseOffset(TensorAddress address) {
@@ -483,19 +487,7 @@ public class MixedTensor implements Tensor {
 
         private TensorAddress addressOf(TensorAddress sparsePart, long denseOffset) {
             TensorAddress densePart = denseOffsetToAddress(denseOffset);
-            String[] labels = new String[type.dimensions().size()];
-            int mappedIndex = 0;
-            int indexedIndex = 0;
-            for (TensorType.Dimension d : type.dimensions()) {
-                if (d.isIndexed()) {
-                    labels[mappedIndex + indexedIndex] = densePart.label(indexedIndex);
-                    indexedIndex++;
-                } else {
-                    labels[mappedIndex + indexedIndex] = sparsePart.label(mappedIndex);
-                    mappedIndex++;
-                }
-            }
-            return TensorAddress.of(labels);
+            return TensorAddress.join(sparsePart, mappedIndexes, densePart, indexedIndexes, type.dimensions().size());
         }
 
         @Override
@@ -4,7 +4,6 @@ package com.yahoo.tensor;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * An immutable address to a tensor cell. This simply supplies a value to each dimension
@@ -15,15 +14,68 @@ import java.util.stream.Collectors;
 public abstract class TensorAddress implements Comparable<TensorAddress> {
 
     public static TensorAddress of(String[] labels) {
-        return new StringTensorAddress(labels);
+        return new LabelNumberTensorAddress(labels);
     }
 
     public static TensorAddress ofLabels(String ... labels) {
-        return new StringTensorAddress(labels);
+        return new LabelNumberTensorAddress(labels);
     }
 
+    /** Returns an address having the given numeric labels */
     public static TensorAddress of(long ... labels) {
-        return new NumericTensorAddress(labels);
+        for (long label : labels)
+            if ( ! Label.isOwnNumber(label)) // rare: must be represented as a string
+                return of(Arrays.stream(labels).mapToObj(String::valueOf).toArray(String[]::new));
+        return new LabelNumberTensorAddress(Arrays.copyOf(labels, labels.length), null);
+    }
+
+    /**
+     * Returns an address where labels which are not integers are kept as strings, as they are when the
+     * label dictionary is full. The labels must not be interned. Package private for testing.
+     */
+    static TensorAddress ofUninterned(String ... labels) {
+        long[] numbers = new long[labels.length];
+        String[] uninterned = new String[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            numbers[i] = Label.integerValue(labels[i]);
+            if (numbers[i] == Label.NONE)
+                uninterned[i] = labels[i];
+        }
+        return new LabelNumberTensorAddress(numbers, uninterned);
+    }
+
+    /**
+     * Returns the address having the labels of a and b, where the i'th label of a is at index aToIndexes[i]
+     * and the i'th label of b is at index bToIndexes[i], or null if a and b have different labels at an index.
+     * This is cheaper than creating the address from the label strings.
+     *
+     * @param size the size of the returned address, which must have a label at each index
+     */
+    public static TensorAddress join(TensorAddress a, int[] aToIndexes, TensorAddress b, int[] bToIndexes, int size) {
+        long[] labels = new long[size];
+        String[] uninterned = null;
+        boolean[] fromA = new boolean[size];
+        for (int i = 0; i < a.size(); i++) {
+            int index = aToIndexes[i];
+            labels[index] = a.labelNumber(i);
+            if (labels[index] == Label.NONE)
+                uninterned = withUninterned(uninterned, size, index, a.label(i));
+            fromA[index] = true;
+        }
+        for (int i = 0; i < b.size(); i++) {
+            int index = bToIndexes[i];
+            long label = b.labelNumber(i);
+            if (fromA[index]) {
+                if (labels[index] != label) return null;
+                if (label == Label.NONE && ! uninterned[index].equals(b.label(i))) return null;
+            }
+            else {
+                labels[index] = label;
+                if (label == Label.NONE)
+                    uninterned = withUninterned(uninterned, size, index, b.label(i));
+            }
+        }
+        return new LabelNumberTensorAddress(labels, uninterned);
     }
 
     /** Returns the number of labels in this */
@@ -44,15 +96,42 @@ public abstract class TensorAddress implements Comparable<TensorAddress> {
      */
     public abstract long numericLabel(int i);
 
+    /**
+     * Returns the number representing the i'th label in this, see {@link Label}, or Label.NONE if this label
+     * is only represented by its string. Two labels are equal if and only if their numbers are equal,
+     * and, if they are NONE, their strings are equal.
+     */
+    abstract long labelNumber(int i);
+
+    /** Returns a copy of this with the given numeric label at the given index */
     public abstract TensorAddress withLabel(int labelIndex, long label);
 
+    /**
+     * Returns an address having the labels of this at the given indexes, in order.
+     * This is cheaper than creating the address from the label strings.
+     */
+    public TensorAddress partialCopy(int[] indexMap) {
+        long[] labels = new long[indexMap.length];
+        String[] uninterned = null;
+        for (int i = 0; i < indexMap.length; i++) {
+            labels[i] = labelNumber(indexMap[i]);
+            if (labels[i] == Label.NONE)
+                uninterned = withUninterned(uninterned, indexMap.length, i, label(indexMap[i]));
+        }
+        return new LabelNumberTensorAddress(labels, uninterned);
+    }
+
     public final boolean isEmpty() { return size() == 0; }
 
     @Override
     public int compareTo(TensorAddress other) {
         // TODO: Formal issue (only): Ordering with different address sizes
         for (int i = 0; i < size(); i++) {
-            int elementComparison = this.label(i).compareTo(other.label(i));
+            long thisLabel = this.labelNumber(i);
+            long otherLabel = other.labelNumber(i);
+            int elementComparison = thisLabel != Label.NONE && otherLabel != Label.NONE
+                                    ? Label.compare(thisLabel, otherLabel)
+                                    : this.label(i).compareTo(other.label(i));
             if (elementComparison != 0) return elementComparison;
         }
         return 0;
@@ -61,8 +140,10 @@ public abstract class TensorAddress implements Comparable<TensorAddress> {
     @Override
     public int hashCode() {
         int result = 1;
-        for (int i = 0; i < size(); i++)
-            result = 31 * result + label(i).hashCode();
+        for (int i = 0; i < size(); i++) {
+            long label = labelNumber(i);
+            result = 31 * result + (label != Label.NONE ? Long.hashCode(label) : label(i).hashCode());
+        }
         return result;
     }
 
@@ -72,9 +153,11 @@ public abstract class TensorAddress implements Comparable<TensorAddress> {
         if ( ! (o instanceof TensorAddress)) return false;
         TensorAddress other = (TensorAddress)o;
         if (other.size() != this.size()) return false;
-        for (int i = 0; i < this.size(); i++)
-            if ( ! this.label(i).equals(other.label(i)))
-                return false;
+        for (int i = 0; i < this.size(); i++) {
+            long label = this.labelNumber(i);
+            if (label != other.labelNumber(i)) return false;
+            if (label == Label.NONE && ! this.label(i).equals(other.label(i))) return false;
+        }
         return true;
     }
 
@@ -98,72 +181,83 @@ public abstract class TensorAddress implements Comparable<TensorAddress> {
         return "'" + label + "'";
     }
 
-    private static final class StringTensorAddress extends TensorAddress {
+    /** Returns the given array of uninterned labels, or a new one if it is null, with the given label set */
+    private static String[] withUninterned(String[] uninterned, int size, int index, String label) {
+        if (uninterned == null)
+            uninterned = new String[size];
+        uninterned[index] = label;
+        return uninterned;
+    }
 
-        private final String[] labels;
+    /** An address holding the number representing each label, see {@link Label} */
+    private static final class LabelNumberTensorAddress extends TensorAddress {
+
+        private final long[] labels;
 
-        private StringTensorAddress(String ... labels) {
-            this.labels = Arrays.copyOf(labels, labels.length);
+        /** The labels which are not represented by a number (NONE in labels), or null if there are none */
+        private final String[] uninterned;
+
+        private LabelNumberTensorAddress(String ... labels) {
+            this.labels = new long[labels.length];
+            String[] uninterned = null;
+            for (int i = 0; i < labels.length; i++) {
+                this.labels[i] = Label.toNumber(labels[i]);
+                if (this.labels[i] == Label.NONE)
+                    uninterned = withUninterned(uninterned, labels.length, i, labels[i]);
+            }
+            this.uninterned = uninterned;
+        }
+
+        /** Creates an address from arrays which are owned by this */
+        private LabelNumberTensorAddress(long[] labels, String[] uninterned) {
+            this.labels = labels;
+            this.uninterned = uninterned;
         }
 
         @Override
         public int size() { return labels.length; }
 
         @Override
-        public String label(int i) { return labels[i]; }
+        public String label(int i) {
+            return labels[i] == Label.NONE ? uninterned[i] : Label.fromNumber(labels[i]);
+        }
 
         @Override
         public long numericLabel(int i) {
+            if (labels[i] != Label.NONE && ! Label.isInterned(labels[i])) return labels[i];
             try {
-                return Long.parseLong(labels[i]);
+                return Long.parseLong(label(i));
             }
             catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Expected an integer label in " + this + " at position " + i + " but got '" + labels[i] + "'");
+                throw new IllegalArgumentException("Expected an integer label in " + this + " at position " + i + " but got '" + label(i) + "'");
             }
         }
 
         @Override
-        public TensorAddress withLabel(int index, long label) {
-            String[] labels = Arrays.copyOf(this.labels, this.labels.length);
-            labels[index] = String.valueOf(label);
-            return new StringTensorAddress(labels);
-        }
-
-
-        @Override
-        public String toString() {
-            return "cell address (" + String.join(",", labels) + ")";
-        }
-
-    }
-
-    private static final class NumericTensorAddress extends TensorAddress {
-
-        private final long[] labels;
-
-        private NumericTensorAddress(long[] labels) {
-            this.labels = Arrays.copyOf(labels, labels.length);
-        }
-
-        @Override
-        public int size() { return labels.length; }
-
-        @Override
-        public String label(int i) { return String.valueOf(labels[i]); }
-
-        @Override
-        public long numericLabel(int i) { return labels[i]; }
+        long labelNumber(int i) { return labels[i]; }
 
         @Override
         public TensorAddress withLabel(int index, long label) {
+            if ( ! Label.isOwnNumber(label)) { // rare: must be represented as a string
+                String[] labels = new String[this.labels.length];
+                for (int i = 0; i < labels.length; i++)
+                    labels[i] = i == index ? String.valueOf(label) : label(i);
+                return new LabelNumberTensorAddress(labels);
+            }
             long[] labels = Arrays.copyOf(this.labels, this.labels.length);
             labels[index] = label;
-            return new NumericTensorAddress(labels);
+            String[] uninterned = this.uninterned == null ? null : Arrays.copyOf(this.uninterned, this.uninterned.length);
+            if (uninterned != null)
+                uninterned[index] = null;
+            return new LabelNumberTensorAddress(labels, uninterned);
         }
 
         @Override
         public String toString() {
-            return "cell address (" + Arrays.stream(labels).mapToObj(String::valueOf).collect(Collectors.joining(",")) + ")";
+            StringBuilder b = new StringBuilder("cell address (");
+            for (int i = 0; i < labels.length; i++)
+                b.append(i > 0 ? "," : "").append(label(i));
+            return b.append(")").toString();
         }
 
     }
@@ -2,10 +2,8 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
 import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
-import com.yahoo.tensor.PartialAddress;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -17,13 +15,12 @@ import com.yahoo.tensor.evaluation.TypeContext;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.PrimitiveIterator;
 import java.util.function.DoubleBinaryOperator;
 
 /**
@@ -96,6 +93,8 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         // Choose join algorithm
         if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
             return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
+        else if (a instanceof IndexedTensor && b instanceof IndexedTensor)
+            return indexedJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
         else if (joinedType.dimensions().size() == a.type().dimensions().size() && joinedType.dimensions().size() == b.type().dimensions().size())
             return singleSpaceJoin(a, b, joinedType, combinator);
         else if (a.type().dimensions().containsAll(b.type().dimensions()))
@@ -113,14 +112,65 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
 
     private static Tensor indexedVectorJoin(IndexedTensor a, IndexedTensor b, TensorType type, DoubleBinaryOperator combinator) {
         long joinedRank = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
-        Iterator<Double> aIterator = a.valueIterator();
-        Iterator<Double> bIterator = b.valueIterator();
-        IndexedTensor.Builder builder = IndexedTensor.Builder.of(type, new DimensionSizes.Builder(1).set(0, joinedRank).build());
-        for (int i = 0; i < joinedRank; i++)
-            builder.cell(combinator.applyAsDouble(aIterator.next(), bIterator.next()), i);
+        PrimitiveIterator.OfDouble aIterator = a.doubleValueIterator();
+        PrimitiveIterator.OfDouble bIterator = b.doubleValueIterator();
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(type, new DimensionSizes.Builder(1).set(0, joinedRank).build());
+        for (long i = 0; i < joinedRank; i++)
+            builder.cellByDirectIndex(i, combinator.applyAsDouble(aIterator.nextDouble(), bIterator.nextDouble()));
         return builder.build();
     }
 
+    /**
+     * Joins two indexed tensors of any dimensions by iterating over the joined space in the standard value order
+     * while keeping track of the corresponding value index into each argument, such that no cells or addresses
+     * are created during the join.
+     */
+    private static Tensor indexedJoin(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+        DimensionSizes joinedSizes = joinedSize(joinedType, a, b);
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(joinedType, joinedSizes);
+
+        int rank = joinedSizes.dimensions();
+        long[] sizes = new long[rank];
+        for (int i = 0; i < rank; i++)
+            sizes[i] = joinedSizes.size(i);
+        long[] aStrides = stridesInJoined(a, joinedType);
+        long[] bStrides = stridesInJoined(b, joinedType);
+
+        long[] indexes = new long[rank];
+        long aIndex = 0;
+        long bIndex = 0;
+        long joinedTotalSize = joinedSizes.totalSize();
+        for (long joinedIndex = 0; joinedIndex < joinedTotalSize; joinedIndex++) {
+            builder.cellByDirectIndex(joinedIndex, combinator.applyAsDouble(a.get(aIndex), b.get(bIndex)));
+
+            // Step to the next joined cell: Increment the innermost dimension, and carry over to outer ones
+            for (int d = rank - 1; d >= 0; d--) {
+                aIndex += aStrides[d];
+                bIndex += bStrides[d];
+                if (++indexes[d] < sizes[d]) break;
+                aIndex -= aStrides[d] * sizes[d];
+                bIndex -= bStrides[d] * sizes[d];
+                indexes[d] = 0;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the distance between consecutive values in the given tensor along each dimension of the joined type,
+     * or 0 for the joined dimensions which are not present in the tensor.
+     */
+    private static long[] stridesInJoined(IndexedTensor tensor, TensorType joinedType) {
+        long[] strides = new long[joinedType.dimensions().size()];
+        DimensionSizes sizes = tensor.dimensionSizes();
+        long stride = 1;
+        for (int i = sizes.dimensions() - 1; i >= 0; i--) {
+            strides[joinedType.indexOfDimension(tensor.type().dimensions().get(i).name()).get()] = stride;
+            stride *= sizes.size(i);
+        }
+        return strides;
+    }
+
     /** When both tensors have the same dimensions, at most one cell matches a cell in the other tensor */
     private static Tensor singleSpaceJoin(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
         Tensor.Builder builder = Tensor.Builder.of(joinedType);
@@ -134,54 +184,6 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return builder.build();
     }
 
-    /** Join a tensor into a superspace */
-    private static Tensor subspaceJoin(Tensor subspace, Tensor superspace, TensorType joinedType, boolean reversedArgumentOrder, DoubleBinaryOperator combinator) {
-        if (subspace instanceof IndexedTensor && superspace instanceof IndexedTensor)
-            return indexedSubspaceJoin((IndexedTensor) subspace, (IndexedTensor) superspace, joinedType, reversedArgumentOrder, combinator);
-        else
-            return generalSubspaceJoin(subspace, superspace, joinedType, reversedArgumentOrder, combinator);
-    }
-
-    private static Tensor indexedSubspaceJoin(IndexedTensor subspace, IndexedTensor superspace, TensorType joinedType, boolean reversedArgumentOrder, DoubleBinaryOperator combinator) {
-        if (subspace.size() == 0 || superspace.size() == 0) // special case empty here to avoid doing it when finding sizes
-            return Tensor.Builder.of(joinedType, new DimensionSizes.Builder(joinedType.dimensions().size()).build()).build();
-
-        DimensionSizes joinedSizes = joinedSize(joinedType, subspace, superspace);
-
-        IndexedTensor.Builder builder = (IndexedTensor.Builder)Tensor.Builder.of(joinedType, joinedSizes);
-
-        // Find dimensions which are only in the supertype
-        Set<String> superDimensionNames = new HashSet<>(superspace.type().dimensionNames());
-        superDimensionNames.removeAll(subspace.type().dimensionNames());
-
-        for (Iterator<IndexedTensor.SubspaceIterator> i = superspace.subspaceIterator(superDimensionNames, joinedSizes); i.hasNext(); ) {
-            IndexedTensor.SubspaceIterator subspaceInSuper = i.next();
-            joinSubspaces(subspace.valueIterator(), subspace.size(),
-                    subspaceInSuper, subspaceInSuper.size(),
-                    reversedArgumentOrder, builder, combinator);
-        }
-
-        return builder.build();
-    }
-
-    private static void joinSubspaces(Iterator<Double> subspace, long subspaceSize,
-                                      Iterator<Tensor.Cell> superspace, long superspaceSize,
-                                      boolean reversedArgumentOrder, IndexedTensor.Builder builder,
-                                      DoubleBinaryOperator combinator) {
-        long joinedLength = Math.min(subspaceSize, superspaceSize);
-        if (reversedArgumentOrder) {
-            for (int i = 0; i < joinedLength; i++) {
-                Tensor.Cell supercell = superspace.next();
-                builder.cell(supercell, combinator.applyAsDouble(supercell.getValue(), subspace.next()));
-            }
-        } else {
-            for (int i = 0; i < joinedLength; i++) {
-                Tensor.Cell supercell = superspace.next();
-                builder.cell(supercell, combinator.applyAsDouble(subspace.next(), supercell.getValue()));
-            }
-        }
-    }
-
     private static DimensionSizes joinedSize(TensorType joinedType, IndexedTensor a, IndexedTensor b) {
         DimensionSizes.Builder builder = new DimensionSizes.Builder(joinedType.dimensions().size());
         for (int i = 0; i < builder.dimensions(); i++) {
@@ -198,7 +200,8 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return builder.build();
     }
 
-    private static Tensor generalSubspaceJoin(Tensor subspace, Tensor superspace, TensorType joinedType, boolean reversedArgumentOrder, DoubleBinaryOperator combinator) {
+    /** Join a tensor into a superspace */
+    private static Tensor subspaceJoin(Tensor subspace, Tensor superspace, TensorType joinedType, boolean reversedArgumentOrder, DoubleBinaryOperator combinator) {
         int[] subspaceIndexes = subspaceIndexes(superspace.type(), subspace.type());
         Tensor.Builder builder = Tensor.Builder.of(joinedType);
         for (Iterator<Tensor.Cell> i = superspace.cellIterator(); i.hasNext(); ) {
@@ -223,73 +226,12 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
     }
 
     private static TensorAddress mapAddressToSubspace(TensorAddress superAddress, int[] subspaceIndexes) {
-        String[] subspaceLabels = new String[subspaceIndexes.length];
-        for (int i = 0; i < subspaceIndexes.length; i++)
-            subspaceLabels[i] = superAddress.label(subspaceIndexes[i]);
-        return TensorAddress.of(subspaceLabels);
+        return superAddress.partialCopy(subspaceIndexes);
     }
 
-    /** Slow join which works for any two tensors */
+    /** Slow join which works for any two tensors which are not both indexed */
     private static Tensor generalJoin(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
-        if (a instanceof IndexedTensor && b instanceof IndexedTensor)
-            return indexedGeneralJoin((IndexedTensor) a, (IndexedTensor) b, joinedType, combinator);
-        else
-            return mappedHashJoin(a, b, joinedType, combinator);
-    }
-
-    private static Tensor indexedGeneralJoin(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
-        DimensionSizes joinedSize = joinedSize(joinedType, a, b);
-        Tensor.Builder builder = Tensor.Builder.of(joinedType, joinedSize);
-        int[] aToIndexes = mapIndexes(a.type(), joinedType);
-        int[] bToIndexes = mapIndexes(b.type(), joinedType);
-        joinTo(a, b, joinedType, joinedSize, aToIndexes, bToIndexes, builder, combinator);
-        return builder.build();
-    }
-
-    private static void joinTo(IndexedTensor a, IndexedTensor b, TensorType joinedType, DimensionSizes joinedSize,
-                               int[] aToIndexes, int[] bToIndexes, Tensor.Builder builder,
-                               DoubleBinaryOperator combinator) {
-        Set<String> sharedDimensions = Sets.intersection(a.type().dimensionNames(), b.type().dimensionNames());
-        Set<String> dimensionsOnlyInA = Sets.difference(a.type().dimensionNames(), b.type().dimensionNames());
-
-        DimensionSizes aIterateSize = joinedSizeOf(a.type(), joinedType, joinedSize);
-        DimensionSizes bIterateSize = joinedSizeOf(b.type(), joinedType, joinedSize);
-
-        // for each combination of dimensions only in a
-        for (Iterator<IndexedTensor.SubspaceIterator> ia = a.subspaceIterator(dimensionsOnlyInA, aIterateSize); ia.hasNext(); ) {
-            IndexedTensor.SubspaceIterator aSubspace = ia.next();
-            // for each combination of dimensions in a which is also in b
-            while (aSubspace.hasNext()) {
-                Tensor.Cell aCell = aSubspace.next();
-                PartialAddress matchingBCells = partialAddress(a.type(), aSubspace.address(), sharedDimensions);
-                // for each matching combination of dimensions ony in b
-                for (IndexedTensor.SubspaceIterator bSubspace = b.cellIterator(matchingBCells, bIterateSize); bSubspace.hasNext(); ) {
-                    Tensor.Cell bCell = bSubspace.next();
-                    TensorAddress joinedAddress = joinAddresses(aCell.getKey(), aToIndexes, bCell.getKey(), bToIndexes, joinedType);
-                    double joinedValue = combinator.applyAsDouble(aCell.getValue(), bCell.getValue());
-                    builder.cell(joinedAddress, joinedValue);
-                }
-            }
-        }
-    }
-
-    private static PartialAddress partialAddress(TensorType addressType, TensorAddress address, Set<String> retainDimensions) {
-        PartialAddress.Builder builder = new PartialAddress.Builder(retainDimensions.size());
-        for (int i = 0; i < addressType.dimensions().size(); i++)
-            if (retainDimensions.contains(addressType.dimensions().get(i).name()))
-                builder.add(addressType.dimensions().get(i).name(), address.numericLabel(i));
-        return builder.build();
-    }
-
-    /** Returns the sizes from the joined sizes which are present in the type argument */
-    private static DimensionSizes joinedSizeOf(TensorType type, TensorType joinedType, DimensionSizes joinedSizes) {
-        DimensionSizes.Builder builder = new DimensionSizes.Builder(type.dimensions().size());
-        int dimensionIndex = 0;
-        for (int i = 0; i < joinedType.dimensions().size(); i++) {
-            if (type.dimensionNames().contains(joinedType.dimensions().get(i).name()))
-                builder.set(dimensionIndex++, joinedSizes.size(i));
-        }
-        return builder.build();
+        return mappedHashJoin(a, b, joinedType, combinator);
     }
 
     private static Tensor mappedGeneralJoin(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
@@ -333,8 +275,7 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         for (Iterator<Tensor.Cell> cellIterator = a.cellIterator(); cellIterator.hasNext(); ) {
             Tensor.Cell aCell = cellIterator.next();
             TensorAddress partialCommonAddress = partialCommonAddress(aCell, aIndexesInCommon);
-            aCellsByCommonAddress.putIfAbsent(partialCommonAddress, new ArrayList<>());
-            aCellsByCommonAddress.get(partialCommonAddress).add(aCell);
+            aCellsByCommonAddress.computeIfAbsent(partialCommonAddress, k -> new ArrayList<>()).add(aCell);
         }
 
         // Iterate once through the larger tensor and use the hash map to find joinable cells
@@ -371,28 +312,13 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return toIndexes;
     }
 
-    private static TensorAddress joinAddresses(TensorAddress a, int[] aToIndexes, TensorAddress b, int[] bToIndexes,
-                                               TensorType joinedType) {
-        String[] joinedLabels = new String[joinedType.dimensions().size()];
-        mapContent(a, joinedLabels, aToIndexes);
-        boolean compatible = mapContent(b, joinedLabels, bToIndexes);
-        if ( ! compatible) return null;
-        return TensorAddress.of(joinedLabels);
-    }
-
     /**
-     * Maps the content in the given list to the given array, using the given index map.
-     *
-     * @return true if the mapping was successful, false if one of the destination positions was
-     *         occupied by a different value
+     * Returns the joined address of a and b, or null if they have different labels in some common dimension.
+     * This copies labels without accessing their strings.
      */
-    private static boolean mapContent(TensorAddress from, String[] to, int[] indexMap) {
-        for (int i = 0; i < from.size(); i++) {
-            int toIndex = indexMap[i];
-            if (to[toIndex] != null && ! to[toIndex].equals(from.label(i))) return false;
-            to[toIndex] = from.label(i);
-        }
-        return true;
+    private static TensorAddress joinAddresses(TensorAddress a, int[] aToIndexes, TensorAddress b, int[] bToIndexes,
+                                               TensorType joinedType) {
+        return TensorAddress.join(a, aToIndexes, b, bToIndexes, joinedType.dimensions().size());
     }
 
     /** Returns common dimension of a and b as a new tensor type */
@@ -413,12 +339,7 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
     }
 
     private static TensorAddress partialCommonAddress(Tensor.Cell cell, int[] indexMap) {
-        TensorAddress address = cell.getKey();
-        String[] labels = new String[indexMap.length];
-        for (int i = 0; i < labels.length; ++i) {
-            labels[i] = address.label(indexMap[i]);
-        }
-        return TensorAddress.of(labels);
+        return cell.getKey().partialCopy(indexMap);
     }
 
 }
@@ -1,6 +1,10 @@
 // Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor.functions;
 
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 
 import java.util.Collections;
@@ -40,6 +44,44 @@ public class L2Normalize<NAMETYPE extends Name> extends CompositeTensorFunction<
                         ScalarFunctions.divide());
     }
 
+    /**
+     * Evaluates this directly over the values of the argument when it is a dense vector in the normalized dimension,
+     * and as the equivalent primitive function otherwise.
+     */
+    @Override
+    public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor input = argument.evaluate(context);
+        if ( ! isDenseVector(input, dimension))
+            return new L2Normalize<>(new ConstantTensor<NAMETYPE>(input), dimension).toPrimitive().evaluate(context);
+
+        IndexedTensor vector = (IndexedTensor)input;
+        double sumOfSquares;
+        if (vector.type().valueType() == TensorType.Value.FLOAT) { // squares are float values in the primitive function
+            sumOfSquares = 0;
+            for (long i = 0; i < vector.size(); i++)
+                sumOfSquares += (float)(vector.get(i) * vector.get(i));
+        }
+        else {
+            sumOfSquares = vector.dotProduct(0, vector, 0, vector.size());
+        }
+        double norm = Math.sqrt(sumOfSquares);
+
+        IndexedTensor.BoundBuilder builder =
+                (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(vector.type(), vector.dimensionSizes());
+        for (long i = 0; i < vector.size(); i++)
+            builder.cellByDirectIndex(i, vector.get(i) / norm);
+        return builder.build();
+    }
+
+    /** Returns whether the given tensor is a non-empty dense vector of doubles or floats in the given dimension */
+    static boolean isDenseVector(Tensor tensor, String dimension) {
+        if ( ! (tensor instanceof IndexedTensor)) return false;
+        if (tensor.type().dimensions().size() != 1) return false;
+        if ( ! tensor.type().dimensions().get(0).name().equals(dimension)) return false;
+        if (tensor.type().valueType() != TensorType.Value.DOUBLE && tensor.type().valueType() != TensorType.Value.FLOAT) return false;
+        return tensor.size() > 0;
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "l2_normalize(" + argument.toString(context) + ", " + dimension + ")";
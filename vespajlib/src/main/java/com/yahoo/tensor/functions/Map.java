@@ -1,6 +1,7 @@
 // Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor.functions;
 
+import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -62,6 +63,9 @@ public class Map<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYPE
     @Override
     public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
         Tensor input = argument().evaluate(context);
+        if (input instanceof IndexedTensor)
+            return mapIndexed((IndexedTensor)input);
+
         Tensor.Builder builder = Tensor.Builder.of(outputType(input.type()));
         for (Iterator<Tensor.Cell> i = input.cellIterator(); i.hasNext(); ) {
             java.util.Map.Entry<TensorAddress, Double> cell = i.next();
@@ -70,6 +74,14 @@ public class Map<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYPE
         return builder.build();
     }
 
+    private Tensor mapIndexed(IndexedTensor input) {
+        IndexedTensor.BoundBuilder builder =
+                (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(outputType(input.type()), input.dimensionSizes());
+        for (long i = 0; i < input.size(); i++)
+            builder.cellByDirectIndex(i, mapper.applyAsDouble(input.get(i)));
+        return builder.build();
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "map(" + argument.toString(context) + ", " + mapper + ")";
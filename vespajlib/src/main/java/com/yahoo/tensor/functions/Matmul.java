@@ -2,7 +2,9 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 
 import java.util.List;
@@ -44,6 +46,23 @@ public class Matmul<NAMETYPE extends Name> extends CompositeTensorFunction<NAMET
                             dimension);
     }
 
+    /**
+     * Evaluates this as a single reduce-join over the dense values of the arguments when possible,
+     * and as the equivalent primitive reduce of a join otherwise.
+     */
+    @Override
+    public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor a = argument1.evaluate(context);
+        Tensor b = argument2.evaluate(context);
+        ReduceJoin<NAMETYPE> reduceJoin = new ReduceJoin<>(new ConstantTensor<>(a), new ConstantTensor<>(b),
+                                                           ScalarFunctions.multiply(), Reduce.Aggregator.sum,
+                                                           List.of(dimension));
+        if (reduceJoin.canOptimize(a, b))
+            return reduceJoin.evaluate(context);
+        return Reduce.evaluate(Join.evaluate(a, b, Join.outputType(a.type(), b.type()), ScalarFunctions.multiply()),
+                               List.of(dimension), Reduce.Aggregator.sum);
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "matmul(" + argument1.toString(context) + ", " + argument2.toString(context) + ", " + dimension + ")";
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
@@ -104,14 +105,14 @@ public class Merge<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETY
         long bSize = b.dimensionSizes().size(0);
         long mergedSize = Math.max(aSize, bSize);
         long sharedSize = Math.min(aSize, bSize);
-        Iterator<Double> aIterator = a.valueIterator();
-        Iterator<Double> bIterator = b.valueIterator();
-        IndexedTensor.Builder builder = IndexedTensor.Builder.of(type);
+        PrimitiveIterator.OfDouble aIterator = a.doubleValueIterator();
+        PrimitiveIterator.OfDouble bIterator = b.doubleValueIterator();
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(type, new DimensionSizes.Builder(1).set(0, mergedSize).build());
         for (long i = 0; i < sharedSize; i++)
-            builder.cell(combinator.applyAsDouble(aIterator.next(), bIterator.next()), i);
-        Iterator<Double> largestIterator = aSize > bSize ? aIterator : bIterator;
+            builder.cellByDirectIndex(i, combinator.applyAsDouble(aIterator.nextDouble(), bIterator.nextDouble()));
+        PrimitiveIterator.OfDouble largestIterator = aSize > bSize ? aIterator : bIterator;
         for (long i = sharedSize; i < mergedSize; i++)
-            builder.cell(largestIterator.next(), i);
+            builder.cellByDirectIndex(i, largestIterator.nextDouble());
         return builder.build();
     }
 
@@ -2,6 +2,7 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
@@ -116,12 +117,14 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
             if (argument.isEmpty())
                 return Tensor.from(0.0);
-            else if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument, aggregator);
+            else if (argument instanceof IndexedTensor)
+                return reduceAllIndexed((IndexedTensor)argument, aggregator);
             else
                 return reduceAllGeneral(argument, aggregator);
 
         TensorType reducedType = outputType(argument.type(), dimensions);
+        if (argument instanceof IndexedTensor && ! argument.isEmpty())
+            return reduceIndexed((IndexedTensor)argument, reducedType, dimensions, aggregator);
 
         // Reduce cells
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
@@ -159,13 +162,77 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    private static Tensor reduceIndexedVector(IndexedTensor argument, Aggregator aggregator) {
+    private static Tensor reduceAllIndexed(IndexedTensor argument, Aggregator aggregator) {
         ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
-        for (int i = 0; i < argument.dimensionSizes().size(0); i++)
+        for (long i = 0; i < argument.size(); i++)
             valueAggregator.aggregate(argument.get(i));
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
+    /**
+     * Reduces some dimensions of an indexed tensor by aggregating each reduced subspace in turn,
+     * reading values by their value index without creating any cells or addresses.
+     */
+    private static Tensor reduceIndexed(IndexedTensor argument, TensorType reducedType, List<String> dimensions, Aggregator aggregator) {
+        DimensionSizes sizes = argument.dimensionSizes();
+        int rank = sizes.dimensions();
+        int reducedRank = reducedType.dimensions().size();
+        long[] keptSizes = new long[reducedRank];
+        long[] keptStrides = new long[reducedRank];
+        long[] removedSizes = new long[rank - reducedRank];
+        long[] removedStrides = new long[rank - reducedRank];
+        long stride = 1;
+        for (int i = rank - 1, kept = reducedRank - 1, removed = rank - reducedRank - 1; i >= 0; i--) {
+            if (dimensions.contains(argument.type().dimensions().get(i).name())) {
+                removedSizes[removed] = sizes.size(i);
+                removedStrides[removed--] = stride;
+            }
+            else {
+                keptSizes[kept] = sizes.size(i);
+                keptStrides[kept--] = stride;
+            }
+            stride *= sizes.size(i);
+        }
+
+        long[] subspaceStarts = valueIndexOffsets(keptSizes, keptStrides);
+        long[] subspaceOffsets = valueIndexOffsets(removedSizes, removedStrides);
+        DimensionSizes.Builder reducedSizes = new DimensionSizes.Builder(reducedRank);
+        for (int i = 0; i < reducedRank; i++)
+            reducedSizes.set(i, keptSizes[i]);
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType, reducedSizes.build());
+        ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
+        for (int i = 0; i < subspaceStarts.length; i++) {
+            valueAggregator.reset();
+            for (long offset : subspaceOffsets)
+                valueAggregator.aggregate(argument.get(subspaceStarts[i] + offset));
+            builder.cellByDirectIndex(i, valueAggregator.aggregatedValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the value index offset of each cell of the space spanned by the given sizes,
+     * where consecutive values along each dimension are the given stride apart, in the standard value order.
+     */
+    private static long[] valueIndexOffsets(long[] sizes, long[] strides) {
+        int count = 1;
+        for (long size : sizes)
+            count *= size;
+        long[] offsets = new long[count];
+        long[] indexes = new long[sizes.length];
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = offset;
+            for (int d = sizes.length - 1; d >= 0; d--) {
+                offset += strides[d];
+                if (++indexes[d] < sizes[d]) break;
+                offset -= strides[d] * sizes[d];
+                indexes[d] = 0;
+            }
+        }
+        return offsets;
+    }
+
     static abstract class ValueAggregator {
 
         static ValueAggregator ofType(Aggregator aggregator) {
@@ -2,7 +2,10 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 
 import java.util.Collections;
@@ -45,6 +48,33 @@ public class Softmax<NAMETYPE extends Name> extends CompositeTensorFunction<NAME
                           ScalarFunctions.divide());
     }
 
+    /**
+     * Evaluates this directly over the values of the argument when it is a dense vector in the softmax dimension,
+     * and as the equivalent primitive function otherwise.
+     */
+    @Override
+    public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor input = argument.evaluate(context);
+        if ( ! L2Normalize.isDenseVector(input, dimension))
+            return new Softmax<>(new ConstantTensor<NAMETYPE>(input), dimension).toPrimitive().evaluate(context);
+
+        IndexedTensor vector = (IndexedTensor)input;
+        boolean isFloat = vector.type().valueType() == TensorType.Value.FLOAT;
+        double[] exponentials = new double[(int)vector.size()];
+        double sum = 0;
+        for (int i = 0; i < exponentials.length; i++) {
+            double exponential = Math.exp(vector.get(i));
+            exponentials[i] = isFloat ? (float)exponential : exponential; // as stored in the primitive function
+            sum += exponentials[i];
+        }
+
+        IndexedTensor.BoundBuilder builder =
+                (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(vector.type(), vector.dimensionSizes());
+        for (int i = 0; i < exponentials.length; i++)
+            builder.cellByDirectIndex(i, exponentials[i] / sum);
+        return builder.build();
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "softmax(" + argument.toString(context) + ", " + dimension + ")";
@@ -7,6 +7,8 @@ import com.yahoo.tensor.evaluation.VariableTensor;
 import com.yahoo.tensor.functions.ConstantTensor;
 import com.yahoo.tensor.functions.Join;
 import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ReduceJoin;
+import com.yahoo.tensor.functions.ScalarFunctions;
 import com.yahoo.tensor.functions.TensorFunction;
 
 import java.util.Collections;
@@ -32,6 +34,26 @@ public class MatrixDotProductBenchmark {
         return (double)totalTime / (double)iterations;
     }
 
+    /** Benchmarks the products of a dense vector in j and dense matrixes in i and j evaluated as a single reduce-join */
+    public double benchmarkReduceJoin(int iterations, List<Tensor> modelMatrixes, int vectorSize) {
+        Tensor queryVector = matrix(1, vectorSize, TensorType.Dimension.Type.indexedBound).get(0).reduce(Reduce.Aggregator.sum, "i");
+        TensorFunction<Name> productFunction = new ReduceJoin<>(new ConstantTensor<>(queryVector),
+                                                                new VariableTensor<>("argument"),
+                                                                ScalarFunctions.multiply(),
+                                                                Reduce.Aggregator.sum,
+                                                                List.of("j"));
+        MapEvaluationContext<Name> context = new MapEvaluationContext<>();
+        context.put("argument", modelMatrixes.get(0));
+        for (int i = 0; i < Math.max(iterations/10, 10); i++) // warmup
+            productFunction.evaluate(context);
+        System.gc();
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < iterations; i++)
+            productFunction.evaluate(context);
+        long totalTime = System.currentTimeMillis() - startTime;
+        return (double)totalTime / (double)iterations;
+    }
+
     private double dotProduct(Tensor tensor, List<Tensor> tensors, int iterations) {
         double result = 0;
         for (int i = 0 ; i < iterations; i++)
@@ -61,11 +83,12 @@ public class MatrixDotProductBenchmark {
         addDimension(typeBuilder, "i", dimensionType, dimension1Size);
         addDimension(typeBuilder, "j", dimensionType, dimension2Size);
         Tensor.Builder builder = Tensor.Builder.of(typeBuilder.build());
+        String labelPrefix = dimensionType == TensorType.Dimension.Type.mapped ? "label" : "";
         for (int i = 0; i < dimension1Size; i++) {
             for (int j = 0; j < dimension2Size; j++) {
                 builder.cell()
-                        .label("i", String.valueOf("label" + i))
-                        .label("j", String.valueOf("label" + j))
+                        .label("i", labelPrefix + i)
+                        .label("j", labelPrefix + j)
                         .value(random.nextDouble());
             }
         }
@@ -84,6 +107,8 @@ public class MatrixDotProductBenchmark {
     public static void main(String[] args) {
         double time = new MatrixDotProductBenchmark().benchmark(10000, matrix(10, 55, TensorType.Dimension.Type.mapped), TensorType.Dimension.Type.mapped);
         System.out.printf("Matrixes, 10*55 size matrixes. Time per sum(join): %1$8.3f ms\n", time);
+        time = new MatrixDotProductBenchmark().benchmarkReduceJoin(10000, matrix(100, 768, TensorType.Dimension.Type.indexedBound), 768);
+        System.out.printf("Dense vector times 100*768 matrix. Time per reduce-join: %1$8.3f ms\n", time);
     }
 
 }
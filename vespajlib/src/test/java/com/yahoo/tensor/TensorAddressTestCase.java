@@ -0,0 +1,153 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author bratseth
+ */
+public class TensorAddressTestCase {
+
+    @Test
+    public void testLabels() {
+        TensorAddress address = TensorAddress.ofLabels("a", "17", "-3", "007", "-0", "");
+        assertEquals("a", address.label(0));
+        assertEquals("17", address.label(1));
+        assertEquals("-3", address.label(2));
+        assertEquals("007", address.label(3));
+        assertEquals("-0", address.label(4));
+        assertEquals("", address.label(5));
+        assertEquals(17, address.numericLabel(1));
+        assertEquals(17, address.labelNumber(1));
+        assertEquals(-3, address.numericLabel(2));
+        assertEquals(7, address.numericLabel(3));
+        assertTrue(Label.isInterned(address.labelNumber(3)));
+        try {
+            address.numericLabel(0);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Expected an integer label in cell address (a,17,-3,007,-0,) at position 0 but got 'a'",
+                         e.getMessage());
+        }
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(TensorAddress.of(3, 5), TensorAddress.ofLabels("3", "5"));
+        assertEquals(TensorAddress.of(3, 5).hashCode(), TensorAddress.ofLabels("3", "5").hashCode());
+        assertEquals(TensorAddress.ofLabels("a", "b"), TensorAddress.ofLabels("a", "b"));
+        assertEquals(TensorAddress.ofLabels("a", "b").hashCode(), TensorAddress.ofLabels("a", "b").hashCode());
+        assertNotEquals(TensorAddress.ofLabels("a", "b"), TensorAddress.ofLabels("b", "a"));
+        assertNotEquals(TensorAddress.of(7), TensorAddress.ofLabels("007"));
+        assertEquals(TensorAddress.ofLabels("b", "a"), TensorAddress.ofLabels("a", "b").partialCopy(new int[] { 1, 0 }));
+        assertEquals(TensorAddress.ofLabels("x", "2"), TensorAddress.ofLabels("x", "1").withLabel(1, 2));
+    }
+
+    @Test
+    public void testOrderIsByLabelString() {
+        assertTrue(TensorAddress.of(10).compareTo(TensorAddress.of(9)) < 0);
+        assertTrue(TensorAddress.ofLabels("b").compareTo(TensorAddress.ofLabels("a")) > 0);
+        assertTrue(TensorAddress.ofLabels("10").compareTo(TensorAddress.ofLabels("a")) < 0);
+        assertEquals(0, TensorAddress.ofLabels("a", "1").compareTo(TensorAddress.ofLabels("1", "a").partialCopy(new int[] { 1, 0 })));
+        assertFalse(TensorAddress.ofLabels("a").compareTo(TensorAddress.ofLabels("ab")) >= 0);
+    }
+
+    @Test
+    public void testNumericLabelsInTheRangeOfLabelNumbers() {
+        long label = Long.MIN_VALUE + 1;
+        TensorAddress address = TensorAddress.of(label, Long.MIN_VALUE);
+        assertEquals(label, address.numericLabel(0));
+        assertEquals(Long.MIN_VALUE, address.numericLabel(1));
+        assertEquals(String.valueOf(label), address.label(0));
+        assertEquals(TensorAddress.ofLabels(String.valueOf(label), String.valueOf(Long.MIN_VALUE)), address);
+        assertEquals(TensorAddress.ofLabels("a", String.valueOf(label)), TensorAddress.ofLabels("a", "b").withLabel(1, label));
+        assertEquals(label, TensorAddress.of(1, 2).withLabel(1, label).numericLabel(1));
+        assertNotEquals(TensorAddress.ofLabels("a"), TensorAddress.of(TensorAddress.ofLabels("a").labelNumber(0)));
+    }
+
+    @Test
+    public void testNumericLabelsWithMoreDigitsThanLabelNumbers() {
+        for (long label : new long[] { 1000000000000000000L, -1000000000000000000L, Long.MAX_VALUE }) {
+            TensorAddress numeric = TensorAddress.of(label);
+            TensorAddress string = TensorAddress.ofLabels(String.valueOf(label));
+            assertEquals(string, numeric);
+            assertEquals(string.hashCode(), numeric.hashCode());
+            assertEquals(0, string.compareTo(numeric));
+            assertEquals(label, numeric.numericLabel(0));
+            assertEquals(string, TensorAddress.of(0).withLabel(0, label));
+        }
+    }
+
+    @Test
+    public void testIntegerLabelsAreOrderedAsStrings() {
+        long[] labels = { 0, 1, 2, 9, 10, 11, 19, 20, 99, 100, 101, 123, 1000, 999999999999999999L,
+                          -1, -2, -9, -10, -11, -100, -123, -999999999999999999L };
+        for (long a : labels) {
+            for (long b : labels) {
+                int expected = Integer.signum(String.valueOf(a).compareTo(String.valueOf(b)));
+                assertEquals(a + " compared to " + b, expected, Integer.signum(Label.compare(a, b)));
+                assertEquals(a + " compared to " + b, expected, Integer.signum(TensorAddress.of(a).compareTo(TensorAddress.of(b))));
+            }
+        }
+    }
+
+    @Test
+    public void testJoin() {
+        TensorAddress a = TensorAddress.ofLabels("x", "1");
+        TensorAddress b = TensorAddress.ofLabels("1", "y");
+        assertEquals(TensorAddress.ofLabels("x", "1", "y"),
+                     TensorAddress.join(a, new int[] { 0, 1 }, b, new int[] { 1, 2 }, 3));
+        assertNull(TensorAddress.join(a, new int[] { 0, 1 }, b, new int[] { 2, 0 }, 3));
+    }
+
+    @Test
+    public void testLabelDictionaryIsBounded() {
+        Label.Dictionary dictionary = new Label.Dictionary(2);
+        long a = dictionary.toNumber("a");
+        long b = dictionary.toNumber("b");
+        assertTrue(Label.isInterned(a));
+        assertTrue(Label.isInterned(b));
+        assertNotEquals(a, b);
+        assertEquals(Label.NONE, dictionary.toNumber("c"));
+        assertEquals(a, dictionary.toNumber("a"));
+        assertEquals("b", dictionary.fromNumber(b));
+    }
+
+    @Test
+    public void testUninternedLabels() {
+        TensorAddress address = TensorAddress.ofUninterned("uninterned-a", "1", "uninterned-b");
+        assertEquals(Label.NONE, address.labelNumber(0));
+        assertEquals(1, address.labelNumber(1));
+        assertEquals("uninterned-a", address.label(0));
+        assertEquals("cell address (uninterned-a,1,uninterned-b)", address.toString());
+        assertEquals(address, TensorAddress.ofUninterned("uninterned-a", "1", "uninterned-b"));
+        assertEquals(address.hashCode(), TensorAddress.ofUninterned("uninterned-a", "1", "uninterned-b").hashCode());
+        assertNotEquals(address, TensorAddress.ofUninterned("uninterned-b", "1", "uninterned-a"));
+        assertTrue(address.compareTo(TensorAddress.ofUninterned("uninterned-b", "1", "uninterned-a")) < 0);
+        assertTrue(address.compareTo(TensorAddress.ofLabels("a", "1", "b")) > 0);
+
+        TensorAddress partial = address.partialCopy(new int[] { 2, 1 });
+        assertEquals(TensorAddress.ofUninterned("uninterned-b", "1"), partial);
+        assertEquals(TensorAddress.ofUninterned("uninterned-b", "2"), partial.withLabel(1, 2));
+        assertEquals(address, TensorAddress.join(TensorAddress.ofUninterned("uninterned-a", "1"), new int[] { 0, 1 },
+                                                 partial, new int[] { 2, 1 }, 3));
+        assertNull(TensorAddress.join(address, new int[] { 0, 1, 2 }, partial, new int[] { 0, 1 }, 3));
+        try {
+            address.numericLabel(0);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Expected an integer label in cell address (uninterned-a,1,uninterned-b) at position 0 but got 'uninterned-a'",
+                         e.getMessage());
+        }
+    }
+
+}
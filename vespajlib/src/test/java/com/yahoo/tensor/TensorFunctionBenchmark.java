@@ -7,6 +7,8 @@ import com.yahoo.tensor.evaluation.VariableTensor;
 import com.yahoo.tensor.functions.ConstantTensor;
 import com.yahoo.tensor.functions.Join;
 import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ReduceJoin;
+import com.yahoo.tensor.functions.ScalarFunctions;
 import com.yahoo.tensor.functions.TensorFunction;
 
 import java.util.*;
@@ -36,6 +38,34 @@ public class TensorFunctionBenchmark {
         return (double)totalTime / (double)iterations;
     }
 
+    /** Benchmarks dot products of dense vectors in the x dimension evaluated as a single reduce-join */
+    public double benchmarkReduceJoin(int iterations, List<Tensor> modelVectors, int vectorSize, TensorType.Value valueType) {
+        Tensor queryVector = vectors(1, vectorSize, TensorType.Dimension.Type.indexedBound, valueType).get(0);
+        TensorFunction<Name> dotProductFunction = new ReduceJoin<>(new ConstantTensor<>(queryVector),
+                                                                   new VariableTensor<>("argument"),
+                                                                   ScalarFunctions.multiply(),
+                                                                   Reduce.Aggregator.sum,
+                                                                   List.of("x"));
+        dotProduct(dotProductFunction, modelVectors, Math.max(iterations/10, 10)); // warmup
+        System.gc();
+        long startTime = System.currentTimeMillis();
+        dotProduct(dotProductFunction, modelVectors, iterations);
+        long totalTime = System.currentTimeMillis() - startTime;
+        return (double)totalTime / (double)iterations;
+    }
+
+    private double dotProduct(TensorFunction<Name> dotProductFunction, List<Tensor> tensors, int iterations) {
+        double result = 0;
+        MapEvaluationContext<Name> context = new MapEvaluationContext<>();
+        for (int i = 0 ; i < iterations; i++) {
+            for (Tensor tensorElement : tensors) {
+                context.put("argument", tensorElement);
+                result = Math.max(result, dotProductFunction.evaluate(context).asDouble());
+            }
+        }
+        return result;
+    }
+
     private Tensor unitVector(String dimension) {
         return Tensor.Builder.of(new TensorType.Builder().indexed(dimension, 1).build())
                 .cell().label(dimension, 0).value(1).build();
@@ -66,8 +96,13 @@ public class TensorFunctionBenchmark {
     }
 
     private static List<Tensor> vectors(int vectorCount, int vectorSize, TensorType.Dimension.Type dimensionType) {
+        return vectors(vectorCount, vectorSize, dimensionType, TensorType.Value.DOUBLE);
+    }
+
+    private static List<Tensor> vectors(int vectorCount, int vectorSize, TensorType.Dimension.Type dimensionType,
+                                        TensorType.Value valueType) {
         List<Tensor> tensors = new ArrayList<>();
-        TensorType type = vectorType(new TensorType.Builder(), "x", dimensionType, vectorSize);
+        TensorType type = vectorType(new TensorType.Builder(valueType), "x", dimensionType, vectorSize);
         for (int i = 0; i < vectorCount; i++) {
             Tensor.Builder builder = Tensor.Builder.of(type);
             for (int j = 0; j < vectorSize; j++) {
@@ -146,6 +181,12 @@ public class TensorFunctionBenchmark {
         // 0.44 ms
         time = new TensorFunctionBenchmark().benchmark(50000, matrix(100, 300, TensorType.Dimension.Type.indexedBound), TensorType.Dimension.Type.indexedBound, false);
         System.out.printf("Indexed bound matrix,    time per join: %1$8.3f ms\n", time);
+
+        // ---------------- Indexed bound 768 dimensional vectors as a single reduce-join over the values:
+        time = new TensorFunctionBenchmark().benchmarkReduceJoin(5000, vectors(100, 768, TensorType.Dimension.Type.indexedBound, TensorType.Value.DOUBLE), 768, TensorType.Value.DOUBLE);
+        System.out.printf("Indexed double vectors,  time per reduce-join: %1$8.3f ms\n", time);
+        time = new TensorFunctionBenchmark().benchmarkReduceJoin(5000, vectors(100, 768, TensorType.Dimension.Type.indexedBound, TensorType.Value.FLOAT), 768, TensorType.Value.FLOAT);
+        System.out.printf("Indexed float vectors,   time per reduce-join: %1$8.3f ms\n", time);
     }
 
 }
@@ -46,4 +46,16 @@ public class JoinTestCase {
                              .divide(Tensor.from("tensor(y[],z[]):{ {y:0,z:0}:2, {y:1,z:0}:4, {y:2,z:0}:6 }")));
     }
 
+    @Test
+    public void testIndexedJoinOfPartiallyOverlappingDimensions() {
+        Tensor a = Tensor.from("tensor(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]");
+        Tensor b = Tensor.from("tensor(y[3],z[2]):[[1, 10], [2, 20], [3, 30]]");
+        assertEquals(Tensor.from("tensor(x[2],y[3],z[2]):[[[1, 10], [4, 40], [9, 90]], [[4, 40], [10, 100], [18, 180]]]"),
+                     a.multiply(b));
+        assertEquals(Tensor.from("tensor(x[2],y[3],z[2]):[[[1, 10], [4, 40], [9, 90]], [[4, 40], [10, 100], [18, 180]]]"),
+                     b.multiply(a));
+        assertEquals(Tensor.from("tensor<float>(x[2],y[3]):[[2, 3, 4], [6, 7, 8]]"),
+                     Tensor.from("tensor<float>(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]").add(Tensor.from("tensor<float>(x[2]):[1, 2]")));
+    }
+
 }
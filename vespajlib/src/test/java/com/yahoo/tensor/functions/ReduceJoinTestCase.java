@@ -0,0 +1,75 @@
+// Copyright Yahoo. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.Name;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that functions evaluated directly over dense values produce the same result as their primitive form.
+ *
+ * @author bratseth
+ */
+public class ReduceJoinTestCase {
+
+    private final java.util.Random random = new java.util.Random(42);
+
+    @Test
+    public void testDotProducts() {
+        for (String valueType : List.of("double", "float")) {
+            Tensor vector = randomTensor("tensor<" + valueType + ">(x[768])");
+            Tensor matrix = randomTensor("tensor<" + valueType + ">(y[5],x[768])");
+            Tensor otherMatrix = randomTensor("tensor(z[3],x[768])");
+            assertEqualToPrimitive(dotProduct(vector, randomTensor("tensor(x[768])")));
+            assertEqualToPrimitive(dotProduct(vector, matrix));
+            assertEqualToPrimitive(dotProduct(matrix, vector));
+            assertEqualToPrimitive(dotProduct(matrix, otherMatrix));
+            assertEqualToPrimitive(dotProduct(otherMatrix, matrix));
+            assertEqualToPrimitive(new Matmul<>(new ConstantTensor<>(matrix), new ConstantTensor<>(otherMatrix), "x"));
+        }
+        assertEquals(Tensor.from("tensor(y[2]):[14, 32]"),
+                     Tensor.from("tensor(x[3]):[1, 2, 3]").matmul(Tensor.from("tensor(y[2],x[3]):[[1, 2, 3], [4, 5, 6]]"), "x"));
+    }
+
+    @Test
+    public void testDenseVectorFunctions() {
+        for (String valueType : List.of("double", "float")) {
+            Tensor vector = randomTensor("tensor<" + valueType + ">(x[768])");
+            assertEqualToPrimitive(new L2Normalize<>(new ConstantTensor<>(vector), "x"));
+            assertEqualToPrimitive(new Softmax<>(new ConstantTensor<>(vector), "x"));
+        }
+        assertEquals(Tensor.from("tensor(x[2]):[0.6, 0.8]"), Tensor.from("tensor(x[2]):[3, 4]").l2Normalize("x"));
+        assertEquals(Tensor.from("tensor(x{}):{a:0.6, b:0.8}"), Tensor.from("tensor(x{}):{a:3, b:4}").l2Normalize("x"));
+        assertEquals(Tensor.from("tensor(x[2]):[0.5, 0.5]"), Tensor.from("tensor(x[2]):[7, 7]").softmax("x"));
+    }
+
+    private TensorFunction<Name> dotProduct(Tensor a, Tensor b) {
+        return new ReduceJoin<>(new ConstantTensor<>(a), new ConstantTensor<>(b),
+                                ScalarFunctions.multiply(), Reduce.Aggregator.sum, List.of("x"));
+    }
+
+    private void assertEqualToPrimitive(TensorFunction<Name> function) {
+        MapEvaluationContext<Name> context = new MapEvaluationContext<>();
+        Tensor expected = function.toPrimitive().evaluate(context);
+        Tensor result = function.evaluate(context);
+        assertEquals(expected.type(), result.type());
+        assertEquals(expected, result);
+    }
+
+    private Tensor randomTensor(String typeSpec) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(type);
+        long size = type.dimensions().stream().mapToLong(d -> d.size().get()).reduce(1, (a, b) -> a * b);
+        for (long i = 0; i < size; i++)
+            builder.cellByDirectIndex(i, random.nextGaussian());
+        return builder.build();
+    }
+
+}
@@ -4,6 +4,8 @@ package com.yahoo.tensor.functions;
 import com.yahoo.tensor.Tensor;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -38,6 +40,17 @@ public class ReduceTestCase {
         assertEquals(0.0, Tensor.from("tensor(x[3],y{})", "{}").count().asDouble(), delta);
     }
 
+    @Test
+    public void testReduceIndexedDimensions() {
+        Tensor t = Tensor.from("tensor(x[2],y[3],z[2]):[[[1, 2], [3, 4], [5, 6]], [[7, 8], [9, 10], [11, 12]]]");
+        assertEquals(Tensor.from("tensor(x[2],z[2]):[[9, 12], [27, 30]]"), t.sum("y"));
+        assertEquals(Tensor.from("tensor(y[3],z[2]):[[7, 8], [9, 10], [11, 12]]"), t.max("x"));
+        assertEquals(Tensor.from("tensor(x[2],y[3]):[[1, 3, 5], [7, 9, 11]]"), t.min("z"));
+        assertEquals(Tensor.from("tensor(y[3]):[18, 26, 34]"), t.sum(List.of("x", "z")));
+        assertEquals(Tensor.from("tensor(x[2]):[3.5, 9.5]"), t.avg(List.of("y", "z")));
+        assertEquals(78.0, t.sum().asDouble(), delta);
+    }
+
     private void assertNan(Tensor tensor) {
         assertTrue(tensor + " is NaN", Double.isNaN(tensor.asDouble()));
     }